@@ -29,6 +29,15 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+/**
+ * Create the flex accesses, egresses and flex only itineraries for one request.
+ * <p>
+ * THREAD SAFETY - The access and egress templates are calculated lazily, and the access and egress
+ * methods only change their own templates. So {@link #createFlexAccesses()} and {@link
+ * #createFlexEgresses()} may run at the same time in two threads. {@link
+ * #createFlexOnlyItineraries()} uses both templates, it must not run at the same time as the
+ * others.
+ */
 public class FlexRouter {
 
   /* Transit data */
@@ -96,7 +96,7 @@ public class SiriTimetableSnapshotSource implements TimetableSnapshotProvider {
 
     protected ServiceDate lastPurgeDate = null;
 
-    protected long lastSnapshotTime = -1;
+    protected volatile long lastSnapshotTime = -1;
 
     private final TimeZone timeZone;
 
@@ -123,6 +123,12 @@ public class SiriTimetableSnapshotSource implements TimetableSnapshotProvider {
     public TimetableSnapshot getTimetableSnapshot() {
         TimetableSnapshot snapshotToReturn;
 
+        // Routing threads should never wait for the updaters. Skip the lock if there is nothing
+        // to commit or the last commit is recent, this is the case for most requests.
+        if (!buffer.isDirty() || System.currentTimeMillis() - lastSnapshotTime <= maxSnapshotFrequency) {
+            return snapshot;
+        }
+
         // Try to get a lock on the buffer
         if (bufferLock.tryLock()) {
             // Make a new snapshot if necessary
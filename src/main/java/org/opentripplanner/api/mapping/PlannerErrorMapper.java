@@ -34,6 +34,9 @@ public class PlannerErrorMapper {
             case NO_STOPS_IN_RANGE:
                 api.message = Message.LOCATION_NOT_ACCESSIBLE;
                 break;
+            case SEARCH_TIMEOUT:
+                api.message = Message.REQUEST_TIMEOUT;
+                break;
             default:
                 throw new IllegalArgumentException();
         }
@@ -2,6 +2,7 @@ package org.opentripplanner.api.resource;
 
 import org.opentripplanner.api.model.ApiRouterInfo;
 import org.opentripplanner.api.model.ApiRouterList;
+import org.opentripplanner.routing.algorithm.raptor.router.street.NearbyStopCache;
 import org.opentripplanner.routing.error.GraphNotFoundException;
 import org.opentripplanner.standalone.server.OTPServer;
 import org.opentripplanner.standalone.server.Router;
@@ -57,6 +58,18 @@ public class Routers {
         return routerList;
     }
 
+    /**
+     * Return the hit and miss counters of the access/egress stop cache.
+     */
+    @GET
+    @Path("{ignoreRouterId}/accessEgressCache")
+    @Produces(MediaType.APPLICATION_JSON)
+    public NearbyStopCache.Statistics getAccessEgressCacheStatistics(
+            @PathParam("ignoreRouterId") String ignore
+    ) {
+        return otpServer.getRouter().nearbyStopCache().getStatistics();
+    }
+
     private ApiRouterInfo getRouterInfo() {
         try {
             Router router = otpServer.getRouter();
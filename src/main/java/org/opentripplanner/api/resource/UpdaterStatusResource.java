@@ -46,6 +46,17 @@ public class UpdaterStatusResource {
         return Response.status(Response.Status.OK).entity(updaterManager.getUpdaterDescriptions()).build();
     }
 
+    /** Return the queue depth and latency metrics for the batched graph writer runnables. */
+    @GET
+    @Path("/batches")
+    public Response getBatchMetrics () {
+        GraphUpdaterManager updaterManager = router.graph.updaterManager;
+        if (updaterManager == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity("No updaters running.").build();
+        }
+        return Response.status(Response.Status.OK).entity(updaterManager.getBatchMetrics()).build();
+    }
+
     /** Return status for a specific updater. */
     @GET
     @Path("/{updaterId}")
@@ -0,0 +1,228 @@
+package org.opentripplanner.common;
+
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.edgetype.ElevatorEdge;
+import org.opentripplanner.routing.edgetype.FreeEdge;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTransitLink;
+import org.opentripplanner.routing.edgetype.TransitEntranceLink;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.StreetVertex;
+import org.opentripplanner.routing.vertextype.TransitStopVertex;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * The connected components of the street network for one traverse mode, ignoring the direction of
+ * the edges. The components are found with a concurrent union-find over dense vertex indices, so
+ * the edges are scanned in parallel and the memory used is a few ints per vertex.
+ * <p>
+ * Two vertices are connected if one of the street, street-transit, entrance, elevator or free
+ * edges leaving a street vertex can be traversed in the mode. The vertices which are not connected
+ * to any other vertex are not in a component. The stops (transit stop vertices) are counted apart
+ * from the other vertices, to tell the islands with stops from the islands without.
+ * <p>
+ * THREAD SAFETY - The components are immutable when computed. They are not updated when the graph
+ * changes.
+ */
+public class StreetComponents {
+
+    /** The component of the vertices which are not connected to any other vertex. */
+    public static final int NO_COMPONENT = -1;
+
+    private final TraverseMode mode;
+
+    private final Vertex[] vertices;
+
+    private final TObjectIntMap<Vertex> indices;
+
+    /** The component of each vertex, or {@link #NO_COMPONENT}. */
+    private final int[] componentOf;
+
+    /** The members of component c are {@code members[start[c]]} to {@code members[start[c + 1] - 1]}. */
+    private final int[] start;
+
+    private final int[] members;
+
+    private final int[] stopCount;
+
+    private StreetComponents(
+            TraverseMode mode,
+            Vertex[] vertices,
+            TObjectIntMap<Vertex> indices,
+            int[] roots
+    ) {
+        this.mode = mode;
+        this.vertices = vertices;
+        this.indices = indices;
+        int n = vertices.length;
+
+        // Number the components by their root, in vertex order
+        this.componentOf = new int[n];
+        int count = 0;
+        for (int v = 0; v < n; ++v) {
+            componentOf[v] = roots[v] == v ? count++ : NO_COMPONENT;
+        }
+        int[] sizes = new int[count];
+        for (int v = 0; v < n; ++v) {
+            if (roots[v] != NO_COMPONENT) {
+                componentOf[v] = componentOf[roots[v]];
+                sizes[componentOf[v]]++;
+            }
+        }
+        this.start = new int[count + 1];
+        for (int c = 0; c < count; ++c) {
+            start[c + 1] = start[c] + sizes[c];
+        }
+        this.members = new int[start[count]];
+        this.stopCount = new int[count];
+        int[] next = new int[count];
+        System.arraycopy(start, 0, next, 0, count);
+        for (int v = 0; v < n; ++v) {
+            int c = componentOf[v];
+            if (c == NO_COMPONENT) { continue; }
+            members[next[c]++] = v;
+            if (vertices[v] instanceof TransitStopVertex) { stopCount[c]++; }
+        }
+    }
+
+    /**
+     * Find the connected components of the street network in the given mode. The edges of the
+     * vertices are scanned in parallel.
+     */
+    public static StreetComponents compute(Graph graph, TraverseMode mode) {
+        Vertex[] vertices = graph.getVertices().toArray(new Vertex[0]);
+        int n = vertices.length;
+        TObjectIntMap<Vertex> indices = new TObjectIntHashMap<>(n, 0.5f, NO_COMPONENT);
+        for (int v = 0; v < n; ++v) {
+            indices.put(vertices[v], v);
+        }
+        RoutingRequest options = new RoutingRequest(new TraverseModeSet(mode));
+
+        AtomicIntegerArray parents = new AtomicIntegerArray(n);
+        for (int v = 0; v < n; ++v) {
+            parents.set(v, v);
+        }
+        // Only written with true, so the races are harmless
+        boolean[] connected = new boolean[n];
+
+        IntStream.range(0, n).parallel().forEach(v -> {
+            Vertex vertex = vertices[v];
+            if (!(vertex instanceof StreetVertex)) { return; }
+            State s0 = new State(vertex, options);
+            for (Edge e : vertex.getOutgoing()) {
+                if (!isConnectingEdge(e)) { continue; }
+                State s1 = e.traverse(s0);
+                if (s1 == null) { continue; }
+                int w = indices.get(s1.getVertex());
+                if (w == NO_COMPONENT) { continue; }
+                connected[v] = true;
+                connected[w] = true;
+                union(parents, v, w);
+            }
+        });
+
+        int[] roots = new int[n];
+        for (int v = 0; v < n; ++v) {
+            roots[v] = connected[v] ? find(parents, v) : NO_COMPONENT;
+        }
+        return new StreetComponents(mode, vertices, indices, roots);
+    }
+
+    private static boolean isConnectingEdge(Edge e) {
+        return e instanceof StreetEdge || e instanceof StreetTransitLink
+                || e instanceof TransitEntranceLink || e instanceof ElevatorEdge
+                || e instanceof FreeEdge;
+    }
+
+    /**
+     * Find the root of the vertex, halving the path on the way. A parent always has a lower index
+     * than its children, so the trees stay acyclic when several threads update them.
+     */
+    private static int find(AtomicIntegerArray parents, int v) {
+        while (true) {
+            int p = parents.get(v);
+            if (p == v) { return v; }
+            int gp = parents.get(p);
+            if (gp != p) { parents.compareAndSet(v, p, gp); }
+            v = gp;
+        }
+    }
+
+    /** Link the root with the higher index to the other root, retrying if a root changed. */
+    private static void union(AtomicIntegerArray parents, int v, int w) {
+        while (true) {
+            v = find(parents, v);
+            w = find(parents, w);
+            if (v == w) { return; }
+            if (v < w) {
+                int tmp = v;
+                v = w;
+                w = tmp;
+            }
+            if (parents.compareAndSet(v, v, w)) { return; }
+        }
+    }
+
+    public TraverseMode getMode() {
+        return mode;
+    }
+
+    /** The number of components. */
+    public int size() {
+        return stopCount.length;
+    }
+
+    /** The component of the vertex, or {@link #NO_COMPONENT} if it is not connected. */
+    public int componentOf(Vertex vertex) {
+        int v = indices.get(vertex);
+        return v == NO_COMPONENT ? NO_COMPONENT : componentOf[v];
+    }
+
+    /** The number of stops in the component. */
+    public int stopCount(int component) {
+        return stopCount[component];
+    }
+
+    /** The number of vertices in the component which are not stops. */
+    public int streetCount(int component) {
+        return start[component + 1] - start[component] - stopCount[component];
+    }
+
+    /** The number of vertices in the component, stops included. */
+    public int vertexCount(int component) {
+        return start[component + 1] - start[component];
+    }
+
+    /** The i-th vertex of the component, in the order of the graph vertices. */
+    public Vertex vertex(int component, int i) {
+        return vertices[members[start[component] + i]];
+    }
+
+    /** The component with the most street vertices, or {@link #NO_COMPONENT} if there is none. */
+    public int largestComponent() {
+        int largest = NO_COMPONENT;
+        for (int c = 0; c < size(); ++c) {
+            if (largest == NO_COMPONENT || streetCount(c) > streetCount(largest)) { largest = c; }
+        }
+        return largest;
+    }
+
+    @Override
+    public String toString() {
+        int largest = largestComponent();
+        return String.format(
+                "%d %s components, the largest has %d street vertices and %d stops",
+                size(), mode, largest == NO_COMPONENT ? 0 : streetCount(largest),
+                largest == NO_COMPONENT ? 0 : stopCount(largest)
+        );
+    }
+}
@@ -1,16 +1,12 @@
 package org.opentripplanner.common;
 
+import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Polygon;
-import org.opentripplanner.common.geometry.Subgraph;
+import org.opentripplanner.common.geometry.GeometryUtils;
 import org.opentripplanner.graph_builder.DataImportIssueStore;
 import org.opentripplanner.graph_builder.issues.GraphConnectivity;
-import org.opentripplanner.routing.api.request.RoutingRequest;
-import org.opentripplanner.routing.core.State;
 import org.opentripplanner.routing.core.TraverseMode;
-import org.opentripplanner.routing.core.TraverseModeSet;
-import org.opentripplanner.routing.edgetype.ElevatorEdge;
-import org.opentripplanner.routing.edgetype.FreeEdge;
 import org.opentripplanner.routing.edgetype.StreetEdge;
 import org.opentripplanner.routing.edgetype.StreetTransitLink;
 import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
@@ -18,7 +14,7 @@ import org.opentripplanner.routing.edgetype.TransitEntranceLink;
 import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.graph.Vertex;
-import org.opentripplanner.routing.vertextype.StreetVertex;
+import org.opentripplanner.routing.vertextype.TransitStopVertex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,16 +22,20 @@ import java.io.File;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class StreetUtils {
 
     private static Logger LOG = LoggerFactory.getLogger(StreetUtils.class);
-    private static int islandCounter = 0;
+
+    /**
+     * The modes the street components are reported for. The islands are pruned by their walk
+     * components.
+     */
+    private static final List<TraverseMode> COMPONENT_MODES = List.of(
+            TraverseMode.WALK, TraverseMode.BICYCLE, TraverseMode.CAR
+    );
 
     public static void pruneFloatingIslands(Graph graph, int maxIslandSize, 
             int islandWithStopMaxSize, String islandLogName, DataImportIssueStore issueStore) {
@@ -51,103 +51,69 @@ public class StreetUtils {
         if (islandLog != null) {
             islandLog.printf("%s\t%s\t%s\t%s\t%s\n","id","stopCount", "streetCount","wkt" ,"hadRemoved");
         }
-        Map<Vertex, Subgraph> subgraphs = new HashMap<Vertex, Subgraph>();
-        Map<Vertex, ArrayList<Vertex>> neighborsForVertex = new HashMap<Vertex, ArrayList<Vertex>>();
-
-//        RoutingRequest options = new RoutingRequest(new TraverseModeSet(TraverseMode.WALK, TraverseMode.TRANSIT));
-        RoutingRequest options = new RoutingRequest(new TraverseModeSet(TraverseMode.WALK));
-
-        for (Vertex gv : graph.getVertices()) {
-            if (!(gv instanceof StreetVertex)) {
-                continue;
-            }
-            State s0 = new State(gv, options);
-            for (Edge e : gv.getOutgoing()) {
-                Vertex in = gv;
-                if (!(e instanceof StreetEdge || e instanceof StreetTransitLink ||
-                    e instanceof TransitEntranceLink || e instanceof ElevatorEdge ||
-                    e instanceof FreeEdge)
-                ) {
-                    continue;
-                }
-                State s1 = e.traverse(s0);
-                if (s1 == null) {
-                    continue;
-                }
-                Vertex out = s1.getVertex();
-
-                ArrayList<Vertex> vertexList = neighborsForVertex.get(in);
-                if (vertexList == null) {
-                    vertexList = new ArrayList<Vertex>();
-                    neighborsForVertex.put(in, vertexList);
-                }
-                vertexList.add(out);
 
-                vertexList = neighborsForVertex.get(out);
-                if (vertexList == null) {
-                    vertexList = new ArrayList<Vertex>();
-                    neighborsForVertex.put(out, vertexList);
-                }
-                vertexList.add(in);
-            }
+        // The components of each mode are independent, find them in parallel
+        List<StreetComponents> components = COMPONENT_MODES.parallelStream()
+                .map(mode -> StreetComponents.compute(graph, mode))
+                .collect(Collectors.toList());
+        for (StreetComponents it : components) {
+            LOG.info("Found {}, {} islands under {} street vertices.", it,
+                    countSmallIslands(it, maxIslandSize), maxIslandSize);
         }
+        StreetComponents islands = components.get(COMPONENT_MODES.indexOf(TraverseMode.WALK));
 
-        ArrayList<Subgraph> islands = new ArrayList<Subgraph>();
-        /* associate each node with a subgraph */
-        for (Vertex gv : graph.getVertices()) {
-            if (!(gv instanceof StreetVertex)) {
-                continue;
-            }
-            Vertex vertex = gv;
-            if (subgraphs.containsKey(vertex)) {
-                continue;
-            }
-            if (!neighborsForVertex.containsKey(vertex)) {
-                continue;
-            }
-            Subgraph subgraph = computeConnectedSubgraph(neighborsForVertex, vertex);
-            if (subgraph != null){
-                for (Iterator<Vertex> vIter = subgraph.streetIterator(); vIter.hasNext();) {
-                    Vertex subnode = vIter.next();
-                    subgraphs.put(subnode, subgraph);
-                }
-                islands.add(subgraph);
-            }
-        }
-        LOG.info(islands.size() + " sub graphs found");
         /* remove all tiny subgraphs and large subgraphs without stops */
-        for (Subgraph island : islands) {
+        for (int island = 0; island < islands.size(); ++island) {
             boolean hadRemoved = false;
-            if(island.stopSize() > 0){
+            if(islands.stopCount(island) > 0){
             //for islands with stops
-                if (island.streetSize() < islandWithStopMaxSize) {
-                    depedestrianizeOrRemove(graph, island, issueStore);
+                if (islands.streetCount(island) < islandWithStopMaxSize) {
+                    depedestrianizeOrRemove(graph, islands, island, issueStore);
                     hadRemoved = true;
                 }
             }else{
             //for islands without stops
-                if (island.streetSize() < maxIslandSize) {
-                    depedestrianizeOrRemove(graph, island, issueStore);
+                if (islands.streetCount(island) < maxIslandSize) {
+                    depedestrianizeOrRemove(graph, islands, island, issueStore);
                     hadRemoved = true;
                 }
             }
             if (islandLog != null) {
-                WriteNodesInSubGraph(island, islandLog, hadRemoved);
+                WriteNodesInSubGraph(islands, island, islandLog, hadRemoved);
             }
         }
+        if (islandLog != null) {
+            islandLog.close();
+        }
         if (graph.removeEdgelessVertices() > 0) {
             LOG.info("Removed edgeless vertices after pruning islands");
         }
     }
 
+    private static int countSmallIslands(StreetComponents components, int maxIslandSize) {
+        int count = 0;
+        for (int c = 0; c < components.size(); ++c) {
+            if (components.streetCount(c) < maxIslandSize) { count++; }
+        }
+        return count;
+    }
+
     private static void depedestrianizeOrRemove(
             Graph graph,
-            Subgraph island,
+            StreetComponents islands,
+            int island,
             DataImportIssueStore issueStore
     ) {
+        Vertex representative = null;
         //iterate over the street vertex of the subgraph
-        for (Iterator<Vertex> vIter = island.streetIterator(); vIter.hasNext();) {
-            Vertex v = vIter.next();
+        for (int i = 0; i < islands.vertexCount(island); ++i) {
+            Vertex v = islands.vertex(island, i);
+            if (v instanceof TransitStopVertex) {
+                continue;
+            }
+            if (representative == null) {
+                representative = v;
+            }
             Collection<Edge> outgoing = new ArrayList<Edge>(v.getOutgoing());
             for (Edge e : outgoing) {
                 if (e instanceof StreetEdge) {
@@ -164,15 +130,18 @@ public class StreetUtils {
             }
         }
 
-        for (Iterator<Vertex> vIter = island.streetIterator(); vIter.hasNext();) {
-            Vertex v = vIter.next();
-            if (v.getDegreeOut() + v.getDegreeIn() == 0) {
+        for (int i = 0; i < islands.vertexCount(island); ++i) {
+            Vertex v = islands.vertex(island, i);
+            if (!(v instanceof TransitStopVertex) && v.getDegreeOut() + v.getDegreeIn() == 0) {
                 graph.remove(v);
             }
         }
         //remove street conncetion form
-        for (Iterator<Vertex> vIter = island.stopIterator(); vIter.hasNext();) {
-            Vertex v = vIter.next();
+        for (int i = 0; i < islands.vertexCount(island); ++i) {
+            Vertex v = islands.vertex(island, i);
+            if (!(v instanceof TransitStopVertex)) {
+                continue;
+            }
             Collection<Edge> edges = new ArrayList<Edge>(v.getOutgoing());
             edges.addAll(v.getIncoming());
             for (Edge e : edges) {
@@ -181,35 +150,26 @@ public class StreetUtils {
                 }
             }
         }
-        issueStore.add(new GraphConnectivity(island.getRepresentativeVertex(), island.streetSize()));
+        issueStore.add(new GraphConnectivity(representative, islands.streetCount(island)));
     }
 
-    private static Subgraph computeConnectedSubgraph(
-            Map<Vertex, ArrayList<Vertex>> neighborsForVertex, Vertex startVertex) {
-        Subgraph subgraph = new Subgraph();
-        Queue<Vertex> q = new LinkedList<Vertex>();
-        q.add(startVertex);
-        while (!q.isEmpty()) {
-            Vertex vertex = q.poll();
-            for (Vertex neighbor : neighborsForVertex.get(vertex)) {
-                if (!subgraph.contains(neighbor)) {
-                    subgraph.addVertex(neighbor);
-                    q.add(neighbor);
-                }
-            }
+    private static void WriteNodesInSubGraph(
+            StreetComponents islands,
+            int island,
+            PrintWriter islandLog,
+            boolean hadRemoved
+    ){
+        Coordinate[] coordinates = new Coordinate[islands.vertexCount(island)];
+        for (int i = 0; i < coordinates.length; ++i) {
+            coordinates[i] = islands.vertex(island, i).getCoordinate();
         }
-        return subgraph;
-//        if(subgraph.size()>1) return subgraph;
-//        return null;
-    }
-
-    private static void WriteNodesInSubGraph(Subgraph subgraph, PrintWriter islandLog, boolean hadRemoved){
-        Geometry convexHullGeom = subgraph.getConvexHull();
-        if (convexHullGeom != null && !(convexHullGeom instanceof Polygon)) {
+        Geometry convexHullGeom = GeometryUtils.getGeometryFactory()
+                .createMultiPointFromCoords(coordinates)
+                .convexHull();
+        if (!(convexHullGeom instanceof Polygon)) {
             convexHullGeom = convexHullGeom.buffer(0.0001,5);
         }
-        islandLog.printf("%d\t%d\t%d\t%s\t%b\n", islandCounter, subgraph.stopSize(), 
-                subgraph.streetSize(), convexHullGeom, hadRemoved);
-        islandCounter++;
+        islandLog.printf("%d\t%d\t%d\t%s\t%b\n", island, islands.stopCount(island),
+                islands.streetCount(island), convexHullGeom, hadRemoved);
     }
-}
\ No newline at end of file
+}
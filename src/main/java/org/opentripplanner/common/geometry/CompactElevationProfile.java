@@ -4,6 +4,7 @@ import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.CoordinateSequence;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 /**
  * Compact elevation profile. To optimize storage, we use the following tricks:
@@ -76,9 +77,20 @@ public final class CompactElevationProfile implements Serializable {
      * @return The elevation profile
      */
     public static PackedCoordinateSequence uncompactElevationProfileWithRegularSamples(byte[] packedCoords, double lengthM) {
-        if (packedCoords == null)
+        return uncompactElevationProfileWithRegularSamples(DlugoszVarLenIntPacker.unpack(packedCoords), lengthM);
+    }
+
+    /**
+     * Same as the byte array version, but reads the packed coordinates from the position to the
+     * limit of the buffer, like a view of a graph file section, without copying them first.
+     */
+    public static PackedCoordinateSequence uncompactElevationProfileWithRegularSamples(ByteBuffer packedCoords, double lengthM) {
+        return uncompactElevationProfileWithRegularSamples(DlugoszVarLenIntPacker.unpack(packedCoords), lengthM);
+    }
+
+    private static PackedCoordinateSequence uncompactElevationProfileWithRegularSamples(int[] coords, double lengthM) {
+        if (coords == null)
             return null;
-        int[] coords = DlugoszVarLenIntPacker.unpack(packedCoords);
         int size = coords.length;
         Coordinate[] c = new Coordinate[size];
         int oiy = 0;
@@ -4,6 +4,8 @@ import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 
+import java.nio.ByteBuffer;
+
 /**
  * Compact line string. To optimize storage, we use the following tricks:
  * <ul>
@@ -124,7 +126,20 @@ public final class CompactLineString {
      */
     public static LineString uncompactLineString(double xa, double ya, double xb, double yb,
             byte[] packedCoords, boolean reverse) {
-        int[] coords = DlugoszVarLenIntPacker.unpack(packedCoords);
+        return uncompactLineString(xa, ya, xb, yb, DlugoszVarLenIntPacker.unpack(packedCoords), reverse);
+    }
+
+    /**
+     * Same as the byte array version, but reads the packed coordinates from the position to the
+     * limit of the buffer, like a view of a graph file section, without copying them first.
+     */
+    public static LineString uncompactLineString(double xa, double ya, double xb, double yb,
+            ByteBuffer packedCoords, boolean reverse) {
+        return uncompactLineString(xa, ya, xb, yb, DlugoszVarLenIntPacker.unpack(packedCoords), reverse);
+    }
+
+    private static LineString uncompactLineString(double xa, double ya, double xb, double yb,
+            int[] coords, boolean reverse) {
         int size = coords == null ? 2 : (coords.length / 2) + 2;
         Coordinate[] c = new Coordinate[size];
         double x0 = reverse ? xb : xa;
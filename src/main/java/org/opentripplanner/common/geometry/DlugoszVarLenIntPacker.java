@@ -1,6 +1,7 @@
 package org.opentripplanner.common.geometry;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -64,10 +65,21 @@ public class DlugoszVarLenIntPacker {
     public static int[] unpack(byte[] arr) {
         if (arr == null)
             return null;
-        List<Integer> retval = new ArrayList<Integer>(arr.length);
-        int i = 0;
-        while (i < arr.length) {
-            int v1 = arr[i] & 0xFF;
+        return unpack(ByteBuffer.wrap(arr));
+    }
+
+    /**
+     * Unpack the bytes from the position to the limit of the buffer, without copying them out of
+     * the buffer first. The position of the buffer is not changed.
+     */
+    public static int[] unpack(ByteBuffer buf) {
+        if (buf == null)
+            return null;
+        int end = buf.limit();
+        List<Integer> retval = new ArrayList<Integer>(buf.remaining());
+        int i = buf.position();
+        while (i < end) {
+            int v1 = buf.get(i) & 0xFF;
             i++;
             if ((v1 & 0x80) == 0x00) {
                 // 0xxx xxxx -> 7 bits value
@@ -75,26 +87,26 @@ public class DlugoszVarLenIntPacker {
                 retval.add(sv);
             } else if ((v1 & 0xC0) == 0x80) {
                 // 10xx xxxx + 8 -> 14 bits value
-                int sv = ((v1 & 0x3F) << 8) + (arr[i] & 0xFF) - 8192;
+                int sv = ((v1 & 0x3F) << 8) + (buf.get(i) & 0xFF) - 8192;
                 i++;
                 retval.add(sv);
             } else if ((v1 & 0xE0) == 0xC0) {
                 // 110 xxxx + 2x8 -> 21 bits value
-                int sv = ((v1 & 0x1F) << 16) + ((arr[i] & 0xFF) << 8) + (arr[i + 1] & 0xFF)
+                int sv = ((v1 & 0x1F) << 16) + ((buf.get(i) & 0xFF) << 8) + (buf.get(i + 1) & 0xFF)
                         - 1048576;
                 i += 2;
                 retval.add(sv);
             } else if ((v1 & 0xF8) == 0xE0) {
                 // 1110 0xxx + 3x8 -> 27 bits value
-                int sv = ((v1 & 0x1F) << 24) + ((arr[i] & 0xFF) << 16) + ((arr[i + 1] & 0xFF) << 8)
-                        + (arr[i + 2] & 0xFF) - 67108864;
+                int sv = ((v1 & 0x1F) << 24) + ((buf.get(i) & 0xFF) << 16)
+                        + ((buf.get(i + 1) & 0xFF) << 8) + (buf.get(i + 2) & 0xFF) - 67108864;
                 i += 3;
                 retval.add(sv);
             } else {
                 // 1110 1xxx + 4x8 -> 35 bits value
-                long sv = (((long) v1 & 0x1F) << 32) + ((arr[i] & 0xFF) << 24)
-                        + ((arr[i + 1] & 0xFF) << 16) + ((arr[i + 2] & 0xFF) << 8)
-                        + (arr[i + 3] & 0xFF) - 2147483648L;
+                long sv = (((long) v1 & 0x1F) << 32) + ((buf.get(i) & 0xFF) << 24)
+                        + ((buf.get(i + 1) & 0xFF) << 16) + ((buf.get(i + 2) & 0xFF) << 8)
+                        + (buf.get(i + 3) & 0xFF) - 2147483648L;
                 i += 4;
                 retval.add((int) sv);
             }
@@ -0,0 +1,374 @@
+package org.opentripplanner.common.geometry;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.ItemVisitor;
+import org.locationtech.jts.index.SpatialIndex;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A static, packed R-tree. The items are sorted along a Hilbert curve by the center of their
+ * envelope and grouped into nodes of {@link #NODE_SIZE}, which are grouped again until there is a
+ * single root node. The tree is built once from all items and can not be changed, use the
+ * {@link Builder}.
+ * <p>
+ * All boxes are kept in one {@code float} array, the child range of each node in two
+ * {@code int} arrays. The boxes are rounded outwards to float, so a query may return an item
+ * whose envelope is up to a float ulp (about a centimeter in lat/lon degrees) outside the query
+ * envelope. Like with the {@link HashGridSpatialIndex}, the client must filter the items.
+ * <p>
+ * The visitor queries {@link #query(double, double, double, double, Consumer)} and
+ * {@link #nearest(double, double, double, double, ItemDistance)} do not allocate any objects.
+ * <p>
+ * THREAD SAFETY - The index is immutable, all operations are thread safe.
+ *
+ * @param <T> Type of objects to be spatial indexed.
+ */
+public class PackedSpatialIndex<T> implements SpatialIndex, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The max number of children of a node. */
+    public static final int NODE_SIZE = 16;
+
+    /** The distance between an item and a point, see {@link #nearest}. */
+    @FunctionalInterface
+    public interface ItemDistance<T> {
+        double distance(T item);
+    }
+
+    /** The items, in the order of the leaf entries. */
+    private final Object[] items;
+
+    /**
+     * The boxes of the leaf entries followed by the internal nodes, level by level from the
+     * leaves. Each box is {@code minX, minY, maxX, maxY}.
+     */
+    private final float[] boxes;
+
+    /** The child range of each internal node, indexed by {@code node - items.length}. */
+    private final int[] childStart;
+    private final int[] childEnd;
+
+    private PackedSpatialIndex(Object[] items, float[] boxes, int[] childStart, int[] childEnd) {
+        this.items = items;
+        this.boxes = boxes;
+        this.childStart = childStart;
+        this.childEnd = childEnd;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * Call the visitor for each item whose box intersects the given envelope. An item is visited
+     * once.
+     */
+    @SuppressWarnings("unchecked")
+    public void query(double minX, double minY, double maxX, double maxY, Consumer<? super T> visitor) {
+        if (items.length == 0) { return; }
+        int root = boxes.length / 4 - 1;
+        if (!intersects(root, minX, minY, maxX, maxY)) { return; }
+        if (root < items.length) {
+            visitor.accept((T) items[root]);
+        }
+        else {
+            search(root, minX, minY, maxX, maxY, visitor);
+        }
+    }
+
+    /** Return a new list of the items whose box intersects the given envelope. */
+    @Override
+    public List<T> query(Envelope envelope) {
+        List<T> result = new ArrayList<>();
+        if (!envelope.isNull()) {
+            query(envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY(), result::add);
+        }
+        return result;
+    }
+
+    @Override
+    public void query(Envelope envelope, ItemVisitor visitor) {
+        if (!envelope.isNull()) {
+            query(envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY(), visitor::visitItem);
+        }
+    }
+
+    /**
+     * Return the item closest to the point {@code (x, y)}, or {@code null} if no item is closer
+     * than {@code maxDistance}. The distance is measured in the equirectangular projection where
+     * the x coordinates are multiplied with {@code xScale}, the {@code distance} function must
+     * return the distance in the same units, and never less than the distance to the box of the
+     * item. Items can be skipped by returning {@code Double.POSITIVE_INFINITY}.
+     */
+    @SuppressWarnings("unchecked")
+    public T nearest(double x, double y, double xScale, double maxDistance, ItemDistance<? super T> distance) {
+        if (items.length == 0) { return null; }
+        int root = boxes.length / 4 - 1;
+        if (root < items.length) {
+            T item = (T) items[root];
+            return distance.distance(item) < maxDistance ? item : null;
+        }
+        int best = nearest(root, x, y, xScale, maxDistance, -1, distance);
+        return best < 0 ? null : (T) items[best];
+    }
+
+    /** Not supported, the index is static. Use the {@link Builder}. */
+    @Override
+    public void insert(Envelope itemEnv, Object item) {
+        throw new UnsupportedOperationException("A packed spatial index can not be changed.");
+    }
+
+    /** Not supported, the index is static. */
+    @Override
+    public boolean remove(Envelope itemEnv, Object item) {
+        throw new UnsupportedOperationException("A packed spatial index can not be changed.");
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "PackedSpatialIndex %d objs, %d nodes", items.length, childStart.length
+        );
+    }
+
+    /* private methods */
+
+    @SuppressWarnings("unchecked")
+    private void search(
+            int node, double minX, double minY, double maxX, double maxY, Consumer<? super T> visitor
+    ) {
+        int end = childEnd[node - items.length];
+        for (int c = childStart[node - items.length]; c < end; ++c) {
+            if (!intersects(c, minX, minY, maxX, maxY)) { continue; }
+            if (c < items.length) {
+                visitor.accept((T) items[c]);
+            }
+            else {
+                search(c, minX, minY, maxX, maxY, visitor);
+            }
+        }
+    }
+
+    /**
+     * Depth first branch and bound search below the given node. Return the position of the best
+     * item found, or {@code best} if no item is closer than {@code maxDistance}. The distance of
+     * the best item is passed down as {@code maxDistance}, so no object is needed to hold it.
+     */
+    @SuppressWarnings("unchecked")
+    private int nearest(
+            int node, double x, double y, double xScale, double maxDistance, int best,
+            ItemDistance<? super T> distance
+    ) {
+        int end = childEnd[node - items.length];
+        for (int c = childStart[node - items.length]; c < end; ++c) {
+            if (boxDistance(c, x, y, xScale) >= maxDistance) { continue; }
+            if (c < items.length) {
+                double d = distance.distance((T) items[c]);
+                if (d < maxDistance) {
+                    best = c;
+                    maxDistance = d;
+                }
+            }
+            else {
+                int found = nearest(c, x, y, xScale, maxDistance, best, distance);
+                if (found != best) {
+                    best = found;
+                    maxDistance = distance.distance((T) items[found]);
+                }
+            }
+        }
+        return best;
+    }
+
+    private boolean intersects(int node, double minX, double minY, double maxX, double maxY) {
+        int i = 4 * node;
+        return boxes[i] <= maxX && boxes[i + 1] <= maxY && boxes[i + 2] >= minX && boxes[i + 3] >= minY;
+    }
+
+    private double boxDistance(int node, double x, double y, double xScale) {
+        int i = 4 * node;
+        double dx = Math.max(0, Math.max(boxes[i] - x, x - boxes[i + 2])) * xScale;
+        double dy = Math.max(0, Math.max(boxes[i + 1] - y, y - boxes[i + 3]));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * The position of a point on a Hilbert curve filling a 2^16 x 2^16 grid. See "Hacker's
+     * Delight", 2nd edition, chapter 16, the non-recursive algorithm by Rafael Pinto.
+     */
+    static int hilbert(int x, int y) {
+        int a = x ^ y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ (x | y);
+        int d = x & (y ^ 0xFFFF);
+
+        int aa = a | (b >> 1);
+        int bb = (a >> 1) ^ a;
+        int cc = ((c >> 1) ^ (b & (d >> 1))) ^ c;
+        int dd = ((a & (c >> 1)) ^ (d >> 1)) ^ d;
+
+        a = aa; b = bb; c = cc; d = dd;
+        aa = (a & (a >> 2)) ^ (b & (b >> 2));
+        bb = (a & (b >> 2)) ^ (b & ((a ^ b) >> 2));
+        cc ^= (a & (c >> 2)) ^ (b & (d >> 2));
+        dd ^= (b & (c >> 2)) ^ ((a ^ b) & (d >> 2));
+
+        a = aa; b = bb; c = cc; d = dd;
+        aa = (a & (a >> 4)) ^ (b & (b >> 4));
+        bb = (a & (b >> 4)) ^ (b & ((a ^ b) >> 4));
+        cc ^= (a & (c >> 4)) ^ (b & (d >> 4));
+        dd ^= (b & (c >> 4)) ^ ((a ^ b) & (d >> 4));
+
+        a = aa; b = bb; c = cc; d = dd;
+        cc ^= (a & (c >> 8)) ^ (b & (d >> 8));
+        dd ^= (b & (c >> 8)) ^ ((a ^ b) & (d >> 8));
+
+        a = cc ^ (cc >> 1);
+        b = dd ^ (dd >> 1);
+
+        int i0 = x ^ y;
+        int i1 = b | (0xFFFF ^ (i0 | a));
+        return (interleave(i1) << 1) | interleave(i0);
+    }
+
+    /** Spread the lower 16 bits of the value to the even bits. */
+    private static int interleave(int v) {
+        v = (v | (v << 8)) & 0x00FF00FF;
+        v = (v | (v << 4)) & 0x0F0F0F0F;
+        v = (v | (v << 2)) & 0x33333333;
+        v = (v | (v << 1)) & 0x55555555;
+        return v;
+    }
+
+    /**
+     * Collects the items and their envelopes, and builds the index. A builder is used by one
+     * thread.
+     */
+    public static class Builder<T> {
+
+        private final List<T> items = new ArrayList<>();
+
+        /** The envelope of each item: {@code minX, minY, maxX, maxY}. */
+        private double[] envelopes = new double[64];
+
+        public Builder<T> add(Envelope envelope, T item) {
+            return add(envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY(), item);
+        }
+
+        public Builder<T> add(double minX, double minY, double maxX, double maxY, T item) {
+            int i = 4 * items.size();
+            if (i == envelopes.length) {
+                envelopes = Arrays.copyOf(envelopes, 2 * envelopes.length);
+            }
+            envelopes[i] = minX;
+            envelopes[i + 1] = minY;
+            envelopes[i + 2] = maxX;
+            envelopes[i + 3] = maxY;
+            items.add(item);
+            return this;
+        }
+
+        public PackedSpatialIndex<T> build() {
+            int n = items.size();
+
+            // Count the nodes on each level above the leaves
+            int numNodes = n;
+            for (int levelSize = n; levelSize > 1; ) {
+                levelSize = (levelSize + NODE_SIZE - 1) / NODE_SIZE;
+                numNodes += levelSize;
+            }
+
+            float[] boxes = new float[4 * numNodes];
+            Object[] sortedItems = new Object[n];
+            sortByHilbertValue(n, sortedItems, boxes);
+
+            // Group the nodes of each level, starting with the leaves, until there is one root
+            int[] childStart = new int[numNodes - n];
+            int[] childEnd = new int[numNodes - n];
+            int node = n;
+            for (int levelStart = 0, levelEnd = n; levelEnd - levelStart > 1; ) {
+                for (int start = levelStart; start < levelEnd; start += NODE_SIZE) {
+                    int end = Math.min(start + NODE_SIZE, levelEnd);
+                    childStart[node - n] = start;
+                    childEnd[node - n] = end;
+                    unionOfBoxes(boxes, start, end, node);
+                    ++node;
+                }
+                levelStart = levelEnd;
+                levelEnd = node;
+            }
+            return new PackedSpatialIndex<>(sortedItems, boxes, childStart, childEnd);
+        }
+
+        /**
+         * Sort the items by the Hilbert value of the center of their envelope, and write the
+         * items and their boxes in that order.
+         */
+        private void sortByHilbertValue(int n, Object[] sortedItems, float[] boxes) {
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; ++i) {
+                minX = Math.min(minX, envelopes[4 * i]);
+                minY = Math.min(minY, envelopes[4 * i + 1]);
+                maxX = Math.max(maxX, envelopes[4 * i + 2]);
+                maxY = Math.max(maxY, envelopes[4 * i + 3]);
+            }
+            double width = maxX > minX ? maxX - minX : 1;
+            double height = maxY > minY ? maxY - minY : 1;
+
+            // The key is the Hilbert value in the upper 32 bits, flipped to sort as a signed
+            // value, and the item index in the lower 32 bits.
+            long[] keys = new long[n];
+            for (int i = 0; i < n; ++i) {
+                double cx = (envelopes[4 * i] + envelopes[4 * i + 2]) / 2;
+                double cy = (envelopes[4 * i + 1] + envelopes[4 * i + 3]) / 2;
+                int hx = (int) (0xFFFF * (cx - minX) / width);
+                int hy = (int) (0xFFFF * (cy - minY) / height);
+                keys[i] = ((long) (hilbert(hx, hy) ^ Integer.MIN_VALUE) << 32) | i;
+            }
+            Arrays.sort(keys);
+
+            for (int pos = 0; pos < n; ++pos) {
+                int i = (int) keys[pos];
+                sortedItems[pos] = items.get(i);
+                boxes[4 * pos] = floor(envelopes[4 * i]);
+                boxes[4 * pos + 1] = floor(envelopes[4 * i + 1]);
+                boxes[4 * pos + 2] = ceil(envelopes[4 * i + 2]);
+                boxes[4 * pos + 3] = ceil(envelopes[4 * i + 3]);
+            }
+        }
+
+        private static void unionOfBoxes(float[] boxes, int start, int end, int node) {
+            float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+            float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+            for (int c = start; c < end; ++c) {
+                minX = Math.min(minX, boxes[4 * c]);
+                minY = Math.min(minY, boxes[4 * c + 1]);
+                maxX = Math.max(maxX, boxes[4 * c + 2]);
+                maxY = Math.max(maxY, boxes[4 * c + 3]);
+            }
+            boxes[4 * node] = minX;
+            boxes[4 * node + 1] = minY;
+            boxes[4 * node + 2] = maxX;
+            boxes[4 * node + 3] = maxY;
+        }
+
+        /** The greatest float not greater than the value. */
+        private static float floor(double value) {
+            float f = (float) value;
+            return f > value ? Math.nextDown(f) : f;
+        }
+
+        /** The least float not less than the value. */
+        private static float ceil(double value) {
+            float f = (float) value;
+            return f < value ? Math.nextUp(f) : f;
+        }
+    }
+}
@@ -9,6 +9,8 @@ public class BinHeap<T> {
     private double[] prio;
     private T[] elem;
     private int size; 
+    /** The largest size since the queue was cleared, the elements above this are null. */
+    private int maxSize;
     private int capacity;
     
     public BinHeap() {
@@ -104,9 +106,21 @@ public class BinHeap<T> {
     	size=0;
     } 
 
+    /**
+     * Empty the queue and drop the references to the elements, so they can be garbage collected
+     * while the queue is kept for reuse. This runs in time proportional to the largest size of
+     * the queue since it was last cleared.
+     */
+    public void clear() {
+        Arrays.fill(elem, 0, Math.min(maxSize + 1, elem.length), null);
+        size = 0;
+        maxSize = 0;
+    }
+
     public void insert(T e, double p) {
         int i;
         size += 1;
+        if (size > maxSize) maxSize = size;
         if (size > capacity) 
         	resize((int) (capacity * GROW_FACTOR));
         for (i = size; prio[i/2] > p; i /= 2) {
@@ -5,9 +5,11 @@ import org.opentripplanner.datastore.CompositeDataSource;
 import org.opentripplanner.datastore.DataSource;
 import org.opentripplanner.ext.transferanalyzer.DirectTransferAnalyzer;
 import org.opentripplanner.graph_builder.model.GtfsBundle;
+import org.opentripplanner.graph_builder.module.ContractionHierarchyModule;
 import org.opentripplanner.graph_builder.module.DirectTransferGenerator;
 import org.opentripplanner.graph_builder.module.GtfsModule;
 import org.opentripplanner.ext.flex.FlexLocationsToStreetEdgesMapper;
+import org.opentripplanner.graph_builder.module.LandmarkModule;
 import org.opentripplanner.graph_builder.module.PruneFloatingIslands;
 import org.opentripplanner.graph_builder.module.StreetLinkerModule;
 import org.opentripplanner.graph_builder.module.TransitToTaggedStopsModule;
@@ -112,7 +114,11 @@ public class GraphBuilder implements Runnable {
             List<BinaryOpenStreetMapProvider> osmProviders = Lists.newArrayList();
             for (DataSource osmFile : dataSources.get(OSM)) {
                 osmProviders.add(
-                        new BinaryOpenStreetMapProvider(osmFile, config.osmCacheDataInMem)
+                        new BinaryOpenStreetMapProvider(
+                                osmFile,
+                                config.osmCacheDataInMem,
+                                config.osmParserThreads
+                        )
                 );
             }
             OpenStreetMapModule osmModule = new OpenStreetMapModule(osmProviders);
@@ -217,6 +223,12 @@ public class GraphBuilder implements Runnable {
                 )
             );
         }
+        if ( hasOsm && config.streetLandmarks > 0 ) {
+            graphBuilder.addModule(new LandmarkModule(config.streetLandmarks));
+        }
+        if ( hasOsm && config.carContractionHierarchy ) {
+            graphBuilder.addModule(new ContractionHierarchyModule());
+        }
         if ( hasTransitData ) {
             // Add links to flex areas after the streets has been split, so that also the split edges are connected
             if (OTPFeature.FlexRouting.isOn()) {
@@ -63,6 +63,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -96,13 +97,19 @@ public class SimpleStreetSplitter {
 
     private static final GeometryFactory GEOMETRY_FACTORY = GeometryUtils.getGeometryFactory();
 
+    /**
+     * Numbers the temporary splitter vertices. Temporary splits are done by concurrent requests,
+     * so they do not use the split number of the graph.
+     */
+    private static final AtomicLong TEMPORARY_SPLIT_NUMBER = new AtomicLong();
+
     private final DataImportIssueStore issueStore;
 
     private final StreetEdgeFactory edgeFactory;
 
     private final Graph graph;
 
-    private final HashGridSpatialIndex<Edge> idx;
+    private final SpatialIndex idx;
 
     private final SpatialIndex transitStopIndex;
 
@@ -116,11 +123,12 @@ public class SimpleStreetSplitter {
      * Construct a new SimpleStreetSplitter.
      * NOTE: Only one SimpleStreetSplitter should be active on a graph at any given time.
      *
-     * @param hashGridSpatialIndex If not null this index is used instead of creating new one
+     * @param edgeIndex If not null this index is used instead of creating new one. Destructive
+     *                  splitting updates the index, so it must be a {@link HashGridSpatialIndex}.
      * @param transitStopIndex Index of all transitStops which is generated in {@link StreetVertexIndex}
      * @param destructiveSplitting If true splitting is permanent (Used when linking transit stops etc.) when false Splitting is only for duration of a request. Since they are made from temporary vertices and edges.
      */
-    public SimpleStreetSplitter(Graph graph, HashGridSpatialIndex<Edge> hashGridSpatialIndex,
+    public SimpleStreetSplitter(Graph graph, SpatialIndex edgeIndex,
         SpatialIndex transitStopIndex, boolean destructiveSplitting, DataImportIssueStore issueStore
     ) {
         this.issueStore = issueStore;
@@ -130,14 +138,19 @@ public class SimpleStreetSplitter {
         this.edgeFactory = new DefaultStreetEdgeFactory();
 
         //We build a spatial index if it isn't provided
-        if (hashGridSpatialIndex == null) {
+        if (edgeIndex == null) {
             // build a nice private spatial index, since we're adding and removing edges
-            idx = new HashGridSpatialIndex<>();
+            HashGridSpatialIndex<Edge> hashGrid = new HashGridSpatialIndex<>();
             for (StreetEdge se : Iterables.filter(graph.getEdges(), StreetEdge.class)) {
-                idx.insert(se.getGeometry(), se);
+                hashGrid.insert(se.getGeometry(), se);
             }
+            idx = hashGrid;
         } else {
-            idx = hashGridSpatialIndex;
+            if (destructiveSplitting && !(edgeIndex instanceof HashGridSpatialIndex)) {
+                throw new IllegalArgumentException(
+                        "Destructive splitting needs an edge index which can be updated.");
+            }
+            idx = edgeIndex;
         }
     }
 
@@ -258,13 +271,18 @@ public class SimpleStreetSplitter {
             // Perform several transformations at once on the edges returned by the index.
             // Only consider street edges traversable by the given mode and still present in the graph.
             // Calculate a distance to each of those edges, and keep only the ones within the search radius.
-            List<DistanceTo<StreetEdge>> candidateEdges = idx.query(env).stream()
-                    .filter(StreetEdge.class::isInstance)
-                    .map(StreetEdge.class::cast)
-                    .filter(e -> e.canTraverse(traverseModeSet) && edgeReachableFromGraph(e))
-                    .map(e -> new DistanceTo<>(e, distance(vertex, e, xscale)))
-                    .filter(ead -> ead.distanceDegreesLat < radiusDeg)
-                    .collect(Collectors.toList());
+            // The index is visited rather than queried for a list, so the packed index does not
+            // create a list of all the edges in the envelope.
+            List<DistanceTo<StreetEdge>> candidateEdges = new ArrayList<>();
+            idx.query(env, item -> {
+                if (!(item instanceof StreetEdge)) { return; }
+                StreetEdge e = (StreetEdge) item;
+                if (!e.canTraverse(traverseModeSet) || !edgeReachableFromGraph(e)) { return; }
+                double distance = distance(vertex, e, xscale);
+                if (distance < radiusDeg) {
+                    candidateEdges.add(new DistanceTo<>(e, distance));
+                }
+            });
 
             // The following logic has gone through several different versions using different approaches.
             // The core idea is to find all edges that are roughly the same distance from the given vertex, which will
@@ -451,7 +469,9 @@ public class SimpleStreetSplitter {
         Coordinate splitPoint = ll.getCoordinate(geometry);
 
         SplitterVertex v;
-        String uniqueSplitLabel = "split_" + graph.nextSplitNumber++;
+        String uniqueSplitLabel = temporarySplit
+                ? "temporary_split_" + TEMPORARY_SPLIT_NUMBER.incrementAndGet()
+                : "split_" + graph.nextSplitNumber++;
         if (temporarySplit) {
             TemporarySplitterVertex tsv = new TemporarySplitterVertex(
                     uniqueSplitLabel, splitPoint.x, splitPoint.y, edge, endVertex);
@@ -467,8 +487,9 @@ public class SimpleStreetSplitter {
 
         if (destructiveSplitting) {
             // update indices of new edges
-            idx.insert(edges.first.getGeometry(), edges.first);
-            idx.insert(edges.second.getGeometry(), edges.second);
+            HashGridSpatialIndex<Edge> hashGrid = (HashGridSpatialIndex<Edge>) idx;
+            hashGrid.insert(edges.first.getGeometry(), edges.first);
+            hashGrid.insert(edges.second.getGeometry(), edges.second);
 
             // remove original edge from the graph
             edge.getToVertex().removeIncoming(edge);
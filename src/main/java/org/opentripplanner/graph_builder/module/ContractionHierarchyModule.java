@@ -0,0 +1,32 @@
+package org.opentripplanner.graph_builder.module;
+
+import org.opentripplanner.graph_builder.DataImportIssueStore;
+import org.opentripplanner.graph_builder.services.GraphBuilderModule;
+import org.opentripplanner.routing.algorithm.ch.ContractionHierarchy;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.util.HashMap;
+
+/**
+ * Build the {@link ContractionHierarchy} of the car street network, used by the
+ * {@link org.opentripplanner.routing.algorithm.ch.ContractionHierarchyRouter} for car only
+ * searches. The hierarchy is stored as a graph service, so it is serialized with the graph. This
+ * module must run after the street graph is complete, that is after the islands are pruned and
+ * the stops are linked, since the streets split later are not in the hierarchy.
+ */
+public class ContractionHierarchyModule implements GraphBuilderModule {
+
+    @Override
+    public void buildGraph(
+            Graph graph,
+            HashMap<Class<?>, Object> extra,
+            DataImportIssueStore issueStore
+    ) {
+        graph.putService(ContractionHierarchy.class, ContractionHierarchy.build(graph));
+    }
+
+    @Override
+    public void checkInputs() {
+        //no inputs
+    }
+}
@@ -0,0 +1,54 @@
+package org.opentripplanner.graph_builder.module;
+
+import org.opentripplanner.graph_builder.DataImportIssueStore;
+import org.opentripplanner.graph_builder.services.GraphBuilderModule;
+import org.opentripplanner.routing.algorithm.astar.strategies.LandmarkDistances;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.graph.Graph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Compute the landmark distances used by the
+ * {@link org.opentripplanner.routing.algorithm.astar.strategies.LandmarkRemainingWeightHeuristic}
+ * for car and bicycle street searches. The distances are stored as a graph service, so they are
+ * serialized with the graph. This module must run after the street graph is complete, that is
+ * after the islands are pruned and the stops are linked.
+ */
+public class LandmarkModule implements GraphBuilderModule {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LandmarkModule.class);
+
+    private static final List<TraverseMode> MODES = List.of(TraverseMode.CAR, TraverseMode.BICYCLE);
+
+    private final int numberOfLandmarks;
+
+    public LandmarkModule(int numberOfLandmarks) {
+        this.numberOfLandmarks = numberOfLandmarks;
+    }
+
+    @Override
+    public void buildGraph(
+            Graph graph,
+            HashMap<Class<?>, Object> extra,
+            DataImportIssueStore issueStore
+    ) {
+        long startTime = System.currentTimeMillis();
+        LandmarkDistances landmarks = LandmarkDistances.build(graph, numberOfLandmarks, MODES);
+        graph.putService(LandmarkDistances.class, landmarks);
+        LOG.info(
+                "Computed {} landmarks for {} in {} s.",
+                numberOfLandmarks, MODES, (System.currentTimeMillis() - startTime) / 1000
+        );
+    }
+
+    @Override
+    public void checkInputs() {
+        if (numberOfLandmarks <= 0) {
+            throw new IllegalStateException("The number of landmarks must be positive.");
+        }
+    }
+}
@@ -167,7 +167,7 @@ public class NearbyStopFinder {
         routingRequest.worstTime = routingRequest.dateTime + (reverseDirection ? -walkTime : walkTime);
         routingRequest.disableRemainingWeightHeuristic = true;
         routingRequest.rctx.remainingWeightHeuristic = new TrivialRemainingWeightHeuristic();
-        routingRequest.dominanceFunction = new DominanceFunction.MinimumWeight();
+        routingRequest.dominanceFunction = new DominanceFunction.CompactMinimumWeight();
         ShortestPathTree spt = astar.getShortestPathTree(routingRequest);
 
         List<NearbyStop> stopsFound = Lists.newArrayList();
@@ -176,19 +176,26 @@ public class NearbyStopFinder {
 
         if (spt != null) {
             // TODO use GenericAStar and a traverseVisitor? Add an earliestArrival switch to genericAStar?
-            for (State state : spt.getAllStates()) {
-                Vertex targetVertex = state.getVertex();
+            // Only get the states for the stops, the compact tree creates the states on demand.
+            for (Vertex targetVertex : spt.getVertices()) {
                 if (originVertices.contains(targetVertex)) continue;
-                if (targetVertex instanceof TransitStopVertex && state.isFinal()) {
-                    stopsFound.add(NearbyStop.nearbyStopForState(state, ((TransitStopVertex) targetVertex).getStop()));
-                }
-                if (OTPFeature.FlexRouting.isOn() && targetVertex instanceof StreetVertex
-                    && ((StreetVertex) targetVertex).flexStopLocations != null) {
-                    for (FlexStopLocation flexStopLocation : ((StreetVertex) targetVertex).flexStopLocations) {
-                        // This is for a simplification, so that we only return one vertex from each
-                        // stop location. All vertices are added to the multimap, which is filtered
-                        // below, so that only the closest vertex is added to stopsFound
-                        locationsMap.put(flexStopLocation, state);
+                boolean isStop = targetVertex instanceof TransitStopVertex;
+                boolean isFlexLocation = OTPFeature.FlexRouting.isOn()
+                    && targetVertex instanceof StreetVertex
+                    && ((StreetVertex) targetVertex).flexStopLocations != null;
+                if (!isStop && !isFlexLocation) continue;
+
+                for (State state : spt.getStates(targetVertex)) {
+                    if (isStop && state.isFinal()) {
+                        stopsFound.add(NearbyStop.nearbyStopForState(state, ((TransitStopVertex) targetVertex).getStop()));
+                    }
+                    if (isFlexLocation) {
+                        for (FlexStopLocation flexStopLocation : ((StreetVertex) targetVertex).flexStopLocations) {
+                            // This is for a simplification, so that we only return one vertex from each
+                            // stop location. All vertices are added to the multimap, which is filtered
+                            // below, so that only the closest vertex is added to stopsFound
+                            locationsMap.put(flexStopLocation, state);
+                        }
                     }
                 }
             }
@@ -0,0 +1,156 @@
+package org.opentripplanner.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * A map split into a fixed number of shards, where each shard is a plain {@link HashMap}. The
+ * map can be frozen with {@link #freeze()}, this creates a read-only copy which shares all shards
+ * with this map. A shard is copied the first time it is changed after a freeze, so the cost of a
+ * freeze followed by N changes is proportional to N times the shard size, not to the size of the
+ * whole map.
+ * <p>
+ * This is used by the {@link TimetableSnapshot} so a commit does not have to clone all realtime
+ * timetables each time a few trips are updated.
+ * <p>
+ * THREAD SAFETY - The map is not thread safe, only one thread can change it. A frozen copy is
+ * never changed, and can be read by many threads after it is safely published.
+ */
+final class ShardedCopyOnWriteMap<K, V> {
+
+    private static final int N_SHARDS = 64;
+
+    private final HashMap<K, V>[] shards;
+
+    /** The shards owned by this map, these can be changed without copying. Null if frozen. */
+    private final boolean[] owned;
+
+    private int size;
+
+    /** The number of shared shards copied, for testing and debugging. */
+    private int shardsCopied = 0;
+
+    @SuppressWarnings("unchecked")
+    ShardedCopyOnWriteMap() {
+        this.shards = new HashMap[N_SHARDS];
+        this.owned = new boolean[N_SHARDS];
+        this.size = 0;
+    }
+
+    private ShardedCopyOnWriteMap(HashMap<K, V>[] shards, int size) {
+        this.shards = shards;
+        this.owned = null;
+        this.size = size;
+    }
+
+    V get(K key) {
+        HashMap<K, V> shard = shards[shardIndex(key)];
+        return shard == null ? null : shard.get(key);
+    }
+
+    V put(K key, V value) {
+        HashMap<K, V> shard = writableShard(shardIndex(key));
+        V old = shard.put(key, value);
+        if (old == null) { ++size; }
+        return old;
+    }
+
+    V remove(K key) {
+        int index = shardIndex(key);
+        if (shards[index] == null || !shards[index].containsKey(key)) { return null; }
+        V old = writableShard(index).remove(key);
+        --size;
+        return old;
+    }
+
+    /**
+     * Replace each value with the result of the given function, a {@code null} result removes the
+     * entry. Only the shards with at least one changed value are copied; a value is changed if the
+     * function returns another instance.
+     *
+     * @return true if the map changed as a result of the call
+     */
+    boolean replaceAll(BiFunction<K, V, V> function) {
+        boolean modified = false;
+        for (int i = 0; i < N_SHARDS; ++i) {
+            if (shards[i] == null) { continue; }
+            Map<K, V> changes = null;
+            for (Map.Entry<K, V> e : shards[i].entrySet()) {
+                V newValue = function.apply(e.getKey(), e.getValue());
+                if (newValue != e.getValue()) {
+                    if (changes == null) { changes = new HashMap<>(); }
+                    changes.put(e.getKey(), newValue);
+                }
+            }
+            if (changes == null) { continue; }
+
+            HashMap<K, V> shard = writableShard(i);
+            for (Map.Entry<K, V> e : changes.entrySet()) {
+                if (e.getValue() == null) {
+                    shard.remove(e.getKey());
+                    --size;
+                } else {
+                    shard.put(e.getKey(), e.getValue());
+                }
+            }
+            modified = true;
+        }
+        return modified;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Return all keys. This iterates over all shards and copies the keys, avoid it in the routing.
+     */
+    Collection<K> keys() {
+        Collection<K> keys = new ArrayList<>(size);
+        for (HashMap<K, V> shard : shards) {
+            if (shard != null) { keys.addAll(shard.keySet()); }
+        }
+        return Collections.unmodifiableCollection(keys);
+    }
+
+    /**
+     * Create a read-only copy of this map. The copy shares all shards with this map, so this map
+     * will copy a shard the next time it is changed.
+     */
+    ShardedCopyOnWriteMap<K, V> freeze() {
+        if (owned == null) { return this; }
+        Arrays.fill(owned, false);
+        return new ShardedCopyOnWriteMap<>(Arrays.copyOf(shards, N_SHARDS), size);
+    }
+
+    int shardsCopied() {
+        return shardsCopied;
+    }
+
+    private HashMap<K, V> writableShard(int index) {
+        if (owned == null) {
+            throw new UnsupportedOperationException("The map is frozen.");
+        }
+        if (!owned[index]) {
+            if (shards[index] == null) {
+                shards[index] = new HashMap<>();
+            }
+            else {
+                shards[index] = new HashMap<>(shards[index]);
+                ++shardsCopied;
+            }
+            owned[index] = true;
+        }
+        return shards[index];
+    }
+
+    private static int shardIndex(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (N_SHARDS - 1);
+    }
+}
@@ -1,8 +1,6 @@
 package org.opentripplanner.model;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.SetMultimap;
 import org.opentripplanner.model.calendar.ServiceDate;
 import org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerUpdater;
 import org.opentripplanner.routing.trippattern.TripTimes;
@@ -10,12 +8,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.ConcurrentModificationException;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.SortedSet;
@@ -32,7 +28,10 @@ import java.util.TreeSet;
  * for that duration to provide a consistent view not only of trips that have been boarded, but of
  * relative arrival and departure times of other trips that have not necessarily been boarded.
  *
- * At this point, only one writing thread at a time is supported.
+ * At this point, only one writing thread at a time is supported. A commit does not copy all
+ * realtime data, the maps are sharded and a shard is only copied when it is changed after a commit.
+ * So the cost of a commit is proportional to the number of changes, and a committed snapshot can
+ * be read by any number of routing threads without locking.
  *
  *  TODO OTP2 - Move this to package: org.opentripplanner.model
  *            - after ass Entur NeTEx PRs are merged.
@@ -96,11 +95,11 @@ public class TimetableSnapshot {
      * we have an updated Timetable. The keys include both TripPatterns from the scheduled GTFS, and TripPatterns added
      * by realtime messages and tracked by the TripPatternCache. Note that the keys will not include all scheduled
      * TripPatterns, only those for which we've got an update.
-     * We use a HashMap rather than a Map so we can clone it. If this turns out to be slow/spacious we can use an array
-     * with integer pattern indexes. The SortedSet members are copy-on-write.
+     * The map shards and the SortedSet members are copy-on-write.
      * FIXME: this could be made into a flat hashtable with compound keys.
      */
-    private HashMap<TripPattern, SortedSet<Timetable>> timetables = new HashMap();
+    private ShardedCopyOnWriteMap<TripPattern, SortedSet<Timetable>> timetables =
+            new ShardedCopyOnWriteMap<>();
 
     /**
      * <p>
@@ -108,23 +107,23 @@ public class TimetableSnapshot {
      * service date as a result of a call to {@link #update(TripPattern, TripTimes, ServiceDate)}
      * with trip times of a trip that didn't exist yet in the trip pattern.
      * </p>
-     * <p>
-     * This is a HashMap and not a Map so the clone function is available.
-     * </p>
      * TODO clarify what it means to say "last" added trip pattern. There can be more than one? What happens to the older ones?
      */
-    private HashMap<TripIdAndServiceDate, TripPattern> lastAddedTripPattern = new HashMap<>();
+    private ShardedCopyOnWriteMap<TripIdAndServiceDate, TripPattern> lastAddedTripPattern =
+            new ShardedCopyOnWriteMap<>();
 
     /**
      * This maps contains all of the new or updated TripPatterns added by realtime data indexed on
      * stop. This has to be kept in order for them to be included in the stop times api call on a
      * specific stop.
      *
-     * This is a SetMultimap, so that each pattern can only be added once.
+     * The sets are copy-on-write, so that each pattern can only be added once and a committed
+     * snapshot is never changed.
      *
      * TODO Find a generic way to keep all realtime indexes.
      */
-    private SetMultimap<Stop, TripPattern> patternsForStop = HashMultimap.create();
+    private ShardedCopyOnWriteMap<Stop, Set<TripPattern>> patternsForStop =
+            new ShardedCopyOnWriteMap<>();
     
     /**
      * Boolean value indicating that timetable snapshot is read only if true. Once it is true, it shouldn't
@@ -134,9 +133,10 @@ public class TimetableSnapshot {
 
     /**
      * Boolean value indicating that this timetable snapshot contains changes compared to the state
-     * of the last commit if true.
+     * of the last commit if true. This is read by routing threads without locking, to check if a
+     * new commit is needed.
      */
-    private boolean dirty = false;
+    private volatile boolean dirty = false;
     
     /**
      * A set of all timetables which have been modified and are waiting to be indexed. When
@@ -244,7 +244,8 @@ public class TimetableSnapshot {
 
     /**
      * This produces a small delay of typically around 50ms, which is almost entirely due to
-     * the indexing step. Cloning the map is much faster (2ms).
+     * the indexing step. Freezing the maps is constant time, the shards changed after the commit
+     * are copied by the next update.
      * It is perhaps better to index timetables as they are changed to avoid experiencing all
      * this lag at once, but we want to avoid re-indexing when receiving multiple updates for
      * the same timetable in rapid succession. This compromise is expressed by the
@@ -256,7 +257,6 @@ public class TimetableSnapshot {
         return commit(null, false);
     }
 
-    @SuppressWarnings("unchecked")
     public TimetableSnapshot commit(TransitLayerUpdater transitLayerUpdater, boolean force) {
         if (readOnly) {
             throw new ConcurrentModificationException("This TimetableSnapshot is read-only.");
@@ -267,9 +267,8 @@ public class TimetableSnapshot {
         for (Timetable tt : dirtyTimetables) {
             tt.finish(); // summarize, index, etc. the new timetables
         }
-        ret.timetables = (HashMap<TripPattern, SortedSet<Timetable>>) this.timetables.clone();
-        ret.lastAddedTripPattern = (HashMap<TripIdAndServiceDate, TripPattern>)
-                this.lastAddedTripPattern.clone();
+        ret.timetables = this.timetables.freeze();
+        ret.lastAddedTripPattern = this.lastAddedTripPattern.freeze();
 
         if (transitLayerUpdater != null) {
             transitLayerUpdater.update(dirtyTimetables);
@@ -278,7 +277,7 @@ public class TimetableSnapshot {
         this.dirtyTimetables.clear();
         this.dirty = false;
 
-        ret.setPatternsForStop(HashMultimap.create(this.patternsForStop));
+        ret.patternsForStop = this.patternsForStop.freeze();
 
         ret.readOnly = true; // mark the snapshot as henceforth immutable
         return ret;
@@ -310,7 +309,10 @@ public class TimetableSnapshot {
      * @return true if the timetable changed as a result of the call
      */
     protected boolean clearTimetable(String feedId) {
-        return timetables.keySet().removeIf(tripPattern -> feedId.equals(tripPattern.getFeedId()));
+        return timetables.replaceAll(
+            (tripPattern, sortedTimetables) ->
+                feedId.equals(tripPattern.getFeedId()) ? null : sortedTimetables
+        );
     }
 
     /**
@@ -320,9 +322,9 @@ public class TimetableSnapshot {
      * @return true if the lastAddedTripPattern changed as a result of the call
      */
     protected boolean clearLastAddedTripPattern(String feedId) {
-        return lastAddedTripPattern.keySet().removeIf(
-            lastAddedTripPattern ->
-                feedId.equals(lastAddedTripPattern.getTripId().getFeedId())
+        return lastAddedTripPattern.replaceAll(
+            (tripIdAndServiceDate, pattern) ->
+                feedId.equals(tripIdAndServiceDate.getTripId().getFeedId()) ? null : pattern
         );
     }
 
@@ -334,36 +336,27 @@ public class TimetableSnapshot {
             throw new ConcurrentModificationException("This TimetableSnapshot is read-only.");
         }
 
-        boolean modified = false;
-        for (Iterator<TripPattern> it = timetables.keySet().iterator(); it.hasNext();){
-            TripPattern pattern = it.next();
-            SortedSet<Timetable> sortedTimetables = timetables.get(pattern);
+        // Only replace the timetables of a pattern if any of them are purged, to avoid copying
+        // the map shards which are not changed.
+        boolean modified = timetables.replaceAll((pattern, sortedTimetables) -> {
             SortedSet<Timetable> toKeepTimetables =
                     new TreeSet<Timetable>(new SortedTimetableComparator());
             for(Timetable timetable : sortedTimetables) {
                 if(serviceDate.compareTo(timetable.serviceDate) < 0) {
                     toKeepTimetables.add(timetable);
-                } else {
-                    modified = true;
                 }
             }
-
-            if(toKeepTimetables.isEmpty()) {
-                it.remove();
-            } else {
-                timetables.put(pattern, toKeepTimetables);
+            if (toKeepTimetables.size() == sortedTimetables.size()) {
+                return sortedTimetables;
             }
-        }
-        
+            return toKeepTimetables.isEmpty() ? null : toKeepTimetables;
+        });
+
         // Also remove last added trip pattern for days that are purged
-        for (Iterator<Entry<TripIdAndServiceDate, TripPattern>> iterator = lastAddedTripPattern
-                .entrySet().iterator(); iterator.hasNext();) {
-            TripIdAndServiceDate tripIdAndServiceDate = iterator.next().getKey();
-            if (serviceDate.compareTo(tripIdAndServiceDate.getServiceDate()) >= 0) {
-                iterator.remove();
-                modified = true;
-            }
-        }
+        modified |= lastAddedTripPattern.replaceAll(
+            (tripIdAndServiceDate, pattern) ->
+                serviceDate.compareTo(tripIdAndServiceDate.getServiceDate()) >= 0 ? null : pattern
+        );
 
         return modified;
     }
@@ -384,7 +377,7 @@ public class TimetableSnapshot {
      *         rerouted or added trips.
      */
     public Collection<TripPattern> getAllRealtimeTripPatterns () {
-        return timetables.keySet();
+        return timetables.keys();
     }
 
     /**
@@ -393,16 +386,18 @@ public class TimetableSnapshot {
     private void addPatternToIndex(TripPattern tripPattern) {
         if (tripPattern.isCreatedByRealtimeUpdater()) {
             for (Stop stop: tripPattern.getStops()) {
-                patternsForStop.put(stop, tripPattern);
+                Set<TripPattern> patterns = patternsForStop.get(stop);
+                if (patterns == null || !patterns.contains(tripPattern)) {
+                    Set<TripPattern> temp = patterns == null ? new HashSet<>() : new HashSet<>(patterns);
+                    temp.add(tripPattern);
+                    patternsForStop.put(stop, Collections.unmodifiableSet(temp));
+                }
             }
         }
     }
 
     public Collection<TripPattern> getPatternsForStop(Stop stop) {
-        return patternsForStop.get(stop);
-    }
-
-    public void setPatternsForStop(SetMultimap<Stop, TripPattern> patternsForStop) {
-        this.patternsForStop = patternsForStop;
+        Set<TripPattern> patterns = patternsForStop.get(stop);
+        return patterns == null ? Collections.emptySet() : patterns;
     }
 }
@@ -13,6 +13,7 @@ import org.opentripplanner.openstreetmap.model.OSMWay;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Parser for the OpenStreetMap PBF Format.
@@ -21,12 +22,30 @@ import java.util.Map;
  */
 public class BinaryOpenStreetMapParser extends BinaryParser {
 
-    private OSMDatabase osmdb;
+    private final Consumer<OSMNode> nodes;
+    private final Consumer<OSMWay> ways;
+    private final Consumer<OSMRelation> relations;
+    private final Map<String, String> stringTable;
     private OsmParserPhase parsePhase;
-    private Map<String, String> stringTable = new HashMap<String, String>();
 
     public BinaryOpenStreetMapParser(OSMDatabase osmdb) {
-        this.osmdb = osmdb;
+        this(new HashMap<>(), osmdb::addNode, osmdb::addWay, osmdb::addRelation);
+    }
+
+    /**
+     * Create a parser passing the parsed entities to the given consumers. The string table is
+     * shared with other parsers, and must be a concurrent map if the parsers run in parallel.
+     */
+    BinaryOpenStreetMapParser(
+            Map<String, String> stringTable,
+            Consumer<OSMNode> nodes,
+            Consumer<OSMWay> ways,
+            Consumer<OSMRelation> relations
+    ) {
+        this.stringTable = stringTable;
+        this.nodes = nodes;
+        this.ways = ways;
+        this.relations = relations;
     }
 
     // The strings are already being pulled from a string table in the PBF file,
@@ -34,12 +53,8 @@ public class BinaryOpenStreetMapParser extends BinaryParser {
     // String.intern grinds to a halt on large PBF files (as it did on GTFS import), so 
     // we implement our own. 
     public String internalize(String s) {
-        String fromTable = stringTable.get(s);
-        if (fromTable == null) {
-            stringTable.put(s, s);
-            return s;
-        } 
-        return fromTable;
+        String fromTable = stringTable.putIfAbsent(s, s);
+        return fromTable == null ? s : fromTable;
     }
 
     @Override
@@ -67,7 +82,7 @@ public class BinaryOpenStreetMapParser extends BinaryParser {
                 tmp.addTag(tag);
             }
 
-            osmdb.addNode(tmp);
+            nodes.accept(tmp);
         }
     }
 
@@ -109,7 +124,7 @@ public class BinaryOpenStreetMapParser extends BinaryParser {
                 j++; // Skip over the '0' delimiter.
             }
 
-            osmdb.addNode(tmp);
+            nodes.accept(tmp);
         }
     }
 
@@ -139,7 +154,7 @@ public class BinaryOpenStreetMapParser extends BinaryParser {
                 lastId = j + lastId;
             }
 
-            osmdb.addWay(tmp);
+            ways.accept(tmp);
         }
     }
 
@@ -183,7 +198,7 @@ public class BinaryOpenStreetMapParser extends BinaryParser {
                 tmp.addMember(relMember);
             }
 
-            osmdb.addRelation(tmp);
+            relations.accept(tmp);
         }
     }
 
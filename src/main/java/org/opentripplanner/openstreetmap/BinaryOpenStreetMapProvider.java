@@ -17,43 +17,102 @@ import java.io.InputStream;
 /**
  * Parser for the OpenStreetMap PBF format. Parses files in three passes:
  * First the relations, then the ways, then the nodes are also loaded.
+ * <p>
+ * With more than one parser thread the blocks of the file are decompressed and parsed in
+ * parallel, see {@link ParallelOsmPbfReader}.
  */
 public class BinaryOpenStreetMapProvider {
     private static final Logger LOG = LoggerFactory.getLogger(BinaryOpenStreetMapProvider.class);
 
     private final DataSource source;
     private final boolean cacheDataImMem;
+    private final int parserThreads;
     private byte[] cachedBytes = null;
 
 
     /** For tests */
     public BinaryOpenStreetMapProvider(File file, boolean cacheDataImMem) {
-        this(new FileDataSource(file, FileType.OSM), cacheDataImMem);
+        this(new FileDataSource(file, FileType.OSM), cacheDataImMem, 1);
     }
 
     public BinaryOpenStreetMapProvider(DataSource source, boolean cacheDataImMem) {
+        this(source, cacheDataImMem, 1);
+    }
+
+    /**
+     * @param parserThreads The number of threads decompressing and parsing the file, use 1 to
+     *                      parse the file in the calling thread.
+     */
+    public BinaryOpenStreetMapProvider(
+            DataSource source,
+            boolean cacheDataImMem,
+            int parserThreads
+    ) {
         this.source = source;
         this.cacheDataImMem = cacheDataImMem;
+        this.parserThreads = parserThreads;
     }
 
     public void readOSM(OSMDatabase osmdb) {
         try {
+            if (parserThreads > 1) {
+                readOSMInParallel(osmdb);
+                return;
+            }
             BinaryOpenStreetMapParser parser = new BinaryOpenStreetMapParser(osmdb);
 
+            long start = System.currentTimeMillis();
             parsePhase(parser, OsmParserPhase.Relations);
             osmdb.doneFirstPhaseRelations();
+            start = logPhaseTime(OsmParserPhase.Relations, start);
 
             parsePhase(parser, OsmParserPhase.Ways);
             osmdb.doneSecondPhaseWays();
+            start = logPhaseTime(OsmParserPhase.Ways, start);
 
             parsePhase(parser, OsmParserPhase.Nodes);
             osmdb.doneThirdPhaseNodes();
+            logPhaseTime(OsmParserPhase.Nodes, start);
         }
         catch (Exception ex) {
             throw new IllegalStateException("error loading OSM from path " + source.path(), ex);
         }
     }
 
+    private void readOSMInParallel(OSMDatabase osmdb) throws IOException {
+        LOG.info("Parsing OSM with {} threads.", parserThreads);
+        try (ParallelOsmPbfReader reader = new ParallelOsmPbfReader(parserThreads)) {
+            long start = System.currentTimeMillis();
+            parsePhase(reader, OsmParserPhase.Relations, osmdb);
+            osmdb.doneFirstPhaseRelations();
+            start = logPhaseTime(OsmParserPhase.Relations, start);
+
+            parsePhase(reader, OsmParserPhase.Ways, osmdb);
+            osmdb.doneSecondPhaseWays();
+            start = logPhaseTime(OsmParserPhase.Ways, start);
+
+            parsePhase(reader, OsmParserPhase.Nodes, osmdb);
+            osmdb.doneThirdPhaseNodes();
+            logPhaseTime(OsmParserPhase.Nodes, start);
+        }
+    }
+
+    private void parsePhase(
+            ParallelOsmPbfReader reader,
+            OsmParserPhase phase,
+            OSMDatabase osmdb
+    ) throws IOException {
+        try (InputStream in = createInputStream(phase)) {
+            reader.readPhase(in, phase, osmdb);
+        }
+    }
+
+    private static long logPhaseTime(OsmParserPhase phase, long start) {
+        long now = System.currentTimeMillis();
+        LOG.info("OSM phase {} parsed in {} ms.", phase, now - start);
+        return now;
+    }
+
     private void parsePhase(BinaryOpenStreetMapParser parser, OsmParserPhase phase) throws IOException {
         parser.setPhase(phase);
         BlockInputStream in = null;
@@ -0,0 +1,278 @@
+package org.opentripplanner.openstreetmap;
+
+import org.openstreetmap.osmosis.osmbinary.Fileformat;
+import org.openstreetmap.osmosis.osmbinary.Osmformat;
+import org.opentripplanner.graph_builder.module.osm.OSMDatabase;
+import org.opentripplanner.openstreetmap.model.OSMNode;
+import org.opentripplanner.openstreetmap.model.OSMRelation;
+import org.opentripplanner.openstreetmap.model.OSMWay;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read the phases of an OpenStreetMap PBF file with a pool of worker threads. The file is read
+ * block by block in the calling thread; the blocks are decompressed and parsed by the workers, and
+ * the parsed entities are added to the {@link OSMDatabase} by the calling thread in file order. So
+ * the database is only accessed by one thread, and is loaded exactly as by the sequential parser.
+ * <p>
+ * The kinds of entities in each block are recorded in the first phase. In the following phases a
+ * block without entities of the phase is skipped without decompressing it. A PBF file is sorted by
+ * entity type, so most blocks are only decompressed twice instead of three times.
+ * <p>
+ * THREAD SAFETY - The reader owns a thread pool, and must be used by one thread. Close the reader
+ * to shut the pool down.
+ */
+class ParallelOsmPbfReader implements AutoCloseable {
+
+    /** The largest blob header and blob allowed by the PBF format. */
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    private static final String OSM_HEADER = "OSMHeader";
+    private static final String OSM_DATA = "OSMData";
+
+    private static final int NODES = 1;
+    private static final int WAYS = 2;
+    private static final int RELATIONS = 4;
+
+    private final int maxBlocksInProgress;
+
+    private final ExecutorService threadPool;
+
+    /** Shared by the parsers of all blocks, so equal strings are only kept once. */
+    private final Map<String, String> stringTable = new ConcurrentHashMap<>();
+
+    /** The kinds of entities in each block, or {@code null} until the first phase is read. */
+    private byte[] blockKinds = null;
+
+    ParallelOsmPbfReader(int nThreads) {
+        this.maxBlocksInProgress = 2 * nThreads;
+        // Daemon threads, so a reader which is not closed does not keep the JVM running
+        this.threadPool = Executors.newFixedThreadPool(nThreads, r -> {
+            Thread thread = new Thread(r, "osm-pbf-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Read the entities of the given phase from the input stream, and add them to the database.
+     * The same file must be read in every phase.
+     */
+    void readPhase(InputStream input, OsmParserPhase phase, OSMDatabase osmdb) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        Deque<Future<Block>> blocksInProgress = new ArrayDeque<>();
+        List<Byte> kinds = blockKinds == null ? new ArrayList<>() : null;
+        int index = 0;
+        try {
+            for (;;) {
+                Fileformat.BlobHeader header = readBlobHeader(in, index);
+                if (header == null) { break; }
+                int size = header.getDatasize();
+                if (size < 0 || size > MAX_BLOB_SIZE) {
+                    throw new IOException("The PBF blob " + index + " has a bad size: " + size);
+                }
+                if (blockKinds != null && index >= blockKinds.length) {
+                    throw new IOException("The PBF file changed between the parser phases.");
+                }
+                if (blockKinds != null && (blockKinds[index] & kindOf(phase)) == 0) {
+                    skipFully(in, size, index);
+                }
+                else {
+                    byte[] blob = new byte[size];
+                    readFully(in, blob, index);
+                    if (blocksInProgress.size() >= maxBlocksInProgress) {
+                        addToDatabase(blocksInProgress.removeFirst(), kinds, osmdb);
+                    }
+                    String type = header.getType();
+                    blocksInProgress.addLast(threadPool.submit(parseTask(type, blob, phase)));
+                }
+                ++index;
+            }
+            while (!blocksInProgress.isEmpty()) {
+                addToDatabase(blocksInProgress.removeFirst(), kinds, osmdb);
+            }
+        }
+        finally {
+            blocksInProgress.forEach(it -> it.cancel(true));
+        }
+        if (kinds != null) {
+            blockKinds = new byte[kinds.size()];
+            for (int i = 0; i < blockKinds.length; ++i) {
+                blockKinds[i] = kinds.get(i);
+            }
+        }
+        else if (index != blockKinds.length) {
+            throw new IOException("The PBF file changed between the parser phases.");
+        }
+    }
+
+    @Override
+    public void close() {
+        threadPool.shutdownNow();
+    }
+
+    /** Read the next blob header, return {@code null} at the end of the file. */
+    private static Fileformat.BlobHeader readBlobHeader(DataInputStream in, int index)
+            throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        }
+        catch (EOFException e) {
+            return null;
+        }
+        if (length < 0 || length > MAX_HEADER_SIZE) {
+            throw new IOException("The PBF blob header " + index + " has a bad size: " + length);
+        }
+        byte[] header = new byte[length];
+        readFully(in, header, index);
+        return Fileformat.BlobHeader.parseFrom(header);
+    }
+
+    private Callable<Block> parseTask(String type, byte[] blob, OsmParserPhase phase) {
+        return () -> {
+            Block block = new Block();
+            if (OSM_HEADER.equals(type)) {
+                newParser(block, phase).parse(Osmformat.HeaderBlock.parseFrom(inflate(blob)));
+            }
+            else if (OSM_DATA.equals(type)) {
+                Osmformat.PrimitiveBlock primitiveBlock = Osmformat.PrimitiveBlock.parseFrom(
+                        inflate(blob)
+                );
+                for (Osmformat.PrimitiveGroup group : primitiveBlock.getPrimitivegroupList()) {
+                    if (group.hasDense() || group.getNodesCount() > 0) { block.kinds |= NODES; }
+                    if (group.getWaysCount() > 0) { block.kinds |= WAYS; }
+                    if (group.getRelationsCount() > 0) { block.kinds |= RELATIONS; }
+                }
+                newParser(block, phase).parse(primitiveBlock);
+            }
+            // Other blob types are allowed by the format, and ignored like osmosis does
+            return block;
+        };
+    }
+
+    private BinaryOpenStreetMapParser newParser(Block block, OsmParserPhase phase) {
+        BinaryOpenStreetMapParser parser = new BinaryOpenStreetMapParser(
+                stringTable,
+                block.nodes::add,
+                block.ways::add,
+                block.relations::add
+        );
+        parser.setPhase(phase);
+        return parser;
+    }
+
+    private static void addToDatabase(Future<Block> future, List<Byte> kinds, OSMDatabase osmdb)
+            throws IOException {
+        Block block;
+        try {
+            block = future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing a PBF block.", e);
+        }
+        catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException
+                    ? (IOException) e.getCause()
+                    : new IOException("Failed to parse a PBF block: " + e.getCause(), e.getCause());
+        }
+        if (kinds != null) {
+            kinds.add(block.kinds);
+        }
+        block.nodes.forEach(osmdb::addNode);
+        block.ways.forEach(osmdb::addWay);
+        block.relations.forEach(osmdb::addRelation);
+    }
+
+    /** Return the uncompressed data of a blob. */
+    private static byte[] inflate(byte[] data) throws IOException {
+        Fileformat.Blob blob = Fileformat.Blob.parseFrom(data);
+        if (blob.hasRaw()) {
+            return blob.getRaw().toByteArray();
+        }
+        if (!blob.hasZlibData()) {
+            throw new IOException("The PBF blob uses an unsupported compression.");
+        }
+        byte[] result = new byte[blob.getRawSize()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blob.getZlibData().toByteArray());
+            int size = 0;
+            while (size < result.length && !inflater.finished()) {
+                int n = inflater.inflate(result, size, result.length - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) { break; }
+                size += n;
+            }
+            if (size != result.length) {
+                throw new IOException("The PBF blob is shorter than its raw size.");
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Failed to decompress a PBF blob.", e);
+        }
+        finally {
+            inflater.end();
+        }
+        return result;
+    }
+
+    private static void readFully(DataInputStream in, byte[] b, int index) throws IOException {
+        try {
+            in.readFully(b);
+        }
+        catch (EOFException e) {
+            throw new IOException("The PBF file is truncated in blob " + index + ".", e);
+        }
+    }
+
+    private static void skipFully(InputStream in, int n, int index) throws IOException {
+        byte[] buffer = null;
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                // Some streams can not skip, read instead to tell the end of the file
+                if (buffer == null) { buffer = new byte[Math.min(n, 64 * 1024)]; }
+                skipped = in.read(buffer, 0, Math.min(n, buffer.length));
+                if (skipped < 0) {
+                    throw new IOException("The PBF file is truncated in blob " + index + ".");
+                }
+            }
+            n -= skipped;
+        }
+    }
+
+    private static int kindOf(OsmParserPhase phase) {
+        switch (phase) {
+            case Nodes: return NODES;
+            case Ways: return WAYS;
+            case Relations: return RELATIONS;
+            default: throw new IllegalArgumentException("Unknown phase: " + phase);
+        }
+    }
+
+    /** The entities of the current phase parsed from one block. */
+    private static class Block {
+        private final List<OSMNode> nodes = new ArrayList<>();
+        private final List<OSMWay> ways = new ArrayList<>();
+        private final List<OSMRelation> relations = new ArrayList<>();
+        private byte kinds = 0;
+    }
+}
@@ -1,5 +1,6 @@
 package org.opentripplanner.routing.algorithm;
 
+import org.opentripplanner.ext.flex.FlexAccessEgress;
 import org.opentripplanner.ext.flex.FlexRouter;
 import org.opentripplanner.model.TransitMode;
 import org.opentripplanner.model.plan.Itinerary;
@@ -44,6 +45,14 @@ import java.util.List;
 /**
  * Does a complete transit search, including access and egress legs.
  * <p>
+ * The direct street search and the access and egress street searches are independent of each
+ * other, so they are started before the transit search and may run in parallel on the router
+ * street routing thread pool. If the router has no thread pool the searches run in the request
+ * thread, one after the other. Each street search gets its own street request and routing
+ * context, created in the request thread before the search is started, see {@link
+ * StreetSearches}. The flex access and egress searches need the access and egress stops, so they
+ * are started when the access and egress searches are done, and run in parallel with each other.
+ * <p>
  * This class has a request scope, hence the "Worker" name.
  */
 public class RoutingWorker {
@@ -69,6 +78,8 @@ public class RoutingWorker {
 
     private final RaptorService<TripSchedule> raptorService;
 
+    private final boolean searchWindowSlicesEnabled;
+
     /** An object that accumulates profiling and debugging info for inclusion in the response. */
     public final DebugAggregator debugAggregator = new DebugAggregator();
 
@@ -77,9 +88,13 @@ public class RoutingWorker {
     private int searchWindowUsedInSeconds = NOT_SET;
     private Itinerary firstRemovedItinerary = null;
 
+    /** The street searches started by this worker, created when the request is routed. */
+    private StreetSearches streetSearches;
+
     public RoutingWorker(RaptorConfig<TripSchedule> config, RoutingRequest request) {
         this.debugAggregator.startedCalculating();
         this.raptorService = new RaptorService<>(config);
+        this.searchWindowSlicesEnabled = config.tuningParameters().searchWindowSlices() > 1;
         this.request = request;
     }
 
@@ -87,25 +102,69 @@ public class RoutingWorker {
         List<Itinerary> itineraries = new ArrayList<>();
         List<RoutingError> routingErrors = new ArrayList<>();
 
-        this.debugAggregator.finishedPrecalculating();
-
-        // Direct street routing
         try {
-            itineraries.addAll(DirectStreetRouter.route(router, request));
-        } catch (RoutingValidationException e) {
+            // Create the routing context before any of the street searches are started, the
+            // street requests of the searches are created from it in this thread.
+            request.setRoutingContext(router.graph);
+        }
+        catch (RoutingValidationException e) {
             routingErrors.addAll(e.getRoutingErrors());
+            return new RoutingResponse(
+                TripPlanMapper.mapTripPlan(request, itineraries),
+                null,
+                routingErrors,
+                debugAggregator
+            );
         }
 
-        this.debugAggregator.finishedDirectStreetRouter();
+        this.debugAggregator.finishedPrecalculating();
+
+        List<Itinerary> transitItineraries = Collections.emptyList();
+        List<RoutingError> transitRoutingErrors = Collections.emptyList();
+
+        streetSearches = new StreetSearches(
+            router.streetRoutingThreadPool(),
+            Math.round(2_000 * router.streetRoutingTimeoutSeconds())
+        );
 
-        // Transit routing
         try {
-            itineraries.addAll(routeTransit(router));
-        } catch (RoutingValidationException e) {
-            routingErrors.addAll(e.getRoutingErrors());
+            // Direct street routing, runs in parallel with the transit routing
+            StreetSearches.Search<List<Itinerary>> directStreetSearch = null;
+            try {
+                RoutingRequest directRequest = DirectStreetRouter.createStreetRequest(request);
+                directStreetSearch = streetSearches.start(
+                    "direct street",
+                    null,
+                    () -> routeDirectStreet(router, directRequest)
+                );
+            } catch (RoutingValidationException e) {
+                routingErrors.addAll(e.getRoutingErrors());
+                this.debugAggregator.finishedDirectStreetRouter();
+            }
+
+            // Transit routing
+            try {
+                transitItineraries = new ArrayList<>(routeTransit(router));
+            } catch (RoutingValidationException e) {
+                transitRoutingErrors = e.getRoutingErrors();
+            }
+
+            this.debugAggregator.finishedTransitRouter();
+
+            try {
+                if (directStreetSearch != null) {
+                    itineraries.addAll(streetSearches.await(directStreetSearch));
+                }
+            } catch (RoutingValidationException e) {
+                routingErrors.addAll(e.getRoutingErrors());
+            }
+        }
+        finally {
+            streetSearches.cancelAll();
         }
 
-        this.debugAggregator.finishedTransitRouter();
+        itineraries.addAll(transitItineraries);
+        routingErrors.addAll(transitRoutingErrors);
 
         // Filter itineraries
         itineraries = filterItineraries(itineraries);
@@ -121,6 +180,15 @@ public class RoutingWorker {
         );
     }
 
+    private List<Itinerary> routeDirectStreet(Router router, RoutingRequest directRequest) {
+        try {
+            return DirectStreetRouter.route(router, request, directRequest);
+        }
+        finally {
+            this.debugAggregator.finishedDirectStreetRouter();
+        }
+    }
+
     private Collection<Itinerary> routeTransit(Router router) {
         request.setRoutingContext(router.graph);
         if (request.modes.transitModes.isEmpty()) { return Collections.emptyList(); }
@@ -131,6 +199,24 @@ public class RoutingWorker {
             ));
         }
 
+        // Start the access/egress searches, these run in parallel with the pattern filtering
+        RoutingRequest accessRequest = request.getStreetSearchRequest(request.modes.accessMode);
+        RoutingRequest egressRequest = request.getStreetSearchRequest(request.modes.egressMode);
+        StreetSearches.Search<Collection<NearbyStop>> accessSearch = streetSearches.start(
+            "access",
+            InputField.FROM_PLACE,
+            () -> AccessEgressRouter.streetSearch(
+                request, accessRequest, false, 2000, router.nearbyStopCache()
+            )
+        );
+        StreetSearches.Search<Collection<NearbyStop>> egressSearch = streetSearches.start(
+            "egress",
+            InputField.TO_PLACE,
+            () -> AccessEgressRouter.streetSearch(
+                request, egressRequest, true, 2000, router.nearbyStopCache()
+            )
+        );
+
         TransitLayer transitLayer = request.ignoreRealtimeUpdates
             ? router.graph.getTransitLayer()
             : router.graph.getRealtimeTransitLayer();
@@ -149,8 +235,8 @@ public class RoutingWorker {
         this.debugAggregator.finishedPatternFiltering();
 
         // Prepare access/egress transfers
-        Collection<NearbyStop> accessStops = AccessEgressRouter.streetSearch(request, false, 2000);
-        Collection<NearbyStop> egressStops = AccessEgressRouter.streetSearch(request, true, 2000);
+        Collection<NearbyStop> accessStops = streetSearches.await(accessSearch);
+        Collection<NearbyStop> egressStops = streetSearches.await(egressSearch);
 
         AccessEgressMapper accessEgressMapper = new AccessEgressMapper(transitLayer.getStopIndex());
         Collection<AccessEgress> accessTransfers = accessEgressMapper.mapNearbyStops(accessStops, false);
@@ -169,9 +255,24 @@ public class RoutingWorker {
                 egressStops
             );
 
+            // The flex access and egress only depend on their own street stops, so they run in
+            // parallel. The flex only itineraries reuse the access and egress templates.
+            StreetSearches.Search<Collection<FlexAccessEgress>> flexAccessSearch = streetSearches.start(
+                "flex access",
+                InputField.FROM_PLACE,
+                flexRouter::createFlexAccesses
+            );
+            StreetSearches.Search<Collection<FlexAccessEgress>> flexEgressSearch = streetSearches.start(
+                "flex egress",
+                InputField.TO_PLACE,
+                flexRouter::createFlexEgresses
+            );
+            Collection<FlexAccessEgress> flexAccesses = streetSearches.await(flexAccessSearch);
+            Collection<FlexAccessEgress> flexEgresses = streetSearches.await(flexEgressSearch);
+
             itineraries.addAll(flexRouter.createFlexOnlyItineraries());
-            accessTransfers.addAll(accessEgressMapper.mapFlexAccessEgresses(flexRouter.createFlexAccesses()));
-            egressTransfers.addAll(accessEgressMapper.mapFlexAccessEgresses(flexRouter.createFlexEgresses()));
+            accessTransfers.addAll(accessEgressMapper.mapFlexAccessEgresses(flexAccesses));
+            egressTransfers.addAll(accessEgressMapper.mapFlexAccessEgresses(flexEgresses));
         }
 
         verifyEgressAccess(accessTransfers, egressTransfers);
@@ -183,7 +284,8 @@ public class RoutingWorker {
                 request,
                 requestTransitDataProvider.getStartOfTime(),
                 accessTransfers,
-                egressTransfers
+                egressTransfers,
+                searchWindowSlicesEnabled
         );
 
         // Route transit
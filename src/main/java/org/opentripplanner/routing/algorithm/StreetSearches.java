@@ -0,0 +1,143 @@
+package org.opentripplanner.routing.algorithm;
+
+import org.opentripplanner.routing.api.response.InputField;
+import org.opentripplanner.routing.api.response.RoutingError;
+import org.opentripplanner.routing.api.response.RoutingErrorCode;
+import org.opentripplanner.routing.error.RoutingValidationException;
+import org.opentripplanner.util.OtpAppException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The street searches of one routing request, run on the router street routing thread pool. If
+ * there is no thread pool the searches run in the request thread when they are started.
+ * <p>
+ * The timeout of a search starts when the search starts, so the time a search waits in the
+ * thread pool queue is not counted. A search still waiting in the queue when the timeout expires
+ * is run in the request thread instead. A search not completed within the timeout is interrupted,
+ * and reported as a {@link RoutingErrorCode#SEARCH_TIMEOUT} routing error.
+ * <p>
+ * Each search must use its own {@link org.opentripplanner.routing.api.request.RoutingRequest}
+ * and {@link org.opentripplanner.routing.core.RoutingContext}, created before the search is
+ * started. The searches only read the main request.
+ * <p>
+ * THREAD SAFETY - This class is used by the request thread only, the searches run in the pool.
+ */
+class StreetSearches {
+    private static final Logger LOG = LoggerFactory.getLogger(StreetSearches.class);
+
+    private final ExecutorService threadPool;
+
+    private final long timeoutMillis;
+
+    private final List<Search<?>> searches = new ArrayList<>();
+
+    /**
+     * @param threadPool    The pool to run the searches in, or {@code null} to run them in the
+     *                      request thread.
+     * @param timeoutMillis The time to wait for a search after it is started.
+     */
+    StreetSearches(ExecutorService threadPool, long timeoutMillis) {
+        this.threadPool = threadPool;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    <T> Search<T> start(String name, InputField inputField, Callable<T> search) {
+        Search<T> task = new Search<>(name, inputField, search);
+        searches.add(task);
+
+        if (threadPool == null) {
+            task.run();
+        }
+        else {
+            threadPool.execute(task);
+        }
+        return task;
+    }
+
+    /**
+     * Wait for the given search to complete and return the result. Exceptions thrown by the search
+     * are re-thrown, so a {@link RoutingValidationException} is handled the same way as if the
+     * search was done in the request thread.
+     *
+     * @throws RoutingValidationException if the search did not complete within the timeout.
+     */
+    <T> T await(Search<T> search) {
+        try {
+            if (!search.started.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                // All threads are busy, do the search in this thread. This does nothing if a pool
+                // thread started the search in the meantime.
+                search.run();
+            }
+            long remainingMillis = search.startTime + timeoutMillis - System.currentTimeMillis();
+            return search.get(Math.max(remainingMillis, 0), TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e) {
+            search.cancel(true);
+            LOG.warn(
+                "The {} search did not complete within {} ms and is cancelled.",
+                search.name, timeoutMillis
+            );
+            throw new RoutingValidationException(List.of(
+                new RoutingError(RoutingErrorCode.SEARCH_TIMEOUT, search.inputField)
+            ));
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            LOG.error(e.getMessage(), e);
+            throw new OtpAppException(
+                "The " + search.name + " search failed. Details: " + e.getMessage()
+            );
+        }
+        catch (InterruptedException e) {
+            // The request is aborted, stop all street searches
+            cancelAll();
+            Thread.currentThread().interrupt();
+            throw new OtpAppException(
+                "The request was interrupted during the " + search.name + " search."
+            );
+        }
+    }
+
+    /** Cancel all searches, the searches in progress are interrupted. */
+    void cancelAll() {
+        for (Search<?> it : searches) {
+            it.cancel(true);
+        }
+    }
+
+    /** A street search, which keeps track of when it is started. */
+    static class Search<T> extends FutureTask<T> {
+        private final String name;
+        private final InputField inputField;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile long startTime;
+
+        private Search(String name, InputField inputField, Callable<T> search) {
+            super(search);
+            this.name = name;
+            this.inputField = inputField;
+        }
+
+        @Override
+        public void run() {
+            if (started.getCount() > 0) {
+                startTime = System.currentTimeMillis();
+                started.countDown();
+            }
+            super.run();
+        }
+    }
+}
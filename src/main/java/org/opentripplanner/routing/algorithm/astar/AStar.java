@@ -8,6 +8,7 @@ import org.opentripplanner.routing.algorithm.astar.strategies.SkipEdgeStrategy;
 import org.opentripplanner.routing.core.RoutingContext;
 import org.opentripplanner.routing.api.request.RoutingRequest;
 import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.edgetype.StreetCostTables;
 import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Vertex;
 import org.opentripplanner.routing.spt.GraphPath;
@@ -29,6 +30,8 @@ import java.util.List;
  *
  * NOTE this is now per-request scoped, which has caused some threading problems in the past.
  * Always make one new instance of this class per request, it contains a lot of state fields.
+ * The priority queue is not part of this per-request state, it is reused by the searches on the
+ * same thread, see {@link SearchWorkspace}.
  */
 public class AStar {
 
@@ -53,6 +56,8 @@ public class AStar {
         public State u;
         public ShortestPathTree spt;
         BinHeap<State> pq;
+        SearchWorkspace workspace;
+        StreetCostTables.Lookup streetCostTables;
         RemainingWeightHeuristic heuristic;
         public RoutingContext rctx;
         public int nVisited;
@@ -96,8 +101,15 @@ public class AStar {
     private void startSearch(RoutingRequest options,
             SearchTerminationStrategy terminationStrategy, long abortTime, boolean addToQueue) {
 
+        // A search started again before the last search is done, the last search is abandoned
+        releaseWorkspace();
+
         runState = new RunState( options, terminationStrategy );
         runState.rctx = options.getRoutingContext();
+        // The tables are looked up again for each search, the request may be changed in between
+        runState.streetCostTables = new StreetCostTables.Lookup(
+                runState.rctx.graph.getStreetCostTables()
+        );
         runState.spt = options.getNewShortestPathTree();
 
         // We want to reuse the heuristic instance in a series of requests for the same target to avoid repeated work.
@@ -119,12 +131,14 @@ public class AStar {
         // before reaching its target.
         int initialSize = runState.rctx.graph.getVertices().size();
         initialSize = (int) Math.ceil(2 * (Math.sqrt((double) initialSize + 1)));
-        runState.pq = new BinHeap<>(initialSize);
+        runState.workspace = SearchWorkspace.acquire();
+        runState.pq = runState.workspace.queue(initialSize);
         runState.nVisited = 0;
         runState.targetAcceptedStates = Lists.newArrayList();
         
         if (addToQueue) {
             for (State initialState : State.getStates(options)) {
+                initialState.setStreetCostTables(runState.streetCostTables);
                 runState.spt.add(initialState);
                 runState.pq.insert(initialState, 0);
             }
@@ -163,7 +177,9 @@ public class AStar {
 
         runState.nVisited += 1;
         
-        Collection<Edge> edges = runState.options.arriveBy ? runState.u_vertex.getIncoming() : runState.u_vertex.getOutgoing();
+        Collection<Edge> edges = runState.options.arriveBy
+                ? runState.rctx.getIncoming(runState.u_vertex)
+                : runState.rctx.getOutgoing(runState.u_vertex);
         for (Edge edge : edges) {
 
             if (skipEdgeStrategy != null &&
@@ -239,6 +255,12 @@ public class AStar {
 
                 break;
             }
+            // A search running in a thread pool is interrupted when it is cancelled
+            if (Thread.currentThread().isInterrupted()) {
+                LOG.debug("Search interrupted. origin={} target={}", runState.rctx.fromVertices, runState.rctx.toVertices);
+                runState.options.rctx.aborted = true;
+                break;
+            }
             
             /*
              * Get next best state and, if it hasn't already been dominated, add adjacent states to queue.
@@ -292,8 +314,13 @@ public class AStar {
         startSearch (options, terminationStrategy, abortTime);
 
         if (runState != null) {
-            runSearch(abortTime);
-            spt = runState.spt;
+            try {
+                runSearch(abortTime);
+                spt = runState.spt;
+            }
+            finally {
+                releaseWorkspace();
+            }
         }
         
         storeMemory();
@@ -310,20 +337,39 @@ public class AStar {
         startSearch (options, terminationStrategy, abortTime, false);
         
         if (runState != null) {
-            for (State state : initialStates) {
-                runState.spt.add(state);
-                // TODO: hardwired for earliest arrival
-                // TODO: weights are seconds, no?
-                runState.pq.insert(state, state.getElapsedTimeSeconds());
+            try {
+                // The given states may be shared with other searches, so the street cost tables
+                // are not set on them. The states without tables use the normal cost computation.
+                for (State state : initialStates) {
+                    runState.spt.add(state);
+                    // TODO: hardwired for earliest arrival
+                    // TODO: weights are seconds, no?
+                    runState.pq.insert(state, state.getElapsedTimeSeconds());
+                }
+
+                runSearch(abortTime);
+                spt = runState.spt;
+            }
+            finally {
+                releaseWorkspace();
             }
-            
-            runSearch(abortTime);
-            spt = runState.spt;
         }
         
         return spt;
     }
 
+    /**
+     * Release the workspace of the current search, so the next search on this thread can reuse it.
+     * The queue of the released search is empty, so the search can not be continued.
+     */
+    private void releaseWorkspace() {
+        if (runState != null && runState.workspace != null) {
+            runState.workspace.release();
+            runState.workspace = null;
+            runState.pq = new BinHeap<>(0);
+        }
+    }
+
     private void storeMemory() {
         if (store.isMonitoring("memoryUsed")) {
             System.gc();
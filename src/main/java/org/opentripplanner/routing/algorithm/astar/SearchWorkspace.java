@@ -0,0 +1,74 @@
+package org.opentripplanner.routing.algorithm.astar;
+
+import org.opentripplanner.common.pqueue.BinHeap;
+import org.opentripplanner.routing.core.State;
+
+/**
+ * The data structures used by one {@link AStar} search which can be reused by the next search on
+ * the same thread, so a search does not need to allocate and grow them again. Each worker thread
+ * has one workspace, see {@link #acquire()}.
+ * <p>
+ * A search which is not run to the end (e.g. a search stepped through by the graph visualizer)
+ * never releases its workspace. Other searches on the same thread then get a new workspace, so
+ * the searches never share any data.
+ * <p>
+ * THREAD SAFETY - A workspace is used by one search on one thread at the time.
+ */
+public class SearchWorkspace {
+
+    private static final ThreadLocal<SearchWorkspace> WORKSPACE = ThreadLocal.withInitial(
+            () -> new SearchWorkspace(true)
+    );
+
+    private static final int MIN_QUEUE_CAPACITY = 1000;
+
+    private final boolean pooled;
+
+    private boolean inUse = false;
+
+    private BinHeap<State> queue = null;
+
+    private SearchWorkspace(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    /**
+     * Return the workspace of the current thread, or a new workspace if the workspace of the
+     * thread is in use by another search. Call {@link #release()} when the search is done.
+     */
+    public static SearchWorkspace acquire() {
+        SearchWorkspace workspace = WORKSPACE.get();
+        if (workspace.inUse) {
+            workspace = new SearchWorkspace(false);
+        }
+        workspace.inUse = true;
+        return workspace;
+    }
+
+    /** Return true if this workspace is reused by the searches on the thread. */
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    /**
+     * Return an empty priority queue with at least the given capacity. The queue is reused by the
+     * next search, it must not be used after the workspace is released.
+     */
+    public BinHeap<State> queue(int initialCapacity) {
+        if (queue == null) {
+            queue = new BinHeap<>(Math.max(initialCapacity, MIN_QUEUE_CAPACITY));
+        }
+        return queue;
+    }
+
+    /**
+     * Release the workspace, so it can be used by the next search on the thread. The references
+     * to the states of the search are dropped, so they can be garbage collected.
+     */
+    public void release() {
+        if (queue != null) {
+            queue.clear();
+        }
+        inUse = false;
+    }
+}
@@ -0,0 +1,328 @@
+package org.opentripplanner.routing.algorithm.astar.strategies;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import org.opentripplanner.common.pqueue.BinHeap;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.StreetGraphSnapshot;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.StreetVertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precomputed street network distances from and to a small set of landmark vertices, used by the
+ * {@link LandmarkRemainingWeightHeuristic}. By the triangle inequality the distance between two
+ * vertices {@code v} and {@code t} is at least {@code d(L,t) - d(L,v)} and {@code d(v,L) - d(t,L)}
+ * for any landmark {@code L}. With landmarks at the edge of the graph this lower bound is much
+ * closer to the real distance than the straight line distance, so the search explores fewer states.
+ * <p>
+ * The distances are in meters along the {@link StreetEdge}s the street mode is allowed to traverse.
+ * All other edges between street vertices (elevators, free edges) have zero length. One table is
+ * created for each street mode, because the one-way streets and the car-free streets give
+ * different distances.
+ * <p>
+ * The memory used is {@code 2 * 4 bytes * number of street vertices * number of landmarks} for
+ * each mode.
+ * <p>
+ * The distances are stored as a graph service and serialized with the graph. The tables are
+ * indexed in the order of the {@link #vertices} array, which is serialized with them. The lookup
+ * from a vertex to its table index uses the dense vertex index of the {@link StreetGraphSnapshot},
+ * which is not serialized and is reassigned each time the graph is indexed. So the lookup array is
+ * created for the current snapshot when it is first used, see {@link #tableIndex}.
+ * <p>
+ * THREAD SAFETY - This class is immutable after it is built, and can be shared by all searches.
+ * The lookup array is created on demand; two threads may both create it, the result is the same.
+ */
+public class LandmarkDistances implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(LandmarkDistances.class);
+
+    /** The distance to a vertex not reachable from/to a landmark. */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final int NOT_INDEXED = -1;
+
+    /** The street vertices, in the order of the distances in the tables. */
+    private final Vertex[] vertices;
+
+    private final Map<TraverseMode, Table> tables = new EnumMap<>(TraverseMode.class);
+
+    /** The table index by snapshot vertex index, created on demand for the current snapshot. */
+    private transient volatile SnapshotIndex snapshotIndex;
+
+    private LandmarkDistances(Vertex[] vertices) {
+        this.vertices = vertices;
+    }
+
+    /**
+     * Select the landmarks and compute the distances for each of the given modes. The landmarks are
+     * selected one at a time, each landmark is the vertex farthest away from the landmarks already
+     * selected. This places the landmarks at the edges of the graph.
+     *
+     * @param modes only CAR, BICYCLE and WALK are supported.
+     */
+    public static LandmarkDistances build(
+            Graph graph,
+            int numberOfLandmarks,
+            Collection<TraverseMode> modes
+    ) {
+        List<Vertex> vertices = new ArrayList<>();
+        TObjectIntMap<Vertex> vertexIndex = new TObjectIntHashMap<>(
+                graph.getVertices().size(), 0.5f, NOT_INDEXED
+        );
+        for (Vertex v : graph.getVertices()) {
+            if (v instanceof StreetVertex) {
+                vertexIndex.put(v, vertices.size());
+                vertices.add(v);
+            }
+        }
+        LandmarkDistances result = new LandmarkDistances(vertices.toArray(new Vertex[0]));
+
+        for (TraverseMode mode : modes) {
+            if (!(mode == TraverseMode.CAR || mode == TraverseMode.BICYCLE || mode == TraverseMode.WALK)) {
+                throw new IllegalArgumentException("Landmarks not supported for mode: " + mode);
+            }
+            LOG.info("Computing {} landmarks for {} street vertices, mode {}.",
+                    numberOfLandmarks, vertices.size(), mode);
+            result.tables.put(mode, Table.build(vertices, vertexIndex, mode, numberOfLandmarks));
+        }
+        return result;
+    }
+
+    /**
+     * Return the table for the given mode, or {@code null} if no landmarks are computed for it.
+     */
+    public Table getTable(TraverseMode mode) {
+        return tables.get(mode);
+    }
+
+    /**
+     * Return the table index of each vertex in the given snapshot, indexed by the snapshot vertex
+     * index. The table index is -1 for a vertex which is not in the tables, like a transit stop
+     * or a vertex added after the landmarks are computed. Temporary vertices are not in the
+     * snapshot, see {@link StreetGraphSnapshot#indexOf(Vertex)}.
+     */
+    int[] tableIndex(StreetGraphSnapshot snapshot) {
+        SnapshotIndex index = snapshotIndex;
+        if (index == null || index.snapshot != snapshot) {
+            index = new SnapshotIndex(snapshot, vertices);
+            snapshotIndex = index;
+        }
+        return index.tableIndex;
+    }
+
+    /**
+     * Return true if the given edge is part of the landmark graph for the given mode. A bicycle
+     * can be walked on streets where biking is not allowed.
+     */
+    static boolean isTraversable(Edge e, TraverseMode mode) {
+        if (e instanceof StreetEdge) {
+            StreetEdge se = (StreetEdge) e;
+            return se.getPermission().allows(mode) || (
+                    mode == TraverseMode.BICYCLE && se.getPermission().allows(TraverseMode.WALK)
+            );
+        }
+        return true;
+    }
+
+    /**
+     * The edge length in whole meters. The length is rounded down, so the distances in the tables
+     * are exact distances in a graph where no edge is longer than in the real graph. Rounding to
+     * the closest meter would make the error grow with the number of edges on the path.
+     */
+    static int length(Edge e) {
+        return e instanceof StreetEdge ? (int) ((StreetEdge) e).getDistanceMeters() : 0;
+    }
+
+    /**
+     * The landmark distances for one street mode. The distances are indexed by landmark and then by
+     * vertex index.
+     */
+    public static class Table implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TraverseMode mode;
+        private final Vertex[] landmarks;
+        private final int[][] fromLandmark;
+        private final int[][] toLandmark;
+
+        private Table(TraverseMode mode, Vertex[] landmarks, int[][] fromLandmark, int[][] toLandmark) {
+            this.mode = mode;
+            this.landmarks = landmarks;
+            this.fromLandmark = fromLandmark;
+            this.toLandmark = toLandmark;
+        }
+
+        public TraverseMode getMode() {
+            return mode;
+        }
+
+        public int numberOfLandmarks() {
+            return landmarks.length;
+        }
+
+        public Vertex getLandmark(int landmark) {
+            return landmarks[landmark];
+        }
+
+        /** The distance from the landmark to the vertex with the given index. */
+        int fromLandmark(int landmark, int vertexIndex) {
+            return fromLandmark[landmark][vertexIndex];
+        }
+
+        /** The distance from the vertex with the given index to the landmark. */
+        int toLandmark(int landmark, int vertexIndex) {
+            return toLandmark[landmark][vertexIndex];
+        }
+
+        private static Table build(
+                List<Vertex> vertices,
+                TObjectIntMap<Vertex> vertexIndex,
+                TraverseMode mode,
+                int numberOfLandmarks
+        ) {
+            int n = vertices.size();
+            StreetGraph forward = new StreetGraph(vertices, vertexIndex, mode, false);
+            StreetGraph reverse = new StreetGraph(vertices, vertexIndex, mode, true);
+
+            List<Vertex> landmarks = new ArrayList<>();
+            List<int[]> fromLandmark = new ArrayList<>();
+            List<int[]> toLandmark = new ArrayList<>();
+
+            // The min distance from any of the selected landmarks
+            int[] minDistance = new int[n];
+
+            // Start with the vertex farthest away from an arbitrary vertex
+            int next = n == 0 ? -1 : farthest(forward.distancesFrom(0));
+
+            while (next >= 0 && landmarks.size() < numberOfLandmarks) {
+                int[] from = forward.distancesFrom(next);
+                int[] to = reverse.distancesFrom(next);
+                landmarks.add(vertices.get(next));
+                fromLandmark.add(from);
+                toLandmark.add(to);
+
+                for (int i = 0; i < n; ++i) {
+                    minDistance[i] = landmarks.size() == 1 ? from[i] : Math.min(minDistance[i], from[i]);
+                }
+                next = farthest(minDistance);
+            }
+
+            return new Table(
+                    mode,
+                    landmarks.toArray(new Vertex[0]),
+                    fromLandmark.toArray(new int[0][]),
+                    toLandmark.toArray(new int[0][])
+            );
+        }
+
+        /**
+         * Return the index of the reachable vertex with the greatest distance, or -1 if all
+         * reachable vertices have distance zero.
+         */
+        private static int farthest(int[] distances) {
+            int best = -1;
+            int bestDistance = 0;
+            for (int i = 0; i < distances.length; ++i) {
+                int d = distances[i];
+                if (d != UNREACHABLE && d > bestDistance) {
+                    best = i;
+                    bestDistance = d;
+                }
+            }
+            return best;
+        }
+    }
+
+    /** The table index of the vertices of one snapshot. */
+    private static class SnapshotIndex {
+        private final StreetGraphSnapshot snapshot;
+        private final int[] tableIndex;
+
+        SnapshotIndex(StreetGraphSnapshot snapshot, Vertex[] vertices) {
+            this.snapshot = snapshot;
+            this.tableIndex = new int[snapshot.vertexCount()];
+            Arrays.fill(tableIndex, NOT_INDEXED);
+            for (int i = 0; i < vertices.length; ++i) {
+                int v = snapshot.indexOf(vertices[i]);
+                if (v >= 0) {
+                    tableIndex[v] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * A compact copy of the street graph for one mode, used to run the landmark searches without
+     * creating any states.
+     */
+    private static class StreetGraph {
+        private final int[] offsets;
+        private final int[] neighbors;
+        private final int[] lengths;
+
+        StreetGraph(List<Vertex> vertices, TObjectIntMap<Vertex> vertexIndex, TraverseMode mode, boolean reverse) {
+            int n = vertices.size();
+            TIntArrayList neighborList = new TIntArrayList();
+            TIntArrayList lengthList = new TIntArrayList();
+            this.offsets = new int[n + 1];
+
+            for (int i = 0; i < n; ++i) {
+                offsets[i] = neighborList.size();
+                Vertex v = vertices.get(i);
+                for (Edge e : reverse ? v.getIncoming() : v.getOutgoing()) {
+                    int other = vertexIndex.get(reverse ? e.getFromVertex() : e.getToVertex());
+                    if (other != NOT_INDEXED && isTraversable(e, mode)) {
+                        neighborList.add(other);
+                        lengthList.add(length(e));
+                    }
+                }
+            }
+            offsets[n] = neighborList.size();
+            this.neighbors = neighborList.toArray();
+            this.lengths = lengthList.toArray();
+        }
+
+        /** Dijkstra search from the given vertex, return the distance to all vertices. */
+        int[] distancesFrom(int start) {
+            int[] dist = new int[offsets.length - 1];
+            Arrays.fill(dist, UNREACHABLE);
+            BinHeap<Integer> queue = new BinHeap<>();
+            dist[start] = 0;
+            queue.insert(start, 0);
+
+            while (!queue.empty()) {
+                int d = (int) queue.peek_min_key();
+                int v = queue.extract_min();
+                // Skip queue entries replaced by a shorter distance
+                if (d > dist[v]) { continue; }
+
+                for (int i = offsets[v]; i < offsets[v + 1]; ++i) {
+                    int u = neighbors[i];
+                    int du = d + lengths[i];
+                    if (du < dist[u]) {
+                        dist[u] = du;
+                        queue.insert(u, du);
+                    }
+                }
+            }
+            return dist;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.opentripplanner.routing.algorithm.astar.strategies;
+
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.StreetGraphSnapshot;
+import org.opentripplanner.routing.graph.Vertex;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A goal direction heuristic using precomputed {@link LandmarkDistances} (the ALT algorithm: A*,
+ * Landmarks and the Triangle inequality). The remaining weight is the greatest of the straight line
+ * distance and the landmark lower bounds of the network distance, divided by the max street speed.
+ * So the heuristic is never lower than the {@link EuclideanRemainingWeightHeuristic}, and it is
+ * admissible under the same assumptions.
+ * <p>
+ * The origin and destination are normally temporary vertices, which are not in the landmark
+ * tables. The bounds for a temporary destination are found through the closest street vertices;
+ * temporary vertices in the search use the straight line distance. The vertices are looked up in
+ * the tables by their index in the {@link StreetGraphSnapshot} of the graph; if the graph is not
+ * indexed the straight line distance is used for all vertices.
+ * <p>
+ * THREAD SAFETY - An instance is used by one search at the time, like the other heuristics.
+ */
+public class LandmarkRemainingWeightHeuristic implements RemainingWeightHeuristic {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Don't search further than this through temporary vertices to find the street vertices. */
+    private static final int MAX_TEMPORARY_VERTICES = 20;
+
+    private final LandmarkDistances landmarks;
+    private final LandmarkDistances.Table table;
+    private final EuclideanRemainingWeightHeuristic euclidean = new EuclideanRemainingWeightHeuristic();
+
+    private boolean arriveBy;
+    private double maxStreetSpeed;
+
+    /** The snapshot of the searched graph, and the table index by snapshot vertex index. */
+    private StreetGraphSnapshot snapshot;
+    private int[] tableIndex;
+
+    /**
+     * The bounds for the target set, by landmark. See {@link #estimateRemainingWeight(State)}.
+     * {@code Long.MIN_VALUE} or {@code Long.MAX_VALUE} disables the bound for a landmark.
+     */
+    private long[] targetFromLandmark;
+    private long[] targetToLandmark;
+
+    public LandmarkRemainingWeightHeuristic(LandmarkDistances landmarks, TraverseMode mode) {
+        this.landmarks = landmarks;
+        this.table = landmarks.getTable(mode);
+        if (table == null) {
+            throw new IllegalArgumentException("No landmarks computed for mode: " + mode);
+        }
+    }
+
+    /**
+     * Return the landmark mode to use for the given request, or {@code null} if the landmark
+     * heuristic can not be used. Only car or bicycle searches are supported, if any other mode is
+     * allowed in the search the landmark distances are not a lower bound.
+     */
+    public static TraverseMode landmarkMode(Graph graph, RoutingRequest request) {
+        LandmarkDistances landmarks = graph.getService(LandmarkDistances.class);
+        if (landmarks == null) { return null; }
+
+        TraverseModeSet modes = request.streetSubRequestModes;
+        TraverseMode mode = null;
+        if (modes.equals(new TraverseModeSet(TraverseMode.CAR))) {
+            mode = TraverseMode.CAR;
+        }
+        else if (modes.equals(new TraverseModeSet(TraverseMode.BICYCLE))) {
+            mode = TraverseMode.BICYCLE;
+        }
+        return mode != null && landmarks.getTable(mode) != null ? mode : null;
+    }
+
+    @Override
+    public void initialize(RoutingRequest options, long abortTime) {
+        euclidean.initialize(options, abortTime);
+        arriveBy = options.arriveBy;
+        maxStreetSpeed = options.getStreetSpeedUpperBound();
+        snapshot = options.rctx.graph.getStreetGraphSnapshot();
+        tableIndex = snapshot == null ? null : landmarks.tableIndex(snapshot);
+
+        int n = table.numberOfLandmarks();
+        targetFromLandmark = new long[n];
+        targetToLandmark = new long[n];
+
+        // Forward search:  d(v,t) >= d(L,t) - d(L,v), use the min lower bound of d(L,t)
+        //                  d(v,t) >= d(v,L) - d(t,L), use the max upper bound of d(t,L)
+        // Reverse search:  d(t,v) >= d(L,v) - d(L,t), use the max upper bound of d(L,t)
+        //                  d(t,v) >= d(t,L) - d(v,L), use the min lower bound of d(t,L)
+        for (int l = 0; l < n; ++l) {
+            targetFromLandmark[l] = arriveBy ? Long.MIN_VALUE : Long.MAX_VALUE;
+            targetToLandmark[l] = arriveBy ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        for (Vertex target : options.rctx.toVertices) {
+            long[] from = targetBounds(target, true);
+            long[] to = targetBounds(target, false);
+            for (int l = 0; l < n; ++l) {
+                if (arriveBy) {
+                    targetFromLandmark[l] = Math.max(targetFromLandmark[l], from[2 * l + 1]);
+                    targetToLandmark[l] = Math.min(targetToLandmark[l], to[2 * l]);
+                }
+                else {
+                    targetFromLandmark[l] = Math.min(targetFromLandmark[l], from[2 * l]);
+                    targetToLandmark[l] = Math.max(targetToLandmark[l], to[2 * l + 1]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public double estimateRemainingWeight(State s) {
+        double euclideanWeight = euclidean.estimateRemainingWeight(s);
+        int v = indexOf(s.getVertex());
+        if (v < 0) { return euclideanWeight; }
+
+        long best = 0;
+        for (int l = 0; l < targetFromLandmark.length; ++l) {
+            int fromL = table.fromLandmark(l, v);
+            int toL = table.toLandmark(l, v);
+            long tFromL = targetFromLandmark[l];
+            long tToL = targetToLandmark[l];
+
+            if (arriveBy) {
+                if (fromL != LandmarkDistances.UNREACHABLE && tFromL != Long.MAX_VALUE && tFromL != Long.MIN_VALUE) {
+                    best = Math.max(best, fromL - tFromL);
+                }
+                if (toL != LandmarkDistances.UNREACHABLE && tToL != Long.MAX_VALUE) {
+                    best = Math.max(best, tToL - toL);
+                }
+            }
+            else {
+                if (fromL != LandmarkDistances.UNREACHABLE && tFromL != Long.MAX_VALUE) {
+                    best = Math.max(best, tFromL - fromL);
+                }
+                if (toL != LandmarkDistances.UNREACHABLE && tToL != Long.MAX_VALUE && tToL != Long.MIN_VALUE) {
+                    best = Math.max(best, toL - tToL);
+                }
+            }
+        }
+        return Math.max(euclideanWeight, best / maxStreetSpeed);
+    }
+
+    @Override
+    public void reset() {}
+
+    /** The index of the vertex in the landmark tables, or -1 if it is not in the tables. */
+    private int indexOf(Vertex v) {
+        if (tableIndex == null) { return -1; }
+        int i = snapshot.indexOf(v);
+        return i < 0 ? -1 : tableIndex[i];
+    }
+
+    @Override
+    public void doSomeWork() {}
+
+    /**
+     * Find the lower and upper bound of the distance between each landmark and the given vertex,
+     * returned as {@code [lower0, upper0, lower1, upper1, ...]}. If {@code fromLandmark} is true
+     * the distance is from the landmarks to the vertex, otherwise from the vertex to the
+     * landmarks. An unknown lower bound is 0, and an unknown upper bound is
+     * {@code Long.MAX_VALUE}.
+     * <p>
+     * A temporary vertex is not in the tables. All paths between the landmarks and a temporary
+     * vertex pass through the closest street vertices, so the bounds are found from these.
+     */
+    private long[] targetBounds(Vertex target, boolean fromLandmark) {
+        int n = table.numberOfLandmarks();
+        long[] bounds = new long[2 * n];
+        for (int l = 0; l < n; ++l) {
+            bounds[2 * l] = Long.MAX_VALUE;
+            bounds[2 * l + 1] = Long.MAX_VALUE;
+        }
+
+        // Search from the target through temporary vertices, backwards if the path is from the
+        // landmark. The distance is the length of the temporary edges on the path.
+        Deque<Vertex> queue = new ArrayDeque<>();
+        Deque<Long> distances = new ArrayDeque<>();
+        Set<Vertex> visited = new HashSet<>();
+        queue.add(target);
+        distances.add(0L);
+        boolean foundStreetVertex = false;
+
+        while (!queue.isEmpty() && visited.size() < MAX_TEMPORARY_VERTICES) {
+            Vertex v = queue.poll();
+            long d = distances.poll();
+            if (!visited.add(v)) { continue; }
+
+            int index = indexOf(v);
+            if (index >= 0) {
+                foundStreetVertex = true;
+                for (int l = 0; l < n; ++l) {
+                    int dl = fromLandmark ? table.fromLandmark(l, index) : table.toLandmark(l, index);
+                    if (dl == LandmarkDistances.UNREACHABLE) { continue; }
+                    bounds[2 * l] = Math.min(bounds[2 * l], dl);
+                    bounds[2 * l + 1] = Math.min(bounds[2 * l + 1], dl + d);
+                }
+                continue;
+            }
+            for (Edge e : fromLandmark ? v.getIncoming() : v.getOutgoing()) {
+                if (LandmarkDistances.isTraversable(e, table.getMode())) {
+                    queue.add(fromLandmark ? e.getFromVertex() : e.getToVertex());
+                    distances.add(d + LandmarkDistances.length(e));
+                }
+            }
+        }
+
+        // If the search is cut short, there may be paths through street vertices not found. Then
+        // only the upper bound is valid, the path found is a real path.
+        for (int l = 0; l < n; ++l) {
+            if (!queue.isEmpty() || !foundStreetVertex || bounds[2 * l] == Long.MAX_VALUE) {
+                bounds[2 * l] = 0;
+            }
+        }
+        return bounds;
+    }
+}
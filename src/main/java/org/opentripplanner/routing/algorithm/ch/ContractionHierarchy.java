@@ -0,0 +1,442 @@
+package org.opentripplanner.routing.algorithm.ch;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import org.opentripplanner.common.TurnRestriction;
+import org.opentripplanner.common.TurnRestrictionType;
+import org.opentripplanner.common.pqueue.BinHeap;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.StreetGraphSnapshot;
+import org.opentripplanner.routing.graph.Vertex;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A contraction hierarchy (CH) of the car street network, used to find long car paths without
+ * exploring the street network between the origin and the destination, see
+ * {@link ContractionHierarchyRouter}.
+ * <p>
+ * Each intersection is a node and each {@link StreetEdge} a car may traverse is an arc, with the
+ * driving time in milliseconds at {@link StreetEdge#getCarSpeed()} as weight. The turn
+ * restrictions can not be represented by arcs between intersections, so the intersections with a
+ * car turn restriction, and their neighbours, are expanded: they have one node for each street
+ * edge leading to them, and the arcs from such a node are the turns allowed after arriving on
+ * that street edge. U-turns are only banned at the expanded intersections, elsewhere a shortest
+ * path does not need them. Turn costs and intersection delays are not included; they are added
+ * when the path is traversed again. Time-dependent turn restrictions are always applied.
+ * <p>
+ * The nodes are contracted one at the time in order of importance, and a shortcut arc is added
+ * between two neighbours of a contracted node if the path through it is the only shortest path
+ * between them. The result is stored as two upward graphs: the arcs to nodes contracted later in
+ * the forward direction and the arcs from nodes contracted later in the backward direction. A
+ * query is a bidirectional Dijkstra search which only goes upward, so it settles a small part of
+ * the nodes even for paths across a country.
+ * <p>
+ * The hierarchy is not updated when the street graph changes. Streets split or removed after the
+ * hierarchy is built (e.g. when bike rental stations are linked in real-time) are detected when
+ * the path is traversed again, see {@link #isInGraph(StreetEdge)}.
+ * <p>
+ * The hierarchy is stored as a graph service and serialized with the graph, so it only holds
+ * arrays and references to the vertices and edges of the graph. The node of a vertex or an edge
+ * is looked up with a {@link NodeIndex}, indexed by the dense vertex and edge indices of the
+ * {@link StreetGraphSnapshot}. These indices are reassigned each time the graph is indexed, so the
+ * node index is created for the current snapshot when it is first used.
+ * <p>
+ * THREAD SAFETY - The hierarchy is immutable after it is built, and can be shared by all searches.
+ * The node index is created on demand; two threads may both create it, the result is the same.
+ */
+public class ContractionHierarchy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int NOT_INDEXED = -1;
+
+    private final StreetEdge[] edges;
+
+    /** The intersections which are not expanded, and the node of each of them. */
+    private final Vertex[] vertices;
+    private final int[] vertexNodes;
+
+    /**
+     * The node of each street edge in {@link #edges} leading to an expanded intersection, or -1 for
+     * the other street edges.
+     */
+    private final int[] turnNodes;
+
+    private final Vertex[] expandedVertices;
+
+    private final int nodeCount;
+
+    private final int[] ranks;
+
+    private final UpwardGraph forward;
+
+    private final UpwardGraph backward;
+
+    /** The node index of the current snapshot, created on demand. */
+    private transient volatile NodeIndex nodeIndex;
+
+    ContractionHierarchy(
+            StreetEdge[] edges,
+            Vertex[] vertices,
+            int[] vertexNodes,
+            int[] turnNodes,
+            Vertex[] expandedVertices,
+            int[] ranks,
+            UpwardGraph forward,
+            UpwardGraph backward
+    ) {
+        this.edges = edges;
+        this.vertices = vertices;
+        this.vertexNodes = vertexNodes;
+        this.turnNodes = turnNodes;
+        this.expandedVertices = expandedVertices;
+        this.nodeCount = ranks.length;
+        this.ranks = ranks;
+        this.forward = forward;
+        this.backward = backward;
+    }
+
+    /** Contract the car street network of the graph. */
+    public static ContractionHierarchy build(Graph graph) {
+        return new ContractionHierarchyBuilder(graph).build();
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /** The number of arcs in the upward graphs, including the shortcuts. */
+    public int arcCount() {
+        return forward.size() + backward.size();
+    }
+
+    /**
+     * Return the node index for the vertices and edges of the given snapshot, the snapshot of the
+     * graph the hierarchy is built for.
+     */
+    public NodeIndex nodeIndex(StreetGraphSnapshot snapshot) {
+        NodeIndex index = nodeIndex;
+        if (index == null || index.snapshot != snapshot) {
+            index = new NodeIndex(snapshot);
+            nodeIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Return true if the street edge is still a part of the graph. The destructive splitting of
+     * streets removes the split edge after the hierarchy is built.
+     */
+    public static boolean isInGraph(StreetEdge edge) {
+        return edge.getFromVertex().getOutgoing().contains(edge);
+    }
+
+    /**
+     * The driving time of an edge in milliseconds, or -1 if a car can not traverse it. All edges
+     * which are not street edges take no time. This is also used to estimate the time of the
+     * temporary edges at the origin and destination.
+     */
+    static int carTime(Edge edge) {
+        if (!(edge instanceof StreetEdge)) { return 0; }
+        StreetEdge se = (StreetEdge) edge;
+        if (!se.getPermission().allows(TraverseMode.CAR) || se.getCarSpeed() <= 0) { return -1; }
+        return (int) Math.round(1000 * se.getDistanceMeters() / se.getCarSpeed());
+    }
+
+    /**
+     * Return true if the street edge has a turn restriction for cars. A turn restriction is applied
+     * at all times, even if it is only active some of the time.
+     */
+    static boolean hasCarTurnRestriction(Graph graph, Edge edge) {
+        for (TurnRestriction restriction : graph.getTurnRestrictions(edge)) {
+            if (restriction.modes != null && restriction.modes.getCar()) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Return true if a car may turn from one street edge onto the next, without making a U-turn
+     * or breaking a turn restriction.
+     */
+    static boolean canTurn(Graph graph, Edge from, Edge to) {
+        if (from.isReverseOf(to) || to.isReverseOf(from)) { return false; }
+        for (TurnRestriction restriction : graph.getTurnRestrictions(from)) {
+            if (restriction.modes == null || !restriction.modes.getCar()) { continue; }
+            if (restriction.type == TurnRestrictionType.ONLY_TURN) {
+                if (!to.isEquivalentTo(restriction.to)) { return false; }
+            }
+            else if (to.isEquivalentTo(restriction.to)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the shortest path from any of the source nodes to any of the target nodes. The time
+     * already spent when a source node is reached, and the time still needed after a target node
+     * is reached, are given as offsets.
+     *
+     * @return the path, or {@code null} if there is no path.
+     */
+    public Path shortestPath(int[] sources, int[] sourceOffsets, int[] targets, int[] targetOffsets) {
+        Search fwd = new Search(forward);
+        Search bwd = new Search(backward);
+        for (int i = 0; i < sources.length; ++i) {
+            fwd.start(sources[i], sourceOffsets[i]);
+        }
+        for (int i = 0; i < targets.length; ++i) {
+            bwd.start(targets[i], targetOffsets[i]);
+        }
+
+        int best = Integer.MAX_VALUE;
+        int meeting = NOT_INDEXED;
+        while (true) {
+            boolean fwdDone = fwd.queue.empty() || fwd.queue.peek_min_key() >= best;
+            boolean bwdDone = bwd.queue.empty() || bwd.queue.peek_min_key() >= best;
+            if (fwdDone && bwdDone) { break; }
+            Search search = fwdDone ? bwd : bwdDone ? fwd
+                    : fwd.queue.peek_min_key() <= bwd.queue.peek_min_key() ? fwd : bwd;
+            Search other = search == fwd ? bwd : fwd;
+
+            int node = search.settleNext();
+            if (node == NOT_INDEXED) { continue; }
+            int otherDistance = other.distance(node);
+            if (otherDistance != Integer.MAX_VALUE) {
+                int total = search.distance(node) + otherDistance;
+                if (total < best) {
+                    best = total;
+                    meeting = node;
+                }
+            }
+        }
+        if (meeting == NOT_INDEXED) { return null; }
+
+        // Collect the upward arcs from the source to the meeting node and down to the target,
+        // then replace the shortcuts by the arcs they stand for.
+        TIntArrayList nodes = new TIntArrayList();
+        for (int node = meeting; node != NOT_INDEXED; node = fwd.parent(node)) {
+            nodes.add(node);
+        }
+        nodes.reverse();
+        for (int node = bwd.parent(meeting); node != NOT_INDEXED; node = bwd.parent(node)) {
+            nodes.add(node);
+        }
+        List<StreetEdge> pathEdges = new ArrayList<>();
+        for (int i = 1; i < nodes.size(); ++i) {
+            unpack(nodes.get(i - 1), nodes.get(i), pathEdges);
+        }
+        return new Path(nodes.get(0), nodes.get(nodes.size() - 1), pathEdges);
+    }
+
+    /**
+     * Add the street edges of the arc between the nodes to the path. A shortcut is replaced by the
+     * arcs to and from its middle node, until no shortcuts are left.
+     */
+    private void unpack(int from, int to, List<StreetEdge> path) {
+        TIntArrayList stack = new TIntArrayList();
+        stack.add(to);
+        int current = from;
+        while (!stack.isEmpty()) {
+            int next = stack.get(stack.size() - 1);
+            int via = viaOf(current, next);
+            if (via < 0) {
+                path.add(edges[-1 - via]);
+                stack.removeAt(stack.size() - 1);
+                current = next;
+            }
+            else {
+                stack.add(via);
+            }
+        }
+    }
+
+    /**
+     * The middle node of the best arc between the nodes if it is a shortcut, or {@code -1 - e}
+     * where {@code e} is the index of its street edge. An arc is stored in the upward graph of
+     * the node contracted first.
+     */
+    private int viaOf(int from, int to) {
+        if (ranks[from] < ranks[to]) {
+            return forward.viaOfBest(from, to);
+        }
+        return backward.viaOfBest(to, from);
+    }
+
+    @Override
+    public String toString() {
+        return "ContractionHierarchy{nodes: " + nodeCount + ", arcs: " + arcCount()
+                + ", expanded intersections: " + expandedVertices.length + "}";
+    }
+
+    /**
+     * The nodes of the vertices and street edges, indexed by their dense index in a
+     * {@link StreetGraphSnapshot}. Vertices and edges not in the snapshot, like the temporary
+     * vertices of a request, are not a part of the hierarchy.
+     */
+    public class NodeIndex {
+        private final StreetGraphSnapshot snapshot;
+        private final int[] nodeByVertex;
+        private final boolean[] expanded;
+        private final int[] nodeByEdge;
+
+        private NodeIndex(StreetGraphSnapshot snapshot) {
+            this.snapshot = snapshot;
+            this.nodeByVertex = new int[snapshot.vertexCount()];
+            this.expanded = new boolean[snapshot.vertexCount()];
+            this.nodeByEdge = new int[snapshot.edgeCount()];
+            Arrays.fill(nodeByVertex, NOT_INDEXED);
+            Arrays.fill(nodeByEdge, NOT_INDEXED);
+            for (int i = 0; i < vertices.length; ++i) {
+                int v = snapshot.indexOf(vertices[i]);
+                if (v >= 0) { nodeByVertex[v] = vertexNodes[i]; }
+            }
+            for (Vertex vertex : expandedVertices) {
+                int v = snapshot.indexOf(vertex);
+                if (v >= 0) { expanded[v] = true; }
+            }
+            for (int i = 0; i < edges.length; ++i) {
+                int e = snapshot.indexOf(edges[i]);
+                if (e >= 0) { nodeByEdge[e] = turnNodes[i]; }
+            }
+        }
+
+        /**
+         * Return true if the intersection has one node for each street edge leading to it, see
+         * {@link #nodeArrivingBy(Edge)}.
+         */
+        public boolean isExpanded(Vertex v) {
+            int i = snapshot.indexOf(v);
+            return i >= 0 && expanded[i];
+        }
+
+        /**
+         * The node of an intersection which is not expanded, or -1 if the intersection is expanded
+         * or not a part of the hierarchy.
+         */
+        public int nodeOf(Vertex v) {
+            int i = snapshot.indexOf(v);
+            return i < 0 ? NOT_INDEXED : nodeByVertex[i];
+        }
+
+        /**
+         * The node reached by driving along the given street edge: the node of the intersection at
+         * its end, or the node of the street edge if the intersection is expanded. Return -1 if the
+         * street edge is not a part of the hierarchy.
+         */
+        public int nodeArrivingBy(Edge edge) {
+            int i = snapshot.indexOf(edge);
+            int node = i < 0 ? NOT_INDEXED : nodeByEdge[i];
+            return node != NOT_INDEXED ? node : nodeOf(edge.getToVertex());
+        }
+    }
+
+    /** A path found in the hierarchy. */
+    public static class Path {
+        public final int sourceNode;
+        public final int targetNode;
+        /** The street edges from the source to the target node. */
+        public final List<StreetEdge> edges;
+
+        Path(int sourceNode, int targetNode, List<StreetEdge> edges) {
+            this.sourceNode = sourceNode;
+            this.targetNode = targetNode;
+            this.edges = edges;
+        }
+    }
+
+    /**
+     * The arcs to (or from, in the backward graph) the nodes contracted later than a node, in
+     * compressed sparse row format. The via value of an arc is the middle node of a shortcut or
+     * {@code -1 - e} for the arc of street edge {@code e}.
+     */
+    static class UpwardGraph implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] start;
+        private final int[] neighbors;
+        private final int[] weights;
+        private final int[] vias;
+
+        UpwardGraph(int[] start, int[] neighbors, int[] weights, int[] vias) {
+            this.start = start;
+            this.neighbors = neighbors;
+            this.weights = weights;
+            this.vias = vias;
+        }
+
+        int size() {
+            return neighbors.length;
+        }
+
+        int viaOfBest(int node, int neighbor) {
+            int best = NOT_INDEXED;
+            for (int i = start[node]; i < start[node + 1]; ++i) {
+                if (neighbors[i] == neighbor && (best == NOT_INDEXED || weights[i] < weights[best])) {
+                    best = i;
+                }
+            }
+            if (best == NOT_INDEXED) {
+                throw new IllegalStateException("No arc between nodes " + node + " and " + neighbor);
+            }
+            return vias[best];
+        }
+    }
+
+    /** One direction of the bidirectional query, it only follows the arcs in its upward graph. */
+    private static class Search {
+        private final UpwardGraph graph;
+        private final TIntIntMap distances = new TIntIntHashMap(64, 0.5f, NOT_INDEXED, Integer.MAX_VALUE);
+        private final TIntIntMap parents = new TIntIntHashMap(64, 0.5f, NOT_INDEXED, NOT_INDEXED);
+        private final BinHeap<Integer> queue = new BinHeap<>(64);
+
+        Search(UpwardGraph graph) {
+            this.graph = graph;
+        }
+
+        void start(int node, int distance) {
+            if (distance < distance(node)) {
+                distances.put(node, distance);
+                parents.remove(node);
+                queue.insert(node, distance);
+            }
+        }
+
+        int distance(int node) {
+            return distances.get(node);
+        }
+
+        int parent(int node) {
+            return parents.get(node);
+        }
+
+        /**
+         * Settle the next node in the queue and relax its upward arcs. Return the node, or -1 if
+         * the queue entry was replaced by a shorter distance.
+         */
+        int settleNext() {
+            int d = (int) queue.peek_min_key();
+            int node = queue.extract_min();
+            if (d > distance(node)) { return NOT_INDEXED; }
+            for (int i = graph.start[node]; i < graph.start[node + 1]; ++i) {
+                int next = graph.neighbors[i];
+                int dn = d + graph.weights[i];
+                if (dn < distance(next)) {
+                    distances.put(next, dn);
+                    parents.put(next, node);
+                    queue.insert(next, dn);
+                }
+            }
+            return node;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package org.opentripplanner.routing.algorithm.ch;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import org.opentripplanner.common.pqueue.BinHeap;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.opentripplanner.routing.algorithm.ch.ContractionHierarchy.NOT_INDEXED;
+
+/**
+ * Contract the car street graph, see {@link ContractionHierarchy}.
+ * <p>
+ * The node to contract next is the node with the lowest priority: the number of shortcuts added
+ * minus the number of arcs removed, plus the number of neighbours already contracted, which
+ * spreads the contraction evenly over the graph. The priorities are updated lazily, a node is
+ * only contracted if its priority is still the lowest after it is computed again.
+ * <p>
+ * A shortcut is not needed if a witness path, a path between the neighbours which is not longer
+ * and does not go through the node, is found. The witness search is limited to a number of
+ * settled nodes; when it gives up, the shortcut is added. This gives more shortcuts than needed,
+ * but never a wrong result.
+ */
+class ContractionHierarchyBuilder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContractionHierarchyBuilder.class);
+
+    private static final int MAX_WITNESS_SETTLED_NODES = 200;
+
+    private final Graph graph;
+
+    private StreetEdge[] edges;
+    private TObjectIntMap<Vertex> vertexNodes;
+    private TObjectIntMap<Edge> turnNodes;
+    private Set<Vertex> expandedVertices;
+
+    /** The arcs between the nodes not contracted yet, including the shortcuts added. */
+    private Arcs[] outArcs;
+    private Arcs[] inArcs;
+
+    private boolean[] contracted;
+    private int[] contractedNeighbors;
+
+    /** The witness search state, reset after each search. */
+    private int[] witnessDistance;
+    private final TIntArrayList witnessTouched = new TIntArrayList();
+    private final BinHeap<Integer> witnessQueue = new BinHeap<>(64);
+
+    ContractionHierarchyBuilder(Graph graph) {
+        this.graph = graph;
+    }
+
+    ContractionHierarchy build() {
+        long start = System.currentTimeMillis();
+        createNodes();
+        int n = outArcs.length;
+        LOG.info("Contracting {} nodes of {} car street edges.", n, edges.length);
+
+        contracted = new boolean[n];
+        contractedNeighbors = new int[n];
+        witnessDistance = new int[n];
+        Arrays.fill(witnessDistance, Integer.MAX_VALUE);
+
+        BinHeap<Integer> queue = new BinHeap<>(n);
+        for (int v = 0; v < n; ++v) {
+            queue.insert(v, priority(v));
+        }
+
+        int[] ranks = new int[n];
+        List<Arcs> upwardOut = new ArrayList<>(n);
+        List<Arcs> upwardIn = new ArrayList<>(n);
+        for (int v = 0; v < n; ++v) {
+            upwardOut.add(null);
+            upwardIn.add(null);
+        }
+
+        int rank = 0;
+        while (!queue.empty()) {
+            int v = queue.extract_min();
+            // Lazy update: contract the node only if it is still the best candidate
+            int priority = priority(v);
+            if (!queue.empty() && priority > queue.peek_min_key()) {
+                queue.insert(v, priority);
+                continue;
+            }
+            contract(v, false);
+            contracted[v] = true;
+            ranks[v] = rank++;
+            upwardOut.set(v, outArcs[v].withoutContracted(contracted));
+            upwardIn.set(v, inArcs[v].withoutContracted(contracted));
+            for (int i = 0; i < outArcs[v].size; ++i) { ++contractedNeighbors[outArcs[v].nodes[i]]; }
+            for (int i = 0; i < inArcs[v].size; ++i) { ++contractedNeighbors[inArcs[v].nodes[i]]; }
+            // The arcs of the contracted node are not needed any more
+            outArcs[v] = null;
+            inArcs[v] = null;
+            if (rank % 100_000 == 0) {
+                LOG.info("Contracted {} of {} nodes.", rank, n);
+            }
+        }
+
+        // The hierarchy is serialized with the graph, so the maps are stored as arrays
+        Vertex[] vertices = vertexNodes.keys(new Vertex[0]);
+        int[] nodes = new int[vertices.length];
+        for (int i = 0; i < vertices.length; ++i) {
+            nodes[i] = vertexNodes.get(vertices[i]);
+        }
+        int[] edgeTurnNodes = new int[edges.length];
+        for (int i = 0; i < edges.length; ++i) {
+            edgeTurnNodes[i] = turnNodes.get(edges[i]);
+        }
+        ContractionHierarchy ch = new ContractionHierarchy(
+                edges, vertices, nodes, edgeTurnNodes, expandedVertices.toArray(new Vertex[0]),
+                ranks, toUpwardGraph(upwardOut), toUpwardGraph(upwardIn)
+        );
+        LOG.info("Contraction hierarchy built in {} s: {}",
+                (System.currentTimeMillis() - start) / 1000, ch);
+        return ch;
+    }
+
+    /**
+     * Create a node for each intersection, or for each street edge leading to an expanded
+     * intersection, and an arc for each street edge a car may traverse. An intersection is
+     * expanded if a street edge leading to it, or to one of its neighbours, has a car turn
+     * restriction; the U-turns before a restricted turn are then banned too.
+     */
+    private void createNodes() {
+        List<StreetEdge> carEdges = new ArrayList<>();
+        Set<Vertex> restricted = new HashSet<>();
+        for (Vertex v : graph.getVertices()) {
+            for (Edge e : v.getOutgoing()) {
+                if (e instanceof StreetEdge && ContractionHierarchy.carTime(e) >= 0) {
+                    carEdges.add((StreetEdge) e);
+                    if (ContractionHierarchy.hasCarTurnRestriction(graph, e)) {
+                        restricted.add(e.getToVertex());
+                    }
+                }
+            }
+        }
+        edges = carEdges.toArray(new StreetEdge[0]);
+        expandedVertices = new HashSet<>(restricted);
+        for (StreetEdge e : edges) {
+            if (restricted.contains(e.getFromVertex())) { expandedVertices.add(e.getToVertex()); }
+            if (restricted.contains(e.getToVertex())) { expandedVertices.add(e.getFromVertex()); }
+        }
+
+        int n = 0;
+        vertexNodes = new TObjectIntHashMap<>(100, 0.5f, NOT_INDEXED);
+        turnNodes = new TObjectIntHashMap<>(100, 0.5f, NOT_INDEXED);
+        for (StreetEdge e : edges) {
+            for (Vertex v : new Vertex[] { e.getFromVertex(), e.getToVertex() }) {
+                if (!expandedVertices.contains(v) && !vertexNodes.containsKey(v)) {
+                    vertexNodes.put(v, n++);
+                }
+            }
+            if (expandedVertices.contains(e.getToVertex())) {
+                turnNodes.put(e, n++);
+            }
+        }
+
+        outArcs = new Arcs[n];
+        inArcs = new Arcs[n];
+        for (int i = 0; i < n; ++i) {
+            outArcs[i] = new Arcs();
+            inArcs[i] = new Arcs();
+        }
+        for (int i = 0; i < edges.length; ++i) {
+            StreetEdge e = edges[i];
+            int to = turnNodes.containsKey(e) ? turnNodes.get(e) : vertexNodes.get(e.getToVertex());
+            int time = ContractionHierarchy.carTime(e);
+            Vertex from = e.getFromVertex();
+            if (!expandedVertices.contains(from)) {
+                addArc(vertexNodes.get(from), to, time, -1 - i);
+                continue;
+            }
+            for (Edge before : from.getIncoming()) {
+                int node = turnNodes.get(before);
+                if (node != NOT_INDEXED && ContractionHierarchy.canTurn(graph, before, e)) {
+                    addArc(node, to, time, -1 - i);
+                }
+            }
+        }
+    }
+
+    /** Add an arc, only the fastest of parallel street edges is kept. */
+    private void addArc(int from, int to, int weight, int via) {
+        if (from == to) { return; }
+        outArcs[from].addOrImprove(to, weight, via);
+        inArcs[to].addOrImprove(from, weight, via);
+    }
+
+    private int priority(int v) {
+        int degree = inArcs[v].countNotContracted(contracted) + outArcs[v].countNotContracted(contracted);
+        return contract(v, true) - degree + contractedNeighbors[v];
+    }
+
+    /**
+     * Add the shortcuts needed to contract the node, or only count them if {@code simulate} is
+     * true. Return the number of shortcuts.
+     */
+    private int contract(int v, boolean simulate) {
+        Arcs in = inArcs[v];
+        Arcs out = outArcs[v];
+        int maxOut = 0;
+        for (int j = 0; j < out.size; ++j) {
+            if (!contracted[out.nodes[j]]) { maxOut = Math.max(maxOut, out.weights[j]); }
+        }
+        int shortcuts = 0;
+        for (int i = 0; i < in.size; ++i) {
+            int u = in.nodes[i];
+            if (contracted[u]) { continue; }
+            int toV = in.weights[i];
+            witnessSearch(u, v, toV + maxOut);
+            for (int j = 0; j < out.size; ++j) {
+                int w = out.nodes[j];
+                if (contracted[w] || w == u) { continue; }
+                int viaV = toV + out.weights[j];
+                if (witnessDistance[w] > viaV) {
+                    ++shortcuts;
+                    if (!simulate) {
+                        outArcs[u].addOrImprove(w, viaV, v);
+                        inArcs[w].addOrImprove(u, viaV, v);
+                    }
+                }
+            }
+            resetWitnessSearch();
+        }
+        return shortcuts;
+    }
+
+    /**
+     * A Dijkstra search from the node over the nodes not contracted yet, without going through the
+     * given node, up to the given distance or the max number of settled nodes.
+     */
+    private void witnessSearch(int source, int skip, int maxDistance) {
+        BinHeap<Integer> queue = witnessQueue;
+        witnessDistance[source] = 0;
+        witnessTouched.add(source);
+        queue.insert(source, 0);
+        int settled = 0;
+        while (!queue.empty() && settled < MAX_WITNESS_SETTLED_NODES) {
+            int d = (int) queue.peek_min_key();
+            int node = queue.extract_min();
+            if (d > witnessDistance[node]) { continue; }
+            if (d > maxDistance) { break; }
+            ++settled;
+            Arcs arcs = outArcs[node];
+            for (int i = 0; i < arcs.size; ++i) {
+                int next = arcs.nodes[i];
+                if (next == skip || contracted[next]) { continue; }
+                int dn = d + arcs.weights[i];
+                if (dn < witnessDistance[next]) {
+                    if (witnessDistance[next] == Integer.MAX_VALUE) { witnessTouched.add(next); }
+                    witnessDistance[next] = dn;
+                    queue.insert(next, dn);
+                }
+            }
+        }
+    }
+
+    private void resetWitnessSearch() {
+        for (int i = 0; i < witnessTouched.size(); ++i) {
+            witnessDistance[witnessTouched.get(i)] = Integer.MAX_VALUE;
+        }
+        witnessTouched.resetQuick();
+        witnessQueue.clear();
+    }
+
+    private static ContractionHierarchy.UpwardGraph toUpwardGraph(List<Arcs> arcs) {
+        int n = arcs.size();
+        int[] start = new int[n + 1];
+        for (int v = 0; v < n; ++v) {
+            start[v + 1] = start[v] + arcs.get(v).size;
+        }
+        int[] neighbors = new int[start[n]];
+        int[] weights = new int[start[n]];
+        int[] vias = new int[start[n]];
+        for (int v = 0; v < n; ++v) {
+            Arcs a = arcs.get(v);
+            System.arraycopy(a.nodes, 0, neighbors, start[v], a.size);
+            System.arraycopy(a.weights, 0, weights, start[v], a.size);
+            System.arraycopy(a.vias, 0, vias, start[v], a.size);
+        }
+        return new ContractionHierarchy.UpwardGraph(start, neighbors, weights, vias);
+    }
+
+    /** A growable list of arcs to (or from) a node. */
+    private static class Arcs {
+        private int size = 0;
+        private int[] nodes = new int[4];
+        private int[] weights = new int[4];
+        private int[] vias = new int[4];
+
+        void add(int node, int weight, int via) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * size);
+                weights = Arrays.copyOf(weights, 2 * size);
+                vias = Arrays.copyOf(vias, 2 * size);
+            }
+            nodes[size] = node;
+            weights[size] = weight;
+            vias[size] = via;
+            ++size;
+        }
+
+        /** Add an arc, or replace the arc to the same node if the new arc is shorter. */
+        void addOrImprove(int node, int weight, int via) {
+            for (int i = 0; i < size; ++i) {
+                if (nodes[i] == node) {
+                    if (weight < weights[i]) {
+                        weights[i] = weight;
+                        vias[i] = via;
+                    }
+                    return;
+                }
+            }
+            add(node, weight, via);
+        }
+
+        int countNotContracted(boolean[] contracted) {
+            int count = 0;
+            for (int i = 0; i < size; ++i) {
+                if (!contracted[nodes[i]]) { ++count; }
+            }
+            return count;
+        }
+
+        Arcs withoutContracted(boolean[] contracted) {
+            Arcs result = new Arcs();
+            for (int i = 0; i < size; ++i) {
+                if (!contracted[nodes[i]]) { result.add(nodes[i], weights[i], vias[i]); }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package org.opentripplanner.routing.algorithm.ch;
+
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.core.RoutingContext;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.TemporaryPartialStreetEdge;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.GraphPath;
+import org.opentripplanner.routing.vertextype.TemporaryVertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Find a car path with the {@link ContractionHierarchy} of the graph. The path is returned as a
+ * {@link GraphPath}, like the paths found by the {@link org.opentripplanner.routing.algorithm.astar.AStar}
+ * search, so the itineraries are created the same way.
+ * <p>
+ * The origin and destination are normally temporary vertices linked to the middle of a street. The
+ * temporary edges from the origin are followed until they reach an intersection, which gives the
+ * source nodes; the target nodes are found from the destination in the same way. After the
+ * hierarchy search the street edges on the path are traversed with the request, so the states
+ * hold the same times, weights and turn costs as in an A* search.
+ * <p>
+ * No path is returned if the path can not be traversed again, e.g. because it makes a U-turn at
+ * an intersection which is not expanded or a street was removed after the hierarchy was built, or
+ * if the origin and destination are on the same street. The caller then uses the A* search.
+ */
+public class ContractionHierarchyRouter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContractionHierarchyRouter.class);
+
+    private final Graph graph;
+
+    private final ContractionHierarchy ch;
+
+    private final ContractionHierarchy.NodeIndex nodes;
+
+    public ContractionHierarchyRouter(Graph graph, ContractionHierarchy ch) {
+        this.graph = graph;
+        this.ch = ch;
+        this.nodes = ch.nodeIndex(graph.getStreetGraphSnapshot());
+    }
+
+    /**
+     * Return true if the graph has a contraction hierarchy and the request is a plain car search:
+     * car only, departing at the given time, without any intermediate places. The graph must be
+     * indexed, the hierarchy nodes are looked up by the street graph snapshot indices.
+     */
+    public static boolean isSupported(Graph graph, RoutingRequest request) {
+        return graph.getService(ContractionHierarchy.class) != null
+                && graph.getStreetGraphSnapshot() != null
+                && request.rctx != null
+                && request.rctx.fromVertices != null
+                && request.rctx.toVertices != null
+                && request.streetSubRequestModes.equals(new TraverseModeSet(TraverseMode.CAR))
+                && !request.arriveBy
+                && !request.oneToMany
+                && !request.hasIntermediatePlaces()
+                && !request.parkAndRide
+                && !request.carPickup;
+    }
+
+    /**
+     * Find the fastest path for the request, or {@code null} if the hierarchy can not be used for
+     * it.
+     */
+    public GraphPath route(RoutingRequest request) {
+        RoutingContext rctx = request.rctx;
+        Map<Integer, Access> sources = findSources(rctx);
+        Map<Integer, Access> targets = findTargets(rctx);
+        if (sources == null || targets == null || sources.isEmpty() || targets.isEmpty()) {
+            return null;
+        }
+
+        int[] sourceNodes = new int[sources.size()];
+        int[] sourceOffsets = new int[sources.size()];
+        int i = 0;
+        for (Access access : sources.values()) {
+            sourceNodes[i] = access.node;
+            sourceOffsets[i++] = access.time;
+        }
+        int[] targetNodes = new int[targets.size()];
+        int[] targetOffsets = new int[targets.size()];
+        i = 0;
+        for (Access access : targets.values()) {
+            targetNodes[i] = access.node;
+            targetOffsets[i++] = access.time;
+        }
+
+        ContractionHierarchy.Path path = ch.shortestPath(
+                sourceNodes, sourceOffsets, targetNodes, targetOffsets
+        );
+        if (path == null) { return null; }
+        for (StreetEdge e : path.edges) {
+            if (!ContractionHierarchy.isInGraph(e)) { return null; }
+        }
+        Access source = sources.get(path.sourceNode);
+        Access target = targets.get(path.targetNode);
+        List<Edge> edges = new ArrayList<>(source.edges);
+        edges.addAll(path.edges);
+        edges.addAll(target.edges);
+        return traverse(request, source.vertex, edges);
+    }
+
+    /**
+     * Traverse the edges from the given vertex with the request. Return {@code null} if an edge
+     * can not be traversed, e.g. because of a U-turn or a time-dependent restriction.
+     */
+    private static GraphPath traverse(RoutingRequest request, Vertex from, List<Edge> edges) {
+        State state = new State(from, request);
+        for (Edge edge : edges) {
+            State next = null;
+            for (State s = edge.traverse(state); s != null; s = s.getNextResult()) {
+                if (s.getVertex() == edge.getToVertex()) {
+                    next = s;
+                    break;
+                }
+            }
+            if (next == null) {
+                LOG.debug("The contraction hierarchy path can not be traversed at {}.", edge);
+                return null;
+            }
+            state = next;
+        }
+        if (!request.rctx.toVertices.contains(state.getVertex()) || !state.isFinal()) {
+            return null;
+        }
+        return new GraphPath(state, true);
+    }
+
+    /**
+     * Follow the temporary edges from the origin until they reach an intersection, which gives the
+     * source nodes. At an expanded intersection reached without a street edge, e.g. when the
+     * origin is the intersection itself, the search continues along its street edges. The access
+     * time is estimated from the street edge lengths, like the hierarchy weights. Return
+     * {@code null} if the destination is reached on the temporary edges alone, the origin and
+     * destination are then so close that the A* search is used.
+     */
+    private Map<Integer, Access> findSources(RoutingContext rctx) {
+        Map<Integer, Access> result = new HashMap<>();
+        Map<Vertex, Access> reached = new HashMap<>();
+        Deque<Access> todo = new ArrayDeque<>();
+        for (Vertex v : rctx.fromVertices) {
+            Access access = new Access(v, v, 0, Collections.emptyList(), ContractionHierarchy.NOT_INDEXED);
+            if (!(v instanceof TemporaryVertex) && !nodes.isExpanded(v)) {
+                addAccess(result, access.withNode(nodes.nodeOf(v)));
+            }
+            else {
+                reached.put(v, access);
+                todo.add(access);
+            }
+        }
+        while (!todo.isEmpty()) {
+            Access current = todo.poll();
+            for (Edge e : rctx.getOutgoing(current.end)) {
+                int time = ContractionHierarchy.carTime(e);
+                if (time < 0) { continue; }
+                Vertex next = e.getToVertex();
+                List<Edge> edges = new ArrayList<>(current.edges);
+                edges.add(e);
+                Access access = new Access(current.vertex, next, current.time + time, edges,
+                        ContractionHierarchy.NOT_INDEXED);
+                Edge street = streetEdgeEndingAt(e, next);
+                if (street != null && nodes.nodeArrivingBy(street) != ContractionHierarchy.NOT_INDEXED) {
+                    addAccess(result, access.withNode(nodes.nodeArrivingBy(street)));
+                }
+                else if (next instanceof TemporaryVertex) {
+                    if (rctx.toVertices.contains(next)) { return null; }
+                    Access old = reached.get(next);
+                    if (old == null || access.time < old.time) {
+                        reached.put(next, access);
+                        todo.add(access);
+                    }
+                }
+                else if (!nodes.isExpanded(next)) {
+                    int node = nodes.nodeOf(next);
+                    if (node != ContractionHierarchy.NOT_INDEXED) {
+                        addAccess(result, access.withNode(node));
+                    }
+                }
+                else if (!reached.containsKey(next)) {
+                    reached.put(next, access);
+                    todo.add(access);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Follow the temporary edges back from the destination until they reach an intersection,
+     * which gives the target nodes. At an expanded intersection the target nodes are the street
+     * edges arriving there from which a car may turn onto the first edge to the destination.
+     */
+    private Map<Integer, Access> findTargets(RoutingContext rctx) {
+        Map<Integer, Access> result = new HashMap<>();
+        Map<Vertex, Access> reached = new HashMap<>();
+        Deque<Access> todo = new ArrayDeque<>();
+        for (Vertex v : rctx.toVertices) {
+            Access access = new Access(v, v, 0, Collections.emptyList(), ContractionHierarchy.NOT_INDEXED);
+            if (v instanceof TemporaryVertex) {
+                reached.put(v, access);
+                todo.add(access);
+            }
+            else {
+                addTargets(result, access, null);
+            }
+        }
+        while (!todo.isEmpty()) {
+            Access current = todo.poll();
+            for (Edge e : rctx.getIncoming(current.end)) {
+                int time = ContractionHierarchy.carTime(e);
+                if (time < 0) { continue; }
+                Vertex previous = e.getFromVertex();
+                List<Edge> edges = new ArrayList<>(current.edges.size() + 1);
+                edges.add(e);
+                edges.addAll(current.edges);
+                Access access = new Access(current.vertex, previous, current.time + time, edges,
+                        ContractionHierarchy.NOT_INDEXED);
+                if (previous instanceof TemporaryVertex) {
+                    if (rctx.fromVertices.contains(previous)) { return null; }
+                    Access old = reached.get(previous);
+                    if (old == null || access.time < old.time) {
+                        reached.put(previous, access);
+                        todo.add(access);
+                    }
+                }
+                else {
+                    addTargets(result, access, e);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Add the target nodes at the intersection the access starts at, from which a car may continue
+     * on the given edge.
+     */
+    private void addTargets(Map<Integer, Access> result, Access access, Edge first) {
+        Vertex v = access.end;
+        if (!nodes.isExpanded(v)) {
+            int node = nodes.nodeOf(v);
+            if (node != ContractionHierarchy.NOT_INDEXED) {
+                addAccess(result, access.withNode(node));
+            }
+            return;
+        }
+        Edge street = first == null ? null : streetEdgeStartingAt(first, v);
+        for (Edge before : v.getIncoming()) {
+            int node = nodes.nodeArrivingBy(before);
+            if (node == ContractionHierarchy.NOT_INDEXED) { continue; }
+            if (street == null || ContractionHierarchy.canTurn(graph, before, street)) {
+                addAccess(result, access.withNode(node));
+            }
+        }
+    }
+
+    private static void addAccess(Map<Integer, Access> result, Access access) {
+        Access old = result.get(access.node);
+        if (old == null || access.time < old.time) {
+            result.put(access.node, access);
+        }
+    }
+
+    /**
+     * The street edge driven along when arriving at the vertex on the given edge: the edge itself,
+     * or the street edge split by a temporary partial street edge, which has the same turn
+     * restrictions. Return {@code null} for other edges.
+     */
+    private static Edge streetEdgeEndingAt(Edge e, Vertex v) {
+        if (e instanceof TemporaryPartialStreetEdge) {
+            Edge parent = ((TemporaryPartialStreetEdge) e).getParentEdge();
+            return parent.getToVertex() == v ? parent : null;
+        }
+        return e instanceof StreetEdge ? e : null;
+    }
+
+    /** The street edge driven along when leaving the vertex on the given edge, see above. */
+    private static Edge streetEdgeStartingAt(Edge e, Vertex v) {
+        if (e instanceof TemporaryPartialStreetEdge) {
+            Edge parent = ((TemporaryPartialStreetEdge) e).getParentEdge();
+            return parent.getFromVertex() == v ? parent : null;
+        }
+        return e instanceof StreetEdge ? e : null;
+    }
+
+    /**
+     * A path on the temporary edges (or a single street edge) between the origin or destination and
+     * a node of the hierarchy.
+     */
+    private static class Access {
+        /** The origin of a source, or the destination of a target. */
+        final Vertex vertex;
+        /** The last vertex reached by the search. */
+        final Vertex end;
+        /** The estimated time of the edges in milliseconds. */
+        final int time;
+        /** The edges in the direction of travel. */
+        final List<Edge> edges;
+        final int node;
+
+        Access(Vertex vertex, Vertex end, int time, List<Edge> edges, int node) {
+            this.vertex = vertex;
+            this.end = end;
+            this.time = time;
+            this.edges = edges;
+            this.node = node;
+        }
+
+        Access withNode(int node) {
+            return new Access(vertex, end, time, edges, node);
+        }
+    }
+}
@@ -202,7 +202,7 @@ public class RaptorPathToItineraryMapper {
     private void mapTransferLeg(List<Leg> legs, TransferPathLeg<TripSchedule> pathLeg) {
         Stop transferFromStop = transitLayer.getStopByIndex(pathLeg.fromStop());
         Stop transferToStop = transitLayer.getStopByIndex(pathLeg.toStop());
-        Transfer transfer = transitLayer.getTransferByStopIndex().get(pathLeg.fromStop()).stream().filter(t -> t.getToStop() == pathLeg.toStop()).findFirst().get();
+        Transfer transfer = transitLayer.getTransferIndex().getTransfer(pathLeg.fromStop(), pathLeg.toStop());
 
         Place from = mapStopToPlace(transferFromStop, null);
         Place to = mapStopToPlace(transferToStop, null);
@@ -2,6 +2,7 @@ package org.opentripplanner.routing.algorithm.raptor.router.street;
 
 import org.opentripplanner.graph_builder.module.NearbyStopFinder;
 import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.api.request.StreetMode;
 import org.opentripplanner.routing.graph.Vertex;
 import org.opentripplanner.routing.graphfinder.NearbyStop;
 import org.slf4j.Logger;
@@ -21,16 +22,22 @@ public class AccessEgressRouter {
 
     /**
      *
-     * @param rr the current routing request
+     * @param rr the current routing request - READ ONLY
+     * @param nonTransitRoutingRequest the street request for the access or egress mode, created
+     *                   with {@link RoutingRequest#getStreetSearchRequest} before the search is
+     *                   started. The search only modifies this request and its routing context.
      * @param fromTarget whether to route from or towards the point provided in the routing request
      *                   (access or egress)
      * @param distanceMeters the maximum street distance to search for access/egress stops
+     * @param cache the result is looked up in this cache before a search is done
      * @return Transfer objects by access/egress stop
      */
     public static Collection<NearbyStop> streetSearch (
         RoutingRequest rr,
+        RoutingRequest nonTransitRoutingRequest,
         boolean fromTarget,
-        int distanceMeters
+        int distanceMeters,
+        NearbyStopCache cache
     ) {
         // TODO OTP2 This has to be done because we have not separated the main RoutingRequest from
         //      the subrequest for street searches. From/to vertices are already set based on the main
@@ -39,11 +46,27 @@ public class AccessEgressRouter {
         //      main request.
         Set<Vertex> vertices = fromTarget ^ rr.arriveBy ? rr.rctx.toVertices : rr.rctx.fromVertices;
 
-        RoutingRequest nonTransitRoutingRequest = rr.getStreetSearchRequest(
-            fromTarget ? rr.modes.egressMode : rr.modes.accessMode
+        StreetMode streetMode = fromTarget ? rr.modes.egressMode : rr.modes.accessMode;
+
+        return cache.get(
+            nonTransitRoutingRequest,
+            vertices,
+            fromTarget,
+            streetMode,
+            distanceMeters,
+            () -> streetSearch(nonTransitRoutingRequest, vertices, fromTarget, distanceMeters)
         );
+    }
 
-        NearbyStopFinder nearbyStopFinder = new NearbyStopFinder(rr.rctx.graph, distanceMeters, true);
+    private static Collection<NearbyStop> streetSearch(
+        RoutingRequest nonTransitRoutingRequest,
+        Set<Vertex> vertices,
+        boolean fromTarget,
+        int distanceMeters
+    ) {
+        NearbyStopFinder nearbyStopFinder = new NearbyStopFinder(
+            nonTransitRoutingRequest.rctx.graph, distanceMeters, true
+        );
         // We set removeTempEdges to false because this is a sub-request - the temporary edges for the origin and
         // target vertex will be cleaned up at the end of the super-request, and we don't want that to happen twice.
         List<NearbyStop> nearbyStopList = nearbyStopFinder.findNearbyStopsViaStreets(
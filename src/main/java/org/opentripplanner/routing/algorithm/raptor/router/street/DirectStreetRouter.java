@@ -27,16 +27,28 @@ public class DirectStreetRouter {
   private static final double MAX_BIKE_DISTANCE_METERS = 150_000;
   private static final double MAX_CAR_DISTANCE_METERS  = 500_000;
 
-  public static List<Itinerary> route(Router router, RoutingRequest request) {
-    request.setRoutingContext(router.graph);
-    try {
-      if (request.modes.directMode == null) {
-        return Collections.emptyList();
-      }
-      if(!streetDistanceIsReasonable(request)) { return Collections.emptyList(); }
-
-      RoutingRequest nonTransitRequest = request.getStreetSearchRequest(request.modes.directMode);
+  /**
+   * Create the street request for the direct search, with its own routing context. Return
+   * {@code null} if there is no direct mode or the distance is too long for a direct search. The
+   * routing context of the given request must be set.
+   */
+  public static RoutingRequest createStreetRequest(RoutingRequest request) {
+    if (request.modes.directMode == null) { return null; }
+    if (!streetDistanceIsReasonable(request)) { return null; }
+    return request.getStreetSearchRequest(request.modes.directMode);
+  }
 
+  /**
+   * @param nonTransitRequest The street request created by {@link #createStreetRequest}, the
+   *                          search only modifies this request and its routing context.
+   */
+  public static List<Itinerary> route(
+      Router router,
+      RoutingRequest request,
+      RoutingRequest nonTransitRequest
+  ) {
+    if (nonTransitRequest == null) { return Collections.emptyList(); }
+    try {
       // we could also get a persistent router-scoped GraphPathFinder but there's no setup cost here
       GraphPathFinder gpFinder = new GraphPathFinder(router);
       List<GraphPath> paths = gpFinder.graphPathFinderEntryPoint(nonTransitRequest);
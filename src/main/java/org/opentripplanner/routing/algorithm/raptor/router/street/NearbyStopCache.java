@@ -0,0 +1,227 @@
+package org.opentripplanner.routing.algorithm.raptor.router.street;
+
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.api.request.StreetCostParameters;
+import org.opentripplanner.routing.api.request.StreetMode;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.graphfinder.NearbyStop;
+import org.opentripplanner.routing.vertextype.TemporaryVertex;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A bounded LRU cache for the access/egress stops found by the {@link AccessEgressRouter}. Most
+ * trip searches start or end at a few thousand popular places; stations, addresses from the
+ * autocomplete and places saved in apps. Searching the street network from these places again and
+ * again returns the same stops.
+ * <p>
+ * The entries are keyed by the origin vertices, the search direction, the street mode, the max
+ * distance and the request parameters which affect the street search cost, see
+ * {@link StreetCostParameters}. The same parameters are used as the key of the street cost tables,
+ * so the two caches agree on which requests have the same street costs.
+ * <p>
+ * Searches from a temporary vertex, created for a coordinate in the request, are not cached. The
+ * states of the cached stops are used to create the access and egress legs of the itineraries.
+ * The states of a search from a temporary vertex start at the temporary vertex, with the name
+ * given in the request, and reference the temporary edges and the routing context of the request.
+ * So they can not be shared with other requests.
+ * <p>
+ * Only the WALK, BIKE and CAR street modes are cached. The other modes depend on bike rental and
+ * park-and-ride updaters, which change the street graph at run-time. Street notes are added to the
+ * itinerary when the path is mapped, so they do not invalidate the cached stops. The other
+ * updaters change the transit data, not the street graph. A new graph is loaded with a new router
+ * and cache. So the entries are not invalidated, but only discarded when they are older than the
+ * time-to-live, which bounds how long any other change to the graph goes unnoticed.
+ * <p>
+ * THREAD SAFETY - This class is thread safe. Two requests missing the cache at the same time may
+ * both do the search, the last result is kept.
+ */
+public class NearbyStopCache {
+
+  private final int maxSize;
+  private final long timeToLiveMillis;
+  private final LongSupplier clock;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  private final Map<CacheKey, Entry> cache;
+
+  /**
+   * @param maxSize the max number of entries, if 0 the cache is disabled.
+   * @param timeToLiveSeconds entries older than this are discarded.
+   */
+  public NearbyStopCache(int maxSize, int timeToLiveSeconds) {
+    this(maxSize, timeToLiveSeconds, System::currentTimeMillis);
+  }
+
+  NearbyStopCache(int maxSize, int timeToLiveSeconds, LongSupplier clock) {
+    this.maxSize = maxSize;
+    this.timeToLiveMillis = 1000L * timeToLiveSeconds;
+    this.clock = clock;
+    this.cache = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<CacheKey, Entry> eldest) {
+        return size() > NearbyStopCache.this.maxSize;
+      }
+    };
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * Return the cached stops for the given search, or perform the search and cache the result.
+   *
+   * @param request the street search request, used to create the cache key.
+   * @param vertices the search origin vertices.
+   * @param fromTarget {@code true} for an egress search.
+   * @param search the street search to perform on a cache miss.
+   */
+  Collection<NearbyStop> get(
+      RoutingRequest request,
+      Set<Vertex> vertices,
+      boolean fromTarget,
+      StreetMode streetMode,
+      int distanceMeters,
+      Supplier<Collection<NearbyStop>> search
+  ) {
+    if (!isEnabled() || !isCacheable(streetMode, vertices)) {
+      return search.get();
+    }
+
+    CacheKey key = new CacheKey(request, vertices, fromTarget, streetMode, distanceMeters);
+    long now = clock.getAsLong();
+    Entry entry;
+
+    synchronized (cache) {
+      entry = cache.get(key);
+      if (entry != null && entry.expires <= now) {
+        cache.remove(key);
+        entry = null;
+      }
+    }
+
+    if (entry != null) {
+      hits.incrementAndGet();
+      return entry.stops;
+    }
+    misses.incrementAndGet();
+
+    // Search outside the lock, this is the expensive part
+    Collection<NearbyStop> stops = List.copyOf(search.get());
+
+    synchronized (cache) {
+      cache.put(key, new Entry(stops, now + timeToLiveMillis));
+    }
+    return stops;
+  }
+
+  public Statistics getStatistics() {
+    int size;
+    synchronized (cache) {
+      size = cache.size();
+    }
+    return new Statistics(hits.get(), misses.get(), size, maxSize);
+  }
+
+  private static boolean isCacheable(StreetMode streetMode, Set<Vertex> vertices) {
+    if (vertices == null || vertices.isEmpty()) { return false; }
+    for (Vertex v : vertices) {
+      if (v instanceof TemporaryVertex) { return false; }
+    }
+    return streetMode == StreetMode.WALK
+        || streetMode == StreetMode.BIKE
+        || streetMode == StreetMode.CAR;
+  }
+
+  /**
+   * Hit and miss counters since the server started. These are exposed through the router API.
+   */
+  public static class Statistics {
+    public final long hits;
+    public final long misses;
+    public final int size;
+    public final int maxSize;
+
+    Statistics(long hits, long misses, int size, int maxSize) {
+      this.hits = hits;
+      this.misses = misses;
+      this.size = size;
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    public String toString() {
+      return "NearbyStopCache{hits: " + hits + ", misses: " + misses + ", size: " + size + "}";
+    }
+  }
+
+  private static class Entry {
+    private final Collection<NearbyStop> stops;
+    private final long expires;
+
+    private Entry(Collection<NearbyStop> stops, long expires) {
+      this.stops = stops;
+      this.expires = expires;
+    }
+  }
+
+  private static class CacheKey {
+    private final Set<Vertex> origin;
+    private final boolean fromTarget;
+    private final StreetMode streetMode;
+    private final int distanceMeters;
+    private final StreetCostParameters parameters;
+    private final StreetCostParameters bikeWalkingParameters;
+    private final int hashCode;
+
+    private CacheKey(
+        RoutingRequest request,
+        Set<Vertex> vertices,
+        boolean fromTarget,
+        StreetMode streetMode,
+        int distanceMeters
+    ) {
+      this.origin = Set.copyOf(vertices);
+      this.fromTarget = fromTarget;
+      this.streetMode = streetMode;
+      this.distanceMeters = distanceMeters;
+      this.parameters = StreetCostParameters.of(request);
+      RoutingRequest bikeWalking = request.bikeWalkingOptions;
+      this.bikeWalkingParameters = bikeWalking == null || bikeWalking == request
+          ? null
+          : StreetCostParameters.of(bikeWalking);
+      this.hashCode = Objects.hash(
+          origin, fromTarget, streetMode, distanceMeters, parameters, bikeWalkingParameters
+      );
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) { return true; }
+      if (o == null || getClass() != o.getClass()) { return false; }
+      CacheKey that = (CacheKey) o;
+      return fromTarget == that.fromTarget
+          && distanceMeters == that.distanceMeters
+          && streetMode == that.streetMode
+          && parameters.equals(that.parameters)
+          && Objects.equals(bikeWalkingParameters, that.bikeWalkingParameters)
+          && origin.equals(that.origin);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
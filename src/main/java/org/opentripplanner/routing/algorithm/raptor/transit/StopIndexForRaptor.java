@@ -5,6 +5,7 @@ import org.opentripplanner.model.TransferPriority;
 import org.opentripplanner.transit.raptor.api.transit.RaptorCostConverter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -59,6 +60,18 @@ public class StopIndexForRaptor {
         return stopIndex;
     }
 
+    /**
+     * Return {@code true} if the board/alight costs of this index are the same as the costs
+     * created with the given tuning parameters. This is used to check if a transit layer stored in
+     * the graph can be used with the router config the server is started with.
+     */
+    public boolean hasSameStopBoardAlightCosts(TransitTuningParameters tuningParameters) {
+        return Arrays.equals(
+            stopBoardAlightCosts,
+            createStopBoardAlightCosts(stopsByIndex, tuningParameters)
+        );
+    }
+
     /**
      * Create static board/alight cost for Raptor to include for each stop.
      */
@@ -0,0 +1,185 @@
+package org.opentripplanner.routing.algorithm.raptor.transit;
+
+import org.opentripplanner.transit.raptor.api.transit.RaptorTransfer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * All transfers between stops, indexed by from stop index. The transfers are stored in a compressed
+ * sparse row (CSR) format: the transfers from stop {@code s} are found at the positions
+ * {@code offsets[s]} to {@code offsets[s+1]} (exclusive) in the packed {@code toStops} and
+ * {@code effectiveWalkDistanceMeters} arrays.
+ * <p>
+ * The transfer duration depends on the walk speed of the request. The durations are calculated
+ * once for each walk speed and cached, so creating the transit data for a request does not
+ * allocate anything for the transfers. The walk speed is rounded to the nearest millimeter per
+ * second, which is more precise than the transfer durations in whole seconds.
+ * <p>
+ * THREAD SAFETY - This class is thread safe. The index is immutable after it is created, and the
+ * duration cache is synchronized.
+ */
+public class TransferIndex {
+
+  /** Normally only a few different walk speeds are used, so keep the cache small. */
+  private static final int MAX_CACHED_WALK_SPEEDS = 16;
+
+  private static final double WALK_SPEED_PRECISION = 1000.0;
+
+  private final int[] offsets;
+  private final int[] toStops;
+  private final int[] effectiveWalkDistanceMeters;
+
+  /**
+   * The original transfer objects in the same order as the packed arrays. These are only used to
+   * map the Raptor result to itineraries, the routing only use the primitive arrays.
+   */
+  private final Transfer[] transfers;
+
+  /** Not stored with the graph, created when first used. Guarded by {@code this}. */
+  private transient Map<Long, int[]> durationsByWalkSpeed;
+
+  /**
+   * @param transferByStopIndex Index of outer list is from stop index, inner list index has no
+   *                            specific meaning.
+   */
+  public TransferIndex(List<List<Transfer>> transferByStopIndex) {
+    int nStops = transferByStopIndex.size();
+    int size = 0;
+
+    for (List<Transfer> it : transferByStopIndex) {
+      size += it.size();
+    }
+
+    this.offsets = new int[nStops + 1];
+    this.toStops = new int[size];
+    this.effectiveWalkDistanceMeters = new int[size];
+    this.transfers = new Transfer[size];
+
+    int i = 0;
+    for (int stop = 0; stop < nStops; ++stop) {
+      offsets[stop] = i;
+      for (Transfer t : transferByStopIndex.get(stop)) {
+        toStops[i] = t.getToStop();
+        effectiveWalkDistanceMeters[i] = t.getEffectiveWalkDistanceMeters();
+        transfers[i] = t;
+        ++i;
+      }
+    }
+    offsets[nStops] = i;
+  }
+
+  public int getStopCount() {
+    return offsets.length - 1;
+  }
+
+  public int getTransferCount() {
+    return toStops.length;
+  }
+
+  /**
+   * Find the transfer between the two given stops, return {@code null} if not found.
+   */
+  public Transfer getTransfer(int fromStop, int toStop) {
+    for (int i = offsets[fromStop]; i < offsets[fromStop + 1]; ++i) {
+      if (toStops[i] == toStop) {
+        return transfers[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Return the transfer durations in seconds for the given walk speed, in the same order as the
+   * packed transfer arrays. The returned array is shared and must not be modified.
+   */
+  public int[] getDurationsInSeconds(double walkSpeed) {
+    long key = Math.round(walkSpeed * WALK_SPEED_PRECISION);
+    int[] durations;
+
+    synchronized (this) {
+      durations = durationCache().get(key);
+    }
+    if (durations != null) { return durations; }
+
+    // Calculate the durations outside the lock
+    durations = new int[effectiveWalkDistanceMeters.length];
+    for (int i = 0; i < durations.length; ++i) {
+      durations[i] = (int) Math.round(effectiveWalkDistanceMeters[i] / walkSpeed);
+    }
+
+    synchronized (this) {
+      durationCache().put(key, durations);
+    }
+    return durations;
+  }
+
+  private Map<Long, int[]> durationCache() {
+    if (durationsByWalkSpeed == null) {
+      durationsByWalkSpeed = new LinkedHashMap<>(MAX_CACHED_WALK_SPEEDS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+          return size() > MAX_CACHED_WALK_SPEEDS;
+        }
+      };
+    }
+    return durationsByWalkSpeed;
+  }
+
+  /**
+   * Create an iterator over the transfers from the given stop, using the given durations. The
+   * iterator is also the {@link RaptorTransfer} returned by {@code next()}, so the caller must
+   * not keep a reference to it after moving to the next transfer.
+   */
+  public Iterator<RaptorTransfer> transfersFrom(int fromStop, int[] durationsInSeconds) {
+    return new TransferIterator(
+        toStops,
+        durationsInSeconds,
+        offsets[fromStop],
+        offsets[fromStop + 1]
+    );
+  }
+
+  /**
+   * A lightweight iterator over a range of the packed transfer arrays. See
+   * {@link org.opentripplanner.transit.raptor.api.transit.RaptorTransitDataProvider#getTransfers(int)}.
+   */
+  private static final class TransferIterator implements Iterator<RaptorTransfer>, RaptorTransfer {
+    private final int[] toStops;
+    private final int[] durations;
+    private final int end;
+    private int index;
+
+    private TransferIterator(int[] toStops, int[] durations, int start, int end) {
+      this.toStops = toStops;
+      this.durations = durations;
+      this.end = end;
+      this.index = start - 1;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return index + 1 < end;
+    }
+
+    @Override
+    public RaptorTransfer next() {
+      if (!hasNext()) { throw new NoSuchElementException(); }
+      ++index;
+      return this;
+    }
+
+    @Override
+    public int stop() {
+      return toStops[index];
+    }
+
+    @Override
+    public int durationInSeconds() {
+      return durations[index];
+    }
+  }
+}
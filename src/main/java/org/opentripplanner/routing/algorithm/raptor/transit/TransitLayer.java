@@ -1,10 +1,10 @@
 package org.opentripplanner.routing.algorithm.raptor.transit;
 
 import org.opentripplanner.model.Stop;
+import org.opentripplanner.routing.algorithm.raptor.transit.request.RaptorRoutingRequestTransitDataCache;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -14,15 +14,15 @@ import java.util.Map;
 public class TransitLayer {
 
   /**
-   * Transit data required for routing
+   * Transit data required for routing. The lists are immutable and shared between copies of the
+   * transit layer.
    */
-  private final HashMap<LocalDate, List<TripPatternForDate>> tripPatternsForDate;
+  private final HashMap<LocalDate, TripPatternForDateList> tripPatternsForDate;
 
   /**
-   * Index of outer list is from stop index, inner list index has no specific meaning. To stop index
-   * is a field of the Transfer object.
+   * Transfers indexed by from stop index.
    */
-  private final List<List<Transfer>> transferByStopIndex;
+  private final TransferIndex transferIndex;
 
   /**
    * Maps to original graph to retrieve additional data
@@ -31,28 +31,36 @@ public class TransitLayer {
 
   private final ZoneId transitDataZoneId;
 
+  /**
+   * Cache the per request transit data created for this transit layer. A copy of the transit layer
+   * get a new empty cache. The cache is not stored with the graph, it is created when first used.
+   * The field is volatile so the getter on the routing path does not need a lock.
+   */
+  private transient volatile RaptorRoutingRequestTransitDataCache requestTransitDataCache;
+
   /**
    * Makes a shallow copy of the TransitLayer, except for the tripPatternsForDate, where a shallow
    * copy of the HashMap is made. This is sufficient, as the TransitLayerUpdater will replace
-   * entire keys and their values in the map.
+   * entire keys and their values in the map. The values are immutable lists.
    */
   public TransitLayer(TransitLayer transitLayer) {
-    this(
-        transitLayer.tripPatternsForDate,
-        transitLayer.transferByStopIndex,
-        transitLayer.stopIndex,
-        transitLayer.transitDataZoneId
-    );
+    this.tripPatternsForDate = new HashMap<>(transitLayer.tripPatternsForDate);
+    this.transferIndex = transitLayer.transferIndex;
+    this.stopIndex = transitLayer.stopIndex;
+    this.transitDataZoneId = transitLayer.transitDataZoneId;
   }
 
   public TransitLayer(
       Map<LocalDate, List<TripPatternForDate>> tripPatternsForDate,
-      List<List<Transfer>> transferByStopIndex,
+      TransferIndex transferIndex,
       StopIndexForRaptor stopIndex,
       ZoneId transitDataZoneId
   ) {
-    this.tripPatternsForDate = new HashMap<>(tripPatternsForDate);
-    this.transferByStopIndex = transferByStopIndex;
+    this.tripPatternsForDate = new HashMap<>();
+    for (Map.Entry<LocalDate, List<TripPatternForDate>> e : tripPatternsForDate.entrySet()) {
+      this.tripPatternsForDate.put(e.getKey(), TripPatternForDateList.of(e.getValue()));
+    }
+    this.transferIndex = transferIndex;
     this.stopIndex = stopIndex;
     this.transitDataZoneId = transitDataZoneId;
   }
@@ -70,7 +78,8 @@ public class TransitLayer {
   }
 
   public Collection<TripPatternForDate> getTripPatternsForDate(LocalDate date) {
-    return tripPatternsForDate.getOrDefault(date, Collections.emptyList());
+    TripPatternForDateList list = tripPatternsForDate.get(date);
+    return list == null ? Collections.emptyList() : list;
   }
 
   /**
@@ -88,13 +97,30 @@ public class TransitLayer {
     return stopIndex.stopsByIndex.size();
   }
 
-  public List<TripPatternForDate> getTripPatternsForDateCopy(LocalDate date) {
-    List<TripPatternForDate> tripPatternForDate = tripPatternsForDate.get(date);
-    return tripPatternForDate != null ? new ArrayList<>(tripPatternsForDate.get(date)) : null;
+  /**
+   * Return the immutable list of patterns for the given date, or {@code null} if the date is not
+   * part of the transit layer.
+   */
+  public TripPatternForDateList getTripPatternForDateList(LocalDate date) {
+    return tripPatternsForDate.get(date);
+  }
+
+  public TransferIndex getTransferIndex() {
+    return this.transferIndex;
   }
 
-  public List<List<Transfer>> getTransferByStopIndex() {
-    return this.transferByStopIndex;
+  public RaptorRoutingRequestTransitDataCache getRequestTransitDataCache() {
+    RaptorRoutingRequestTransitDataCache cache = requestTransitDataCache;
+    if (cache == null) {
+      synchronized (this) {
+        cache = requestTransitDataCache;
+        if (cache == null) {
+          cache = new RaptorRoutingRequestTransitDataCache();
+          requestTransitDataCache = cache;
+        }
+      }
+    }
+    return cache;
   }
 
   /**
@@ -103,8 +129,9 @@ public class TransitLayer {
    */
   public void replaceTripPatternsForDate(
       LocalDate date,
-      List<TripPatternForDate> tripPatternForDates
+      TripPatternForDateList tripPatternForDates
   ) {
     this.tripPatternsForDate.replace(date, tripPatternForDates);
+    getRequestTransitDataCache().clear();
   }
 }
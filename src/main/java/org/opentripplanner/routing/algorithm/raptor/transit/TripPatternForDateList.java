@@ -0,0 +1,207 @@
+package org.opentripplanner.routing.algorithm.raptor.transit;
+
+import org.opentripplanner.model.TripPattern;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable collection of all {@link TripPatternForDate}s for one date. The patterns are stored
+ * in fixed size chunks. An update creates a new list which shares all chunks not changed by the
+ * update with the old list, so the cost of an update is proportional to the number of patterns
+ * changed, not to the total number of patterns.
+ * <p>
+ * Each pattern has a slot, the position in the list. The slot of a pattern never change, a
+ * removed pattern leaves an empty slot and new patterns are added at the end.
+ * <p>
+ * THREAD SAFETY - This class is immutable, and safe to share between threads. The new lists are
+ * built by the {@link org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerUpdater}
+ * on the thread committing the timetable snapshot, and read by the routing threads after the new
+ * transit layer is set on the graph. The {@link Updater} is not thread safe, it must only be used
+ * by the thread building the list.
+ */
+public final class TripPatternForDateList extends AbstractCollection<TripPatternForDate> {
+
+  private static final int CHUNK_SHIFT = 6;
+  static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private static final TripPatternForDateList EMPTY = new TripPatternForDateList(
+      new TripPatternForDate[0][], 0, 0
+  );
+
+  private final TripPatternForDate[][] chunks;
+  private final int nSlots;
+  private final int size;
+
+  private TripPatternForDateList(TripPatternForDate[][] chunks, int nSlots, int size) {
+    this.chunks = chunks;
+    this.nSlots = nSlots;
+    this.size = size;
+  }
+
+  public static TripPatternForDateList of(Collection<TripPatternForDate> patterns) {
+    Updater updater = EMPTY.update();
+    for (TripPatternForDate it : patterns) {
+      updater.add(it);
+    }
+    return updater.build();
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * The number of slots, including the empty slots of removed patterns.
+   */
+  int numberOfSlots() {
+    return nSlots;
+  }
+
+  /**
+   * Return the pattern in the given slot, or {@code null} if the pattern is removed.
+   */
+  public TripPatternForDate get(int slot) {
+    if (slot < 0 || slot >= nSlots) {
+      throw new IndexOutOfBoundsException("Slot: " + slot + ", number of slots: " + nSlots);
+    }
+    return chunks[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK];
+  }
+
+  /**
+   * Create an index of the slots by the original {@link TripPattern}. This is used by the updater
+   * to find the slot to update.
+   */
+  public Map<TripPattern, Integer> indexSlotsByPattern() {
+    Map<TripPattern, Integer> index = new HashMap<>();
+    for (int slot = 0; slot < nSlots; ++slot) {
+      TripPatternForDate it = get(slot);
+      if (it != null) {
+        index.put(it.getTripPattern().getPattern(), slot);
+      }
+    }
+    return index;
+  }
+
+  @Override
+  public Iterator<TripPatternForDate> iterator() {
+    return new Iterator<>() {
+      private int slot = nextSlot(0);
+
+      @Override
+      public boolean hasNext() {
+        return slot < nSlots;
+      }
+
+      @Override
+      public TripPatternForDate next() {
+        if (!hasNext()) { throw new NoSuchElementException(); }
+        TripPatternForDate value = get(slot);
+        slot = nextSlot(slot + 1);
+        return value;
+      }
+    };
+  }
+
+  /**
+   * Start an update, the list is not changed. Call {@link Updater#build()} to create the new list.
+   */
+  public Updater update() {
+    return new Updater(this);
+  }
+
+  private int nextSlot(int slot) {
+    while (slot < nSlots && get(slot) == null) {
+      ++slot;
+    }
+    return slot;
+  }
+
+  /**
+   * Collect the changes to a list. Only the chunks changed are copied, the first time they are
+   * changed.
+   */
+  public static final class Updater {
+    private TripPatternForDate[][] chunks;
+    private boolean[] copied;
+    private int nSlots;
+    private int size;
+    private int chunksCopied = 0;
+
+    private Updater(TripPatternForDateList list) {
+      this.chunks = Arrays.copyOf(list.chunks, list.chunks.length);
+      this.copied = new boolean[list.chunks.length];
+      this.nSlots = list.nSlots;
+      this.size = list.size;
+    }
+
+    /**
+     * Replace the pattern in the given slot, use {@code null} to remove the pattern.
+     */
+    public Updater set(int slot, TripPatternForDate value) {
+      if (slot < 0 || slot >= nSlots) {
+        throw new IndexOutOfBoundsException("Slot: " + slot + ", number of slots: " + nSlots);
+      }
+      TripPatternForDate[] chunk = writableChunk(slot >>> CHUNK_SHIFT);
+      TripPatternForDate old = chunk[slot & CHUNK_MASK];
+      chunk[slot & CHUNK_MASK] = value;
+
+      if (old == null && value != null) { ++size; }
+      else if (old != null && value == null) { --size; }
+      return this;
+    }
+
+    /**
+     * Add a new pattern at the end of the list.
+     * @return the slot of the added pattern.
+     */
+    public int add(TripPatternForDate value) {
+      int slot = nSlots;
+      int chunkIndex = slot >>> CHUNK_SHIFT;
+
+      if (chunkIndex == chunks.length) {
+        int newLength = Math.max(4, chunks.length * 2);
+        chunks = Arrays.copyOf(chunks, newLength);
+        copied = Arrays.copyOf(copied, newLength);
+      }
+      if (chunks[chunkIndex] == null) {
+        chunks[chunkIndex] = new TripPatternForDate[CHUNK_SIZE];
+        copied[chunkIndex] = true;
+      }
+      ++nSlots;
+      set(slot, value);
+      return slot;
+    }
+
+    /**
+     * The number of existing chunks copied by this update.
+     */
+    public int chunksCopied() {
+      return chunksCopied;
+    }
+
+    public TripPatternForDateList build() {
+      TripPatternForDateList list = new TripPatternForDateList(chunks, nSlots, size);
+      // Make sure the new list is not changed if the updater is used again
+      Arrays.fill(copied, false);
+      chunks = Arrays.copyOf(chunks, chunks.length);
+      return list;
+    }
+
+    private TripPatternForDate[] writableChunk(int chunkIndex) {
+      if (!copied[chunkIndex]) {
+        chunks[chunkIndex] = Arrays.copyOf(chunks[chunkIndex], CHUNK_SIZE);
+        copied[chunkIndex] = true;
+        ++chunksCopied;
+      }
+      return chunks[chunkIndex];
+    }
+  }
+}
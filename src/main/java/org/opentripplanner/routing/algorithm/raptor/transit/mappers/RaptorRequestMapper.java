@@ -7,6 +7,7 @@ import org.opentripplanner.transit.raptor.api.request.Optimization;
 import org.opentripplanner.transit.raptor.api.request.RaptorProfile;
 import org.opentripplanner.transit.raptor.api.request.RaptorRequest;
 import org.opentripplanner.transit.raptor.api.request.RaptorRequestBuilder;
+import org.opentripplanner.transit.raptor.api.request.RaptorTuningParameters;
 import org.opentripplanner.transit.raptor.api.transit.RaptorTransfer;
 
 import java.time.ZonedDateTime;
@@ -15,11 +16,17 @@ import java.util.stream.Collectors;
 
 public class RaptorRequestMapper {
 
+    /**
+     * @param searchWindowSlicesEnabled Allow Raptor to run the request in parallel, only enabled
+     *                                  if the search-window should be split in slices, see
+     *                                  {@link RaptorTuningParameters#searchWindowSlices()}.
+     */
     public static RaptorRequest<TripSchedule> mapRequest(
             RoutingRequest request,
             ZonedDateTime startOfTime,
             Collection<? extends RaptorTransfer> accessTimes,
-            Collection<? extends RaptorTransfer> egressTimes
+            Collection<? extends RaptorTransfer> egressTimes,
+            boolean searchWindowSlicesEnabled
     ) {
         RaptorRequestBuilder<TripSchedule> builder = new RaptorRequestBuilder<>();
 
@@ -49,6 +56,10 @@ public class RaptorRequestMapper {
                         request.alightSlackForMode
                 ));
 
+        if (searchWindowSlicesEnabled) {
+            builder.enableOptimization(Optimization.PARALLEL);
+        }
+
         builder
                 .searchParams()
                 .searchWindow(request.searchWindow)
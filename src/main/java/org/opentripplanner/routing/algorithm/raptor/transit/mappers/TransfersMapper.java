@@ -5,6 +5,7 @@ import org.opentripplanner.model.SimpleTransfer;
 import org.opentripplanner.model.Stop;
 import org.opentripplanner.model.StopLocation;
 import org.opentripplanner.routing.algorithm.raptor.transit.StopIndexForRaptor;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransferIndex;
 import org.opentripplanner.routing.algorithm.raptor.transit.Transfer;
 
 import java.util.ArrayList;
@@ -13,9 +14,9 @@ import java.util.List;
 class TransfersMapper {
 
     /**
-     * Copy pre-calculated transfers from the original graph
+     * Copy pre-calculated transfers from the original graph into a packed index
      */
-    static List<List<Transfer>> mapTransfers(
+    static TransferIndex mapTransfers(
         StopIndexForRaptor stopIndex,
         Multimap<StopLocation, SimpleTransfer> transfersByStop
     ) {
@@ -38,6 +39,6 @@ class TransfersMapper {
                 }
             }
         }
-        return transferByStopIndex;
+        return new TransferIndex(transferByStopIndex);
     }
 }
@@ -1,10 +1,11 @@
 package org.opentripplanner.routing.algorithm.raptor.transit.mappers;
 
+import gnu.trove.set.TIntSet;
 import org.opentripplanner.model.Timetable;
 import org.opentripplanner.model.TripPattern;
 import org.opentripplanner.model.calendar.ServiceDate;
 import org.opentripplanner.routing.algorithm.raptor.transit.StopIndexForRaptor;
-import org.opentripplanner.routing.algorithm.raptor.transit.Transfer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransferIndex;
 import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
 import org.opentripplanner.routing.algorithm.raptor.transit.TransitTuningParameters;
 import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternForDate;
@@ -21,7 +22,6 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
@@ -56,19 +56,20 @@ public class TransitLayerMapper {
     private TransitLayer map(TransitTuningParameters tuningParameters) {
         StopIndexForRaptor stopIndex;
         HashMap<LocalDate, List<TripPatternForDate>> tripPatternsByStopByDate;
-        List<List<Transfer>> transferByStopIndex;
+        TransferIndex transferIndex;
 
         LOG.info("Mapping transitLayer from Graph...");
+        long startTime = System.currentTimeMillis();
 
         stopIndex =  new StopIndexForRaptor(graph.index.getAllStops(), tuningParameters);
         tripPatternsByStopByDate = mapTripPatterns(stopIndex);
-        transferByStopIndex = mapTransfers(stopIndex, graph.transfersByStop);
+        transferIndex = mapTransfers(stopIndex, graph.transfersByStop);
 
-        LOG.info("Mapping complete.");
+        LOG.info("Mapping complete in {} ms.", System.currentTimeMillis() - startTime);
 
         return new TransitLayer(
             tripPatternsByStopByDate,
-            transferByStopIndex,
+            transferIndex,
             stopIndex,
             graph.getTimeZone().toZoneId()
         );
@@ -88,41 +89,28 @@ public class TransitLayerMapper {
         final Map<TripPattern, TripPatternWithRaptorStopIndexes> newTripPatternForOld =
             mapOldTripPatternToRaptorTripPattern(stopIndex, allTripPatterns);
 
-
-        TripPatternForDateMapper tripPatternForDateMapper = new TripPatternForDateMapper(
-            graph.index.getServiceCodesRunningForDate(),
+        // Index the trips by service code once, so each date only visits the trips running on it
+        TripsByServiceCodeIndex tripsByServiceCode = new TripsByServiceCodeIndex(
+            allTripPatterns,
             newTripPatternForOld
         );
 
-        Set<ServiceDate> allServiceDates = graph.index.getServiceCodesRunningForDate().keySet();
+        Map<ServiceDate, TIntSet> serviceCodesRunningForDate =
+            graph.index.getServiceCodesRunningForDate();
 
         // The return value of this entire process.
         ConcurrentHashMap<LocalDate, List<TripPatternForDate>> result = new ConcurrentHashMap<>();
 
 
         // THIS CODE RUNS IN PARALLEL
-        allServiceDates
+        serviceCodesRunningForDate.entrySet()
             .parallelStream()
-            .forEach(serviceDate -> {
+            .forEach(e -> {
                 // Create LocalDate equivalent to the OTP/GTFS ServiceDate object, serving as the key of
                 // the return Map.
-                LocalDate localDate = ServiceCalendarMapper.localDateFromServiceDate(serviceDate);
-
-                // Create a List to hold the values for one entry in the return Map.
-                List<TripPatternForDate> values = new ArrayList<>();
-
-                // This nested loop could be quite inefficient.
-                // Maybe determine in advance which patterns are running on each service and day.
-                for (org.opentripplanner.model.TripPattern oldTripPattern : allTripPatterns) {
-                    TripPatternForDate tripPatternForDate =
-                        tripPatternForDateMapper.map(
-                            oldTripPattern.scheduledTimetable,
-                            serviceDate
-                    );
-                    if (tripPatternForDate != null) {
-                        values.add(tripPatternForDate);
-                    }
-                }
+                LocalDate localDate = ServiceCalendarMapper.localDateFromServiceDate(e.getKey());
+
+                List<TripPatternForDate> values = tripsByServiceCode.map(e.getValue(), localDate);
                 if (!values.isEmpty()) {
                     result.put(localDate, values);
                 }
@@ -6,17 +6,18 @@ import gnu.trove.set.TIntSet;
 import org.opentripplanner.model.Timetable;
 import org.opentripplanner.model.calendar.ServiceDate;
 import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
-import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternWithRaptorStopIndexes;
 import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternForDate;
+import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternForDateList;
+import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternWithRaptorStopIndexes;
 import org.opentripplanner.routing.graph.Graph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -29,6 +30,16 @@ import static org.opentripplanner.routing.algorithm.raptor.transit.mappers.TripP
  * id and replaced by their updated versions. The realtime TransitLayer is then switched out
  * with the updated copy in an atomic operation. This ensures that any TransitLayer that is
  * referenced from the Graph is never changed.
+ * <p>
+ * The patterns for each date are kept in an immutable {@link TripPatternForDateList}. An update
+ * only copies the parts of the list containing the changed patterns, the rest is shared with the
+ * previous version of the transit layer.
+ * <p>
+ * THREAD SAFETY - The update method is not thread safe. It is called when the
+ * {@link org.opentripplanner.updater.stoptime.TimetableSnapshotSource} commits its buffer, while
+ * holding the buffer lock. The commit is done by the graph writer thread applying the updates, or
+ * by a routing thread asking for a new timetable snapshot, but never by two threads at the same
+ * time. The routing threads read the new lists through the transit layer set on the graph.
  */
 public class TransitLayerUpdater {
 
@@ -39,11 +50,14 @@ public class TransitLayerUpdater {
   private final Map<ServiceDate, TIntSet> serviceCodesRunningForDate;
 
   /**
-   * Cache the TripPatternForDates indexed on the original TripPatterns in order to avoid
-   * this expensive operation being done each time the update method is called.
+   * Cache the slot of each TripPattern in the TripPatternForDateList for each date in order to
+   * avoid this expensive operation being done each time the update method is called. The slot of a
+   * pattern never change, so the index stays valid for all later versions of the list.
    */
-  private final Map<LocalDate, Map<org.opentripplanner.model.TripPattern, TripPatternForDate>>
-                tripPatternForDateMapCache = new HashMap<>();
+  private final Map<LocalDate, Map<org.opentripplanner.model.TripPattern, Integer>>
+                slotIndexCache = new HashMap<>();
+
+  private final Metrics metrics = new Metrics();
 
   public TransitLayerUpdater(
       Graph graph,
@@ -56,12 +70,14 @@ public class TransitLayerUpdater {
   public void update(Set<Timetable> updatedTimetables) {
     if (!graph.hasRealtimeTransitLayer()) { return; }
 
+    long startTime = System.currentTimeMillis();
+    long startAllocatedBytes = metrics.threadAllocatedBytes();
+    int chunksCopied = 0;
+
     // Make a shallow copy of the realtime transit layer. Only the objects that are copied will be
     // changed during this update process.
     TransitLayer realtimeTransitLayer = new TransitLayer(graph.getRealtimeTransitLayer());
 
-    double startTime = System.currentTimeMillis();
-
     // Map TripPatterns for this update to Raptor TripPatterns
     final Map<org.opentripplanner.model.TripPattern, TripPatternWithRaptorStopIndexes>
         newTripPatternForOld = mapOldTripPatternToRaptorTripPattern(
@@ -85,45 +101,96 @@ public class TransitLayerUpdater {
     for (LocalDate date : timetablesByDate.keySet()) {
       Collection<Timetable> timetablesForDate = timetablesByDate.get(date);
 
-      List<TripPatternForDate> patternsForDate =
-          realtimeTransitLayer.getTripPatternsForDateCopy(date);
+      TripPatternForDateList patternsForDate = realtimeTransitLayer.getTripPatternForDateList(date);
 
       if (patternsForDate == null) {
         continue;
       }
 
-      Map<org.opentripplanner.model.TripPattern, TripPatternForDate> patternsForDateMap =
-          tripPatternForDateMapCache.computeIfAbsent(date, p -> patternsForDate
-          .stream()
-          .collect(Collectors.toMap(t -> t.getTripPattern().getPattern(), t -> t)));
+      Map<org.opentripplanner.model.TripPattern, Integer> slotByPattern =
+          slotIndexCache.computeIfAbsent(date, d -> patternsForDate.indexSlotsByPattern());
+
+      TripPatternForDateList.Updater updater = patternsForDate.update();
 
       for (Timetable timetable : timetablesForDate) {
         TripPatternForDate tripPatternForDate = tripPatternForDateMapper.map(
             timetable,
             timetable.serviceDate
         );
-        if (tripPatternForDate != null) {
-          patternsForDateMap.put(timetable.pattern, tripPatternForDate);
-        } else {
-          // This has been completely cancelled, or otherwise doesn't map cleanly
-          patternsForDateMap.remove(timetable.pattern);
+        Integer slot = slotByPattern.get(timetable.pattern);
+
+        if (slot != null) {
+          // A null value removes the pattern, it has been completely cancelled, or otherwise
+          // doesn't map cleanly
+          updater.set(slot, tripPatternForDate);
+        }
+        else if (tripPatternForDate != null) {
+          slotByPattern.put(timetable.pattern, updater.add(tripPatternForDate));
         }
       }
+      chunksCopied += updater.chunksCopied();
+
+      realtimeTransitLayer.replaceTripPatternsForDate(date, updater.build());
+    }
+
+    // Switch out the reference with the updated realtimeTransitLayer. This is synchronized to
+    // guarantee that the reference is set after all the fields have been updated.
+    graph.setRealtimeTransitLayer(realtimeTransitLayer);
 
-      realtimeTransitLayer.replaceTripPatternsForDate(
-          date,
-          new ArrayList<>(patternsForDateMap.values())
-      );
+    metrics.commit(
+        System.currentTimeMillis() - startTime,
+        metrics.threadAllocatedBytes() - startAllocatedBytes
+    );
 
-      // Switch out the reference with the updated realtimeTransitLayer. This is synchronized to
-      // guarantee that the reference is set after all the fields have been updated.
-      graph.setRealtimeTransitLayer(realtimeTransitLayer);
+    LOG.debug(
+        "UPDATING {} tripPatterns took {} ms, {} pattern chunks copied. {}",
+        updatedTimetables.size(),
+        System.currentTimeMillis() - startTime,
+        chunksCopied,
+        metrics
+    );
+  }
+
+  /**
+   * Commit latency and allocated bytes for the updates, logged after each update. The allocated
+   * bytes are measured for the thread doing the update, if the JVM support it, otherwise the bytes
+   * are reported as -1. The metrics are only accessed by the update method, so they are guarded by
+   * the same lock.
+   */
+  private static class Metrics {
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private long commitCount = 0;
+    private long totalCommitTimeMs = 0;
+    private long lastCommitTimeMs = 0;
+    private long totalAllocatedBytes = 0;
+    private long lastAllocatedBytes = 0;
+
+    private void commit(long commitTimeMs, long allocatedBytes) {
+      ++commitCount;
+      lastCommitTimeMs = commitTimeMs;
+      totalCommitTimeMs += commitTimeMs;
+      lastAllocatedBytes = allocatedBytes;
+      if (allocatedBytes >= 0) {
+        totalAllocatedBytes += allocatedBytes;
+      }
+    }
+
+    private long threadAllocatedBytes() {
+      if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+        if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+          return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+      }
+      return -1;
+    }
 
-      LOG.debug(
-          "UPDATING {} tripPatterns took {} ms",
-          updatedTimetables.size(),
-          System.currentTimeMillis() - startTime
-      );
+    @Override
+    public String toString() {
+      return "Commits: " + commitCount
+          + ", last commit: " + lastCommitTimeMs + " ms / " + lastAllocatedBytes + " bytes"
+          + ", total: " + totalCommitTimeMs + " ms / " + totalAllocatedBytes + " bytes";
     }
   }
 }
@@ -0,0 +1,125 @@
+package org.opentripplanner.routing.algorithm.raptor.transit.mappers;
+
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.TIntSet;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternForDate;
+import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternWithRaptorStopIndexes;
+import org.opentripplanner.routing.trippattern.RealTimeState;
+import org.opentripplanner.routing.trippattern.TripTimes;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * An inverted index from service code to the scheduled trips running on the service. It is used
+ * to map the trip patterns of each service date without looking at every trip of every pattern
+ * on every date.
+ * <p>
+ * The trips of each pattern are sorted by departure once. For each service code the index holds
+ * the pattern and the position in the sorted trips of each trip with the service code, packed in
+ * a {@code long}: the pattern index in the upper and the trip position in the lower 32 bits. A
+ * date is mapped by sorting the packed trips of the service codes running on the date, so the
+ * cost is proportional to the number of trips running on the date, not to the number of
+ * patterns.
+ * <p>
+ * THREAD SAFETY - The index is immutable after it is created, and {@link #map} can be called by
+ * many threads.
+ */
+class TripsByServiceCodeIndex {
+
+    private final TripPatternWithRaptorStopIndexes[] patterns;
+
+    private final TripTimes[][] sortedTripTimes;
+
+    private final TIntObjectMap<long[]> tripsByServiceCode;
+
+    /**
+     * @param oldTripPatterns      The patterns to index, the patterns of a date are mapped in this
+     *                             order - READ ONLY
+     * @param newTripPatternForOld - READ ONLY
+     */
+    TripsByServiceCodeIndex(
+            Collection<TripPattern> oldTripPatterns,
+            Map<TripPattern, TripPatternWithRaptorStopIndexes> newTripPatternForOld
+    ) {
+        TripPattern[] oldPatterns = oldTripPatterns.toArray(new TripPattern[0]);
+        int nPatterns = oldPatterns.length;
+        this.patterns = new TripPatternWithRaptorStopIndexes[nPatterns];
+        this.sortedTripTimes = new TripTimes[nPatterns][];
+
+        // THIS CODE RUNS IN PARALLEL
+        IntStream.range(0, nPatterns).parallel().forEach(p -> {
+            patterns[p] = newTripPatternForOld.get(oldPatterns[p]);
+            sortedTripTimes[p] = TransitLayerMapper
+                    .getSortedTripTimes(oldPatterns[p].scheduledTimetable)
+                    .toArray(new TripTimes[0]);
+        });
+        // END PARALLEL CODE
+
+        TIntObjectMap<TLongArrayList> trips = new TIntObjectHashMap<>();
+        for (int p = 0; p < nPatterns; ++p) {
+            for (int i = 0; i < sortedTripTimes[p].length; ++i) {
+                int serviceCode = sortedTripTimes[p][i].serviceCode;
+                TLongArrayList list = trips.get(serviceCode);
+                if (list == null) {
+                    list = new TLongArrayList();
+                    trips.put(serviceCode, list);
+                }
+                list.add(((long) p << 32) | i);
+            }
+        }
+        this.tripsByServiceCode = new TIntObjectHashMap<>(trips.size());
+        trips.forEachEntry((serviceCode, list) -> {
+            tripsByServiceCode.put(serviceCode, list.toArray());
+            return true;
+        });
+    }
+
+    /**
+     * Map the trips running on the given service codes to one {@link TripPatternForDate} for
+     * each pattern with at least one trip which is not canceled. This method is THREAD SAFE.
+     *
+     * @param serviceCodesRunning The service codes running on the date - READ ONLY
+     */
+    List<TripPatternForDate> map(TIntSet serviceCodesRunning, LocalDate localDate) {
+        TLongArrayList running = new TLongArrayList();
+        serviceCodesRunning.forEach(serviceCode -> {
+            long[] trips = tripsByServiceCode.get(serviceCode);
+            if (trips != null) {
+                running.add(trips);
+            }
+            return true;
+        });
+        // Group the trips by pattern, in the sorted order of the trips within each pattern
+        running.sort();
+
+        List<TripPatternForDate> result = new ArrayList<>();
+        List<TripTimes> times = new ArrayList<>();
+        int i = 0;
+        while (i < running.size()) {
+            int pattern = (int) (running.get(i) >>> 32);
+            times.clear();
+            for (; i < running.size() && (int) (running.get(i) >>> 32) == pattern; ++i) {
+                TripTimes tripTimes = sortedTripTimes[pattern][(int) running.get(i)];
+                if (tripTimes.getRealTimeState() != RealTimeState.CANCELED) {
+                    times.add(tripTimes);
+                }
+            }
+            if (!times.isEmpty()) {
+                result.add(new TripPatternForDate(
+                        patterns[pattern],
+                        times.toArray(TripTimes[]::new),
+                        localDate
+                ));
+            }
+        }
+        return result;
+    }
+}
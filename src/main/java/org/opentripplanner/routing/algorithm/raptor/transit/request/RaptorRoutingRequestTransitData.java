@@ -19,8 +19,9 @@ import java.util.Set;
 
 /**
  * This is the data provider for the Range Raptor search engine. It uses data from the TransitLayer,
- * but filters it by dates and modes per request. Transfers durations are pre-calculated per request
- * based on walk speed.
+ * but filters it by dates and modes per request. Transfers durations depend on the walk speed, they
+ * are looked up in the transit layer {@link org.opentripplanner.routing.algorithm.raptor.transit.TransferIndex}
+ * which cache them per walk speed.
  */
 public class RaptorRoutingRequestTransitData implements RaptorTransitDataProvider<TripSchedule> {
 
@@ -32,9 +33,10 @@ public class RaptorRoutingRequestTransitData implements RaptorTransitDataProvide
   private final List<List<TripPatternForDates>> activeTripPatternsPerStop;
 
   /**
-   * Transfers by stop index
+   * Transfer durations for the request walk speed, in the same order as the transfers in the
+   * transfer index.
    */
-  private final List<List<RaptorTransfer>> transfers;
+  private final int[] transferDurations;
 
 
   private final ZonedDateTime startOfTime;
@@ -64,15 +66,16 @@ public class RaptorRoutingRequestTransitData implements RaptorTransitDataProvide
         transitModes,
         bannedRoutes
     );
-    this.transfers = creator.calculateTransferDuration(walkSpeed);
+    this.transferDurations = transitLayer.getTransferIndex().getDurationsInSeconds(walkSpeed);
   }
 
   /**
-   * Gets all the transfers starting at a given stop
+   * Gets all the transfers starting at a given stop. The returned iterator is a lightweight
+   * view of the packed transfer arrays, it is also the transfer returned by {@code next()}.
    */
   @Override
   public Iterator<RaptorTransfer> getTransfers(int stopIndex) {
-    return transfers.get(stopIndex).iterator();
+    return transitLayer.getTransferIndex().transfersFrom(stopIndex, transferDurations);
   }
 
   /**
@@ -0,0 +1,136 @@
+package org.opentripplanner.routing.algorithm.raptor.transit.request;
+
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.TransitMode;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A small bounded LRU cache for the trip patterns per stop created by the
+ * {@link RaptorRoutingRequestTransitDataCreator}. Merging the {@link TripPatternForDates} and
+ * indexing them by stop is a large fixed cost for each request, but the result only depends on the
+ * search date and the mode/route filters - not on the rest of the request. So, most requests can
+ * reuse the result of an earlier request.
+ * <p>
+ * One instance of this cache belongs to one {@link org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer}.
+ * When the realtime updater publishes a new transit layer it comes with a new empty cache, so there
+ * is no need to invalidate entries based on realtime updates; the old cache is garbage collected
+ * together with the old transit layer.
+ * <p>
+ * THREAD SAFETY - This class is thread safe. The cached values are immutable and shared between
+ * requests. Two requests missing the cache at the same time may both create the value, the last one
+ * is kept.
+ */
+public class RaptorRoutingRequestTransitDataCache {
+
+  /**
+   * Each entry holds one list per stop, so keep the number of entries low. Normally most requests
+   * are for today and tomorrow with the default set of modes, so a few entries is enough.
+   */
+  private static final int MAX_SIZE = 16;
+
+  private final Map<CacheKey, List<List<TripPatternForDates>>> cache = new LinkedHashMap<>(
+      MAX_SIZE, 0.75f, true
+  ) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<CacheKey, List<List<TripPatternForDates>>> e) {
+      return size() > MAX_SIZE;
+    }
+  };
+
+  /**
+   * Remove all entries. This must be called if the data in the owning transit layer is changed.
+   */
+  public synchronized void clear() {
+    cache.clear();
+  }
+
+  public synchronized int size() {
+    return cache.size();
+  }
+
+  List<List<TripPatternForDates>> get(
+      LocalDate departureDate,
+      int additionalPastSearchDays,
+      int additionalFutureSearchDays,
+      Set<TransitMode> transitModes,
+      Set<FeedScopedId> bannedRoutes,
+      Supplier<List<List<TripPatternForDates>>> create
+  ) {
+    CacheKey key = new CacheKey(
+        departureDate,
+        additionalPastSearchDays,
+        additionalFutureSearchDays,
+        transitModes,
+        bannedRoutes
+    );
+    List<List<TripPatternForDates>> value;
+
+    synchronized (this) {
+      value = cache.get(key);
+    }
+    if (value != null) { return value; }
+
+    // Create the value outside the lock, this is the expensive part
+    value = create.get();
+
+    synchronized (this) {
+      cache.put(key, value);
+    }
+    return value;
+  }
+
+  private static class CacheKey {
+    private final LocalDate departureDate;
+    private final int additionalPastSearchDays;
+    private final int additionalFutureSearchDays;
+    private final Set<TransitMode> transitModes;
+    private final Set<FeedScopedId> bannedRoutes;
+    private final int hashCode;
+
+    private CacheKey(
+        LocalDate departureDate,
+        int additionalPastSearchDays,
+        int additionalFutureSearchDays,
+        Set<TransitMode> transitModes,
+        Set<FeedScopedId> bannedRoutes
+    ) {
+      this.departureDate = departureDate;
+      this.additionalPastSearchDays = additionalPastSearchDays;
+      this.additionalFutureSearchDays = additionalFutureSearchDays;
+      // Copy the sets, the request may change them after the key is created
+      this.transitModes = Set.copyOf(transitModes);
+      this.bannedRoutes = Set.copyOf(bannedRoutes);
+      this.hashCode = Objects.hash(
+          departureDate,
+          additionalPastSearchDays,
+          additionalFutureSearchDays,
+          this.transitModes,
+          this.bannedRoutes
+      );
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) { return true; }
+      if (o == null || getClass() != o.getClass()) { return false; }
+      CacheKey that = (CacheKey) o;
+      return additionalPastSearchDays == that.additionalPastSearchDays
+          && additionalFutureSearchDays == that.additionalFutureSearchDays
+          && departureDate.equals(that.departureDate)
+          && transitModes.equals(that.transitModes)
+          && bannedRoutes.equals(that.bannedRoutes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -5,7 +5,6 @@ import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
 import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternWithRaptorStopIndexes;
 import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternForDate;
 import org.opentripplanner.routing.algorithm.raptor.transit.mappers.DateMapper;
-import org.opentripplanner.transit.raptor.api.transit.RaptorTransfer;
 import org.opentripplanner.model.TransitMode;
 
 import java.time.Instant;
@@ -18,7 +17,6 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 import static org.opentripplanner.routing.algorithm.raptor.transit.mappers.DateMapper.secondsSinceStartOfTime;
 
@@ -48,13 +46,37 @@ class RaptorRoutingRequestTransitDataCreator {
     return searchStartTime;
   }
 
+  /**
+   * Return the active trip patterns indexed by stop. The result is cached in the transit layer, so
+   * requests with the same date and filters share the same (immutable) data structure.
+   */
   List<List<TripPatternForDates>> createTripPatternsPerStop(
       int additionalPastSearchDays,
       int additionalFutureSearchDays,
       Set<TransitMode> transitModes,
       Set<FeedScopedId> bannedRoutes
   ) {
+    return transitLayer.getRequestTransitDataCache().get(
+        departureDate,
+        additionalPastSearchDays,
+        additionalFutureSearchDays,
+        transitModes,
+        bannedRoutes,
+        () -> createTripPatternsPerStopNoCache(
+            additionalPastSearchDays,
+            additionalFutureSearchDays,
+            transitModes,
+            bannedRoutes
+        )
+    );
+  }
 
+  private List<List<TripPatternForDates>> createTripPatternsPerStopNoCache(
+      int additionalPastSearchDays,
+      int additionalFutureSearchDays,
+      Set<TransitMode> transitModes,
+      Set<FeedScopedId> bannedRoutes
+  ) {
     List<Map<FeedScopedId, TripPatternForDate>> tripPatternForDates = getTripPatternsForDateRange(
         additionalPastSearchDays,
         additionalFutureSearchDays,
@@ -159,15 +181,4 @@ class RaptorRoutingRequestTransitDataCreator {
             .getPattern().route.getId()))
         .collect(toMap(p -> p.getTripPattern().getId(), p -> p));
   }
-
-  List<List<RaptorTransfer>> calculateTransferDuration(double walkSpeed) {
-    return transitLayer
-        .getTransferByStopIndex()
-        .stream()
-        .map(t -> t
-            .stream()
-            .map(s -> new TransferWithDuration(s, walkSpeed))
-            .collect(Collectors.<RaptorTransfer>toList()))
-        .collect(toList());
-  }
 }
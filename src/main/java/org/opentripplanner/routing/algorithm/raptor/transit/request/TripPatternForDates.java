@@ -25,11 +25,24 @@ public class TripPatternForDates implements RaptorRoute<TripSchedule>,
 
     private final int numberOfTripSchedules;
 
+    /**
+     * The trip schedules are created lazily the first time they are requested, and then reused.
+     * This makes {@link #getTripSchedule(int)} a simple array lookup for all but the first call,
+     * instead of a scan over the dates and a new object for each call. Instances of this class are
+     * shared between requests (see {@link RaptorRoutingRequestTransitDataCache}), so most trips are
+     * created once for all requests.
+     * <p>
+     * THREAD SAFETY - The trip schedules are immutable, so if two threads create the same trip
+     * schedule at the same time, it does not matter which one is kept.
+     */
+    private final TripSchedule[] tripSchedules;
+
     TripPatternForDates(TripPatternWithRaptorStopIndexes tripPattern, List<TripPatternForDate> tripPatternForDates, List<Integer> offsets) {
         this.tripPattern = tripPattern;
         this.tripPatternForDates = tripPatternForDates.toArray(new TripPatternForDate[]{});
         this.offsets = offsets.stream().mapToInt(i -> i).toArray();
         this.numberOfTripSchedules = Arrays.stream(this.tripPatternForDates).mapToInt(TripPatternForDate::numberOfTripSchedules).sum();
+        this.tripSchedules = new TripSchedule[numberOfTripSchedules];
     }
 
     public TripPatternWithRaptorStopIndexes getTripPattern() {
@@ -76,6 +89,19 @@ public class TripPatternForDates implements RaptorRoute<TripSchedule>,
     // Implementing RaptorTimeTable
 
     @Override public TripSchedule getTripSchedule(int index) {
+        TripSchedule tripSchedule = tripSchedules[index];
+        if (tripSchedule == null) {
+            tripSchedule = createTripSchedule(index);
+            tripSchedules[index] = tripSchedule;
+        }
+        return tripSchedule;
+    }
+
+    @Override public int numberOfTripSchedules() {
+        return numberOfTripSchedules;
+    }
+
+    private TripSchedule createTripSchedule(int index) {
         for (int i = 0; i < tripPatternForDates.length; i++) {
             TripPatternForDate tripPatternForDate = tripPatternForDates[i];
 
@@ -87,8 +113,4 @@ public class TripPatternForDates implements RaptorRoute<TripSchedule>,
         }
         throw new IndexOutOfBoundsException("Index out of bound: " + index);
     }
-
-    @Override public int numberOfTripSchedules() {
-        return numberOfTripSchedules;
-    }
 }
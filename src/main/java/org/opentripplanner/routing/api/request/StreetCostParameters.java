@@ -0,0 +1,139 @@
+package org.opentripplanner.routing.api.request;
+
+import org.opentripplanner.routing.core.BicycleOptimizeType;
+import org.opentripplanner.routing.core.TraverseMode;
+
+import java.util.Objects;
+
+/**
+ * The parameters of a {@link RoutingRequest} which the cost of a street search depends on: the
+ * speeds, reluctances, bicycle optimization, wheelchair, elevator, bike switch and car
+ * acceleration parameters. Two requests with equal parameters get the same street costs, so the
+ * parameters are used as the key of the street search caches, like the access/egress stop cache
+ * and the street cost tables. A parameter which changes the street costs must be added here.
+ * <p>
+ * THREAD SAFETY - The parameters are immutable.
+ */
+public final class StreetCostParameters {
+
+    private double walkSpeed;
+    private double bikeSpeed;
+    private double carSpeed;
+    private double walkReluctance;
+    private double stairsReluctance;
+    private double turnReluctance;
+    private BicycleOptimizeType optimize;
+    private double bikeTriangleTimeFactor;
+    private double bikeTriangleSlopeFactor;
+    private double bikeTriangleSafetyFactor;
+    private boolean wheelchairAccessible;
+    private double maxWheelchairSlope;
+    private int elevatorBoardTime;
+    private int elevatorBoardCost;
+    private int elevatorHopTime;
+    private int elevatorHopCost;
+    private int bikeSwitchTime;
+    private int bikeSwitchCost;
+    private double carAccelerationSpeed;
+    private double carDecelerationSpeed;
+    private boolean walkingBike;
+
+    private StreetCostParameters() { }
+
+    /** The street cost parameters of the request, its bike walking request is not included. */
+    public static StreetCostParameters of(RoutingRequest request) {
+        StreetCostParameters p = new StreetCostParameters();
+        p.walkSpeed = request.walkSpeed;
+        p.bikeSpeed = request.bikeSpeed;
+        p.carSpeed = request.carSpeed;
+        p.walkReluctance = request.walkReluctance;
+        p.stairsReluctance = request.stairsReluctance;
+        p.turnReluctance = request.turnReluctance;
+        p.optimize = request.optimize;
+        p.bikeTriangleTimeFactor = request.bikeTriangleTimeFactor;
+        p.bikeTriangleSlopeFactor = request.bikeTriangleSlopeFactor;
+        p.bikeTriangleSafetyFactor = request.bikeTriangleSafetyFactor;
+        p.wheelchairAccessible = request.wheelchairAccessible;
+        p.maxWheelchairSlope = request.maxWheelchairSlope;
+        p.elevatorBoardTime = request.elevatorBoardTime;
+        p.elevatorBoardCost = request.elevatorBoardCost;
+        p.elevatorHopTime = request.elevatorHopTime;
+        p.elevatorHopCost = request.elevatorHopCost;
+        p.bikeSwitchTime = request.bikeSwitchTime;
+        p.bikeSwitchCost = request.bikeSwitchCost;
+        p.carAccelerationSpeed = request.carAccelerationSpeed;
+        p.carDecelerationSpeed = request.carDecelerationSpeed;
+        p.walkingBike = request.walkingBike;
+        return p;
+    }
+
+    /**
+     * The parameters the time and weight of traversing one street edge in the given mode depend
+     * on, see {@code StreetEdge#traversalWeight}. The other parameters are cleared, so requests
+     * which only differ in them are equal: the speed of the other modes, the turn, elevator, bike
+     * switch and car parameters, and the bicycle optimization when walking.
+     */
+    public StreetCostParameters forStreetEdge(TraverseMode mode) {
+        StreetCostParameters p = new StreetCostParameters();
+        p.walkSpeed = mode == TraverseMode.WALK ? walkSpeed : 0;
+        p.bikeSpeed = mode == TraverseMode.BICYCLE ? bikeSpeed : 0;
+        p.carSpeed = mode == TraverseMode.CAR ? carSpeed : 0;
+        p.walkReluctance = walkReluctance;
+        p.stairsReluctance = stairsReluctance;
+        p.wheelchairAccessible = wheelchairAccessible;
+        boolean biking = mode == TraverseMode.BICYCLE && !wheelchairAccessible;
+        p.optimize = biking ? optimize : null;
+        if (p.optimize == BicycleOptimizeType.TRIANGLE) {
+            p.bikeTriangleTimeFactor = bikeTriangleTimeFactor;
+            p.bikeTriangleSlopeFactor = bikeTriangleSlopeFactor;
+            p.bikeTriangleSafetyFactor = bikeTriangleSafetyFactor;
+        }
+        return p;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (o == null || getClass() != o.getClass()) { return false; }
+        StreetCostParameters that = (StreetCostParameters) o;
+        return Double.compare(walkSpeed, that.walkSpeed) == 0
+                && Double.compare(bikeSpeed, that.bikeSpeed) == 0
+                && Double.compare(carSpeed, that.carSpeed) == 0
+                && Double.compare(walkReluctance, that.walkReluctance) == 0
+                && Double.compare(stairsReluctance, that.stairsReluctance) == 0
+                && Double.compare(turnReluctance, that.turnReluctance) == 0
+                && optimize == that.optimize
+                && Double.compare(bikeTriangleTimeFactor, that.bikeTriangleTimeFactor) == 0
+                && Double.compare(bikeTriangleSlopeFactor, that.bikeTriangleSlopeFactor) == 0
+                && Double.compare(bikeTriangleSafetyFactor, that.bikeTriangleSafetyFactor) == 0
+                && wheelchairAccessible == that.wheelchairAccessible
+                && Double.compare(maxWheelchairSlope, that.maxWheelchairSlope) == 0
+                && elevatorBoardTime == that.elevatorBoardTime
+                && elevatorBoardCost == that.elevatorBoardCost
+                && elevatorHopTime == that.elevatorHopTime
+                && elevatorHopCost == that.elevatorHopCost
+                && bikeSwitchTime == that.bikeSwitchTime
+                && bikeSwitchCost == that.bikeSwitchCost
+                && Double.compare(carAccelerationSpeed, that.carAccelerationSpeed) == 0
+                && Double.compare(carDecelerationSpeed, that.carDecelerationSpeed) == 0
+                && walkingBike == that.walkingBike;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+                walkSpeed, bikeSpeed, carSpeed, walkReluctance, stairsReluctance, turnReluctance,
+                optimize, bikeTriangleTimeFactor, bikeTriangleSlopeFactor, bikeTriangleSafetyFactor,
+                wheelchairAccessible, maxWheelchairSlope, elevatorBoardTime, elevatorBoardCost,
+                elevatorHopTime, elevatorHopCost, bikeSwitchTime, bikeSwitchCost,
+                carAccelerationSpeed, carDecelerationSpeed, walkingBike
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "StreetCostParameters{walkSpeed: " + walkSpeed + ", bikeSpeed: " + bikeSpeed
+                + ", carSpeed: " + carSpeed + ", optimize: " + optimize
+                + ", wheelchair: " + wheelchairAccessible + "}";
+    }
+}
@@ -25,5 +25,12 @@ public enum RoutingErrorCode {
   /**
    * The location was found, but no stops could be found within the search radius.
    */
-  NO_STOPS_IN_RANGE
+  NO_STOPS_IN_RANGE,
+
+  /**
+   * A street search did not complete in time, so the result may be missing itineraries. The
+   * input field is the origin for the access search, the destination for the egress search and
+   * not set for the direct search.
+   */
+  SEARCH_TIMEOUT
 }
@@ -11,6 +11,7 @@ import org.opentripplanner.routing.api.response.InputField;
 import org.opentripplanner.routing.api.response.RoutingError;
 import org.opentripplanner.routing.api.response.RoutingErrorCode;
 import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.TemporaryEdge;
 import org.opentripplanner.routing.edgetype.TemporaryFreeEdge;
 import org.opentripplanner.routing.edgetype.TemporaryPartialStreetEdge;
 import org.opentripplanner.routing.error.GraphNotFoundException;
@@ -24,8 +25,11 @@ import org.opentripplanner.util.NonLocalizedString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -62,6 +66,13 @@ public class RoutingContext implements Cloneable {
 
     public RemainingWeightHeuristic remainingWeightHeuristic;
 
+    /**
+     * The temporary edges of this request connected to permanent vertices. These edges are not
+     * added to the permanent vertices, which are shared by all requests, see
+     * {@link #getOutgoing(Vertex)} and {@link #getIncoming(Vertex)}.
+     */
+    private final OverlayGraph temporaryEdges;
+
     /** Indicates that the search timed out or was otherwise aborted. */
     public boolean aborted;
 
@@ -188,6 +199,8 @@ public class RoutingContext implements Cloneable {
 
         adjustForSameFromToEdge();
 
+        temporaryEdges = collectTemporaryEdges(this.fromVertices, this.toVertices);
+
         remainingWeightHeuristic = new EuclideanRemainingWeightHeuristic();
     }
 
@@ -268,8 +281,68 @@ public class RoutingContext implements Cloneable {
         }
     }
 
+    /**
+     * Find the temporary edges between the temporary vertices of the request and the permanent
+     * vertices, by searching through the temporary vertices from the origin and destination.
+     */
+    private static OverlayGraph collectTemporaryEdges(Set<Vertex> from, Set<Vertex> to) {
+        OverlayGraph overlay = new OverlayGraph();
+        Deque<Vertex> todo = new ArrayDeque<>();
+        Set<Vertex> done = new HashSet<>();
+        if (from != null) { todo.addAll(from); }
+        if (to != null) { todo.addAll(to); }
+
+        while (!todo.isEmpty()) {
+            Vertex v = todo.poll();
+            if (!(v instanceof TemporaryVertex) || !done.add(v)) { continue; }
+
+            for (Edge e : v.getOutgoing()) {
+                if (e.getToVertex() instanceof TemporaryVertex) {
+                    todo.add(e.getToVertex());
+                }
+                else if (e instanceof TemporaryEdge) {
+                    overlay.addIncoming(e.getToVertex(), e);
+                }
+            }
+            for (Edge e : v.getIncoming()) {
+                if (e.getFromVertex() instanceof TemporaryVertex) {
+                    todo.add(e.getFromVertex());
+                }
+                else if (e instanceof TemporaryEdge) {
+                    overlay.addOutgoing(e.getFromVertex(), e);
+                }
+            }
+        }
+        return overlay;
+    }
+
     /* INSTANCE METHODS */
 
+    /**
+     * The edges leading from the given vertex in this request: the edges of the vertex, and the
+     * temporary edges from the vertex to the temporary origin/destination vertices.
+     */
+    public Collection<Edge> getOutgoing(Vertex v) {
+        List<Edge> extra = temporaryEdges.getOutgoing(v);
+        return extra.isEmpty() ? v.getOutgoing() : concat(v.getOutgoing(), extra);
+    }
+
+    /**
+     * The edges leading to the given vertex in this request: the edges of the vertex, and the
+     * temporary edges to the vertex from the temporary origin/destination vertices.
+     */
+    public Collection<Edge> getIncoming(Vertex v) {
+        List<Edge> extra = temporaryEdges.getIncoming(v);
+        return extra.isEmpty() ? v.getIncoming() : concat(v.getIncoming(), extra);
+    }
+
+    private static Collection<Edge> concat(Collection<Edge> edges, List<Edge> extra) {
+        List<Edge> result = new ArrayList<>(edges.size() + extra.size());
+        result.addAll(edges);
+        result.addAll(extra);
+        return result;
+    }
+
     public void checkIfVerticesFound() {
         List<RoutingError> routingErrors = new ArrayList<>();
 
@@ -295,7 +368,9 @@ public class RoutingContext implements Cloneable {
     /**
      * Tear down this routing context, removing any temporary edges from
      * the "permanent" graph objects. This enables all temporary objects
-     * for garbage collection.
+     * for garbage collection. The {@link TemporaryEdge}s are never added to
+     * the permanent vertices, only other edges connected to the temporary
+     * vertices are removed.
      */
     public void destroy() {
         if (fromVertices != null) {
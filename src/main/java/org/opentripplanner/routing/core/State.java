@@ -1,6 +1,7 @@
 package org.opentripplanner.routing.core;
 
 import org.opentripplanner.routing.algorithm.astar.NegativeWeightException;
+import org.opentripplanner.routing.edgetype.StreetCostTables;
 import org.opentripplanner.routing.edgetype.StreetEdge;
 import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Vertex;
@@ -268,6 +269,17 @@ public class State implements Cloneable {
     public State getBackState() {
         return this.backState;
     }
+
+    /**
+     * Drop the reference to the back state, so the states on the path to this state can be
+     * garbage collected while the search is running. This is used by the
+     * {@link org.opentripplanner.routing.spt.CompactShortestPathTree}, which keeps the path in its
+     * own arrays. A detached state can still be traversed, but it can not be used to create a
+     * {@link org.opentripplanner.routing.spt.GraphPath}.
+     */
+    public void detachBackState() {
+        this.backState = null;
+    }
     
     public TraverseMode getBackMode () {
         return stateData.backMode;
@@ -324,6 +336,24 @@ public class State implements Cloneable {
         return stateData.opt.rctx;
     }
 
+    /**
+     * Set the street cost tables looked up by the search. This is set on the initial states of a
+     * search, and shared by all the states following them.
+     */
+    public void setStreetCostTables(StreetCostTables.Lookup streetCostTables) {
+        stateData.streetCostTables = streetCostTables;
+    }
+
+    /**
+     * The street cost table for traversing the street edges with the given request and mode, or
+     * null if there is none or the search does not use the tables, see {@link StreetCostTables}.
+     */
+    public StreetCostTables.Table getStreetCostTable(RoutingRequest options, TraverseMode mode) {
+        return stateData.streetCostTables == null
+                ? null
+                : stateData.streetCostTables.getTable(options, mode);
+    }
+
     public RoutingRequest getOptions () {
         return stateData.opt;
     }
@@ -1,6 +1,7 @@
 package org.opentripplanner.routing.core;
 
 import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.edgetype.StreetCostTables;
 
 import java.util.Set;
 
@@ -42,6 +43,9 @@ public class StateData implements Cloneable {
     /* This boolean is set to true upon transition from a normal street to a no-through-traffic street. */
     protected boolean enteredNoThroughTrafficArea;
 
+    /** The street cost tables looked up by the search, or null if the search does not use them. */
+    protected StreetCostTables.Lookup streetCostTables;
+
     public StateData(RoutingRequest options) {
         TraverseModeSet modes = options.streetSubRequestModes;
         if (modes.getCar())
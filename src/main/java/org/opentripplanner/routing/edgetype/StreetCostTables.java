@@ -0,0 +1,220 @@
+package org.opentripplanner.routing.edgetype;
+
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.api.request.StreetCostParameters;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.StreetGraphSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Precomputed walk and bicycle traversal costs of the street edges, one table per cost profile.
+ * A table holds the time in seconds and the weight of each street edge of the
+ * {@link StreetGraphSnapshot}, indexed by the dense edge index, as computed by
+ * {@link StreetEdge#traversalSeconds} and {@link StreetEdge#traversalWeight}. The street edge
+ * traversal looks the costs up instead of computing the speed, slope and safety costs again for
+ * every state. The turn costs, permissions, and everything else depending on the state are still
+ * computed during the traversal.
+ * <p>
+ * The profile holds the request parameters the costs depend on, so all requests with the same
+ * parameters share a table. Most requests use the default parameters, so the tables are built up
+ * front for the walk, bicycle and bike walking profiles of the default request, see
+ * {@link #build(StreetGraphSnapshot, RoutingRequest)}. A table takes 16 bytes per edge, so no
+ * tables are built for the other profiles; they use the normal computation, and the request path
+ * only looks the tables up. Car costs are not tabled, they only depend on the edge.
+ * <p>
+ * The tables belong to a snapshot and are replaced with it when the graph is indexed again. The
+ * temporary edges and the edges added later are not in the snapshot and use the normal
+ * computation.
+ * <p>
+ * THREAD SAFETY - The tables are immutable when built, and can be shared by all searches.
+ */
+public class StreetCostTables {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreetCostTables.class);
+
+    private final Map<Profile, Table> tables;
+
+    private StreetCostTables(Map<Profile, Table> tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Build the tables of the snapshot for the profiles of the given default request: walking,
+     * biking and walking a bike.
+     */
+    public static StreetCostTables build(StreetGraphSnapshot snapshot, RoutingRequest defaults) {
+        RoutingRequest bike = defaults.clone();
+        bike.setStreetSubRequestModes(new TraverseModeSet(TraverseMode.BICYCLE, TraverseMode.WALK));
+
+        Map<Profile, Table> tables = new HashMap<>();
+        addTable(tables, snapshot, defaults, TraverseMode.WALK);
+        addTable(tables, snapshot, defaults, TraverseMode.BICYCLE);
+        addTable(tables, snapshot, defaults.bikeWalkingOptions, TraverseMode.WALK);
+        addTable(tables, snapshot, bike, TraverseMode.BICYCLE);
+        addTable(tables, snapshot, bike.bikeWalkingOptions, TraverseMode.WALK);
+        return new StreetCostTables(Map.copyOf(tables));
+    }
+
+    private static void addTable(
+            Map<Profile, Table> tables,
+            StreetGraphSnapshot snapshot,
+            RoutingRequest options,
+            TraverseMode mode
+    ) {
+        tables.computeIfAbsent(
+                new Profile(options, mode),
+                p -> new Table(snapshot, options, mode, p)
+        );
+    }
+
+    /**
+     * Return the cost table for traversing the streets with the given request and mode, or
+     * {@code null} if there is no table for the profile of the request. Tables are not built here.
+     */
+    public Table getTable(RoutingRequest options, TraverseMode mode) {
+        if (mode != TraverseMode.WALK && mode != TraverseMode.BICYCLE) { return null; }
+        return tables.get(new Profile(options, mode));
+    }
+
+    /** The number of tables built. */
+    public int size() {
+        return tables.size();
+    }
+
+    /**
+     * The request parameters the walk and bicycle costs of a street edge depend on, see
+     * {@link StreetCostParameters#forStreetEdge(TraverseMode)}.
+     */
+    static class Profile {
+        private final TraverseMode mode;
+        private final StreetCostParameters parameters;
+
+        Profile(RoutingRequest options, TraverseMode mode) {
+            this.mode = mode;
+            this.parameters = StreetCostParameters.of(options).forStreetEdge(mode);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) { return true; }
+            if (o == null || getClass() != o.getClass()) { return false; }
+            Profile that = (Profile) o;
+            return mode == that.mode && parameters.equals(that.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mode, parameters);
+        }
+
+        @Override
+        public String toString() {
+            return "Profile{" + mode + ", " + parameters + "}";
+        }
+    }
+
+    /**
+     * The tables used by one search, for each request (the request itself or its bike walking
+     * request) and mode. A table is looked up once per search, so the request parameters must not
+     * be changed during the search. The lookup is created by the search and shared by all its
+     * states, see {@link org.opentripplanner.routing.core.State#setStreetCostTables(Lookup)}.
+     * <p>
+     * THREAD SAFETY - A lookup is used by one search on one thread.
+     */
+    public static class Lookup {
+
+        private static final int SLOTS = 4;
+
+        private final StreetCostTables tables;
+
+        private final RoutingRequest[] options = new RoutingRequest[SLOTS];
+        private final TraverseMode[] modes = new TraverseMode[SLOTS];
+        private final Table[] found = new Table[SLOTS];
+        private int size = 0;
+
+        /** @param tables the tables of the graph, or {@code null} if the graph has none. */
+        public Lookup(StreetCostTables tables) {
+            this.tables = tables;
+        }
+
+        /**
+         * Return the table for the given request and mode, or {@code null} if there is none, see
+         * {@link StreetCostTables#getTable(RoutingRequest, TraverseMode)}.
+         */
+        public Table getTable(RoutingRequest options, TraverseMode mode) {
+            for (int i = 0; i < size; ++i) {
+                if (this.options[i] == options && modes[i] == mode) {
+                    return found[i];
+                }
+            }
+            Table table = tables == null ? null : tables.getTable(options, mode);
+            if (size < SLOTS) {
+                this.options[size] = options;
+                modes[size] = mode;
+                found[size] = table;
+                ++size;
+            }
+            return table;
+        }
+    }
+
+    /** The costs of the street edges in a snapshot for one profile. */
+    public static class Table {
+
+        private final StreetGraphSnapshot snapshot;
+
+        private final double[] seconds;
+
+        private final double[] weights;
+
+        private Table(
+                StreetGraphSnapshot snapshot,
+                RoutingRequest options,
+                TraverseMode mode,
+                Profile profile
+        ) {
+            long start = System.currentTimeMillis();
+            this.snapshot = snapshot;
+            int n = snapshot.edgeCount();
+            this.seconds = new double[n];
+            this.weights = new double[n];
+            double speed = options.getSpeed(mode);
+            for (int e = 0; e < n; ++e) {
+                Edge edge = snapshot.edge(e);
+                if (edge instanceof StreetEdge) {
+                    StreetEdge se = (StreetEdge) edge;
+                    seconds[e] = se.traversalSeconds(options, mode, speed);
+                    weights[e] = se.traversalWeight(options, mode, speed);
+                }
+                else {
+                    seconds[e] = Double.NaN;
+                    weights[e] = Double.NaN;
+                }
+            }
+            LOG.info("Street cost table for {} built in {} ms.", profile,
+                    System.currentTimeMillis() - start);
+        }
+
+        /** Return true if the table has the costs of the edge. */
+        public boolean contains(StreetEdge edge) {
+            return snapshot.indexOf(edge) >= 0;
+        }
+
+        /** The time to traverse the street edge, see {@link StreetEdge#traversalSeconds}. */
+        public double seconds(StreetEdge edge) {
+            return seconds[edge.getIndex()];
+        }
+
+        /** The weight of traversing the street edge, see {@link StreetEdge#traversalWeight}. */
+        public double weight(StreetEdge edge) {
+            return weights[edge.getIndex()];
+        }
+    }
+}
@@ -17,6 +17,7 @@ import org.opentripplanner.routing.core.State;
 import org.opentripplanner.routing.core.StateEditor;
 import org.opentripplanner.routing.core.TraverseMode;
 import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.graph.ByteArrayBlock;
 import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.vertextype.BarrierVertex;
@@ -91,6 +92,14 @@ public class StreetEdge extends Edge implements Cloneable {
     protected float bicycleSafetyFactor;
 
     private byte[] compactGeometry;
+
+    /**
+     * Where the compact geometry is read from when it is not in {@link #compactGeometry}: the
+     * geometry section of the graph file, see {@link #setCompactGeometry(ByteArrayBlock, int)}.
+     */
+    private transient ByteArrayBlock compactGeometryBlock;
+
+    private transient int compactGeometrySlot;
     
     private I18NString name;
 
@@ -350,74 +359,16 @@ public class StreetEdge extends Edge implements Cloneable {
 
         // Automobiles have variable speeds depending on the edge type
         double speed = calculateSpeed(options, traverseMode, s0.getTimeInMillis());
-        
-        double time = getEffectiveWalkDistance() / speed;
-        double weight;
-        // TODO(flamholz): factor out this bike, wheelchair and walking specific logic to somewhere central.
-        if (options.wheelchairAccessible) {
-            weight = getEffectiveBikeDistance() / speed;
-        } else if (traverseMode.equals(TraverseMode.BICYCLE)) {
-            time = getEffectiveBikeDistance() / speed;
-            switch (options.optimize) {
-            case SAFE:
-                weight = bicycleSafetyFactor * getDistanceMeters() / speed;
-                break;
-            case GREENWAYS:
-                weight = bicycleSafetyFactor * getDistanceMeters() / speed;
-                if (bicycleSafetyFactor <= GREENWAY_SAFETY_FACTOR) {
-                    // greenways are treated as even safer than they really are
-                    weight *= 0.66;
-                }
-                break;
-            case FLAT:
-                /* see notes in StreetVertex on speed overhead */
-                weight = getDistanceMeters() / speed + getEffectiveBikeWorkCost();
-                break;
-            case QUICK:
-                weight = getEffectiveBikeDistance() / speed;
-                break;
-            case TRIANGLE:
-                double quick = getEffectiveBikeDistance();
-                double safety = bicycleSafetyFactor * getDistanceMeters();
-                // TODO This computation is not coherent with the one for FLAT
-                double slope = getEffectiveBikeWorkCost();
-                weight = quick * options.bikeTriangleTimeFactor + slope
-                        * options.bikeTriangleSlopeFactor + safety
-                        * options.bikeTriangleSafetyFactor;
-                weight /= speed;
-                break;
-            default:
-                weight = getDistanceMeters() / speed;
-            }
-        } else {
-            if (walkingBike) {
-                // take slopes into account when walking bikes
-                time = getEffectiveBikeDistance() / speed;
-            }
-            weight = time;
-            if (traverseMode.equals(TraverseMode.WALK)) {
-                // take slopes into account when walking
-                // FIXME: this causes steep stairs to be avoided. see #1297.
-                double distance = getEffectiveWalkDistance();
-                weight = distance / speed;
-                time = weight; //treat cost as time, as in the current model it actually is the same (this can be checked for maxSlope == 0)
-                /*
-                // debug code
-                if(weight > 100){
-                    double timeflat = length_mm / speed;
-
-
-                    System.out.format("line length: %.1f m, slope: %.3f ---> distance: %.1f , weight: %.1f , time (flat):  %.1f %n", getDistance(), getMaxSlope(), distance, weight, timeflat);
-                }
-                */
-            }
-        }
 
-        if (isStairs()) {
-            weight *= options.stairsReluctance;
+        double time;
+        double weight;
+        StreetCostTables.Table costTable = s0.getStreetCostTable(options, traverseMode);
+        if (costTable != null && costTable.contains(this)) {
+            time = costTable.seconds(this);
+            weight = costTable.weight(this);
         } else {
-            // TODO: this is being applied even when biking or driving.
-            weight *= options.walkReluctance;
+            time = traversalSeconds(options, traverseMode, speed);
+            weight = traversalWeight(options, traverseMode, speed);
         }
 
         StateEditor s1 = s0.edit(this);
@@ -517,6 +468,75 @@ public class StreetEdge extends Edge implements Cloneable {
         return s1;
     }
 
+    /**
+     * The time in seconds to traverse this edge at the given speed, without the turn costs. This
+     * only depends on the request parameters used by {@link StreetCostTables.Profile}.
+     */
+    double traversalSeconds(RoutingRequest options, TraverseMode traverseMode, double speed) {
+        if (traverseMode.equals(TraverseMode.BICYCLE) && !options.wheelchairAccessible) {
+            return getEffectiveBikeDistance() / speed;
+        }
+        // Walking takes slopes into account, and the time is the same as the cost (this can be
+        // checked for maxSlope == 0). Walking a bike has the same time as walking.
+        return getEffectiveWalkDistance() / speed;
+    }
+
+    /**
+     * The weight of traversing this edge at the given speed, without the turn costs. This only
+     * depends on the request parameters used by {@link StreetCostTables.Profile}.
+     */
+    double traversalWeight(RoutingRequest options, TraverseMode traverseMode, double speed) {
+        double weight;
+        // TODO(flamholz): factor out this bike, wheelchair and walking specific logic to somewhere central.
+        if (options.wheelchairAccessible) {
+            weight = getEffectiveBikeDistance() / speed;
+        } else if (traverseMode.equals(TraverseMode.BICYCLE)) {
+            switch (options.optimize) {
+            case SAFE:
+                weight = bicycleSafetyFactor * getDistanceMeters() / speed;
+                break;
+            case GREENWAYS:
+                weight = bicycleSafetyFactor * getDistanceMeters() / speed;
+                if (bicycleSafetyFactor <= GREENWAY_SAFETY_FACTOR) {
+                    // greenways are treated as even safer than they really are
+                    weight *= 0.66;
+                }
+                break;
+            case FLAT:
+                /* see notes in StreetVertex on speed overhead */
+                weight = getDistanceMeters() / speed + getEffectiveBikeWorkCost();
+                break;
+            case QUICK:
+                weight = getEffectiveBikeDistance() / speed;
+                break;
+            case TRIANGLE:
+                double quick = getEffectiveBikeDistance();
+                double safety = bicycleSafetyFactor * getDistanceMeters();
+                // TODO This computation is not coherent with the one for FLAT
+                double slope = getEffectiveBikeWorkCost();
+                weight = quick * options.bikeTriangleTimeFactor + slope
+                        * options.bikeTriangleSlopeFactor + safety
+                        * options.bikeTriangleSafetyFactor;
+                weight /= speed;
+                break;
+            default:
+                weight = getDistanceMeters() / speed;
+            }
+        } else {
+            // take slopes into account when walking
+            // FIXME: this causes steep stairs to be avoided. see #1297.
+            weight = getEffectiveWalkDistance() / speed;
+        }
+
+        if (isStairs()) {
+            weight *= options.stairsReluctance;
+        } else {
+            // TODO: this is being applied even when biking or driving.
+            weight *= options.walkReluctance;
+        }
+        return weight;
+    }
+
     private double calculateOverageWeight(double firstValue, double secondValue, double maxValue,
             double softPenalty, double overageRate) {
         // apply penalty if we stepped over the limit on this traversal
@@ -660,16 +680,46 @@ public class StreetEdge extends Edge implements Cloneable {
 	}
 
 	public LineString getGeometry() {
+		ByteArrayBlock block = compactGeometryBlock;
+		if (compactGeometry == null && block != null) {
+			// Decode straight from the graph file section, without copying the bytes first
+			return CompactLineString.uncompactLineString(fromv.getLon(), fromv.getLat(), tov.getLon(), tov.getLat(), block.view(compactGeometrySlot), isBack());
+		}
 		return CompactLineString.uncompactLineString(fromv.getLon(), fromv.getLat(), tov.getLon(), tov.getLat(), compactGeometry, isBack());
 	}
 
 	private void setGeometry(LineString geometry) {
 		this.compactGeometry = CompactLineString.compactLineString(fromv.getLon(), fromv.getLat(), tov.getLon(), tov.getLat(), isBack() ? (LineString)geometry.reverse() : geometry, isBack());
+		this.compactGeometryBlock = null;
+	}
+
+	/**
+	 * The geometry as stored in the graph file, see {@link CompactLineString}. If the graph is
+	 * loaded from a file, this is a new copy read from the file for each call, so use
+	 * {@link #getGeometry()} to read the geometry itself.
+	 */
+	public byte[] getCompactGeometry() {
+		byte[] geometry = compactGeometry;
+		if (geometry == null && compactGeometryBlock != null) {
+			geometry = compactGeometryBlock.get(compactGeometrySlot);
+		}
+		return geometry;
+	}
+
+	/**
+	 * Read the compact geometry from the given slot of the block when used, instead of keeping
+	 * it in memory. This is used when the graph is loaded.
+	 */
+	public void setCompactGeometry(ByteArrayBlock block, int slot) {
+		this.compactGeometry = null;
+		this.compactGeometryBlock = block;
+		this.compactGeometrySlot = slot;
 	}
 
 	public void shareData(StreetEdge reversedEdge) {
-	    if (Arrays.equals(compactGeometry, reversedEdge.compactGeometry)) {
-	        compactGeometry = reversedEdge.compactGeometry;
+	    if (Arrays.equals(getCompactGeometry(), reversedEdge.getCompactGeometry())) {
+	        compactGeometry = reversedEdge.getCompactGeometry();
+	        compactGeometryBlock = null;
 	    } else {
 	        LOG.warn("Can't share geometry between {} and {}", this, reversedEdge);
 	    }
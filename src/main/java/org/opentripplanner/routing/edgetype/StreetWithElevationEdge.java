@@ -3,6 +3,7 @@ package org.opentripplanner.routing.edgetype;
 import org.locationtech.jts.geom.LineString;
 import org.opentripplanner.common.geometry.CompactElevationProfile;
 import org.opentripplanner.common.geometry.PackedCoordinateSequence;
+import org.opentripplanner.routing.graph.ByteArrayBlock;
 import org.opentripplanner.routing.util.ElevationUtils;
 import org.opentripplanner.routing.util.SlopeCosts;
 import org.opentripplanner.routing.vertextype.StreetVertex;
@@ -26,6 +27,11 @@ public class StreetWithElevationEdge extends StreetEdge {
 
     private byte[] packedElevationProfile;
 
+    /** Where the elevation profile is read from when it is not in memory, like the geometry. */
+    private transient ByteArrayBlock packedElevationProfileBlock;
+
+    private transient int packedElevationProfileSlot;
+
     private float maxSlope;
 
     private boolean flattened;
@@ -60,6 +66,7 @@ public class StreetWithElevationEdge extends StreetEdge {
         SlopeCosts costs = ElevationUtils.getSlopeCosts(elev, slopeLimit);
 
         packedElevationProfile = CompactElevationProfile.compactElevationProfileWithRegularSamples(elev);
+        packedElevationProfileBlock = null;
         effectiveBikeDistanceFactor = costs.slopeSpeedFactor;
         effectiveBikeWorkFactor = costs.slopeWorkFactor;
         maxSlope = (float)costs.maxSlope;
@@ -73,13 +80,43 @@ public class StreetWithElevationEdge extends StreetEdge {
 
     @Override
     public PackedCoordinateSequence getElevationProfile() {
+        ByteArrayBlock block = packedElevationProfileBlock;
+        if (packedElevationProfile == null && block != null) {
+            // Decode straight from the graph file section, without copying the bytes first
+            return CompactElevationProfile.uncompactElevationProfileWithRegularSamples(
+                    block.view(packedElevationProfileSlot),
+                    getEffectiveWalkDistance()
+            );
+        }
         return CompactElevationProfile.uncompactElevationProfileWithRegularSamples(
                 packedElevationProfile,
                 getEffectiveWalkDistance()
         );
     }
 
-    public boolean hasPackedElevationProfile () { return packedElevationProfile != null; }
+    public boolean hasPackedElevationProfile () {
+        return packedElevationProfile != null || packedElevationProfileBlock != null;
+    }
+
+    /**
+     * The elevation profile as stored in the graph file, see {@link CompactElevationProfile}. If
+     * the graph is loaded from a file, this is a new copy read from the file for each call, so use
+     * {@link #getElevationProfile()} to read the profile itself.
+     */
+    public byte[] getPackedElevationProfile() {
+        byte[] profile = packedElevationProfile;
+        if (profile == null && packedElevationProfileBlock != null) {
+            profile = packedElevationProfileBlock.get(packedElevationProfileSlot);
+        }
+        return profile;
+    }
+
+    /** Read the elevation profile from the given slot of the block when used. */
+    public void setPackedElevationProfile(ByteArrayBlock block, int slot) {
+        this.packedElevationProfile = null;
+        this.packedElevationProfileBlock = block;
+        this.packedElevationProfileSlot = slot;
+    }
 
     @Override
     public boolean isElevationFlattened() {
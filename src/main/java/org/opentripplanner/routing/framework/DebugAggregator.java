@@ -8,13 +8,20 @@ import org.slf4j.LoggerFactory;
 /**
  * Keeps account of timing information within the different parts of the routing process, and is
  * responsible of logging that information.
+ * <p>
+ * The direct street search may run in parallel with the transit search, so the direct street
+ * router time and the transit router time both start when the precalculation is finished, and
+ * overlap. The access/egress time is the time from the access/egress searches are started until
+ * they are finished, these searches run in parallel with the trip pattern filtering.
  */
 public class DebugAggregator {
   private static final Logger LOG = LoggerFactory.getLogger(DebugAggregator.class);
 
   private long startedCalculating;
   private long finishedPrecalculating;
-  private long finishedDirectStreetRouter;
+
+  /** The direct street search is done in another thread, if run in parallel. */
+  private volatile long finishedDirectStreetRouter;
 
   private long finishedPatternFiltering;
   private long finishedAccessEgress;
@@ -25,7 +32,7 @@ public class DebugAggregator {
   private long finishedRendering;
 
   private long precalculationTime;
-  private long directStreetRouterTime;
+  private volatile long directStreetRouterTime;
   private long tripPatternFilterTime;
   private long accessEgressTime;
   private long raptorSearchTime;
@@ -63,16 +70,17 @@ public class DebugAggregator {
    */
   public void finishedPatternFiltering() {
     finishedPatternFiltering = System.currentTimeMillis();
-    tripPatternFilterTime = finishedPatternFiltering - finishedDirectStreetRouter;
+    tripPatternFilterTime = finishedPatternFiltering - finishedPrecalculating;
     LOG.debug("Filtering tripPatterns took {} ms", tripPatternFilterTime);
   }
 
   /**
-   * Record the time when we are finished with the access and egress routing.
+   * Record the time when we are finished with the access and egress routing. The access and
+   * egress searches are started before the trip pattern filtering.
    */
   public void finishedAccessEgress() {
     finishedAccessEgress = System.currentTimeMillis();
-    accessEgressTime = finishedAccessEgress - finishedPatternFiltering;
+    accessEgressTime = finishedAccessEgress - finishedPrecalculating;
     LOG.debug("Access/egress routing took {} ms", accessEgressTime);
   }
 
@@ -96,14 +104,14 @@ public class DebugAggregator {
   /** Record the time when we finished the tranist router search */
   public void finishedTransitRouter() {
     finishedTransitRouter = System.currentTimeMillis();
-    transitRouterTime = finishedTransitRouter - finishedDirectStreetRouter;
+    transitRouterTime = finishedTransitRouter - finishedPrecalculating;
     LOG.debug("Transit routing took total {} ms", transitRouterTime);
   }
 
   /** Record the time when we finished filtering the paths for this request. */
   public void finishedFiltering() {
     finishedFiltering = System.currentTimeMillis();
-    filteringTime = finishedFiltering - finishedTransitRouter;
+    filteringTime = finishedFiltering - Math.max(finishedTransitRouter, finishedDirectStreetRouter);
     LOG.debug("Filtering took {} ms", transitRouterTime);
   }
 
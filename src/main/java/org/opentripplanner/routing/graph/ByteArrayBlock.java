@@ -0,0 +1,168 @@
+package org.opentripplanner.routing.graph;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Many small byte arrays stored as one flat block of bytes, for the primitive-heavy parts of the
+ * graph file like the compact street geometries and elevation profiles. The block is written as
+ * a few plain arrays instead of an object per array, and the bytes can be read straight from a
+ * memory-mapped graph file: an array is only copied out of the block when it is used.
+ * <p>
+ * The block has a number of slots (e.g. one per street edge), each slot refers to one of the byte
+ * arrays or to none. Slots with equal arrays share one copy, like the forward and back street
+ * edges sharing a geometry.
+ * <p>
+ * The binary layout is: the slot count, the array index of each slot (-1 for none), the array
+ * count, the start offset of each array and the end offset of the last one, then the bytes.
+ * <p>
+ * THREAD SAFETY - A block is immutable and can be read by many threads.
+ */
+public class ByteArrayBlock {
+
+    /**
+     * The largest block in bytes, including the slots and offsets. A block is read as one buffer,
+     * and a buffer, like a memory mapping of the graph file, holds at most 2 GB.
+     */
+    public static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    private static final int NONE = -1;
+
+    private final int[] arrayOfSlot;
+
+    private final int[] offsets;
+
+    private final ByteBuffer data;
+
+    private ByteArrayBlock(int[] arrayOfSlot, int[] offsets, ByteBuffer data) {
+        this.arrayOfSlot = arrayOfSlot;
+        this.offsets = offsets;
+        this.data = data;
+    }
+
+    /**
+     * Read a block from the buffer, starting at its position. The slots and offsets are read into
+     * memory, the bytes are a view of the buffer and are read when used.
+     */
+    public static ByteArrayBlock read(ByteBuffer buffer) {
+        int slotCount = buffer.getInt();
+        int[] arrayOfSlot = new int[slotCount];
+        buffer.asIntBuffer().get(arrayOfSlot);
+        buffer.position(buffer.position() + 4 * slotCount);
+        int arrayCount = buffer.getInt();
+        int[] offsets = new int[arrayCount + 1];
+        buffer.asIntBuffer().get(offsets);
+        buffer.position(buffer.position() + 4 * offsets.length);
+        ByteBuffer data = buffer.slice();
+        data.limit(offsets[arrayCount]);
+        return new ByteArrayBlock(arrayOfSlot, offsets, data);
+    }
+
+    /** Read a block from the stream into memory, see {@link #read(ByteBuffer)}. */
+    public static ByteArrayBlock read(DataInputStream in, long length) throws IOException {
+        byte[] bytes = new byte[Math.toIntExact(length)];
+        in.readFully(bytes);
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    public int slotCount() {
+        return arrayOfSlot.length;
+    }
+
+    /** Return true if the slot refers to a byte array. */
+    public boolean contains(int slot) {
+        return arrayOfSlot[slot] != NONE;
+    }
+
+    /** Return a copy of the byte array in the slot, or {@code null} if the slot is empty. */
+    public byte[] get(int slot) {
+        int array = arrayOfSlot[slot];
+        if (array == NONE) { return null; }
+        int start = offsets[array];
+        byte[] result = new byte[offsets[array + 1] - start];
+        ByteBuffer view = data.duplicate();
+        view.position(start);
+        view.get(result);
+        return result;
+    }
+
+    /**
+     * Return a read-only view of the byte array in the slot, from the position to the limit of the
+     * buffer, or {@code null} if the slot is empty. The bytes are read from the block without
+     * copying them, so this is cheaper than {@link #get(int)} when the array is decoded right away.
+     */
+    public ByteBuffer view(int slot) {
+        int array = arrayOfSlot[slot];
+        if (array == NONE) { return null; }
+        ByteBuffer view = data.asReadOnlyBuffer();
+        view.limit(offsets[array + 1]);
+        view.position(offsets[array]);
+        return view;
+    }
+
+    /** Collect the byte arrays of the slots, then write them as a block. */
+    public static class Builder {
+
+        /** The index of each array, by content. */
+        private final Map<ByteBuffer, Integer> arrayIndex = new HashMap<>();
+
+        private final List<byte[]> arrays = new ArrayList<>();
+
+        private final TIntArrayList arrayOfSlot = new TIntArrayList();
+
+        private long byteCount = 0;
+
+        /** Add a slot with the array, which may be {@code null}. */
+        public void add(byte[] array) {
+            if (array == null) {
+                arrayOfSlot.add(NONE);
+                return;
+            }
+            ByteBuffer key = ByteBuffer.wrap(array);
+            Integer index = arrayIndex.get(key);
+            if (index == null) {
+                index = arrays.size();
+                arrayIndex.put(key, index);
+                arrays.add(array);
+                byteCount += array.length;
+            }
+            arrayOfSlot.add(index);
+        }
+
+        /** The number of bytes written by {@link #write(DataOutputStream)}. */
+        public long size() {
+            return 4 + 4L * arrayOfSlot.size() + 4 + 4L * (arrays.size() + 1) + byteCount;
+        }
+
+        public void write(DataOutputStream out) throws IOException {
+            if (size() > MAX_SIZE) {
+                throw new IllegalStateException(
+                        "The block is too large: " + size() + " bytes, the limit is " + MAX_SIZE
+                        + " bytes (2 GB)."
+                );
+            }
+            out.writeInt(arrayOfSlot.size());
+            for (int i = 0; i < arrayOfSlot.size(); ++i) {
+                out.writeInt(arrayOfSlot.get(i));
+            }
+            out.writeInt(arrays.size());
+            int offset = 0;
+            for (byte[] array : arrays) {
+                out.writeInt(offset);
+                offset += array.length;
+            }
+            out.writeInt(offset);
+            for (byte[] array : arrays) {
+                out.write(array);
+            }
+        }
+    }
+}
@@ -24,6 +24,9 @@ public abstract class Edge implements Serializable {
 
     protected Vertex tov;
 
+    /** The index of this edge in the {@link StreetGraphSnapshot}, assigned when the graph is indexed. */
+    private transient int index = -1;
+
     protected Edge(Vertex v1, Vertex v2) {
         if (v1 == null || v2 == null) {
             String err = String.format("%s constructed with null vertex : %s %s", this.getClass(),
@@ -36,6 +39,18 @@ public abstract class Edge implements Serializable {
         tov.addIncoming(this);
     }
 
+    /**
+     * The dense index of this edge, or -1 if the edge is not indexed (e.g. a temporary edge). The
+     * index may be stale, see {@link StreetGraphSnapshot#indexOf(Edge)}.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+
     public Vertex getFromVertex() {
         return fromv;
     }
@@ -51,11 +51,14 @@ import org.opentripplanner.model.calendar.ServiceDate;
 import org.opentripplanner.model.calendar.impl.CalendarServiceImpl;
 import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
 import org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerUpdater;
+import org.opentripplanner.routing.api.request.RoutingRequest;
 import org.opentripplanner.routing.bike_rental.BikeRentalStationService;
 import org.opentripplanner.routing.core.TransferTable;
 import org.opentripplanner.routing.edgetype.EdgeWithCleanup;
+import org.opentripplanner.routing.edgetype.StreetCostTables;
 import org.opentripplanner.routing.edgetype.StreetEdge;
 import org.opentripplanner.routing.impl.DelegatingTransitAlertServiceImpl;
+import org.opentripplanner.routing.impl.StreetSpatialIndex;
 import org.opentripplanner.routing.impl.StreetVertexIndex;
 import org.opentripplanner.routing.services.TransitAlertService;
 import org.opentripplanner.routing.services.notes.StreetNotesService;
@@ -133,6 +136,16 @@ public class Graph implements Serializable {
 
     public transient StreetVertexIndex streetIndex;
 
+    /** Saved with the graph, so it is not built again on startup. See {@link #getStreetSpatialIndex()}. */
+    private StreetSpatialIndex streetSpatialIndex;
+
+    private transient StreetGraphSnapshot streetGraphSnapshot;
+
+    private transient StreetCostTables streetCostTables;
+
+    /** The default request the street cost tables are built for, see {@link #buildStreetCostTables}. */
+    private transient RoutingRequest streetCostDefaults;
+
     public transient GraphIndex index;
 
     public final transient Deduplicator deduplicator = new Deduplicator();
@@ -440,6 +453,50 @@ public class Graph implements Serializable {
         return Lists.newArrayList(Iterables.filter(allEdges, StreetEdge.class));
     }
 
+    /**
+     * The dense vertex and edge index of the street graph, created when the graph is indexed.
+     * Returns null if the graph is not indexed. Vertices and edges added after the graph is indexed
+     * (e.g. by the realtime updaters) are not part of the snapshot.
+     */
+    public StreetGraphSnapshot getStreetGraphSnapshot() {
+        return streetGraphSnapshot;
+    }
+
+    /**
+     * The walk and bicycle cost tables of the street edges in the snapshot, or null if the graph is
+     * not indexed or the tables are not built.
+     */
+    public StreetCostTables getStreetCostTables() {
+        return streetCostTables;
+    }
+
+    /**
+     * Build the street cost tables for the profiles of the given default request. The tables are
+     * built again for the same request each time the graph is indexed.
+     * <p>
+     * THREAD SAFETY - This is called when the router starts up, not by the requests.
+     */
+    public void buildStreetCostTables(RoutingRequest defaults) {
+        streetCostDefaults = defaults;
+        streetCostTables = streetGraphSnapshot == null
+                ? null
+                : StreetCostTables.build(streetGraphSnapshot, defaults);
+    }
+
+    /**
+     * Return the packed spatial index of the edges and vertices, used by the
+     * {@link StreetVertexIndex}. The index is built if it is missing or the graph has changed
+     * since it was built. It is kept in the graph and saved with it.
+     * <p>
+     * THREAD SAFETY - This is called when the graph is saved or indexed, not by the requests.
+     */
+    public StreetSpatialIndex getStreetSpatialIndex() {
+        if (streetSpatialIndex == null || !streetSpatialIndex.isUpToDate(this)) {
+            streetSpatialIndex = StreetSpatialIndex.build(this);
+        }
+        return streetSpatialIndex;
+    }
+
     public TransitLayer getTransitLayer() {
         return transitLayer;
     }
@@ -619,7 +676,11 @@ public class Graph implements Serializable {
      */
     public void index () {
         LOG.info("Index graph...");
-        streetIndex = new StreetVertexIndex(this);
+        streetIndex = new StreetVertexIndex(this, getStreetSpatialIndex());
+        streetGraphSnapshot = StreetGraphSnapshot.build(this);
+        streetCostTables = streetCostDefaults == null
+                ? null
+                : StreetCostTables.build(streetGraphSnapshot, streetCostDefaults);
         LOG.debug("Rebuilding edge and vertex indices.");
         for (TripPattern tp : tripPatternForId.values()) {
             // Skip frequency-based patterns which have no timetable (null)
@@ -0,0 +1,84 @@
+package org.opentripplanner.routing.graph;
+
+import org.opentripplanner.common.MavenVersion;
+import org.opentripplanner.util.OtpAppException;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The header at the start of the graph file. It identifies the file format and the OTP version
+ * which wrote the graph, so a graph from another OTP version is rejected before the (slow)
+ * deserialization starts, instead of failing somewhere inside it.
+ * <p>
+ * The header is followed by the sections of the file, see {@link SerializedGraphObject}.
+ */
+class GraphFileHeader {
+
+    private static final byte[] MAGIC = "OTPGRAPH".getBytes(StandardCharsets.US_ASCII);
+
+    /** Increment when the layout of the sections changes. */
+    static final int FORMAT_VERSION = 2;
+
+    private static final String UNKNOWN = "UNKNOWN";
+
+    final int formatVersion;
+
+    final MavenVersion otpVersion;
+
+    private GraphFileHeader(int formatVersion, MavenVersion otpVersion) {
+        this.formatVersion = formatVersion;
+        this.otpVersion = otpVersion;
+    }
+
+    /** The header for a file written by this OTP version. */
+    static GraphFileHeader current() {
+        return new GraphFileHeader(FORMAT_VERSION, MavenVersion.VERSION);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.writeInt(formatVersion);
+        out.writeUTF(otpVersion.version);
+        out.writeUTF(otpVersion.commit);
+    }
+
+    /**
+     * Read the header and check that the file can be loaded by this OTP version.
+     *
+     * @throws OtpAppException if the file is not a graph file, or if it is written by another
+     *                         version of OTP.
+     */
+    static GraphFileHeader readAndCheck(DataInputStream in, String sourceDescription)
+            throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        try {
+            in.readFully(magic);
+        } catch (EOFException e) {
+            throw new OtpAppException("The graph file is empty or truncated: " + sourceDescription);
+        }
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new OtpAppException(
+                    "Unable to load graph. The file is not a graph, or it is built with an older "
+                            + "OTP version than you are using to load it. Graph: " + sourceDescription
+            );
+        }
+        int formatVersion = in.readInt();
+        MavenVersion otpVersion = new MavenVersion(
+                in.readUTF(), in.readUTF(), UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN
+        );
+        if (formatVersion != FORMAT_VERSION || !MavenVersion.VERSION.equals(otpVersion)) {
+            throw new OtpAppException(
+                    "Unable to load graph. The graph is built with OTP " + otpVersion.version
+                            + " (file format " + formatVersion + "), but this is OTP "
+                            + MavenVersion.VERSION.version + " (file format " + FORMAT_VERSION
+                            + "). Please rebuild the graph. Graph: " + sourceDescription
+            );
+        }
+        return new GraphFileHeader(formatVersion, otpVersion);
+    }
+}
@@ -6,11 +6,15 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.factories.SerializerFactory;
 import com.esotericsoftware.kryo.serializers.ExternalizableSerializer;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
 import com.esotericsoftware.kryo.serializers.JavaSerializer;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.HashMultimap;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
 import de.javakaffee.kryoserializers.UnmodifiableCollectionsSerializer;
 import de.javakaffee.kryoserializers.guava.ArrayListMultimapSerializer;
 import de.javakaffee.kryoserializers.guava.HashMultimapSerializer;
@@ -19,17 +23,28 @@ import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TIntIntHashMap;
 import org.objenesis.strategy.SerializingInstantiatorStrategy;
 import org.opentripplanner.datastore.DataSource;
+import org.opentripplanner.datastore.file.FileDataSource;
 import org.opentripplanner.kryo.BuildConfigSerializer;
 import org.opentripplanner.kryo.HashBiMapSerializer;
 import org.opentripplanner.kryo.RouterConfigSerializer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerMapper;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetWithElevationEdge;
 import org.opentripplanner.standalone.config.BuildConfig;
 import org.opentripplanner.standalone.config.RouterConfig;
+import org.opentripplanner.util.BlockCompressedInputStream;
+import org.opentripplanner.util.BlockCompressedOutputStream;
 import org.opentripplanner.util.OtpAppException;
 import org.opentripplanner.util.ProgressTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -38,12 +53,36 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 /**
  * This is the class that get serialized/deserialized into/from the file <em>graph.obj</em>.
  * <p>
+ * The file starts with a {@link GraphFileHeader}, which is checked before anything else is read.
+ * The primitive-heavy parts of the graph follow as flat sections, each written as its length in
+ * bytes, a {@link ByteArrayBlock} and the CRC-32 checksum of the block: the compact geometries of
+ * the street edges and the packed elevation profiles of the street edges with elevation, with a
+ * slot per edge in the order of {@link #edges}. The rest of the file is this object serialized
+ * with Kryo, without the fields stored in the sections. When the graph is loaded from a local file
+ * the sections are memory-mapped, and the edges read their geometry from the mapped file when it
+ * is used, instead of holding it on the heap.
+ * <p>
+ * The Kryo serialization is one object graph, the edges, stops, patterns and configs refer to each
+ * other, so it is written by one Kryo instance. The Kryo stream is split into blocks which are
+ * compressed, and decompressed on load, in parallel, each with its own checksum, see
+ * {@link BlockCompressedOutputStream}. A damaged file is rejected with a message telling which
+ * part is damaged.
+ * <p>
+ * If {@link BuildConfig#storeTransitLayer} is set, the transit layer used by Raptor is mapped
+ * before the graph is saved and stored in the same object, see {@link #transitLayer}.
+ * <p>
  * The Graph object does not contain a collection of edges. The set of edges is generated on demand
  * from the vertices. However, when serializing, we intentionally do not serialize the vertices'
  * edge lists to prevent excessive recursion. So we need to save the edges along with the graph. We
@@ -55,9 +94,13 @@ import java.util.Collection;
 public class SerializedGraphObject implements Serializable {
     private static final Logger LOG = LoggerFactory.getLogger(SerializedGraphObject.class);
 
+    /** The number of threads compressing and decompressing the blocks of the Kryo stream. */
+    private static final int COMPRESSION_THREADS = Runtime.getRuntime().availableProcessors();
+
     public final Graph graph;
 
-    private final Collection<Edge> edges;
+    /** The edges, in the order of the slots in the sections. */
+    private final List<Edge> edges;
 
     /** The config JSON used to build this graph. Allows checking whether the configuration has changed. */
     public final BuildConfig buildConfig;
@@ -65,11 +108,24 @@ public class SerializedGraphObject implements Serializable {
     /** Embed a router configuration inside the graph, for starting up with a single file. */
     public final RouterConfig routerConfig;
 
+    /**
+     * The transit layer mapped with the transit tuning parameters of the {@link #routerConfig},
+     * or {@code null} if it is not stored, see {@link BuildConfig#storeTransitLayer}. It is
+     * serialized together with the graph, so it refers to the same stops and patterns.
+     */
+    @Nullable
+    private final TransitLayer transitLayer;
+
     public SerializedGraphObject(Graph graph, BuildConfig buildConfig, RouterConfig routerConfig) {
         this.graph = graph;
-        this.edges = graph.getEdges();
+        this.edges = new ArrayList<>(graph.getEdges());
+        // Build the spatial index before saving, so it is not built when the graph is loaded
+        graph.getStreetSpatialIndex();
         this.buildConfig = buildConfig;
         this.routerConfig = routerConfig;
+        this.transitLayer = buildConfig.storeTransitLayer && graph.hasTransit
+                ? mapTransitLayer(graph, routerConfig)
+                : null;
     }
 
     public static void verifyTheOutputGraphIsWritableIfDataSourceExist(DataSource graphOutput) {
@@ -86,14 +142,19 @@ public class SerializedGraphObject implements Serializable {
     }
 
     public static SerializedGraphObject load(DataSource source) {
-        return load(source.asInputStream(), source.path());
+        // Only a plain local file can be memory-mapped
+        File file = source instanceof FileDataSource && !source.name().endsWith(".gz")
+                ? new File(source.path())
+                : null;
+        return load(source.asInputStream(), source.path(), file);
     }
 
     public static Graph load(File file) {
         try {
             SerializedGraphObject serObj = load(
                     new FileInputStream(file),
-                    file.getAbsolutePath()
+                    file.getAbsolutePath(),
+                    file
             );
             return serObj == null ? null : serObj.graph;
         } catch (FileNotFoundException e) {
@@ -119,6 +180,48 @@ public class SerializedGraphObject implements Serializable {
         }
     }
 
+    /**
+     * Map the transit layer before saving, so it is not mapped when the graph is loaded. The graph
+     * keeps it, so a server started right after the build uses it too.
+     */
+    private static TransitLayer mapTransitLayer(Graph graph, RouterConfig routerConfig) {
+        if (graph.index == null) {
+            graph.index();
+        }
+        TransitLayer transitLayer = TransitLayerMapper.map(
+                routerConfig.transitTuningParameters(),
+                graph
+        );
+        graph.setTransitLayer(transitLayer);
+        return transitLayer;
+    }
+
+    /**
+     * Let the street edges read their geometries and elevation profiles from the sections of the
+     * graph file. The slots of the sections follow the order of the edges.
+     */
+    private void readSectionsWhenUsed(ByteArrayBlock geometries, ByteArrayBlock elevations) {
+        int geometrySlot = 0;
+        int elevationSlot = 0;
+        for (Edge e : edges) {
+            if (!(e instanceof StreetEdge)) { continue; }
+            StreetEdge se = (StreetEdge) e;
+            if (geometries.contains(geometrySlot)) {
+                se.setCompactGeometry(geometries, geometrySlot);
+            }
+            geometrySlot++;
+            if (se instanceof StreetWithElevationEdge) {
+                if (elevations.contains(elevationSlot)) {
+                    ((StreetWithElevationEdge) se).setPackedElevationProfile(elevations, elevationSlot);
+                }
+                elevationSlot++;
+            }
+        }
+        if (geometrySlot != geometries.slotCount() || elevationSlot != elevations.slotCount()) {
+            throw new OtpAppException("The street sections of the graph file do not match the edges.");
+        }
+    }
+
     /**
      * Save this object to the target it the target data source is not {@code null}.
      */
@@ -180,6 +283,16 @@ public class SerializedGraphObject implements Serializable {
         kryo.register(RouterConfig.class, new RouterConfigSerializer());
         kryo.register(BuildConfig.class, new BuildConfigSerializer());
 
+        // The street geometries and elevation profiles are written in their own sections
+        kryo.addDefaultSerializer(StreetEdge.class, (SerializerFactory) (k, type) -> {
+            FieldSerializer<?> serializer = new FieldSerializer<>(k, type);
+            serializer.removeField("compactGeometry");
+            if (StreetWithElevationEdge.class.isAssignableFrom(type)) {
+                serializer.removeField("packedElevationProfile");
+            }
+            return serializer;
+        });
+
         // OBA uses unmodifiable collections, but those classes have package-private visibility. Workaround.
         // FIXME we're importing all the contributed kryo-serializers just for this one serializer
         try {
@@ -199,20 +312,42 @@ public class SerializedGraphObject implements Serializable {
 
     /* private methods */
 
-    private static SerializedGraphObject load(InputStream inputStream, String sourceDescription) {
-        // TODO store version information, halt load if versions mismatch
+    private static SerializedGraphObject load(
+            InputStream inputStream,
+            String sourceDescription,
+            @Nullable File file
+    ) {
         try(inputStream) {
             LOG.info("Reading graph from '{}'", sourceDescription);
-            Input input = new Input(inputStream);
+            long startTime = System.currentTimeMillis();
+            CountingInputStream position = new CountingInputStream(
+                    new BufferedInputStream(inputStream)
+            );
+            DataInputStream in = new DataInputStream(position);
+            GraphFileHeader.readAndCheck(in, sourceDescription);
+            ByteArrayBlock geometries = readSection(in, position, file);
+            ByteArrayBlock elevations = readSection(in, position, file);
+            LOG.debug("Graph sections read in {} ms, memory-mapped: {}.",
+                    System.currentTimeMillis() - startTime, file != null);
+
             Kryo kryo = makeKryo();
-            SerializedGraphObject serObj = (SerializedGraphObject) kryo.readClassAndObject(input);
+            SerializedGraphObject serObj;
+            try (Input input = new Input(new BlockCompressedInputStream(position, COMPRESSION_THREADS))) {
+                serObj = (SerializedGraphObject) kryo.readClassAndObject(input);
+            }
             Graph graph = serObj.graph;
             LOG.debug("Graph read.");
             if (graph.graphVersionMismatch()) {
                 throw new RuntimeException("Graph version mismatch detected.");
             }
             serObj.reconstructEdgeLists();
-            LOG.info("Graph read. |V|={} |E|={}", graph.countVertices(), graph.countEdges());
+            serObj.readSectionsWhenUsed(geometries, elevations);
+            if (serObj.transitLayer != null) {
+                // Router.startup checks that it is mapped with the same tuning parameters
+                graph.setTransitLayer(serObj.transitLayer);
+            }
+            LOG.info("Graph read in {} ms. |V|={} |E|={}", System.currentTimeMillis() - startTime,
+                    graph.countVertices(), graph.countEdges());
             return serObj;
         }
         catch (IOException e) {
@@ -220,6 +355,11 @@ public class SerializedGraphObject implements Serializable {
             return null;
         }
         catch (KryoException ke) {
+            if (ke.getCause() instanceof IOException) {
+                // A damaged block, the checksums are verified when the blocks are read
+                throw new OtpAppException("Unable to load graph. The graph file is damaged: "
+                        + ke.getCause().getMessage() + " Graph: " + sourceDescription);
+            }
             LOG.warn("Exception while loading graph: {}\n{}", sourceDescription, ke.getLocalizedMessage());
             throw new OtpAppException("Unable to load graph. The deserialization failed. Is the "
                     + "loaded graph build with the same OTP version as you are using to load it? "
@@ -227,11 +367,90 @@ public class SerializedGraphObject implements Serializable {
         }
     }
 
+    /**
+     * Read a section written by {@link #writeSection}. If the file is given, the section is
+     * memory-mapped from the file and skipped in the stream, otherwise it is read into memory.
+     * The checksum is verified in both cases.
+     */
+    private static ByteArrayBlock readSection(
+            DataInputStream in,
+            CountingInputStream position,
+            @Nullable File file
+    ) throws IOException {
+        long length = in.readLong();
+        if (length < 0 || length > ByteArrayBlock.MAX_SIZE) {
+            throw new OtpAppException("Unable to load graph. A street section of the graph file "
+                    + "has a size of " + length + " bytes, the limit is "
+                    + ByteArrayBlock.MAX_SIZE + " bytes (2 GB).");
+        }
+        ByteBuffer bytes;
+        if (file == null) {
+            byte[] array = new byte[Math.toIntExact(length)];
+            in.readFully(array);
+            bytes = ByteBuffer.wrap(array);
+        }
+        else {
+            long offset = position.getCount();
+            ByteStreams.skipFully(in, length);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                // The mapping stays valid after the channel is closed
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.duplicate());
+        if ((int) crc.getValue() != in.readInt()) {
+            throw new OtpAppException("Unable to load graph. The graph file is damaged: "
+                    + "checksum mismatch in a street section.");
+        }
+        return ByteArrayBlock.read(bytes);
+    }
+
+    private static void writeSection(DataOutputStream out, ByteArrayBlock.Builder section)
+            throws IOException {
+        if (section.size() > ByteArrayBlock.MAX_SIZE) {
+            // Checked before the size is written, so a graph that can not be loaded is not saved
+            throw new OtpAppException("Unable to save graph. The street geometries or elevation "
+                    + "profiles take " + section.size() + " bytes, the limit of a graph file "
+                    + "section is " + ByteArrayBlock.MAX_SIZE + " bytes (2 GB).");
+        }
+        out.writeLong(section.size());
+        CheckedOutputStream checked = new CheckedOutputStream(out, new CRC32());
+        // The block is written through a data stream of its own, which must not close the file
+        DataOutputStream sectionOut = new DataOutputStream(checked);
+        section.write(sectionOut);
+        sectionOut.flush();
+        out.writeInt((int) checked.getChecksum().getValue());
+    }
+
     private void save(OutputStream outputStream, String graphName, long size) {
         LOG.info("Writing graph " + graphName + " ...");
         outputStream = wrapOutputStreamWithProgressTracker(outputStream, size);
+        ByteArrayBlock.Builder geometries = new ByteArrayBlock.Builder();
+        ByteArrayBlock.Builder elevations = new ByteArrayBlock.Builder();
+        for (Edge e : edges) {
+            if (!(e instanceof StreetEdge)) { continue; }
+            geometries.add(((StreetEdge) e).getCompactGeometry());
+            if (e instanceof StreetWithElevationEdge) {
+                elevations.add(((StreetWithElevationEdge) e).getPackedElevationProfile());
+            }
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        try {
+            GraphFileHeader.current().write(out);
+            writeSection(out, geometries);
+            writeSection(out, elevations);
+            out.flush();
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Failed to write graph " + graphName + ": " + e.getMessage(), e);
+        }
         Kryo kryo = makeKryo();
-        Output output = new Output(outputStream);
+        Output output = new Output(new BlockCompressedOutputStream(
+                out,
+                BlockCompressedOutputStream.DEFAULT_BLOCK_SIZE,
+                COMPRESSION_THREADS
+        ));
         kryo.writeClassAndObject(output, this);
         output.close();
         LOG.info("Graph written: {}", graphName);
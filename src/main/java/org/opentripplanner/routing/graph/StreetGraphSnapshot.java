@@ -0,0 +1,98 @@
+package org.opentripplanner.routing.graph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A dense integer index of the vertices and edges of the graph. The precomputed street services,
+ * like the landmark distances, the contraction hierarchy and the street cost tables, and the
+ * search trees store their data in arrays by this index instead of in maps keyed by vertex or
+ * edge.
+ * <p>
+ * The snapshot is created when the graph is indexed, see {@link Graph#index()}. The vertices and
+ * edges added later, like temporary vertices for a request or the realtime bike rental stations,
+ * are not part of the snapshot; use {@link #indexOf(Vertex)} to check if a vertex is in the
+ * snapshot. A vertex or edge removed after the snapshot is created is still in the snapshot.
+ * <p>
+ * THREAD SAFETY - The snapshot is immutable and can be shared by all threads.
+ */
+public class StreetGraphSnapshot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreetGraphSnapshot.class);
+
+    private final Vertex[] vertices;
+    private final Edge[] edges;
+
+    private StreetGraphSnapshot(Vertex[] vertices, Edge[] edges) {
+        this.vertices = vertices;
+        this.edges = edges;
+    }
+
+    /**
+     * Assign a dense index to all vertices and edges in the graph, and create the snapshot. The
+     * indices of the vertices and edges from an earlier snapshot are replaced.
+     */
+    static StreetGraphSnapshot build(Graph graph) {
+        long start = System.currentTimeMillis();
+        Collection<Vertex> graphVertices = graph.getVertices();
+        Vertex[] vertices = graphVertices.toArray(new Vertex[0]);
+        for (int i = 0; i < vertices.length; ++i) {
+            vertices[i].setIndex(i);
+        }
+
+        // An edge is only indexed if both ends are in the graph, the vertices and edges of the
+        // graph are not always consistent during the graph build.
+        List<Edge> edges = new ArrayList<>();
+        for (Vertex v : vertices) {
+            for (Edge e : v.getOutgoing()) {
+                Vertex to = e.getToVertex();
+                if (to != null && to.getIndex() >= 0 && to.getIndex() < vertices.length
+                        && vertices[to.getIndex()] == to) {
+                    e.setIndex(edges.size());
+                    edges.add(e);
+                }
+                else {
+                    e.setIndex(-1);
+                }
+            }
+        }
+        StreetGraphSnapshot snapshot = new StreetGraphSnapshot(vertices, edges.toArray(new Edge[0]));
+        LOG.info(
+                "Street graph snapshot created: |V|={} |E|={} in {} ms.",
+                vertices.length, edges.size(), System.currentTimeMillis() - start
+        );
+        return snapshot;
+    }
+
+    public int vertexCount() {
+        return vertices.length;
+    }
+
+    public int edgeCount() {
+        return edges.length;
+    }
+
+    /** Return the index of the given vertex, or -1 if the vertex is not part of this snapshot. */
+    public int indexOf(Vertex v) {
+        int i = v.getIndex();
+        return i >= 0 && i < vertices.length && vertices[i] == v ? i : -1;
+    }
+
+    /** Return the index of the given edge, or -1 if the edge is not part of this snapshot. */
+    public int indexOf(Edge e) {
+        int i = e.getIndex();
+        return i >= 0 && i < edges.length && edges[i] == e ? i : -1;
+    }
+
+    public Vertex vertex(int v) {
+        return vertices[v];
+    }
+
+    public Edge edge(int e) {
+        return edges[e];
+    }
+}
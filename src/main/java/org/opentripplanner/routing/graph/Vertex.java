@@ -5,6 +5,8 @@ import org.opentripplanner.common.MavenVersion;
 import org.opentripplanner.common.geometry.DirectionUtils;
 import org.opentripplanner.model.StationElement;
 import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.TemporaryEdge;
+import org.opentripplanner.routing.vertextype.TemporaryVertex;
 import org.opentripplanner.util.I18NString;
 import org.opentripplanner.util.NonLocalizedString;
 import org.slf4j.Logger;
@@ -47,6 +49,13 @@ public abstract class Vertex implements Serializable, Cloneable {
 
     private transient Edge[] outgoing = new Edge[0];
 
+    /**
+     * The index of this vertex in the {@link StreetGraphSnapshot}, assigned when the graph is
+     * indexed. Use {@link StreetGraphSnapshot#indexOf(Vertex)} to look it up, it checks that the
+     * vertex is part of the snapshot.
+     */
+    private transient int index = -1;
+
     /* CONSTRUCTORS */
 
     protected Vertex(Graph g, String label, double x, double y) {
@@ -79,6 +88,18 @@ public abstract class Vertex implements Serializable, Cloneable {
         return sb.toString();
     }
 
+    /**
+     * The dense index of this vertex, or -1 if the vertex is not indexed (e.g. a temporary vertex).
+     * The index may be stale, see {@link StreetGraphSnapshot#indexOf(Vertex)}.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+
     public void initEdgeLists() {
         this.outgoing = new Edge[0];
         this.incoming = new Edge[0];
@@ -127,9 +148,20 @@ public abstract class Vertex implements Serializable, Cloneable {
         return copy;
     }
 
+    /**
+     * A temporary edge, created when linking the origin and destination of a request, is only
+     * added to its temporary vertices. The permanent vertices are shared by all requests, they
+     * reach the temporary edges through the {@link org.opentripplanner.routing.core.RoutingContext}
+     * of the request instead.
+     */
+    private boolean isTemporaryEdgeOfPermanentVertex(Edge edge) {
+        return edge instanceof TemporaryEdge && !(this instanceof TemporaryVertex);
+    }
+
     /* FIELD ACCESSOR METHODS : READ/WRITE */
 
     public void addOutgoing(Edge edge) {
+        if (isTemporaryEdgeOfPermanentVertex(edge)) { return; }
         synchronized (this) {
             outgoing = addEdge(outgoing, edge);
         }
@@ -146,6 +178,7 @@ public abstract class Vertex implements Serializable, Cloneable {
 
 
     public void addIncoming(Edge edge) {
+        if (isTemporaryEdgeOfPermanentVertex(edge)) { return; }
         synchronized (this) {
             incoming = addEdge(incoming, edge);
         }
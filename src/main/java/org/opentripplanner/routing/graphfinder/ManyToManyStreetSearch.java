@@ -0,0 +1,354 @@
+package org.opentripplanner.routing.graphfinder;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.opentripplanner.model.StopLocation;
+import org.opentripplanner.routing.algorithm.astar.AStar;
+import org.opentripplanner.routing.algorithm.astar.TraverseVisitor;
+import org.opentripplanner.routing.algorithm.astar.strategies.TrivialRemainingWeightHeuristic;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.impl.StreetVertexIndex;
+import org.opentripplanner.routing.spt.DominanceFunction;
+import org.opentripplanner.routing.vertextype.TemporaryVertex;
+import org.opentripplanner.routing.vertextype.TransitStopVertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Find the street times between many points (origins or destinations) and the stops near them in
+ * one batch, for matrix and batch access/egress workloads where a street search per point would
+ * explore the same streets many times.
+ * <p>
+ * The batch is answered with one street search per point or one street search per stop, whichever
+ * gives fewer searches. When searching from the stops, each search goes in the opposite direction
+ * (from the stop back towards the points) and records its labels in a bucket at each vertex where
+ * a point is attached to the street network. The time from a point to a stop is then the time
+ * from the point to its attachment vertex plus the time in the bucket, so the search from a stop
+ * is shared by all points near it. A point on a temporary vertex is attached to the permanent
+ * vertices at the end of its temporary edges; the turn cost at the attachment vertex is not
+ * included in this case.
+ * <p>
+ * The street costs do not depend on the time of day, so the times are durations which apply at
+ * any departure (or arrival) time. The same bound is used in both directions, so the direction
+ * does not change the answer: a stop is found for a point if it is within the radius of the point,
+ * and is reached within the time it takes to travel the radius at the fastest speed of the request
+ * modes, see {@link RoutingRequest#getStreetSpeedUpperBound()}.
+ * <p>
+ * The access/egress search of a routing request has one origin, so it has no batch to share and
+ * keeps using the {@link org.opentripplanner.graph_builder.module.NearbyStopFinder}.
+ * <p>
+ * THREAD SAFETY - An instance may be shared by several threads, each call uses its own searches.
+ */
+public class ManyToManyStreetSearch {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ManyToManyStreetSearch.class);
+
+  private final Graph graph;
+
+  private final double radiusMeters;
+
+  private final StreetVertexIndex streetIndex;
+
+  public ManyToManyStreetSearch(Graph graph, double radiusMeters) {
+    this.graph = graph;
+    this.radiusMeters = radiusMeters;
+    this.streetIndex = graph.streetIndex != null ? graph.streetIndex : new StreetVertexIndex(graph);
+  }
+
+  /**
+   * Find the stops reachable from (or, in reverse, to) each of the points.
+   *
+   * @param points the origins, or the destinations if {@code reverseDirection} is true. A point
+   *               which is a stop is included in its own result.
+   * @param request the street request used to traverse the streets, it is not modified
+   * @param reverseDirection if true, find the times from the stops to the points
+   * @return the stops for each point, in the order of the points
+   */
+  public List<List<StopTime>> findNearbyStops(
+      List<Vertex> points,
+      RoutingRequest request,
+      boolean reverseDirection
+  ) {
+    List<Set<TransitStopVertex>> nearbyStops = nearbyStops(points);
+    Set<TransitStopVertex> stops = new LinkedHashSet<>();
+    nearbyStops.forEach(stops::addAll);
+    boolean fromStops = stops.size() < points.size();
+    LOG.debug(
+        "Street times for {} points and {} stops, searching from the {}.",
+        points.size(), stops.size(), fromStops ? "stops" : "points"
+    );
+    return fromStops
+        ? searchFromStops(points, nearbyStops, request, reverseDirection)
+        : searchFromPoints(points, nearbyStops, request, reverseDirection);
+  }
+
+  /** The stops within the radius of each point, in the order of the points. */
+  List<Set<TransitStopVertex>> nearbyStops(List<Vertex> points) {
+    List<Set<TransitStopVertex>> result = new ArrayList<>(points.size());
+    for (Vertex point : points) {
+      Coordinate c = point.getCoordinate();
+      result.add(new LinkedHashSet<>(streetIndex.getNearbyTransitStops(c, radiusMeters)));
+    }
+    return result;
+  }
+
+  /** Search from each point, recording the nearby stops reached. */
+  List<List<StopTime>> searchFromPoints(
+      List<Vertex> points,
+      List<Set<TransitStopVertex>> nearbyStops,
+      RoutingRequest request,
+      boolean reverseDirection
+  ) {
+    int maxDuration = maxDurationSeconds(request);
+    List<List<StopTime>> result = new ArrayList<>(points.size());
+    for (int i = 0; i < points.size(); ++i) {
+      Vertex point = points.get(i);
+      Set<TransitStopVertex> nearby = nearbyStops.get(i);
+      Map<Vertex, Label> labels = search(point, request, reverseDirection, nearby::contains);
+      Map<StopLocation, StopTime> found = new HashMap<>();
+      addPointItself(point, found);
+      for (Map.Entry<Vertex, Label> it : labels.entrySet()) {
+        Label label = it.getValue();
+        if (label.durationSeconds > maxDuration) { continue; }
+        StopLocation stop = ((TransitStopVertex) it.getKey()).getStop();
+        found.putIfAbsent(stop, label.toStopTime(stop));
+      }
+      result.add(new ArrayList<>(found.values()));
+    }
+    return result;
+  }
+
+  /**
+   * Search from each nearby stop in the opposite direction, recording the labels at the vertices
+   * where the points are attached, and combine them with the time from each point to its
+   * attachments.
+   */
+  List<List<StopTime>> searchFromStops(
+      List<Vertex> points,
+      List<Set<TransitStopVertex>> nearbyStops,
+      RoutingRequest request,
+      boolean reverseDirection
+  ) {
+    Set<TransitStopVertex> stops = new LinkedHashSet<>();
+    nearbyStops.forEach(stops::addAll);
+    List<Map<Vertex, Label>> attachments = new ArrayList<>(points.size());
+    Set<Vertex> attachmentVertices = new LinkedHashSet<>();
+    for (Vertex point : points) {
+      Map<Vertex, Label> a = attach(point, request, reverseDirection);
+      attachments.add(a);
+      attachmentVertices.addAll(a.keySet());
+    }
+
+    List<Map<StopLocation, StopTime>> found = new ArrayList<>(points.size());
+    for (Vertex point : points) {
+      Map<StopLocation, StopTime> it = new HashMap<>();
+      addPointItself(point, it);
+      found.add(it);
+    }
+    int maxDuration = maxDurationSeconds(request);
+    for (TransitStopVertex stop : stops) {
+      Map<Vertex, Label> buckets = search(
+          stop, request, !reverseDirection, attachmentVertices::contains
+      );
+      if (buckets.isEmpty()) { continue; }
+      for (int i = 0; i < points.size(); ++i) {
+        if (!nearbyStops.get(i).contains(stop)) { continue; }
+        Label best = null;
+        for (Map.Entry<Vertex, Label> a : attachments.get(i).entrySet()) {
+          Label bucket = buckets.get(a.getKey());
+          if (bucket == null) { continue; }
+          Label total = a.getValue().plus(bucket);
+          if (best == null || total.weight < best.weight) { best = total; }
+        }
+        if (best != null && best.durationSeconds <= maxDuration) {
+          StopLocation s = stop.getStop();
+          StopTime old = found.get(i).get(s);
+          if (old == null || best.weight < old.weight) {
+            found.get(i).put(s, best.toStopTime(s));
+          }
+        }
+      }
+    }
+    List<List<StopTime>> result = new ArrayList<>(points.size());
+    for (Map<StopLocation, StopTime> it : found) {
+      result.add(new ArrayList<>(it.values()));
+    }
+    return result;
+  }
+
+  /**
+   * Follow the temporary edges from the point until they reach the permanent street vertices. A
+   * permanent point is attached to itself.
+   */
+  private Map<Vertex, Label> attach(Vertex point, RoutingRequest request, boolean reverseDirection) {
+    if (!(point instanceof TemporaryVertex)) {
+      return Collections.singletonMap(point, Label.ZERO);
+    }
+    RoutingRequest rr = streetRequest(point, request, reverseDirection);
+    Map<Vertex, Label> result = new HashMap<>();
+    Map<Vertex, State> reached = new HashMap<>();
+    Deque<State> todo = new ArrayDeque<>();
+    State initial = new State(point, rr);
+    reached.put(point, initial);
+    todo.add(initial);
+    while (!todo.isEmpty()) {
+      State s0 = todo.poll();
+      Vertex v = s0.getVertex();
+      for (Edge e : reverseDirection ? rr.rctx.getIncoming(v) : rr.rctx.getOutgoing(v)) {
+        for (State s1 = e.traverse(s0); s1 != null; s1 = s1.getNextResult()) {
+          Vertex next = s1.getVertex();
+          if (next instanceof TemporaryVertex) {
+            State old = reached.get(next);
+            if (old == null || s1.getWeight() < old.getWeight()) {
+              reached.put(next, s1);
+              todo.add(s1);
+            }
+          }
+          else {
+            Label label = Label.of(s1);
+            Label old = result.get(next);
+            if (old == null || label.weight < old.weight) { result.put(next, label); }
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * A street search from the vertex, limited by the radius, returning the label of the best state
+   * at each of the vertices accepted by the filter.
+   */
+  private Map<Vertex, Label> search(
+      Vertex from,
+      RoutingRequest request,
+      boolean arriveBy,
+      Predicate<Vertex> record
+  ) {
+    RoutingRequest rr = streetRequest(from, request, arriveBy);
+    int maxDuration = maxDurationSeconds(request);
+    rr.worstTime = rr.dateTime + (arriveBy ? -maxDuration : maxDuration);
+    rr.disableRemainingWeightHeuristic = true;
+    rr.rctx.remainingWeightHeuristic = new TrivialRemainingWeightHeuristic();
+    rr.dominanceFunction = new DominanceFunction.CompactMinimumWeight();
+
+    Map<Vertex, Label> labels = new HashMap<>();
+    AStar astar = new AStar();
+    astar.setTraverseVisitor(new TraverseVisitor() {
+      @Override
+      public void visitEdge(Edge edge, State state) { }
+
+      @Override
+      public void visitVertex(State state) {
+        Vertex v = state.getVertex();
+        // The states are dequeued in weight order, so the first one is the best
+        if (v != from && state.isFinal() && record.test(v) && !labels.containsKey(v)) {
+          labels.put(v, Label.of(state));
+        }
+      }
+
+      @Override
+      public void visitEnqueue(State state) { }
+    });
+    astar.getShortestPathTree(rr);
+    return labels;
+  }
+
+  private RoutingRequest streetRequest(Vertex from, RoutingRequest request, boolean arriveBy) {
+    RoutingRequest rr = request.clone();
+    rr.arriveBy = arriveBy;
+    if (arriveBy) {
+      rr.setRoutingContext(graph, null, Collections.singleton(from));
+    }
+    else {
+      rr.setRoutingContext(graph, Collections.singleton(from), null);
+    }
+    return rr;
+  }
+
+  /** The time it takes to travel the radius at the fastest speed of the request modes. */
+  private int maxDurationSeconds(RoutingRequest request) {
+    return (int) (radiusMeters / request.getStreetSpeedUpperBound());
+  }
+
+  private static void addPointItself(Vertex point, Map<StopLocation, StopTime> found) {
+    if (point instanceof TransitStopVertex) {
+      StopLocation stop = ((TransitStopVertex) point).getStop();
+      found.put(stop, new StopTime(stop, 0, 0, 0));
+    }
+  }
+
+  /** The street time between a point and a stop. */
+  public static class StopTime {
+
+    public final StopLocation stop;
+
+    public final int durationSeconds;
+
+    public final double weight;
+
+    public final double distanceMeters;
+
+    StopTime(StopLocation stop, int durationSeconds, double weight, double distanceMeters) {
+      this.stop = stop;
+      this.durationSeconds = durationSeconds;
+      this.weight = weight;
+      this.distanceMeters = distanceMeters;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("stop %s in %d s, %.1f meters", stop, durationSeconds, distanceMeters);
+    }
+  }
+
+  /** The cost of a street path, without the path itself. */
+  private static class Label {
+
+    static final Label ZERO = new Label(0, 0, 0);
+
+    final int durationSeconds;
+
+    final double weight;
+
+    final double distanceMeters;
+
+    Label(int durationSeconds, double weight, double distanceMeters) {
+      this.durationSeconds = durationSeconds;
+      this.weight = weight;
+      this.distanceMeters = distanceMeters;
+    }
+
+    static Label of(State state) {
+      return new Label(
+          (int) state.getElapsedTimeSeconds(), state.getWeight(), state.getWalkDistance()
+      );
+    }
+
+    Label plus(Label other) {
+      return new Label(
+          durationSeconds + other.durationSeconds,
+          weight + other.weight,
+          distanceMeters + other.distanceMeters
+      );
+    }
+
+    StopTime toStopTime(StopLocation stop) {
+      return new StopTime(stop, durationSeconds, weight, distanceMeters);
+    }
+  }
+}
@@ -1,11 +1,16 @@
 package org.opentripplanner.routing.impl;
 
 import org.opentripplanner.routing.algorithm.astar.AStar;
+import org.opentripplanner.routing.algorithm.ch.ContractionHierarchy;
+import org.opentripplanner.routing.algorithm.ch.ContractionHierarchyRouter;
 import org.opentripplanner.routing.algorithm.astar.strategies.EuclideanRemainingWeightHeuristic;
+import org.opentripplanner.routing.algorithm.astar.strategies.LandmarkDistances;
+import org.opentripplanner.routing.algorithm.astar.strategies.LandmarkRemainingWeightHeuristic;
 import org.opentripplanner.routing.algorithm.astar.strategies.RemainingWeightHeuristic;
 import org.opentripplanner.routing.algorithm.astar.strategies.TrivialRemainingWeightHeuristic;
 import org.opentripplanner.routing.api.request.RoutingRequest;
 import org.opentripplanner.routing.api.response.RoutingErrorCode;
+import org.opentripplanner.routing.core.TraverseMode;
 import org.opentripplanner.routing.error.PathNotFoundException;
 import org.opentripplanner.routing.error.RoutingValidationException;
 import org.opentripplanner.routing.spt.DominanceFunction;
@@ -82,8 +87,13 @@ public class GraphPathFinder {
 
         // Choose an appropriate heuristic for goal direction.
         RemainingWeightHeuristic heuristic;
+        TraverseMode landmarkMode = LandmarkRemainingWeightHeuristic.landmarkMode(router.graph, options);
         if (options.disableRemainingWeightHeuristic || options.oneToMany) {
             heuristic = new TrivialRemainingWeightHeuristic();
+        } else if (landmarkMode != null) {
+            heuristic = new LandmarkRemainingWeightHeuristic(
+                    router.graph.getService(LandmarkDistances.class), landmarkMode
+            );
         } else {
             heuristic = new EuclideanRemainingWeightHeuristic();
         }
@@ -111,10 +121,24 @@ public class GraphPathFinder {
             options.rctx.aborted = true;
             return null;
         }
-        // Don't dig through the SPT object, just ask the A star algorithm for the states that reached the target.
-        aStar.getShortestPathTree(options, timeout);
+        // Use the contraction hierarchy for plain car searches, if the graph has one. It does not
+        // find a path for all searches, the A* search is used for those.
+        List<GraphPath> found = Collections.emptyList();
+        if (ContractionHierarchyRouter.isSupported(router.graph, options)) {
+            GraphPath path = new ContractionHierarchyRouter(
+                    router.graph, router.graph.getService(ContractionHierarchy.class)
+            ).route(options);
+            if (path != null) {
+                found = Collections.singletonList(path);
+            }
+        }
+        if (found.isEmpty()) {
+            // Don't dig through the SPT object, just ask the A star algorithm for the states that reached the target.
+            aStar.getShortestPathTree(options, timeout);
+            found = aStar.getPathsToTarget();
+        }
 
-        List<GraphPath> paths = aStar.getPathsToTarget().stream()
+        List<GraphPath> paths = found.stream()
                 .filter(path -> {
                     double duration = options.useRequestedDateTimeInMaxHours
                         ? options.arriveBy
@@ -0,0 +1,143 @@
+package org.opentripplanner.routing.impl;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.PackedSpatialIndex;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.TransitStopVertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+
+/**
+ * The packed spatial indexes of the edges, transit stops and vertices of a graph, used by the
+ * {@link StreetVertexIndex}. The indexes are saved with the graph, so they are not built again
+ * when the graph is loaded, see {@link Graph#getStreetSpatialIndex()}.
+ * <p>
+ * The indexes are not updated when the graph changes. A fingerprint of the vertices and edges is
+ * recorded when the indexes are built, and {@link #isUpToDate(Graph)} is used to check that the
+ * graph has not changed since.
+ * <p>
+ * THREAD SAFETY - The indexes are immutable.
+ */
+public class StreetSpatialIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreetSpatialIndex.class);
+
+    private final PackedSpatialIndex<Edge> edges;
+
+    private final PackedSpatialIndex<TransitStopVertex> transitStops;
+
+    private final PackedSpatialIndex<Vertex> vertices;
+
+    private final long fingerprint;
+
+    private StreetSpatialIndex(
+            PackedSpatialIndex<Edge> edges,
+            PackedSpatialIndex<TransitStopVertex> transitStops,
+            PackedSpatialIndex<Vertex> vertices,
+            long fingerprint
+    ) {
+        this.edges = edges;
+        this.transitStops = transitStops;
+        this.vertices = vertices;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Index all edges with a geometry, all transit stops and all vertices of the graph. Transit
+     * edges normally have no geometry, so they are not indexed.
+     */
+    public static StreetSpatialIndex build(Graph graph) {
+        long start = System.currentTimeMillis();
+        PackedSpatialIndex.Builder<Edge> edges = new PackedSpatialIndex.Builder<>();
+        PackedSpatialIndex.Builder<TransitStopVertex> transitStops = new PackedSpatialIndex.Builder<>();
+        PackedSpatialIndex.Builder<Vertex> vertices = new PackedSpatialIndex.Builder<>();
+
+        for (Vertex v : graph.getVertices()) {
+            for (Edge e : v.getOutgoing()) {
+                LineString geometry = e.getGeometry();
+                if (geometry != null) {
+                    edges.add(geometry.getEnvelopeInternal(), e);
+                }
+            }
+            Envelope env = new Envelope(v.getCoordinate());
+            if (v instanceof TransitStopVertex) {
+                transitStops.add(env, (TransitStopVertex) v);
+            }
+            vertices.add(env, v);
+        }
+        StreetSpatialIndex index = new StreetSpatialIndex(
+                edges.build(),
+                transitStops.build(),
+                vertices.build(),
+                fingerprint(graph)
+        );
+        LOG.info("Street spatial index built in {} ms: {}", System.currentTimeMillis() - start, index);
+        return index;
+    }
+
+    /**
+     * Return true if the graph has the same vertices and edges as when the indexes were built.
+     * This catches vertices and edges added, removed or replaced after the indexes are built,
+     * like the edges split when linking the transit stops, also when the number of vertices and
+     * edges is the same.
+     */
+    public boolean isUpToDate(Graph graph) {
+        return fingerprint(graph) == fingerprint;
+    }
+
+    /**
+     * A hash of the label and coordinate of each vertex, and the type, ends and length of each
+     * edge. It does not depend on the iteration order or the object identities, so it is the same
+     * after the graph is saved and loaded again.
+     */
+    static long fingerprint(Graph graph) {
+        long sum = 0;
+        for (Vertex v : graph.getVertices()) {
+            long h = v.getLabel().hashCode();
+            h = 31 * h + Double.hashCode(v.getX());
+            h = 31 * h + Double.hashCode(v.getY());
+            sum += mix(h);
+            for (Edge e : v.getOutgoing()) {
+                Vertex to = e.getToVertex();
+                long eh = e.getClass().getName().hashCode();
+                eh = 31 * eh + v.getLabel().hashCode();
+                eh = 31 * eh + (to == null ? 0 : to.getLabel().hashCode());
+                eh = 31 * eh + Double.hashCode(e.getDistanceMeters());
+                sum += mix(eh ^ 0x5bd1e995L);
+            }
+        }
+        return sum;
+    }
+
+    /** Spread the bits of the hash, so the sum of many hashes does not collide easily. */
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    public PackedSpatialIndex<Edge> getEdges() {
+        return edges;
+    }
+
+    public PackedSpatialIndex<TransitStopVertex> getTransitStops() {
+        return transitStops;
+    }
+
+    public PackedSpatialIndex<Vertex> getVertices() {
+        return vertices;
+    }
+
+    @Override
+    public String toString() {
+        return "StreetSpatialIndex -- edges: " + edges + " -- transitStops: " + transitStops
+                + " -- vertices: " + vertices;
+    }
+}
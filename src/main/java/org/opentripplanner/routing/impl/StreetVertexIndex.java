@@ -8,6 +8,7 @@ import org.locationtech.jts.index.SpatialIndex;
 import org.locationtech.jts.index.strtree.STRtree;
 import org.opentripplanner.common.geometry.GeometryUtils;
 import org.opentripplanner.common.geometry.HashGridSpatialIndex;
+import org.opentripplanner.common.geometry.PackedSpatialIndex;
 import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
 import org.opentripplanner.model.GenericLocation;
 import org.opentripplanner.common.model.P2;
@@ -38,7 +39,8 @@ import java.util.Set;
 
 /**
  * Indexes all edges and transit vertices of the graph spatially. Has a variety of query methods
- * used during network linking and trip planning.
+ * used during network linking and trip planning. By default the packed, static spatial indexes
+ * of the {@link StreetSpatialIndex} are used.
  * 
  * Creates a TemporaryStreetLocation representing a location on a street that's not at an
  * intersection, based on input latitude and longitude. Instantiating this class is expensive,
@@ -60,10 +62,36 @@ public class StreetVertexIndex {
 
     private SimpleStreetSplitter simpleStreetSplitter;
 
+    /**
+     * Create an index with a new {@link StreetSpatialIndex} of the graph.
+     */
     public StreetVertexIndex(Graph graph) {
-        this(graph, true);
+        this(graph, StreetSpatialIndex.build(graph));
+    }
+
+    /**
+     * Create an index using the given packed spatial indexes, which must be built from the same
+     * graph. See {@link Graph#getStreetSpatialIndex()}.
+     */
+    public StreetVertexIndex(Graph graph, StreetSpatialIndex spatialIndex) {
+        this.graph = graph;
+        this.edgeTree = spatialIndex.getEdges();
+        this.transitStopTree = spatialIndex.getTransitStops();
+        this.verticesTree = spatialIndex.getVertices();
+        this.simpleStreetSplitter = new SimpleStreetSplitter(
+                this.graph,
+                edgeTree,
+                transitStopTree,
+                false,
+                new DataImportIssueStore(false)
+        );
     }
 
+    /**
+     * Create an index with dynamic spatial indexes, a {@link HashGridSpatialIndex} or an
+     * {@link STRtree}. These are slower to build and query than the packed indexes; they are kept
+     * for comparison.
+     */
     public StreetVertexIndex(Graph graph, boolean hashGrid) {
         this.graph = graph;
         if (hashGrid) {
@@ -90,7 +118,7 @@ public class StreetVertexIndex {
         } else {
             simpleStreetSplitter = new SimpleStreetSplitter(
                     this.graph,
-                    (HashGridSpatialIndex<Edge>) edgeTree,
+                    edgeTree,
                     transitStopTree,
                     false,
                     new DataImportIssueStore(false)
@@ -294,6 +322,9 @@ public class StreetVertexIndex {
      * @return The nearest intersection, null if none found.
      */
     public StreetVertex getIntersectionAt(Coordinate coordinate) {
+        if (verticesTree instanceof PackedSpatialIndex) {
+            return getIntersectionAt(coordinate, (PackedSpatialIndex<Vertex>) verticesTree);
+        }
         double dLon = SphericalDistanceLibrary.metersToLonDegrees(MAX_CORNER_DISTANCE_METERS,
                 coordinate.y);
         double dLat = SphericalDistanceLibrary.metersToDegrees(MAX_CORNER_DISTANCE_METERS);
@@ -317,6 +348,30 @@ public class StreetVertexIndex {
         return nearest;
     }
 
+    /**
+     * Find the nearest street vertex with a nearest neighbour search in the packed index, without
+     * creating any lists. The distances are in degrees latitude, in a local equirectangular
+     * projection.
+     */
+    private static StreetVertex getIntersectionAt(Coordinate coordinate, PackedSpatialIndex<Vertex> index) {
+        final double x = coordinate.x;
+        final double y = coordinate.y;
+        final double xScale = Math.cos(Math.toRadians(y));
+        Vertex nearest = index.nearest(
+                x,
+                y,
+                xScale,
+                SphericalDistanceLibrary.metersToDegrees(MAX_CORNER_DISTANCE_METERS),
+                v -> {
+                    if (!(v instanceof StreetVertex)) { return Double.POSITIVE_INFINITY; }
+                    double dx = (v.getX() - x) * xScale;
+                    double dy = v.getY() - y;
+                    return Math.sqrt(dx * dx + dy * dy);
+                }
+        );
+        return (StreetVertex) nearest;
+    }
+
     /**
      * Gets a set of vertices corresponding to the location provided. It first tries to match a
      * Stop/StopCollection by id, and if not successful it uses the coordinates if provided.
@@ -0,0 +1,361 @@
+package org.opentripplanner.routing.spt;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.StreetGraphSnapshot;
+import org.opentripplanner.routing.graph.Vertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A shortest path tree for single-criterion (minimum weight) one-to-many street searches, like the
+ * access/egress and transfer searches done by the
+ * {@link org.opentripplanner.graph_builder.module.NearbyStopFinder}. These searches reach a large
+ * number of vertices, but only the paths to a few of them (the stops) are used.
+ * <p>
+ * The tree keeps one label per vertex in primitive arrays: the best weight, the back edge and the
+ * parent vertex. The states are detached from their back states when they are added, so the
+ * search does not keep the whole tree of {@link State}s alive. A {@link State} (and so a
+ * {@link GraphPath}) for a vertex is created on demand by traversing the edges on the path from
+ * the origin again. The slot of a vertex is found by its index in the {@link StreetGraphSnapshot}.
+ * <p>
+ * Only requests where a single state per vertex is enough can use this tree, see
+ * {@link #isSupported(RoutingRequest)}. The {@link DominanceFunction.CompactMinimumWeight} creates
+ * this tree if the request is supported, and a normal {@link ShortestPathTree} if not.
+ * <p>
+ * THREAD SAFETY - The primitive arrays are reused by the next compact tree created on the same
+ * thread, so the tree must be used on one thread only, and not after the next compact search on
+ * that thread is started. Using a tree after this throws an {@link IllegalStateException}. The
+ * vertices, edges and states are kept by the tree itself, so they are released with the tree and
+ * not kept alive by the pooled arrays of an idle thread.
+ */
+public class CompactShortestPathTree extends ShortestPathTree {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompactShortestPathTree.class);
+
+    private static final ThreadLocal<Storage> STORAGE = ThreadLocal.withInitial(Storage::new);
+
+    private static final int NO_SLOT = -1;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final Storage storage;
+
+    /** The search number of this tree in the storage, the storage is owned by the latest search. */
+    private final long search;
+
+    private final StreetGraphSnapshot snapshot;
+
+    /** The slots of the vertices which are not in the snapshot, the temporary vertices. */
+    private final TObjectIntMap<Vertex> slotIndex = new TObjectIntHashMap<>(16, 0.5f, NO_SLOT);
+
+    /** The initial states. The parent of an initial state slot is {@code -1 - index}. */
+    private final List<State> initialStates = new ArrayList<>();
+
+    private int size = 0;
+    private Vertex[] vertices = new Vertex[INITIAL_CAPACITY];
+    private Edge[] backEdges = new Edge[INITIAL_CAPACITY];
+    private State[] queued = new State[INITIAL_CAPACITY];
+
+    CompactShortestPathTree(RoutingRequest options, DominanceFunction dominanceFunction) {
+        super(options, dominanceFunction);
+        this.snapshot = options.rctx.graph.getStreetGraphSnapshot();
+        this.storage = STORAGE.get();
+        this.search = storage.reset(snapshot == null ? 0 : snapshot.vertexCount());
+    }
+
+    /**
+     * Return true if the search for the given request can use a compact tree. The request must be
+     * a one-to-many walk search without any bike rental or parking, so all states at a vertex are
+     * comparable and the best state dominates all others. The dominance function must be
+     * {@link DominanceFunction.MinimumWeight}, so the queue order and the dominance agree and a
+     * label is never replaced after its vertex is visited.
+     */
+    public static boolean isSupported(RoutingRequest request) {
+        return request.rctx != null
+                && request.rctx.toVertices == null
+                && request.dominanceFunction instanceof DominanceFunction.MinimumWeight
+                && request.streetSubRequestModes.equals(new TraverseModeSet(TraverseMode.WALK))
+                && !request.bikeRental
+                && !request.parkAndRide
+                && !request.bikeParkAndRide
+                && !request.carPickup;
+    }
+
+    @Override
+    public boolean add(State newState) {
+        checkOwner();
+        Vertex vertex = newState.getVertex();
+        State backState = newState.getBackState();
+        int slot = slotOf(vertex);
+
+        if (slot != NO_SLOT && storage.weights[slot] <= newState.getWeight()) {
+            return false;
+        }
+        if (slot == NO_SLOT) {
+            slot = newSlot(vertex);
+        }
+        storage.weights[slot] = newState.getWeight();
+        queued[slot] = newState;
+        if (backState == null) {
+            backEdges[slot] = null;
+            storage.parents[slot] = -1 - initialStates.size();
+            initialStates.add(newState);
+        }
+        else {
+            backEdges[slot] = newState.getBackEdge();
+            storage.parents[slot] = slotOf(backState.getVertex());
+            newState.detachBackState();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean visit(State state) {
+        checkOwner();
+        int slot = slotOf(state.getVertex());
+        if (slot == NO_SLOT || queued[slot] != state) {
+            return false;
+        }
+        // The state is not needed by the tree after it is visited
+        queued[slot] = null;
+        return true;
+    }
+
+    /**
+     * Create the state at the given vertex by traversing the path from the origin again. The
+     * state returned is a new state with the full chain of back states.
+     */
+    @Override
+    public State getState(Vertex dest) {
+        checkOwner();
+        int slot = slotOf(dest);
+        if (slot == NO_SLOT) {
+            return null;
+        }
+        State state = materialize(slot);
+        return state != null && state.isFinal() ? state : null;
+    }
+
+    @Override
+    public List<State> getStates(Vertex dest) {
+        checkOwner();
+        int slot = slotOf(dest);
+        if (slot == NO_SLOT) {
+            return null;
+        }
+        State state = materialize(slot);
+        return state == null ? Collections.emptyList() : Collections.singletonList(state);
+    }
+
+    /**
+     * The weight of the best path to the given vertex, or {@code Double.POSITIVE_INFINITY} if the
+     * vertex is not reached. This does not create any states.
+     */
+    public double getWeight(Vertex dest) {
+        checkOwner();
+        int slot = slotOf(dest);
+        return slot == NO_SLOT ? Double.POSITIVE_INFINITY : storage.weights[slot];
+    }
+
+    /** Return a read-only view of the vertices in this tree, no copy is made. */
+    @Override
+    public Set<Vertex> getVertices() {
+        checkOwner();
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Vertex> iterator() {
+                return new Iterator<>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size();
+                    }
+
+                    @Override
+                    public Vertex next() {
+                        if (!hasNext()) { throw new NoSuchElementException(); }
+                        checkOwner();
+                        return vertices[next++];
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                checkOwner();
+                return o instanceof Vertex && slotOf((Vertex) o) != NO_SLOT;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public int getVertexCount() {
+        checkOwner();
+        return size;
+    }
+
+    /**
+     * Create all states in the tree. This traverses the path to every vertex again, so avoid it
+     * for large trees; use {@link #getVertices()} and {@link #getStates(Vertex)} instead.
+     */
+    @Override
+    public Collection<State> getAllStates() {
+        checkOwner();
+        List<State> states = new ArrayList<>(size);
+        for (int slot = 0; slot < size; ++slot) {
+            State state = materialize(slot);
+            if (state != null) { states.add(state); }
+        }
+        return states;
+    }
+
+    @Override
+    public void dump() {
+        LOG.info("Compact SPT: vertices: {} initial states: {}", size, initialStates.size());
+    }
+
+    @Override
+    public String toString() {
+        return "CompactShortestPathTree(" + size + " vertices)";
+    }
+
+    private State materialize(int slot) {
+        // Collect the slots on the path, from the given slot back to the initial state
+        TIntArrayList path = new TIntArrayList();
+        int s = slot;
+        while (s >= 0) {
+            path.add(s);
+            s = storage.parents[s];
+        }
+        State state = initialStates.get(-1 - s);
+
+        // The last slot in the path is the initial state, traverse the edges to the other slots
+        for (int i = path.size() - 2; i >= 0; --i) {
+            int next = path.get(i);
+            state = traverse(state, backEdges[next], vertices[next], storage.weights[next]);
+            if (state == null) {
+                LOG.warn("Could not recreate the path to {}.", vertices[slot]);
+                return null;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Traverse the edge and return the result at the given vertex with the weight closest to the
+     * weight found in the search. Edge traversal is deterministic, so the weight is normally the
+     * same.
+     */
+    private static State traverse(State state, Edge edge, Vertex vertex, double weight) {
+        State best = null;
+        for (State s = edge.traverse(state); s != null; s = s.getNextResult()) {
+            if (s.getVertex() == vertex && (
+                    best == null || Math.abs(s.getWeight() - weight) < Math.abs(best.getWeight() - weight)
+            )) {
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    private void checkOwner() {
+        if (storage.search != search) {
+            throw new IllegalStateException(
+                    "A compact shortest path tree is used after a new search is started on the same thread."
+            );
+        }
+    }
+
+    private int slotOf(Vertex vertex) {
+        int index = snapshot == null ? -1 : snapshot.indexOf(vertex);
+        if (index < 0) {
+            return slotIndex.get(vertex);
+        }
+        return storage.slotGeneration[index] == storage.generation
+                ? storage.slotByVertexIndex[index]
+                : NO_SLOT;
+    }
+
+    private int newSlot(Vertex vertex) {
+        if (size == vertices.length) {
+            int capacity = 2 * size;
+            vertices = Arrays.copyOf(vertices, capacity);
+            backEdges = Arrays.copyOf(backEdges, capacity);
+            queued = Arrays.copyOf(queued, capacity);
+        }
+        storage.ensureCapacity(size + 1);
+        int index = snapshot == null ? -1 : snapshot.indexOf(vertex);
+        if (index >= 0) {
+            storage.slotByVertexIndex[index] = size;
+            storage.slotGeneration[index] = storage.generation;
+        }
+        else {
+            slotIndex.put(vertex, size);
+        }
+        vertices[size] = vertex;
+        return size++;
+    }
+
+    /**
+     * The primitive arrays for one thread, reused by each compact tree created on the thread. The
+     * slot is the index of a vertex in the arrays of the tree, given in the order the vertices are
+     * reached. The slot of a vertex in the {@link StreetGraphSnapshot} is found by its dense index.
+     * <p>
+     * The slot of an indexed vertex is only valid if its generation is the generation of the
+     * current tree, so the storage is reset in constant time. The storage keeps no references to
+     * the graph or to the trees, so an idle thread only holds on to the arrays.
+     */
+    private static class Storage {
+        private long search = 0;
+        private int generation = 0;
+        private int[] slotGeneration = new int[0];
+        private int[] slotByVertexIndex = new int[0];
+        private double[] weights = new double[INITIAL_CAPACITY];
+        private int[] parents = new int[INITIAL_CAPACITY];
+
+        /** Start a new search over a graph with the given number of indexed vertices. */
+        long reset(int vertexCount) {
+            if (vertexCount != slotGeneration.length) {
+                slotByVertexIndex = new int[vertexCount];
+                slotGeneration = new int[vertexCount];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(slotGeneration, 0);
+                generation = 1;
+            }
+            return ++search;
+        }
+
+        void ensureCapacity(int capacity) {
+            if (capacity > weights.length) {
+                int newCapacity = Math.max(capacity, 2 * weights.length);
+                weights = Arrays.copyOf(weights, newCapacity);
+                parents = Arrays.copyOf(parents, newCapacity);
+            }
+        }
+    }
+}
@@ -90,6 +90,21 @@ public abstract class DominanceFunction implements Serializable {
         public boolean betterOrEqual (State a, State b) { return a.weight <= b.weight; }
     }
 
+    /**
+     * The same dominance as {@link MinimumWeight}, for one-to-many searches where only the paths to
+     * a few of the vertices reached are used. This creates a {@link CompactShortestPathTree} if the
+     * request allows it.
+     */
+    public static class CompactMinimumWeight extends MinimumWeight {
+        @Override
+        public ShortestPathTree getNewShortestPathTree(RoutingRequest routingRequest) {
+            if (CompactShortestPathTree.isSupported(routingRequest)) {
+                return new CompactShortestPathTree(routingRequest, this);
+            }
+            return super.getNewShortestPathTree(routingRequest);
+        }
+    }
+
     /**
      * This approach is more coherent in Analyst when we are extracting travel times from the optimal
      * paths. It also leads to less branching and faster response times when building large shortest path trees.
@@ -85,6 +85,17 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
      */
     int[] departureTimes;
 
+    /*
+     * MEMORY LAYOUT - The per stop flags below are only allocated when at least one stop is flagged,
+     * so a trip with realtime times, but no flags, only carries the updated times. The scheduled
+     * int arrays (times, stop sequences, pickups and dropoffs) are deduplicated and shared between
+     * trips, so they are copied before they are changed (copy-on-write).
+     *
+     * With compressed oops a realtime update of a trip without flags retains 353 bytes of per stop
+     * arrays for a 40 stop trip (113 bytes for 10 stops), down from 521 (209) bytes when all three
+     * flag arrays were allocated on the first update.
+     */
+
     /**
      * TODO OTP2 - This needs redesign and a bit more analyzes
      *
@@ -123,6 +134,15 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
      */
     int[] dropoffs;
 
+    /**
+     * {@code true} if the {@link #pickups} array is owned by this instance and can be modified.
+     * If {@code false}, the array may be shared with other trips and must be copied before it is
+     * changed.
+     */
+    private boolean pickupsWritable = false;
+
+    /** Same as {@link #pickupsWritable}, but for the {@link #dropoffs} array. */
+    private boolean dropoffsWritable = false;
 
     /**
      * These are the GTFS stop sequence numbers, which show the order in which the vehicle visits
@@ -295,6 +315,10 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
 
     public void setRecorded(int stop, boolean recorded) {
         checkCreateTimesArrays();
+        if (isRecordedStop == null) {
+            if (!recorded) { return; }
+            isRecordedStop = new boolean[getNumStops()];
+        }
         isRecordedStop[stop] = recorded;
     }
 
@@ -309,6 +333,10 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
     //Is single stop cancelled
     public void setCancelledStop(int stop, boolean isCancelled) {
         checkCreateTimesArrays();
+        if (isCancelledStop == null) {
+            if (!isCancelled) { return; }
+            isCancelledStop = new boolean[getNumStops()];
+        }
         isCancelledStop[stop] = isCancelled;
     }
 
@@ -323,6 +351,10 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
     //Is prediction for single stop inaccurate
     public void setPredictionInaccurate(int stop, boolean predictionInaccurate) {
         checkCreateTimesArrays();
+        if (isPredictionInaccurate == null) {
+            if (!predictionInaccurate) { return; }
+            isPredictionInaccurate = new boolean[getNumStops()];
+        }
         isPredictionInaccurate[stop] = predictionInaccurate;
     }
 
@@ -336,6 +368,11 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
 
     public void setPickupType(int stop, int pickupType) {
         checkCreateTimesArrays();
+        if (pickups[stop] == pickupType) { return; }
+        if (!pickupsWritable) {
+            pickups = Arrays.copyOf(pickups, pickups.length);
+            pickupsWritable = true;
+        }
         pickups[stop] = pickupType;
     }
 
@@ -349,6 +386,11 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
 
     public void setDropoffType(int stop, int dropoffType) {
         checkCreateTimesArrays();
+        if (dropoffs[stop] == dropoffType) { return; }
+        if (!dropoffsWritable) {
+            dropoffs = Arrays.copyOf(dropoffs, dropoffs.length);
+            dropoffsWritable = true;
+        }
         dropoffs[stop] = dropoffType;
     }
 
@@ -456,7 +498,10 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
 
         pickups = new int[getNumStops()];
         Arrays.fill(pickups, PICKDROP_NONE);
+        // Share the array, both are read-only so it is copied if any of them is changed later
         dropoffs = pickups;
+        pickupsWritable = false;
+        dropoffsWritable = false;
 
         // Update the real-time state
         realTimeState = RealTimeState.CANCELED;
@@ -496,15 +541,9 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
         if (arrivalTimes == null) {
             arrivalTimes = Arrays.copyOf(scheduledArrivalTimes, scheduledArrivalTimes.length);
             departureTimes = Arrays.copyOf(scheduledDepartureTimes, scheduledDepartureTimes.length);
-            isRecordedStop = new boolean[arrivalTimes.length];
-            isCancelledStop = new boolean[arrivalTimes.length];
-            isPredictionInaccurate = new boolean[arrivalTimes.length];
             for (int i = 0; i < arrivalTimes.length; i++) {
                 arrivalTimes[i] += timeShift;
                 departureTimes[i] += timeShift;
-                isRecordedStop[i] = false;
-                isCancelledStop[i] = false;
-                isPredictionInaccurate[i] = false;
             }
 
             // Update the real-time state
@@ -527,6 +566,12 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
         TripTimes ret = null;
         try {
             ret = (TripTimes) super.clone();
+            // The clone share the arrays with this instance. So this instance can not write to its
+            // arrays in place either, and copies them on the next change, like the clone does.
+            ret.pickupsWritable = false;
+            ret.dropoffsWritable = false;
+            pickupsWritable = false;
+            dropoffsWritable = false;
         } catch (final CloneNotSupportedException e) {
             LOG.error("This is not happening.");
         }
@@ -86,6 +86,27 @@ public class BuildConfig {
      */
     public final boolean streets;
 
+    /**
+     * The number of landmarks to compute for the car and bicycle street search heuristic. The
+     * landmark distances use {@code 2 * 4 bytes} per street vertex, landmark and mode. If 0, no
+     * landmarks are computed and the straight line distance heuristic is used.
+     */
+    public final int streetLandmarks;
+
+    /**
+     * Build a contraction hierarchy of the car street network, used for car only searches. This
+     * makes long car searches much faster, at the cost of a longer graph build and a few shortcut
+     * arcs per intersection stored in the graph.
+     */
+    public final boolean carContractionHierarchy;
+
+    /**
+     * Map the transit layer used by Raptor when the graph is built, and store it in the graph. The
+     * server then skips the mapping at startup, unless the transit tuning parameters of the router
+     * config it is started with give other stop costs than the router config used to build.
+     */
+    public final boolean storeTransitLayer;
+
     /**
      * Embed the Router config in the graph, which allows it to be sent to a server fully configured over the wire.
      */
@@ -147,6 +168,14 @@ public class BuildConfig {
      */
     public final boolean osmCacheDataInMem;
 
+    /**
+     * The number of threads decompressing and parsing the OSM PBF files. With more than one thread
+     * the blocks of a file are parsed in parallel, and blocks without entities of a phase are
+     * skipped in the later phases. The entities are still added to the OSM database by one thread
+     * in file order. The default value {@code 1} parses the files in one thread.
+     */
+    public final int osmParserThreads;
+
     /**
      * Whether bike rental stations should be loaded from OSM, rather than periodically dynamically pulled from APIs.
      */
@@ -322,6 +351,7 @@ public class BuildConfig {
         maxTransferDistance = c.asDouble("maxTransferDistance", 2000d);
         multiThreadElevationCalculations = c.asBoolean("multiThreadElevationCalculations", false);
         osmCacheDataInMem = c.asBoolean("osmCacheDataInMem", false);
+        osmParserThreads = c.asInt("osmParserThreads", 1);
         osmWayPropertySet = WayPropertySetSource.fromConfig(c.asText("osmWayPropertySet", "default"));
         parentStopLinking = c.asBoolean("parentStopLinking", false);
         platformEntriesLinking = c.asBoolean("platformEntriesLinking", false);
@@ -331,6 +361,9 @@ public class BuildConfig {
         staticParkAndRide = c.asBoolean("staticParkAndRide", true);
         stationTransfers = c.asBoolean("stationTransfers", false);
         streets = c.asBoolean("streets", true);
+        streetLandmarks = c.asInt("streetLandmarks", 0);
+        carContractionHierarchy = c.asBoolean("carContractionHierarchy", false);
+        storeTransitLayer = c.asBoolean("storeTransitLayer", false);
         subwayAccessTime = c.asDouble("subwayAccessTime", DEFAULT_SUBWAY_ACCESS_TIME_MINUTES);
         transit = c.asBoolean("transit", true);
         transitServiceStart = c.asDateOrRelativePeriod("transitServiceStart", "-P1Y");
@@ -32,6 +32,9 @@ public class RouterConfig implements Serializable {
     private final String requestLogFile;
     private final boolean transmodelApiHideFeedId;
     private final double streetRoutingTimeoutSeconds;
+    private final int streetRoutingThreadPoolSize;
+    private final int accessEgressCacheSize;
+    private final int accessEgressCacheTtlSeconds;
     private final RoutingRequest routingRequestDefaults;
     private final TransitRoutingConfig transitConfig;
     private final UpdaterParameters updaterParameters;
@@ -45,6 +48,9 @@ public class RouterConfig implements Serializable {
         this.streetRoutingTimeoutSeconds = adapter.asDouble(
                 "streetRoutingTimeout", DEFAULT_STREET_ROUTING_TIMEOUT
         );
+        this.streetRoutingThreadPoolSize = adapter.asInt("streetRoutingThreadPoolSize", 0);
+        this.accessEgressCacheSize = adapter.asInt("accessEgressCacheSize", 0);
+        this.accessEgressCacheTtlSeconds = adapter.asInt("accessEgressCacheTtl", 3600);
         this.transitConfig = new TransitRoutingConfig(adapter.path("transit"));
         this.routingRequestDefaults = mapRoutingRequest(adapter.path("routingDefaults"));
         this.updaterParameters = new UpdaterConfig(adapter);
@@ -69,6 +75,30 @@ public class RouterConfig implements Serializable {
         return streetRoutingTimeoutSeconds;
     }
 
+    /**
+     * The number of threads used to run the direct street search and the access and egress
+     * searches of a routing request in parallel. The threads are shared by all requests. If 0, the
+     * street searches are done one after the other in the request thread.
+     */
+    public int streetRoutingThreadPoolSize() {
+        return streetRoutingThreadPoolSize;
+    }
+
+    /**
+     * The max number of access/egress street search results to cache. Requests from/to the same
+     * place reuse the stops found. If 0, the cache is disabled.
+     */
+    public int accessEgressCacheSize() {
+        return accessEgressCacheSize;
+    }
+
+    /**
+     * The number of seconds an access/egress street search result is kept in the cache.
+     */
+    public int accessEgressCacheTtlSeconds() {
+        return accessEgressCacheTtlSeconds;
+    }
+
     public boolean transmodelApiHideFeedId() { return transmodelApiHideFeedId; }
 
     public RoutingRequest routingRequestDefaults() {
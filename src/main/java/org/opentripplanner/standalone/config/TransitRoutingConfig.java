@@ -20,6 +20,7 @@ public final class TransitRoutingConfig
     private final int scheduledTripBinarySearchThreshold;
     private final int iterationDepartureStepInSeconds;
     private final int searchThreadPoolSize;
+    private final int searchWindowSlices;
     private final Map<TransferPriority, Integer> stopTransferCost;
     private final DynamicSearchWindowCoefficients dynamicSearchWindowCoefficients;
 
@@ -42,6 +43,10 @@ public final class TransitRoutingConfig
             "searchThreadPoolSize",
             dft.searchThreadPoolSize()
         );
+        this.searchWindowSlices = c.asInt(
+            "searchWindowSlices",
+            dft.searchWindowSlices()
+        );
         // Dynamic Search Window
         this.dynamicSearchWindowCoefficients = new DynamicSearchWindowConfig(
             c.path("dynamicSearchWindow")
@@ -73,6 +78,11 @@ public final class TransitRoutingConfig
         return searchThreadPoolSize;
     }
 
+    @Override
+    public int searchWindowSlices() {
+        return searchWindowSlices;
+    }
+
     @Override
     public DynamicSearchWindowCoefficients dynamicSearchWindowCoefficients() {
         return dynamicSearchWindowCoefficients;
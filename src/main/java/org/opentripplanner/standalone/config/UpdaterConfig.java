@@ -65,8 +65,11 @@ public class UpdaterConfig implements org.opentripplanner.updater.UpdaterParamet
 
   private final URI bikeRentalServiceDirectoryUrl;
 
+  private final int updaterBatchMaxLatencyMs;
+
   public UpdaterConfig(NodeAdapter rootAdapter) {
     this.bikeRentalServiceDirectoryUrl = rootAdapter.asUri("bikeRentalServiceDirectoryUrl", null);
+    this.updaterBatchMaxLatencyMs = rootAdapter.asInt("updaterBatchMaxLatencyMs", 0);
 
     List<NodeAdapter> updaters = rootAdapter.path("updaters").asList();
 
@@ -89,6 +92,11 @@ public class UpdaterConfig implements org.opentripplanner.updater.UpdaterParamet
    return this.bikeRentalServiceDirectoryUrl;
   }
 
+  @Override
+  public int updaterBatchMaxLatencyMs() {
+    return updaterBatchMaxLatencyMs;
+  }
+
   @Override
   public List<BikeRentalUpdaterParameters> getBikeRentalParameters() {
     return getParameters(BIKE_RENTAL, BikeRentalUpdaterParameters.class);
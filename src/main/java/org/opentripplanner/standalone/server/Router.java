@@ -7,7 +7,9 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.FileAppender;
 import org.opentripplanner.ext.transmodelapi.TransmodelAPI;
 import org.opentripplanner.inspector.TileRendererManager;
+import org.opentripplanner.routing.algorithm.raptor.router.street.NearbyStopCache;
 import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitTuningParameters;
 import org.opentripplanner.routing.algorithm.raptor.transit.TripSchedule;
 import org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerMapper;
 import org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerUpdater;
@@ -22,6 +24,11 @@ import org.opentripplanner.util.WorldEnvelope;
 import org.opentripplanner.visualizer.GraphVisualizer;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Represents the configuration of a single router (a single graph for a specific geographic area)
  * in an OTP server.
@@ -29,6 +36,9 @@ import org.slf4j.LoggerFactory;
 public class Router {
 
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(Router.class);
+
+    /** The number of street searches waiting in the street routing thread pool, per thread. */
+    private static final int STREET_ROUTING_QUEUE_SIZE_PER_THREAD = 4;
     public final Graph graph;
     public final RouterConfig routerConfig;
     public final RaptorConfig<TripSchedule> raptorConfig;
@@ -54,10 +64,41 @@ public class Router {
     /** A graphical window that is used for visualizing search progress (debugging). */
     public GraphVisualizer graphVisualizer = null;
 
+    /**
+     * Thread pool used to run the street searches of a request in parallel, {@code null} if the
+     * street searches should run in the request thread.
+     */
+    private final ExecutorService streetRoutingThreadPool;
+
+    /** Cache for the access/egress stops found by the street searches. */
+    private final NearbyStopCache nearbyStopCache;
+
     public Router(Graph graph, RouterConfig routerConfig) {
         this.graph = graph;
         this.routerConfig = routerConfig;
         this.raptorConfig = new RaptorConfig<>(routerConfig.raptorTuningParameters());
+        int poolSize = routerConfig.streetRoutingThreadPoolSize();
+        this.streetRoutingThreadPool = poolSize > 0 ? createStreetRoutingThreadPool(poolSize) : null;
+        this.nearbyStopCache = new NearbyStopCache(
+            routerConfig.accessEgressCacheSize(),
+            routerConfig.accessEgressCacheTtlSeconds()
+        );
+    }
+
+    /**
+     * A fixed size pool with a bounded queue. If the queue is full the search is run in the thread
+     * starting it, so a burst of requests makes each request slower instead of queueing searches
+     * which would time out before they start.
+     */
+    private static ExecutorService createStreetRoutingThreadPool(int poolSize) {
+        return new ThreadPoolExecutor(
+            poolSize,
+            poolSize,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(STREET_ROUTING_QUEUE_SIZE_PER_THREAD * poolSize),
+            new ThreadPoolExecutor.CallerRunsPolicy()
+        );
     }
 
     /*
@@ -72,6 +113,7 @@ public class Router {
     public void startup() {
         this.tileRendererManager = new TileRendererManager(this.graph);
         this.defaultRoutingRequest = routerConfig.routingRequestDefaults();
+        graph.buildStreetCostTables(defaultRoutingRequest);
 
         if (routerConfig.requestLogFile() != null) {
             this.requestLogger = createLogger(routerConfig.requestLogFile());
@@ -84,7 +126,19 @@ public class Router {
         /* Realtime updates can be mapped similarly by a recurring operation in a GraphUpdater below. */
         LOG.info("Creating transit layer for Raptor routing.");
         if (graph.hasTransit && graph.index != null) {
-            graph.setTransitLayer(TransitLayerMapper.map(routerConfig.transitTuningParameters(), graph));
+            TransitTuningParameters tuningParameters = routerConfig.transitTuningParameters();
+            TransitLayer storedTransitLayer = graph.getTransitLayer();
+            if (storedTransitLayer != null
+                && storedTransitLayer.getStopIndex().hasSameStopBoardAlightCosts(tuningParameters)
+            ) {
+                LOG.info("Using the transit layer stored in the graph.");
+            } else {
+                if (storedTransitLayer != null) {
+                    LOG.info("The transit layer stored in the graph is mapped with other transit "
+                        + "tuning parameters than the router config, it is mapped again.");
+                }
+                graph.setTransitLayer(TransitLayerMapper.map(tuningParameters, graph));
+            }
             graph.setRealtimeTransitLayer(new TransitLayer(graph.getTransitLayer()));
             graph.transitLayerUpdater = new TransitLayerUpdater(
                 graph,
@@ -123,6 +177,9 @@ public class Router {
     /** Shut down this router when evicted or (auto-)reloaded. Stop any real-time updater threads. */
     public void shutdown() {
         GraphUpdaterConfigurator.shutdownGraph(this.graph);
+        if (streetRoutingThreadPool != null) {
+            streetRoutingThreadPool.shutdown();
+        }
     }
 
     /**
@@ -150,4 +207,16 @@ public class Router {
     public double streetRoutingTimeoutSeconds() {
         return  routerConfig.streetRoutingTimeoutSeconds();
     }
+
+    /**
+     * @return the thread pool to run street searches in parallel, or {@code null} if the street
+     * searches should run in the request thread.
+     */
+    public ExecutorService streetRoutingThreadPool() {
+        return streetRoutingThreadPool;
+    }
+
+    public NearbyStopCache nearbyStopCache() {
+        return nearbyStopCache;
+    }
 }
@@ -59,6 +59,23 @@ public interface RaptorTuningParameters {
         return 0;
     }
 
+    /**
+     * Split the search-window of a multi-criteria search into the given number of slices and
+     * search each slice in parallel. The threads used are taken from the search thread pool, see
+     * {@link #searchThreadPoolSize()}. The result from each slice is merged into one set of
+     * pareto optimal paths.
+     * <p/>
+     * Each slice is searched from scratch, so the total amount of work increases, but the
+     * response time for a single search with a long search-window is reduced. This only apply
+     * if the thread pool is enabled and the request allows running in parallel. The router only
+     * allows its requests to run in parallel if this is more than 1.
+     * <p/>
+     * The default value is 1 - the search-window is searched in one thread.
+     */
+    default int searchWindowSlices() {
+        return 1;
+    }
+
 
     /**
      * Coefficients used to calculate raptor-search-window parameters dynamically  from heuristics.
@@ -1,6 +1,7 @@
 package org.opentripplanner.transit.raptor.rangeraptor.path;
 
 import org.opentripplanner.transit.raptor.api.path.Path;
+import org.opentripplanner.transit.raptor.api.request.SearchParams;
 import org.opentripplanner.transit.raptor.api.transit.RaptorTripSchedule;
 import org.opentripplanner.transit.raptor.util.paretoset.ParetoComparator;
 
@@ -25,6 +26,36 @@ public class PathParetoSetComparators {
     /** Prevent this utility class from instantiation. */
     private PathParetoSetComparators() { }
 
+    /**
+     * Pick the comparator to use for the given search parameters. The given {@code includeCost}
+     * decide if the cost should be included in the pareto set criteria or not.
+     */
+    public static <T extends RaptorTripSchedule> ParetoComparator<Path<T>> paretoComparator(
+            SearchParams searchParams,
+            boolean includeCost
+    ) {
+        double relaxedCost = searchParams.relaxCostAtDestination();
+        boolean includeRelaxedCost = includeCost && relaxedCost > 0.0;
+        boolean includeTimetable = searchParams.timetableEnabled();
+
+
+        if(includeTimetable && includeRelaxedCost) {
+            return comparatorWithTimetableAndRelaxedCost(relaxedCost);
+        }
+        if(includeTimetable && includeCost) {
+            return comparatorWithTimetableAndCost();
+        }
+        if(includeTimetable) {
+            return comparatorWithTimetable();
+        }
+        if(includeRelaxedCost) {
+            return comparatorWithRelaxedCost(relaxedCost);
+        }
+        if(includeCost) {
+            return comparatorWithCost();
+        }
+        return comparatorStandard();
+    }
 
     public static <T extends RaptorTripSchedule> ParetoComparator<Path<T>> comparatorStandard() {
         return (l, r) ->
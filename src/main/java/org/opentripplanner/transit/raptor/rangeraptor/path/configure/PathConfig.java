@@ -4,16 +4,10 @@ package org.opentripplanner.transit.raptor.rangeraptor.path.configure;
 import org.opentripplanner.transit.raptor.api.path.Path;
 import org.opentripplanner.transit.raptor.api.transit.RaptorTripSchedule;
 import org.opentripplanner.transit.raptor.rangeraptor.path.DestinationArrivalPaths;
+import org.opentripplanner.transit.raptor.rangeraptor.path.PathParetoSetComparators;
 import org.opentripplanner.transit.raptor.rangeraptor.transit.SearchContext;
 import org.opentripplanner.transit.raptor.util.paretoset.ParetoComparator;
 
-import static org.opentripplanner.transit.raptor.rangeraptor.path.PathParetoSetComparators.comparatorStandard;
-import static org.opentripplanner.transit.raptor.rangeraptor.path.PathParetoSetComparators.comparatorWithCost;
-import static org.opentripplanner.transit.raptor.rangeraptor.path.PathParetoSetComparators.comparatorWithRelaxedCost;
-import static org.opentripplanner.transit.raptor.rangeraptor.path.PathParetoSetComparators.comparatorWithTimetable;
-import static org.opentripplanner.transit.raptor.rangeraptor.path.PathParetoSetComparators.comparatorWithTimetableAndCost;
-import static org.opentripplanner.transit.raptor.rangeraptor.path.PathParetoSetComparators.comparatorWithTimetableAndRelaxedCost;
-
 /**
  * This class is responsible for creating a a result collector - the
  * set of paths.
@@ -47,26 +41,6 @@ public class PathConfig<T extends RaptorTripSchedule> {
     }
 
     private ParetoComparator<Path<T>> paretoComparator(boolean includeCost) {
-        double relaxedCost = ctx.searchParams().relaxCostAtDestination();
-        boolean includeRelaxedCost = includeCost && relaxedCost > 0.0;
-        boolean includeTimetable = ctx.searchParams().timetableEnabled();
-
-
-        if(includeTimetable && includeRelaxedCost) {
-            return comparatorWithTimetableAndRelaxedCost(relaxedCost);
-        }
-        if(includeTimetable && includeCost) {
-            return comparatorWithTimetableAndCost();
-        }
-        if(includeTimetable) {
-            return comparatorWithTimetable();
-        }
-        if(includeRelaxedCost) {
-            return comparatorWithRelaxedCost(relaxedCost);
-        }
-        if(includeCost) {
-            return comparatorWithCost();
-        }
-        return comparatorStandard();
+        return PathParetoSetComparators.paretoComparator(ctx.searchParams(), includeCost);
     }
 }
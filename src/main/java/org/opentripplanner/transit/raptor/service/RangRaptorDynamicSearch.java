@@ -118,6 +118,14 @@ public class RangRaptorDynamicSearch<T extends RaptorTripSchedule> {
         LOG.debug("Raptor request: " + mcRequest.toString());
         Worker<T> worker;
 
+        // Split the search-window and run the slices in parallel
+        if (SearchWindowSlicesMcSearch.isApplicable(config, mcRequest)) {
+            Collection<Path<T>> paths = new SearchWindowSlicesMcSearch<>(
+                    config, transitData, getDestinationHeuristics()
+            ).route(mcRequest);
+            return new RaptorResponse<>(paths, originalRequest, mcRequest);
+        }
+
         // Create worker
         if (mcRequest.profile().is(MULTI_CRITERIA)) {
             worker = config.createMcWorker(transitData, mcRequest, getDestinationHeuristics());
@@ -0,0 +1,166 @@
+package org.opentripplanner.transit.raptor.service;
+
+import org.opentripplanner.transit.raptor.api.path.Path;
+import org.opentripplanner.transit.raptor.api.request.RaptorRequest;
+import org.opentripplanner.transit.raptor.api.request.SearchParams;
+import org.opentripplanner.transit.raptor.api.transit.RaptorTransitDataProvider;
+import org.opentripplanner.transit.raptor.api.transit.RaptorTripSchedule;
+import org.opentripplanner.transit.raptor.api.view.Heuristics;
+import org.opentripplanner.transit.raptor.api.view.Worker;
+import org.opentripplanner.transit.raptor.rangeraptor.configure.RaptorConfig;
+import org.opentripplanner.transit.raptor.rangeraptor.path.PathParetoSetComparators;
+import org.opentripplanner.transit.raptor.util.paretoset.ParetoSet;
+import org.opentripplanner.util.OtpAppException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static org.opentripplanner.transit.raptor.api.request.RaptorProfile.MULTI_CRITERIA;
+
+
+/**
+ * Run a multi-criteria Range Raptor search in parallel by splitting the search-window into
+ * slices. Each slice is searched by its own worker, with its own state, using the Raptor thread
+ * pool. The paths found are merged into one pareto set.
+ * <p>
+ * Range Raptor iterate backwards in time over the search-window and use the state from the later
+ * iterations to prune the search. Each slice starts with an empty state, so the total amount of
+ * work increases, but the response time for a single search goes down. The slices are aligned
+ * with the Range Raptor iteration departure times, so the union of the slice iterations is the
+ * same set of iterations as in a search for the whole window.
+ * <p>
+ * The paths are merged in the same order as Range Raptor iterate - the latest slice first. So,
+ * the result is deterministic and does not depend on which slice finish first.
+ *
+ * @param <T> The TripSchedule type defined by the user of the raptor API.
+ */
+class SearchWindowSlicesMcSearch<T extends RaptorTripSchedule> {
+    private static final Logger LOG = LoggerFactory.getLogger(SearchWindowSlicesMcSearch.class);
+
+    private final RaptorConfig<T> config;
+    private final RaptorTransitDataProvider<T> transitData;
+    private final Heuristics heuristics;
+
+    SearchWindowSlicesMcSearch(
+            RaptorConfig<T> config,
+            RaptorTransitDataProvider<T> transitData,
+            Heuristics heuristics
+    ) {
+        this.config = config;
+        this.transitData = transitData;
+        this.heuristics = heuristics;
+    }
+
+    /**
+     * Return {@code true} if the given request can be searched in parallel slices. This require
+     * the thread pool to be enabled, the request to allow running in parallel and a forward
+     * multi-criteria search with more than one Range Raptor iteration.
+     */
+    static boolean isApplicable(RaptorConfig<?> config, RaptorRequest<?> request) {
+        SearchParams s = request.searchParams();
+        return config.isMultiThreaded()
+                && config.tuningParameters().searchWindowSlices() > 1
+                && request.runInParallel()
+                && request.profile().is(MULTI_CRITERIA)
+                && request.searchDirection().isForward()
+                && s.isEarliestDepartureTimeSet()
+                && s.isSearchWindowSet()
+                && !s.searchOneIterationOnly()
+                && s.searchWindowInSeconds() > config.tuningParameters().iterationDepartureStepInSeconds();
+    }
+
+    Collection<Path<T>> route(RaptorRequest<T> request) {
+        List<RaptorRequest<T>> slices = sliceRequest(
+                request,
+                config.tuningParameters().searchWindowSlices(),
+                config.tuningParameters().iterationDepartureStepInSeconds()
+        );
+        LOG.debug("Route using RangeRaptor - search-window split in {} slices.", slices.size());
+
+        List<Collection<Path<T>>> results = runInParallel(slices);
+
+        ParetoSet<Path<T>> paths = new ParetoSet<>(
+                PathParetoSetComparators.paretoComparator(request.searchParams(), true)
+        );
+        for (Collection<Path<T>> it : results) {
+            paths.addAll(it);
+        }
+        return paths;
+    }
+
+    /**
+     * Split the search-window of the given request into at most {@code nSlices} requests. The
+     * first slice is the latest, the same order as Range Raptor iterate over the search-window.
+     * <p>
+     * Range Raptor iterate over the departure times {@code EDT + SW - step, EDT + SW - 2*step,
+     * ...} down to and including EDT. The iterations are split evenly on the slices, and each slice
+     * get a EDT and search-window matching its iterations.
+     */
+    static <T extends RaptorTripSchedule> List<RaptorRequest<T>> sliceRequest(
+            RaptorRequest<T> request,
+            int nSlices,
+            int iterationStep
+    ) {
+        SearchParams s = request.searchParams();
+        int endTime = s.earliestDepartureTime() + s.searchWindowInSeconds();
+        int nIterations = s.searchWindowInSeconds() / iterationStep;
+        nSlices = Math.min(nSlices, nIterations);
+
+        List<RaptorRequest<T>> slices = new ArrayList<>(nSlices);
+        int firstIteration = 1;
+
+        for (int i = 0; i < nSlices; ++i) {
+            int size = nIterations / nSlices + (i < nIterations % nSlices ? 1 : 0);
+            int lastIteration = firstIteration + size - 1;
+
+            slices.add(
+                request.mutate().searchParams()
+                    .earliestDepartureTime(endTime - lastIteration * iterationStep)
+                    .searchWindowInSeconds(size * iterationStep)
+                    .build()
+            );
+            firstIteration = lastIteration + 1;
+        }
+        return slices;
+    }
+
+    /**
+     * Run all slices, but the first, on the thread pool. The first slice is searched in the
+     * calling thread. The workers are created before any search is started, in the calling
+     * thread, because creating a worker reads the (lazy initialized) heuristics.
+     */
+    private List<Collection<Path<T>>> runInParallel(List<RaptorRequest<T>> slices) {
+        List<Worker<T>> workers = new ArrayList<>();
+        for (RaptorRequest<T> slice : slices) {
+            workers.add(config.createMcWorker(transitData, slice, heuristics));
+        }
+
+        List<Future<Collection<Path<T>>>> futures = new ArrayList<>();
+        List<Collection<Path<T>>> results = new ArrayList<>();
+
+        try {
+            for (Worker<T> worker : workers.subList(1, workers.size())) {
+                futures.add(config.threadPool().submit(worker::route));
+            }
+            results.add(workers.get(0).route());
+
+            for (Future<Collection<Path<T>>> f : futures) {
+                results.add(f.get());
+            }
+            return results;
+        }
+        catch (ExecutionException | InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            LOG.error(e.getMessage() + ". Request: " + slices.get(0), e);
+            throw new OtpAppException(
+                    "Failed to run multi-criteria search-window slices in parallel. Details: "
+                            + e.getMessage()
+            );
+        }
+    }
+}
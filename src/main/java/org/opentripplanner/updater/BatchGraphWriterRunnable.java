@@ -0,0 +1,32 @@
+package org.opentripplanner.updater;
+
+/**
+ * A {@link GraphWriterRunnable} which can be merged with other runnables of the same kind, so a
+ * burst of small updates can be applied to the graph in one go. If batching is enabled the
+ * {@link GraphUpdaterManager} keeps the runnable for a short while, and merges it with all other
+ * runnables with the same batch key submitted before it is run.
+ *
+ * @see GraphUpdaterManager#execute(GraphWriterRunnable)
+ */
+public interface BatchGraphWriterRunnable extends GraphWriterRunnable {
+
+    /**
+     * Runnables with the same key can be merged. The key should be the same for all runnables
+     * from one updater (or feed), and different for runnables from different updaters. The key
+     * is also used to report the batch metrics.
+     */
+    String batchKey();
+
+    /**
+     * Merge this runnable with a runnable submitted later with the same batch key. Running the
+     * merged runnable must give the same result as running this runnable followed by the next.
+     */
+    BatchGraphWriterRunnable merge(BatchGraphWriterRunnable next);
+
+    /**
+     * The number of updates (e.g. trip updates) in this runnable, used for the metrics.
+     */
+    default int size() {
+        return 1;
+    }
+}
@@ -59,7 +59,11 @@ public abstract class GraphUpdaterConfigurator {
         );
 
         setupUpdaters(graph, updaters);
-        GraphUpdaterManager updaterManager = new GraphUpdaterManager(graph, updaters);
+        GraphUpdaterManager updaterManager = new GraphUpdaterManager(
+            graph,
+            updaters,
+            updaterParameters.updaterBatchMaxLatencyMs()
+        );
         updaterManager.startUpdaters();
 
         // Stop the updater manager if it contains nothing
@@ -8,8 +8,11 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -70,12 +73,35 @@ public class GraphUpdaterManager {
      */
     private Graph graph;
 
+    /**
+     * The max time in milliseconds a {@link BatchGraphWriterRunnable} is kept waiting to be merged
+     * with later runnables with the same batch key. If zero, batching is disabled.
+     */
+    private final int maxBatchLatencyMs;
+
+    /**
+     * The batches waiting to be applied, by batch key. Guarded by the lock on this map, which is
+     * also used for the {@link #batchMetrics}.
+     */
+    private final Map<String, PendingBatch> pendingBatches = new HashMap<>();
+
+    private final Map<String, GraphWriterBatchMetrics> batchMetrics = new HashMap<>();
+
     /**
      * Constructor.
      * @param graph is the Graph that will be updated.
      */
     public GraphUpdaterManager(Graph graph) {
+        this(graph, 0);
+    }
+
+    /**
+     * @param graph is the Graph that will be updated.
+     * @param maxBatchLatencyMs see {@link #execute(GraphWriterRunnable)}, 0 to disable batching.
+     */
+    public GraphUpdaterManager(Graph graph, int maxBatchLatencyMs) {
         this.graph = graph;
+        this.maxBatchLatencyMs = maxBatchLatencyMs;
         
         String routerId = graph.routerId;
         if(routerId == null || routerId.isEmpty())
@@ -87,7 +113,11 @@ public class GraphUpdaterManager {
     }
 
     public GraphUpdaterManager(Graph graph, List<GraphUpdater> updaters) {
-        this(graph);
+        this(graph, updaters, 0);
+    }
+
+    public GraphUpdaterManager(Graph graph, List<GraphUpdater> updaters, int maxBatchLatencyMs) {
+        this(graph, maxBatchLatencyMs);
         for (GraphUpdater updater : updaters) {
             this.addUpdater(updater);
             updater.setGraphUpdaterManager(this);
@@ -142,17 +172,95 @@ public class GraphUpdaterManager {
      * scheduled after each other, guaranteeing that only one of these runnables will be active at
      * any time. If a particular GraphUpdater calls this method on more than one GraphWriterRunnable, they should be
      * executed in the same order that GraphUpdater made the calls.
+     * <p>
+     * If batching is enabled, a {@link BatchGraphWriterRunnable} is not run at once. It is kept
+     * for up to {@code maxBatchLatencyMs}, and all runnables with the same batch key submitted in
+     * this period are merged into one, which is run once. So a burst of small realtime updates
+     * results in one snapshot commit, not one commit for each update. Any other runnable flushes
+     * all waiting batches first, so the order of the changes to the graph is kept.
      * 
      * @param runnable is a graph writer runnable
      */
     public void execute(GraphWriterRunnable runnable) {
-        scheduler.submit(() -> {
-            try {
-                runnable.run(graph);
-            } catch (Exception e) {
-                LOG.error("Error while running graph writer {}:", runnable.getClass().getName(), e);
+        if (maxBatchLatencyMs > 0 && runnable instanceof BatchGraphWriterRunnable) {
+            executeBatch((BatchGraphWriterRunnable) runnable);
+            return;
+        }
+        synchronized (pendingBatches) {
+            // Keep the order: run the waiting batches before this runnable
+            for (Iterator<PendingBatch> it = pendingBatches.values().iterator(); it.hasNext();) {
+                PendingBatch batch = it.next();
+                it.remove();
+                scheduler.submit(() -> runBatch(batch));
+            }
+            scheduler.submit(() -> run(runnable));
+        }
+    }
+
+    /**
+     * Return the batch metrics by batch key. The map is a copy, the metrics are live.
+     */
+    public Map<String, GraphWriterBatchMetrics> getBatchMetrics() {
+        synchronized (pendingBatches) {
+            return new TreeMap<>(batchMetrics);
+        }
+    }
+
+    private void executeBatch(BatchGraphWriterRunnable runnable) {
+        String key = runnable.batchKey();
+        synchronized (pendingBatches) {
+            GraphWriterBatchMetrics metrics = batchMetrics.computeIfAbsent(
+                    key, k -> new GraphWriterBatchMetrics()
+            );
+            PendingBatch batch = pendingBatches.get(key);
+            if (batch == null) {
+                batch = new PendingBatch(key, runnable, metrics);
+                pendingBatches.put(key, batch);
+                PendingBatch newBatch = batch;
+                scheduler.schedule(
+                        () -> {
+                            // The batch is not pending any more if it was flushed
+                            synchronized (pendingBatches) {
+                                if (!pendingBatches.remove(key, newBatch)) { return; }
+                            }
+                            runBatch(newBatch);
+                        },
+                        maxBatchLatencyMs,
+                        TimeUnit.MILLISECONDS
+                );
+            }
+            else {
+                batch.runnable = batch.runnable.merge(runnable);
+                ++batch.count;
             }
-        });
+            metrics.submitted(batch.count, runnable.size());
+        }
+    }
+
+    private void runBatch(PendingBatch batch) {
+        long startTime = System.currentTimeMillis();
+        run(batch.runnable);
+        long endTime = System.currentTimeMillis();
+
+        synchronized (pendingBatches) {
+            batch.metrics.applied(
+                    batch.runnable.size(),
+                    endTime - batch.createdTime,
+                    endTime - startTime
+            );
+        }
+        LOG.debug(
+                "Applied batch {} with {} runnables in {} ms.",
+                batch.key, batch.count, endTime - startTime
+        );
+    }
+
+    private void run(GraphWriterRunnable runnable) {
+        try {
+            runnable.run(graph);
+        } catch (Exception e) {
+            LOG.error("Error while running graph writer {}:", runnable.getClass().getName(), e);
+        }
     }
 
     public int size() {
@@ -211,4 +319,25 @@ public class GraphUpdaterManager {
         }
         return waitingUpdaters;
     }
+
+    /**
+     * A batch of merged runnables waiting to be applied to the graph.
+     */
+    private static class PendingBatch {
+        private final String key;
+        private final long createdTime = System.currentTimeMillis();
+        private final GraphWriterBatchMetrics metrics;
+        private BatchGraphWriterRunnable runnable;
+        private int count = 1;
+
+        private PendingBatch(
+                String key,
+                BatchGraphWriterRunnable runnable,
+                GraphWriterBatchMetrics metrics
+        ) {
+            this.key = key;
+            this.runnable = runnable;
+            this.metrics = metrics;
+        }
+    }
 }
@@ -0,0 +1,94 @@
+package org.opentripplanner.updater;
+
+/**
+ * Metrics for the batches of {@link BatchGraphWriterRunnable}s with the same batch key. The
+ * latency is measured from the first runnable in a batch is submitted until the batch is applied
+ * to the graph.
+ * <p>
+ * THREAD SAFETY - The metrics are updated by the {@link GraphUpdaterManager} while holding its
+ * lock, and the fields are volatile so they can be read by the API without locking. A reader may
+ * see values from two different batches.
+ */
+public class GraphWriterBatchMetrics {
+
+    /** The number of runnables waiting to be applied. */
+    volatile int queueDepth = 0;
+    volatile int maxQueueDepth = 0;
+
+    /** The number of runnables submitted, and the number of batches applied. */
+    volatile long runnablesSubmitted = 0;
+    volatile long batchesApplied = 0;
+
+    /** The number of updates (e.g. trip updates) submitted and applied after merging. */
+    volatile long updatesSubmitted = 0;
+    volatile long updatesApplied = 0;
+
+    volatile long lastLatencyMs = 0;
+    volatile long maxLatencyMs = 0;
+    volatile long totalLatencyMs = 0;
+
+    /** The time spent applying the batches to the graph. */
+    volatile long lastApplyTimeMs = 0;
+    volatile long totalApplyTimeMs = 0;
+
+    public int getQueueDepth() { return queueDepth; }
+
+    public int getMaxQueueDepth() { return maxQueueDepth; }
+
+    public long getRunnablesSubmitted() { return runnablesSubmitted; }
+
+    public long getBatchesApplied() { return batchesApplied; }
+
+    public long getUpdatesSubmitted() { return updatesSubmitted; }
+
+    public long getUpdatesApplied() { return updatesApplied; }
+
+    public long getLastLatencyMs() { return lastLatencyMs; }
+
+    public long getMaxLatencyMs() { return maxLatencyMs; }
+
+    public long getAvgLatencyMs() {
+        long n = batchesApplied;
+        return n == 0 ? 0 : totalLatencyMs / n;
+    }
+
+    public long getLastApplyTimeMs() { return lastApplyTimeMs; }
+
+    public long getAvgApplyTimeMs() {
+        long n = batchesApplied;
+        return n == 0 ? 0 : totalApplyTimeMs / n;
+    }
+
+    void submitted(int queueDepth, int updates) {
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+        this.runnablesSubmitted = runnablesSubmitted + 1;
+        this.updatesSubmitted = updatesSubmitted + updates;
+    }
+
+    void applied(int updates, long latencyMs, long applyTimeMs) {
+        this.queueDepth = 0;
+        this.batchesApplied = batchesApplied + 1;
+        this.updatesApplied = updatesApplied + updates;
+        this.lastLatencyMs = latencyMs;
+        this.maxLatencyMs = Math.max(maxLatencyMs, latencyMs);
+        this.totalLatencyMs = totalLatencyMs + latencyMs;
+        this.lastApplyTimeMs = applyTimeMs;
+        this.totalApplyTimeMs = totalApplyTimeMs + applyTimeMs;
+    }
+
+    @Override
+    public String toString() {
+        return "GraphWriterBatchMetrics{"
+                + "queueDepth: " + queueDepth
+                + ", maxQueueDepth: " + maxQueueDepth
+                + ", runnablesSubmitted: " + runnablesSubmitted
+                + ", batchesApplied: " + batchesApplied
+                + ", updatesSubmitted: " + updatesSubmitted
+                + ", updatesApplied: " + updatesApplied
+                + ", avgLatencyMs: " + getAvgLatencyMs()
+                + ", maxLatencyMs: " + maxLatencyMs
+                + ", avgApplyTimeMs: " + getAvgApplyTimeMs()
+                + "}";
+    }
+}
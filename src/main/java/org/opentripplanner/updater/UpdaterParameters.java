@@ -19,6 +19,13 @@ public interface UpdaterParameters {
 
   URI bikeRentalServiceDirectoryUrl();
 
+  /**
+   * The max time in milliseconds to wait for more realtime updates from the same feed, to apply
+   * them together. If 0, each update is applied at once. See
+   * {@link GraphUpdaterManager#execute(GraphWriterRunnable)}.
+   */
+  int updaterBatchMaxLatencyMs();
+
   List<BikeRentalUpdaterParameters> getBikeRentalParameters();
 
   List<GtfsRealtimeAlertsUpdaterParameters> getGtfsRealtimeAlertsUpdaterParameters();
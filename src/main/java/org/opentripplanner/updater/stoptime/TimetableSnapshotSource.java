@@ -94,7 +94,7 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
     protected ServiceDate lastPurgeDate = null;
 
     /** Epoch time in milliseconds at which the last snapshot was generated. */
-    protected long lastSnapshotTime = -1;
+    protected volatile long lastSnapshotTime = -1;
 
     private final TimeZone timeZone;
 
@@ -122,6 +122,12 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
     public TimetableSnapshot getTimetableSnapshot() {
         TimetableSnapshot snapshotToReturn;
 
+        // Routing threads should never wait for the updaters. Skip the lock if there is nothing
+        // to commit or the last commit is recent, this is the case for most requests.
+        if (!buffer.isDirty() || System.currentTimeMillis() - lastSnapshotTime <= maxSnapshotFrequency) {
+            return snapshot;
+        }
+
         // Try to get a lock on the buffer
         if (bufferLock.tryLock()) {
             // Make a new snapshot if necessary
@@ -1,15 +1,23 @@
 package org.opentripplanner.updater.stoptime;
 
 import com.google.common.base.Preconditions;
+import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
 import com.google.transit.realtime.GtfsRealtime.TripUpdate;
 import org.opentripplanner.routing.graph.Graph;
-import org.opentripplanner.updater.GraphWriterRunnable;
+import org.opentripplanner.updater.BatchGraphWriterRunnable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-class TripUpdateGraphWriterRunnable implements GraphWriterRunnable {
+/**
+ * Apply a list of GTFS-RT trip updates to the graph. Runnables for the same feed can be merged
+ * into one batch, see {@link #merge(BatchGraphWriterRunnable)}.
+ */
+class TripUpdateGraphWriterRunnable implements BatchGraphWriterRunnable {
     private static Logger LOG = LoggerFactory.getLogger(TripUpdateGraphWriterRunnable.class);
 
     /**
@@ -49,4 +57,62 @@ class TripUpdateGraphWriterRunnable implements GraphWriterRunnable {
                     + " The following updates are not applied: {}", updates);
         }
     }
+
+    @Override
+    public String batchKey() {
+        return "TripUpdates:" + feedId;
+    }
+
+    /**
+     * A GTFS-RT trip update replaces all earlier updates for the same trip and service date, so
+     * only the last update for each trip is kept. A full dataset replaces all earlier updates. The
+     * updates are applied in the order of their last occurrence. Updates without a trip id are
+     * never dropped.
+     */
+    @Override
+    public BatchGraphWriterRunnable merge(BatchGraphWriterRunnable next) {
+        TripUpdateGraphWriterRunnable other = (TripUpdateGraphWriterRunnable) next;
+        Preconditions.checkArgument(feedId.equals(other.feedId));
+
+        if (other.fullDataset) {
+            return other;
+        }
+
+        Map<Object, TripUpdate> updatesByTrip = new LinkedHashMap<>();
+        addLastUpdateByTrip(updatesByTrip, updates);
+        addLastUpdateByTrip(updatesByTrip, other.updates);
+
+        return new TripUpdateGraphWriterRunnable(
+                fullDataset,
+                new ArrayList<>(updatesByTrip.values()),
+                feedId
+        );
+    }
+
+    @Override
+    public int size() {
+        return updates.size();
+    }
+
+    List<TripUpdate> getUpdates() {
+        return updates;
+    }
+
+    boolean isFullDataset() {
+        return fullDataset;
+    }
+
+    private static void addLastUpdateByTrip(
+            Map<Object, TripUpdate> updatesByTrip,
+            List<TripUpdate> updates
+    ) {
+        for (TripUpdate it : updates) {
+            TripDescriptor trip = it.getTrip();
+            // Use the update itself as key if the trip is unknown, it is not replaced
+            Object key = trip.hasTripId() ? trip.getTripId() + "_" + trip.getStartDate() : new Object();
+            // Remove first, to move the update to the end
+            updatesByTrip.remove(key);
+            updatesByTrip.put(key, it);
+        }
+    }
 }
@@ -0,0 +1,167 @@
+package org.opentripplanner.util;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read a stream written by a {@link BlockCompressedOutputStream}. The blocks ahead of the reader
+ * are decompressed in parallel, and the checksum of each block is verified before its bytes are
+ * returned. A damaged or truncated stream is reported as an {@link IOException}.
+ * <p>
+ * The underlying stream is read up to the end of the block stream, and is closed when this stream
+ * is closed.
+ * <p>
+ * THREAD SAFETY - The stream must be read by one thread, like other streams.
+ */
+public class BlockCompressedInputStream extends InputStream {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final DataInputStream in;
+
+    private final int maxBlocksInProgress;
+
+    private final ExecutorService threadPool;
+
+    private final Deque<Future<byte[]>> blocksInProgress = new ArrayDeque<>();
+
+    /** The number of blocks read from the underlying stream, used in the error messages. */
+    private int blockCount = 0;
+
+    private boolean endOfBlocks = false;
+
+    private byte[] block = EMPTY;
+
+    private int position = 0;
+
+    public BlockCompressedInputStream(InputStream in, int nThreads) {
+        this.in = new DataInputStream(in);
+        this.maxBlocksInProgress = 2 * nThreads;
+        // Daemon threads, so a stream which is not closed does not keep the JVM running
+        this.threadPool = Executors.newFixedThreadPool(nThreads, r -> {
+            Thread thread = new Thread(r, "block-decompress");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == block.length && !nextBlock()) { return -1; }
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) { return 0; }
+        if (position == block.length && !nextBlock()) { return -1; }
+        int n = Math.min(len, block.length - position);
+        System.arraycopy(block, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return block.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        threadPool.shutdownNow();
+        in.close();
+    }
+
+    /** Move to the next block, return false at the end of the stream. */
+    private boolean nextBlock() throws IOException {
+        while (!endOfBlocks && blocksInProgress.size() < maxBlocksInProgress) {
+            submitNextBlock();
+        }
+        if (blocksInProgress.isEmpty()) { return false; }
+        try {
+            block = blocksInProgress.removeFirst().get();
+            position = 0;
+            return true;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decompressing a block.", e);
+        }
+        catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException
+                    ? (IOException) e.getCause()
+                    : new IOException("Failed to decompress a block: " + e.getCause(), e.getCause());
+        }
+    }
+
+    private void submitNextBlock() throws IOException {
+        int index = blockCount++;
+        int length;
+        int compressedLength;
+        int checksum;
+        byte[] compressed;
+        try {
+            length = in.readInt();
+            compressedLength = in.readInt();
+            checksum = in.readInt();
+            // Deflate adds a few bytes per 16 KB to incompressible data
+            if (length < 0 || length > BlockCompressedOutputStream.MAX_BLOCK_SIZE
+                    || compressedLength < 0 || compressedLength > length + length / 8 + 64) {
+                throw new IOException("The compressed block " + index + " has a bad header.");
+            }
+            compressed = new byte[compressedLength];
+            in.readFully(compressed);
+        }
+        catch (EOFException e) {
+            throw new IOException("The compressed stream is truncated in block " + index + ".", e);
+        }
+        if (length == 0) {
+            endOfBlocks = true;
+            return;
+        }
+        blocksInProgress.addLast(threadPool.submit(
+                () -> decompress(index, compressed, length, checksum)
+        ));
+    }
+
+    private static byte[] decompress(int index, byte[] compressed, int length, int checksum)
+            throws IOException {
+        byte[] block = new byte[length];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            int size = 0;
+            while (size < length && !inflater.finished()) {
+                int n = inflater.inflate(block, size, length - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) { break; }
+                size += n;
+            }
+            if (size != length) {
+                throw new IOException("The compressed block " + index + " is damaged.");
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IOException("The compressed block " + index + " is damaged.", e);
+        }
+        finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(block);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Checksum mismatch in compressed block " + index + ".");
+        }
+        return block;
+    }
+}
@@ -0,0 +1,174 @@
+package org.opentripplanner.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Split a stream into fixed size blocks and compress the blocks in parallel. Each block is written
+ * as its uncompressed length, its compressed length, the CRC-32 checksum of the uncompressed bytes
+ * and the deflated bytes. The stream ends with an empty block. Read the stream with a
+ * {@link BlockCompressedInputStream}.
+ * <p>
+ * The blocks are compressed by a thread pool owned by the stream, and written in order. At most
+ * two blocks per thread are in progress, so the memory used is bounded by the block size and the
+ * number of threads.
+ * <p>
+ * THREAD SAFETY - The stream must be written by one thread, like other streams.
+ */
+public class BlockCompressedOutputStream extends OutputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024;
+
+    /** The largest block size, a larger block in a stream is read as a damaged block header. */
+    static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+
+    private final DataOutputStream out;
+
+    private final int blockSize;
+
+    private final int maxBlocksInProgress;
+
+    private final ExecutorService threadPool;
+
+    private final Deque<Future<byte[]>> blocksInProgress = new ArrayDeque<>();
+
+    private byte[] buffer;
+
+    private int position = 0;
+
+    private boolean closed = false;
+
+    public BlockCompressedOutputStream(OutputStream out, int blockSize, int nThreads) {
+        if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size out of range: " + blockSize);
+        }
+        this.out = new DataOutputStream(out);
+        this.blockSize = blockSize;
+        this.maxBlocksInProgress = 2 * nThreads;
+        // Daemon threads, so a stream which is not closed does not keep the JVM running
+        this.threadPool = Executors.newFixedThreadPool(nThreads, r -> {
+            Thread thread = new Thread(r, "block-compress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.buffer = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position == blockSize) { submitBlock(); }
+        buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (position == blockSize) { submitBlock(); }
+            int n = Math.min(len, blockSize - position);
+            System.arraycopy(b, off, buffer, position, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Write the blocks compressed so far. The block being filled is not compressed until it is
+     * full, so the flushed stream is not yet readable to the end.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!blocksInProgress.isEmpty() && blocksInProgress.peekFirst().isDone()) {
+            writeNextBlock();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) { return; }
+        closed = true;
+        try {
+            if (position > 0) { submitBlock(); }
+            while (!blocksInProgress.isEmpty()) {
+                writeNextBlock();
+            }
+            // The empty block marks the end of the stream
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.close();
+        }
+        finally {
+            threadPool.shutdownNow();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        if (blocksInProgress.size() >= maxBlocksInProgress) {
+            writeNextBlock();
+        }
+        byte[] block = position == blockSize ? buffer : Arrays.copyOf(buffer, position);
+        blocksInProgress.addLast(threadPool.submit(() -> compress(block)));
+        buffer = new byte[blockSize];
+        position = 0;
+    }
+
+    private void writeNextBlock() throws IOException {
+        try {
+            out.write(blocksInProgress.removeFirst().get());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing a block.", e);
+        }
+        catch (ExecutionException e) {
+            throw new IOException("Failed to compress a block: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /** Compress the block, and return it with its header. */
+    private static byte[] compress(byte[] block) {
+        CRC32 crc = new CRC32();
+        crc.update(block);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(block);
+            deflater.finish();
+            // Room for the header and for incompressible data
+            byte[] result = new byte[12 + block.length + block.length / 1000 + 64];
+            int size = 12;
+            while (!deflater.finished()) {
+                if (size == result.length) {
+                    result = Arrays.copyOf(result, 2 * result.length);
+                }
+                size += deflater.deflate(result, size, result.length - size);
+            }
+            writeInt(result, 0, block.length);
+            writeInt(result, 4, size - 12);
+            writeInt(result, 8, (int) crc.getValue());
+            return Arrays.copyOf(result, size);
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+}
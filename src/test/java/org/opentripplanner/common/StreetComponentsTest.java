@@ -0,0 +1,151 @@
+package org.opentripplanner.common;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.graph_builder.DataImportIssueStore;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTransitLink;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.routing.vertextype.TransitStopVertex;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreetComponentsTest {
+
+    private Graph graph;
+
+    private IntersectionVertex[] mainland;
+
+    private IntersectionVertex[] island;
+
+    private IntersectionVertex carOnly;
+
+    private TransitStopVertex islandStop;
+
+    @Before
+    public void before() {
+        graph = new Graph();
+        mainland = line("m", 60.0, 50, StreetTraversalPermission.ALL);
+        island = line("i", 60.1, 3, StreetTraversalPermission.PEDESTRIAN_AND_BICYCLE);
+        islandStop = new TransitStopVertex(graph, Stop.stopForTest("S", 60.1, 10.0), null);
+        new StreetTransitLink(island[0], islandStop, true);
+        new StreetTransitLink(islandStop, island[0], true);
+
+        // A motorway from the mainland, which can not be walked
+        carOnly = new IntersectionVertex(graph, "motorway", 10.0, 60.05);
+        edge(mainland[0], carOnly, StreetTraversalPermission.CAR);
+        edge(carOnly, mainland[0], StreetTraversalPermission.CAR);
+
+        // A vertex without edges is not in any component
+        new IntersectionVertex(graph, "alone", 10.0, 60.2);
+    }
+
+    @Test
+    public void testComponentsPerMode() {
+        StreetComponents walk = StreetComponents.compute(graph, TraverseMode.WALK);
+        assertEquals(2, walk.size());
+        int main = walk.componentOf(mainland[0]);
+        assertEquals(main, walk.largestComponent());
+        assertEquals(50, walk.streetCount(main));
+        assertEquals(0, walk.stopCount(main));
+        assertEquals(StreetComponents.NO_COMPONENT, walk.componentOf(carOnly));
+        assertEquals(StreetComponents.NO_COMPONENT, walk.componentOf(graph.getVertex("alone")));
+
+        int small = walk.componentOf(island[2]);
+        assertNotEquals(main, small);
+        assertEquals(small, walk.componentOf(islandStop));
+        assertEquals(3, walk.streetCount(small));
+        assertEquals(1, walk.stopCount(small));
+        assertEquals(4, walk.vertexCount(small));
+
+        StreetComponents car = StreetComponents.compute(graph, TraverseMode.CAR);
+        assertEquals(1, car.size());
+        assertEquals(car.componentOf(mainland[0]), car.componentOf(carOnly));
+        assertEquals(51, car.streetCount(car.componentOf(carOnly)));
+        assertEquals(StreetComponents.NO_COMPONENT, car.componentOf(island[0]));
+    }
+
+    @Test
+    public void testSameComponentsAsDisjointSet() {
+        // Random streets between random vertices, compared with the plain disjoint set
+        Random random = new Random(42);
+        IntersectionVertex[] vertices = new IntersectionVertex[2000];
+        for (int i = 0; i < vertices.length; ++i) {
+            vertices[i] = new IntersectionVertex(graph, "r" + i, 10.0 + i * 0.0001, 61.0);
+        }
+        DisjointSet<IntersectionVertex> expected = new DisjointSet<>();
+        for (int i = 0; i < 1500; ++i) {
+            IntersectionVertex a = vertices[random.nextInt(vertices.length)];
+            IntersectionVertex b = vertices[random.nextInt(vertices.length)];
+            if (a == b) { continue; }
+            edge(a, b, StreetTraversalPermission.ALL);
+            expected.union(a, b);
+        }
+        StreetComponents actual = StreetComponents.compute(graph, TraverseMode.WALK);
+        for (int i = 0; i + 1 < vertices.length; ++i) {
+            for (int j : new int[] { i + 1, random.nextInt(vertices.length) }) {
+                if (actual.componentOf(vertices[i]) == StreetComponents.NO_COMPONENT) { continue; }
+                assertEquals(
+                        expected.find(vertices[i]) == expected.find(vertices[j]),
+                        actual.componentOf(vertices[i]) == actual.componentOf(vertices[j])
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testPruneFloatingIslands() {
+        StreetUtils.pruneFloatingIslands(graph, 10, 5, null, new DataImportIssueStore(false));
+        for (IntersectionVertex v : island) {
+            assertFalse(graph.containsVertex(v));
+        }
+        assertTrue(islandStop.getOutgoing().isEmpty());
+        assertTrue(islandStop.getIncoming().isEmpty());
+        for (IntersectionVertex v : mainland) {
+            assertTrue(graph.containsVertex(v));
+        }
+        // The motorway is not walkable, so it is not a part of any walk island
+        assertTrue(graph.containsVertex(carOnly));
+    }
+
+    private IntersectionVertex[] line(
+            String prefix,
+            double lat,
+            int size,
+            StreetTraversalPermission permission
+    ) {
+        IntersectionVertex[] vertices = new IntersectionVertex[size];
+        for (int i = 0; i < size; ++i) {
+            vertices[i] = new IntersectionVertex(graph, prefix + i, 10.0 + i * 0.001, lat);
+            if (i > 0) {
+                edge(vertices[i - 1], vertices[i], permission);
+                edge(vertices[i], vertices[i - 1], permission);
+            }
+        }
+        return vertices;
+    }
+
+    private static void edge(
+            IntersectionVertex a,
+            IntersectionVertex b,
+            StreetTraversalPermission permission
+    ) {
+        Coordinate[] coords = { a.getCoordinate(), b.getCoordinate() };
+        LineString geometry = GeometryUtils.getGeometryFactory().createLineString(coords);
+        double length = SphericalDistanceLibrary.distance(a.getCoordinate(), b.getCoordinate());
+        new StreetEdge(a, b, geometry, a.getLabel() + "_" + b.getLabel(), length, permission, false);
+    }
+}
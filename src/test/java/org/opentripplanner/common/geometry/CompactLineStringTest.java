@@ -6,6 +6,7 @@ import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -121,4 +122,34 @@ public class CompactLineStringTest extends TestCase {
         sb.append("]");
         return sb.toString();
     }
+
+    @Test
+    public final void testUncompactFromBuffer() {
+        GeometryFactory gf = new GeometryFactory();
+        double x0 = 1.111111111;
+        double y0 = 0.123456789;
+        double x1 = 2.0;
+        double y1 = 0.0;
+        LineString ls = gf.createLineString(new Coordinate[] {
+                new Coordinate(x0, y0),
+                new Coordinate(-179.99, 1.12345),
+                new Coordinate(179.99, 1.12345),
+                new Coordinate(x1, y1)
+        });
+        byte[] coords = CompactLineString.compactLineString(x0, y0, x1, y1, ls, false);
+
+        // The packed coordinates in the middle of a larger buffer, like a graph file section
+        ByteBuffer buffer = ByteBuffer.allocate(coords.length + 4);
+        buffer.put(new byte[] { 1, 2 }).put(coords).put(new byte[] { 3, 4 });
+        buffer.limit(2 + coords.length).position(2);
+
+        LineString ls2 = CompactLineString.uncompactLineString(x0, y0, x1, y1, buffer, false);
+        assertTrue(ls.equalsExact(ls2, 0.00000015));
+        // The position of the buffer is not changed
+        assertEquals(2, buffer.position());
+
+        buffer.limit(2);
+        ls2 = CompactLineString.uncompactLineString(x0, y0, x1, y1, buffer, false);
+        assertEquals(2, ls2.getNumPoints());
+    }
 }
@@ -0,0 +1,198 @@
+package org.opentripplanner.common.geometry;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.SpatialIndex;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PackedSpatialIndexTest {
+
+    private static final double X0 = -0.05;
+    private static final double Y0 = 44.0;
+    private static final double DX = 0.1;
+    private static final double DY = 0.1;
+
+    private static class DummyObject {
+        final Envelope envelope;
+
+        DummyObject(Envelope envelope) {
+            this.envelope = envelope;
+        }
+
+        double distance(double x, double y) {
+            return Math.hypot(
+                    Math.max(0, Math.max(envelope.getMinX() - x, x - envelope.getMaxX())),
+                    Math.max(0, Math.max(envelope.getMinY() - y, y - envelope.getMaxY()))
+            );
+        }
+
+        @Override
+        public String toString() {
+            return envelope.toString();
+        }
+    }
+
+    /**
+     * Compare the items found by the packed index with a brute force search over all items, for
+     * trees with one level, with full nodes and with partly filled nodes.
+     */
+    @Test
+    public void testQueryRandom() {
+        for (int n : new int[] { 1, 2, 15, 16, 17, 255, 256, 257, 5000 }) {
+            Random rand = new Random(42 + n);
+            List<DummyObject> objects = randomObjects(rand, n, 0.01);
+            PackedSpatialIndex<DummyObject> index = build(objects);
+            assertEquals(n, index.size());
+
+            for (int i = 0; i < 200; i++) {
+                Envelope searchEnv = randomEnvelope(rand, 0.02);
+                Set<DummyObject> expected = new HashSet<>();
+                for (DummyObject obj : objects) {
+                    if (obj.envelope.intersects(searchEnv)) { expected.add(obj); }
+                }
+
+                List<DummyObject> found = index.query(searchEnv);
+                assertEquals("duplicates for n=" + n, found.size(), new HashSet<>(found).size());
+                Set<DummyObject> intersecting = new HashSet<>();
+                for (DummyObject obj : found) {
+                    // The boxes are rounded outward to floats, so false positives are allowed
+                    if (obj.envelope.intersects(searchEnv)) { intersecting.add(obj); }
+                }
+                assertEquals("query for n=" + n, expected, intersecting);
+
+                List<Object> visited = new ArrayList<>();
+                index.query(searchEnv, visited::add);
+                assertEquals(found, visited);
+            }
+        }
+    }
+
+    @Test
+    public void testNearestRandom() {
+        for (int n : new int[] { 1, 17, 5000 }) {
+            Random rand = new Random(n);
+            List<DummyObject> objects = randomObjects(rand, n, 0.001);
+            PackedSpatialIndex<DummyObject> index = build(objects);
+
+            for (int i = 0; i < 200; i++) {
+                double x = X0 + rand.nextDouble() * DX;
+                double y = Y0 + rand.nextDouble() * DY;
+                double maxDistance = 0.01;
+                DummyObject expected = null;
+                for (DummyObject obj : objects) {
+                    double d = obj.distance(x, y);
+                    if (d < maxDistance && (expected == null || d < expected.distance(x, y))) {
+                        expected = obj;
+                    }
+                }
+                DummyObject found = index.nearest(x, y, 1.0, maxDistance, o -> o.distance(x, y));
+                if (expected == null) {
+                    assertNull(found);
+                }
+                else {
+                    assertEquals(expected.distance(x, y), found.distance(x, y), 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyAndSingleItem() {
+        PackedSpatialIndex<DummyObject> empty = new PackedSpatialIndex.Builder<DummyObject>().build();
+        assertEquals(0, empty.size());
+        assertTrue(empty.query(new Envelope(-180, 180, -90, 90)).isEmpty());
+        assertNull(empty.nearest(0, 0, 1.0, 1.0, o -> 0));
+
+        DummyObject obj = new DummyObject(new Envelope(1, 2, 1, 2));
+        PackedSpatialIndex<DummyObject> single = build(List.of(obj));
+        assertEquals(List.of(obj), single.query(new Envelope(0, 1.5, 0, 1.5)));
+        assertTrue(single.query(new Envelope(3, 4, 3, 4)).isEmpty());
+        assertSame(obj, single.nearest(0, 0, 1.0, 2.0, o -> o.distance(0, 0)));
+        assertNull(single.nearest(0, 0, 1.0, 1.0, o -> o.distance(0, 0)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testInsertNotSupported() {
+        PackedSpatialIndex<DummyObject> index = new PackedSpatialIndex.Builder<DummyObject>().build();
+        index.insert(new Envelope(0, 1, 0, 1), new Object());
+    }
+
+    /**
+     * Compare the query time of the packed index with the hash grid and the STR tree on the same
+     * small envelopes, like the edge lookups done when linking. This is a manual benchmark, it
+     * only prints the timings, so it is not part of the unit tests.
+     */
+    @Test
+    @Ignore("Manual benchmark")
+    public void testQuerySpeed() {
+        final int N_OBJS = 200_000;
+        final int N_QUERIES = 200_000;
+        Random rand = new Random(42);
+        List<DummyObject> objects = randomObjects(rand, N_OBJS, 0.0005);
+        List<Envelope> queries = new ArrayList<>();
+        for (int i = 0; i < N_QUERIES; i++) {
+            queries.add(randomEnvelope(rand, 0.002));
+        }
+
+        SpatialIndex hashGrid = new HashGridSpatialIndex<>();
+        STRtree strTree = new STRtree();
+        for (DummyObject obj : objects) {
+            hashGrid.insert(obj.envelope, obj);
+            strTree.insert(obj.envelope, obj);
+        }
+        strTree.build();
+        PackedSpatialIndex<DummyObject> packed = build(objects);
+
+        for (int round = 0; round < 3; round++) {
+            System.out.printf(
+                    "Query time, %d queries: hash grid %d ms, STR tree %d ms, packed %d ms%n",
+                    N_QUERIES, time(hashGrid, queries), time(strTree, queries), time(packed, queries)
+            );
+        }
+    }
+
+    private static long time(SpatialIndex index, List<Envelope> queries) {
+        int[] count = new int[1];
+        long start = System.nanoTime();
+        for (Envelope query : queries) {
+            index.query(query, item -> count[0]++);
+        }
+        long time = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(count[0] > 0);
+        return time;
+    }
+
+    private static PackedSpatialIndex<DummyObject> build(List<DummyObject> objects) {
+        PackedSpatialIndex.Builder<DummyObject> builder = new PackedSpatialIndex.Builder<>();
+        for (DummyObject obj : objects) {
+            builder.add(obj.envelope, obj);
+        }
+        return builder.build();
+    }
+
+    private static List<DummyObject> randomObjects(Random rand, int n, double maxSize) {
+        List<DummyObject> objects = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            objects.add(new DummyObject(randomEnvelope(rand, maxSize)));
+        }
+        return objects;
+    }
+
+    private static Envelope randomEnvelope(Random rand, double maxSize) {
+        double x = X0 + rand.nextDouble() * DX;
+        double y = Y0 + rand.nextDouble() * DY;
+        return new Envelope(x, x + rand.nextDouble() * maxSize, y, y + rand.nextDouble() * maxSize);
+    }
+}
@@ -8,6 +8,8 @@ import java.net.URLDecoder;
 
 import gnu.trove.list.TLongList;
 import org.junit.Test;
+import org.opentripplanner.datastore.FileType;
+import org.opentripplanner.datastore.file.FileDataSource;
 import org.opentripplanner.graph_builder.DataImportIssueStore;
 import org.opentripplanner.openstreetmap.BinaryOpenStreetMapProvider;
 import org.opentripplanner.openstreetmap.model.OSMNode;
@@ -17,11 +19,28 @@ public class OpenStreetMapParserTest {
 
     @Test
     public void testBinaryParser() throws Exception {
-        File osmFile = new File(URLDecoder.decode(
+        BinaryOpenStreetMapProvider pr = new BinaryOpenStreetMapProvider(getOsmFile(), true);
+        assertMapLoaded(pr);
+    }
+
+    @Test
+    public void testParallelBinaryParser() throws Exception {
+        BinaryOpenStreetMapProvider pr = new BinaryOpenStreetMapProvider(
+                new FileDataSource(getOsmFile(), FileType.OSM),
+                false,
+                3
+        );
+        assertMapLoaded(pr);
+    }
+
+    private File getOsmFile() throws Exception {
+        return new File(URLDecoder.decode(
                 getClass().getResource("map.osm.pbf").getPath(),
                 "UTF-8"
         ));
-        BinaryOpenStreetMapProvider pr = new BinaryOpenStreetMapProvider(osmFile, true);
+    }
+
+    private static void assertMapLoaded(BinaryOpenStreetMapProvider pr) {
         OSMDatabase osmdb = new OSMDatabase(new DataImportIssueStore(false));
 
         pr.readOSM(osmdb);
@@ -0,0 +1,81 @@
+package org.opentripplanner.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedCopyOnWriteMapTest {
+
+    @Test
+    public void putGetAndRemove() {
+        ShardedCopyOnWriteMap<Integer, String> map = new ShardedCopyOnWriteMap<>();
+        map.put(1, "A");
+        map.put(2, "B");
+        map.put(2, "C");
+
+        assertEquals("A", map.get(1));
+        assertEquals("C", map.get(2));
+        assertEquals(2, map.size());
+
+        assertEquals("A", map.remove(1));
+        assertNull(map.remove(1));
+        assertNull(map.get(1));
+        assertEquals(1, map.size());
+        assertEquals(0, map.shardsCopied());
+    }
+
+    @Test
+    public void frozenCopyIsNotChanged() {
+        ShardedCopyOnWriteMap<Integer, String> map = new ShardedCopyOnWriteMap<>();
+        for (int i = 0; i < 1000; ++i) {
+            map.put(i, "v" + i);
+        }
+        ShardedCopyOnWriteMap<Integer, String> frozen = map.freeze();
+
+        map.put(7, "X");
+        map.remove(8);
+        map.put(1000, "v1000");
+
+        assertEquals("v7", frozen.get(7));
+        assertEquals("v8", frozen.get(8));
+        assertNull(frozen.get(1000));
+        assertEquals(1000, frozen.size());
+        assertEquals("X", map.get(7));
+        assertNull(map.get(8));
+        assertEquals(1000, map.size());
+
+        // Only the changed shards are copied, and only once
+        assertEquals(3, map.shardsCopied());
+        map.put(7, "Y");
+        assertEquals(3, map.shardsCopied());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void frozenCopyIsReadOnly() {
+        ShardedCopyOnWriteMap<Integer, String> map = new ShardedCopyOnWriteMap<>();
+        map.freeze().put(1, "A");
+    }
+
+    @Test
+    public void replaceAll() {
+        ShardedCopyOnWriteMap<Integer, String> map = new ShardedCopyOnWriteMap<>();
+        for (int i = 0; i < 100; ++i) {
+            map.put(i, "v" + i);
+        }
+        ShardedCopyOnWriteMap<Integer, String> frozen = map.freeze();
+
+        assertFalse(map.replaceAll((k, v) -> v));
+        assertEquals(0, map.shardsCopied());
+
+        assertTrue(map.replaceAll((k, v) -> k == 3 ? null : (k == 5 ? "X" : v)));
+        assertNull(map.get(3));
+        assertEquals("X", map.get(5));
+        assertEquals(99, map.size());
+        assertEquals(99, map.keys().size());
+        assertEquals("v3", frozen.get(3));
+        assertEquals(2, map.shardsCopied());
+    }
+}
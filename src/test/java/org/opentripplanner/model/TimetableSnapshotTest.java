@@ -14,16 +14,23 @@ import org.opentripplanner.model.calendar.ServiceDate;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.trippattern.TripTimes;
 
+import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class TimetableSnapshotTest {
@@ -226,4 +233,60 @@ public class TimetableSnapshotTest {
         assertNull(resolver.commit());
         assertFalse(resolver.isDirty());
     }
+
+    /**
+     * Stress test: one thread applies updates and commits while other threads read the committed
+     * snapshots, like the routing threads do. A committed snapshot must never change.
+     */
+    @Test
+    public void testConcurrentCommitAndRead() throws Exception {
+        ServiceDate today = new ServiceDate();
+        TripPattern pattern = patternIndex.get(new FeedScopedId("agency", "1.1"));
+        TripUpdate tripUpdate = TripUpdate.newBuilder()
+                .setTrip(TripDescriptor.newBuilder()
+                        .setTripId("1.1")
+                        .setScheduleRelationship(ScheduleRelationship.CANCELED))
+                .build();
+
+        TimetableSnapshot buffer = new TimetableSnapshot();
+        updateResolver(buffer, pattern, tripUpdate, "agency", today);
+        final TimetableSnapshot[] published = { buffer.commit() };
+        AtomicBoolean done = new AtomicBoolean(false);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; ++i) {
+                readers.add(executor.submit(() -> {
+                    while (!done.get()) {
+                        TimetableSnapshot snapshot;
+                        synchronized (published) { snapshot = published[0]; }
+                        Timetable timetable = snapshot.resolve(pattern, today);
+                        assertNotSame(pattern.scheduledTimetable, timetable);
+                        assertEquals(1, snapshot.getAllRealtimeTripPatterns().size());
+                        Thread.yield();
+                        assertSame(timetable, snapshot.resolve(pattern, today));
+                    }
+                }));
+            }
+
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 500; ++i) {
+                    updateResolver(buffer, pattern, tripUpdate, "agency", today);
+                    TimetableSnapshot snapshot = buffer.commit();
+                    assertNotSame(snapshot.resolve(pattern, today), buffer.resolve(pattern, null));
+                    synchronized (published) { published[0] = snapshot; }
+                }
+                done.set(true);
+            });
+
+            writer.get();
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+    }
 }
@@ -0,0 +1,147 @@
+package org.opentripplanner.routing.algorithm;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opentripplanner.routing.api.response.InputField;
+import org.opentripplanner.routing.api.response.RoutingError;
+import org.opentripplanner.routing.api.response.RoutingErrorCode;
+import org.opentripplanner.routing.error.RoutingValidationException;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreetSearchesTest {
+
+    private final ExecutorService threadPool = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        threadPool.shutdownNow();
+    }
+
+    @Test
+    public void searchesRunInParallel() {
+        StreetSearches subject = new StreetSearches(threadPool, 5_000);
+        // Both searches must run at the same time to pass the barrier
+        CyclicBarrier barrier = new CyclicBarrier(2);
+
+        StreetSearches.Search<Integer> a = subject.start("a", null, () -> barrier.await() + 1);
+        StreetSearches.Search<Integer> b = subject.start("b", null, () -> barrier.await() + 1);
+
+        assertEquals(3, subject.await(a) + subject.await(b));
+    }
+
+    @Test
+    public void searchesRunInTheRequestThreadWithoutThreadPool() {
+        StreetSearches subject = new StreetSearches(null, 5_000);
+
+        StreetSearches.Search<Thread> search = subject.start("a", null, Thread::currentThread);
+
+        assertTrue(search.isDone());
+        assertSame(Thread.currentThread(), subject.await(search));
+    }
+
+    @Test
+    public void timeoutIsCountedFromTheStartOfTheSearch() {
+        ExecutorService oneThread = Executors.newSingleThreadExecutor();
+        try {
+            StreetSearches subject = new StreetSearches(oneThread, 300);
+
+            // The second search waits for the first in the queue, longer than the timeout in all
+            StreetSearches.Search<String> a = subject.start("a", null, () -> sleep(200, "a"));
+            StreetSearches.Search<String> b = subject.start("b", null, () -> sleep(200, "b"));
+
+            assertEquals("a", subject.await(a));
+            assertEquals("b", subject.await(b));
+        }
+        finally {
+            oneThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void queuedSearchRunsInTheRequestThreadIfNotStartedWithinTheTimeout()
+            throws InterruptedException {
+        ExecutorService oneThread = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            StreetSearches subject = new StreetSearches(oneThread, 100);
+
+            subject.start("blocking", null, () -> release.await(5, TimeUnit.SECONDS));
+            StreetSearches.Search<Thread> queued = subject.start(
+                "queued", null, Thread::currentThread
+            );
+
+            assertSame(Thread.currentThread(), subject.await(queued));
+        }
+        finally {
+            release.countDown();
+            oneThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void timeoutIsReportedAsRoutingErrorAndInterruptsTheSearch()
+            throws InterruptedException {
+        StreetSearches subject = new StreetSearches(threadPool, 50);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        StreetSearches.Search<Boolean> search = subject.start(
+            "access",
+            InputField.FROM_PLACE,
+            () -> {
+                try {
+                    return new CountDownLatch(1).await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+            }
+        );
+
+        try {
+            subject.await(search);
+            fail("Expected a timeout");
+        }
+        catch (RoutingValidationException e) {
+            assertEquals(1, e.getRoutingErrors().size());
+            RoutingError error = e.getRoutingErrors().get(0);
+            assertEquals(RoutingErrorCode.SEARCH_TIMEOUT, error.code);
+            assertEquals(InputField.FROM_PLACE, error.inputField);
+        }
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void searchExceptionIsRethrown() {
+        StreetSearches subject = new StreetSearches(threadPool, 5_000);
+        RoutingValidationException expected = new RoutingValidationException(
+            List.of(new RoutingError(RoutingErrorCode.NO_STOPS_IN_RANGE, null))
+        );
+
+        StreetSearches.Search<Object> search = subject.start("a", null, () -> { throw expected; });
+
+        try {
+            subject.await(search);
+            fail("Expected the exception thrown by the search");
+        }
+        catch (RoutingValidationException e) {
+            assertSame(expected, e);
+        }
+    }
+
+    private static String sleep(long millis, String result) throws InterruptedException {
+        Thread.sleep(millis);
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+package org.opentripplanner.routing.algorithm.astar;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.opentripplanner.ConstantsForTests;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.StreetVertex;
+import org.opentripplanner.util.TestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Measure the bytes allocated by one street search for walk, bike and car, to track allocation
+ * regressions in the search. This is a manual benchmark, it runs a few hundred searches in the
+ * Portland graph and only logs the numbers, so it is not part of the unit tests. Remove the
+ * {@code @Ignore} to run it. The pooling of the search workspace is tested by
+ * {@link SearchWorkspaceTest}.
+ */
+public class AStarAllocationTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AStarAllocationTest.class);
+
+    private static final int N_WARMUP = 20;
+    private static final int N_RUN = 50;
+
+    @Test
+    @Ignore("Manual benchmark")
+    public void testBytesPerRequest() {
+        Graph graph = ConstantsForTests.getInstance().getPortlandGraph();
+        String feedId = graph.getFeedIds().iterator().next();
+        Vertex from = streetVertexNear(graph.getVertex(feedId + ":8371"));
+        Vertex to = streetVertexNear(graph.getVertex(feedId + ":8374"));
+
+        for (TraverseMode mode : new TraverseMode[] { TraverseMode.WALK, TraverseMode.BICYCLE, TraverseMode.CAR }) {
+            for (int i = 0; i < N_WARMUP; ++i) {
+                search(graph, from, to, mode);
+            }
+            long before = allocatedBytes();
+            for (int i = 0; i < N_RUN; ++i) {
+                search(graph, from, to, mode);
+            }
+            long after = allocatedBytes();
+            if (before >= 0 && after >= 0) {
+                LOG.info("A* {} search: {} bytes/request.", mode, (after - before) / N_RUN);
+            }
+        }
+    }
+
+    private static void search(Graph graph, Vertex from, Vertex to, TraverseMode mode) {
+        RoutingRequest options = new RoutingRequest();
+        options.dateTime = TestUtils.dateInSeconds("America/Los_Angeles", 2009, 11, 1, 12, 34, 25);
+        options.setStreetSubRequestModes(new TraverseModeSet(mode));
+        options.setRoutingContext(graph, from, to);
+        assertNotNull(new AStar().getShortestPathTree(options));
+        options.cleanup();
+    }
+
+    /** The street vertex the stop is linked to. */
+    private static Vertex streetVertexNear(Vertex stop) {
+        for (Edge e : stop.getOutgoing()) {
+            if (e.getToVertex() instanceof StreetVertex) {
+                return e.getToVertex();
+            }
+        }
+        return stop;
+    }
+
+    /** The bytes allocated by the current thread, or -1 if this is not supported by the JVM. */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId()
+            );
+        }
+        return -1;
+    }
+}
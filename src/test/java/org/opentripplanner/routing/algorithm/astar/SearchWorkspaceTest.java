@@ -0,0 +1,85 @@
+package org.opentripplanner.routing.algorithm.astar;
+
+import org.junit.Test;
+import org.opentripplanner.common.pqueue.BinHeap;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.routing.vertextype.StreetVertex;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SearchWorkspaceTest {
+
+    @Test
+    public void testWorkspaceIsReusedOnTheSameThread() {
+        SearchWorkspace first = SearchWorkspace.acquire();
+        assertTrue(first.isPooled());
+        BinHeap<State> queue = first.queue(10);
+        queue.insert(null, 1.0);
+        first.release();
+        assertTrue(queue.empty());
+
+        SearchWorkspace second = SearchWorkspace.acquire();
+        assertSame(first, second);
+        assertSame(queue, second.queue(10));
+        second.release();
+    }
+
+    @Test
+    public void testWorkspaceInUseIsNotShared() {
+        SearchWorkspace first = SearchWorkspace.acquire();
+        SearchWorkspace nested = SearchWorkspace.acquire();
+        assertNotSame(first, nested);
+        assertFalse(nested.isPooled());
+        assertNotSame(first.queue(10), nested.queue(10));
+        nested.release();
+        first.release();
+
+        assertSame(first, SearchWorkspace.acquire());
+        first.release();
+    }
+
+    @Test
+    public void testWorkspaceIsPerThread() throws InterruptedException {
+        SearchWorkspace[] other = new SearchWorkspace[1];
+        Thread thread = new Thread(() -> {
+            other[0] = SearchWorkspace.acquire();
+            other[0].release();
+        });
+        thread.start();
+        thread.join();
+
+        SearchWorkspace workspace = SearchWorkspace.acquire();
+        assertTrue(other[0].isPooled());
+        assertNotSame(workspace, other[0]);
+        workspace.release();
+    }
+
+    @Test
+    public void testSearchReleasesTheWorkspace() {
+        Graph graph = new Graph();
+        StreetVertex a = new IntersectionVertex(graph, "A", 10.0, 60.0);
+        StreetVertex b = new IntersectionVertex(graph, "B", 10.001, 60.0);
+        new StreetEdge(a, b, null, "AB", 55, StreetTraversalPermission.ALL, false);
+        SearchWorkspace workspace = SearchWorkspace.acquire();
+        workspace.release();
+
+        RoutingRequest options = new RoutingRequest();
+        options.setRoutingContext(graph, a, b);
+        assertNotNull(new AStar().getShortestPathTree(options));
+
+        // The search used the workspace of the thread and returned it
+        SearchWorkspace after = SearchWorkspace.acquire();
+        assertSame(workspace, after);
+        assertTrue(after.isPooled());
+        after.release();
+    }
+}
@@ -0,0 +1,222 @@
+package org.opentripplanner.routing.algorithm.astar.strategies;
+
+import org.jets3t.service.io.TempFile;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.datastore.FileType;
+import org.opentripplanner.datastore.file.FileDataSource;
+import org.opentripplanner.routing.algorithm.astar.AStar;
+import org.opentripplanner.routing.algorithm.astar.TraverseVisitor;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.SerializedGraphObject;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.GraphPath;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.standalone.config.BuildConfig;
+import org.opentripplanner.standalone.config.RouterConfig;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LandmarkRemainingWeightHeuristicTest {
+
+    private static final int SIZE = 6;
+
+    /** A grid city with a river between the two western and the other columns. */
+    private static final int RIVER = 2;
+
+    private Graph graph;
+
+    private IntersectionVertex[][] grid;
+
+    private LandmarkDistances landmarks;
+
+    @Before
+    public void before() {
+        graph = new Graph();
+        grid = new IntersectionVertex[SIZE][SIZE];
+        for (int i = 0; i < SIZE; ++i) {
+            for (int j = 0; j < SIZE; ++j) {
+                grid[i][j] = new IntersectionVertex(
+                        graph, "v_" + i + "_" + j, 10.0 + j * 0.002, 60.0 + i * 0.001
+                );
+            }
+        }
+        for (int i = 0; i < SIZE; ++i) {
+            for (int j = 0; j < SIZE; ++j) {
+                // The streets along the rows are one-way, alternating east and west
+                if (j + 1 < SIZE && (j + 1 != RIVER || i == SIZE - 1)) {
+                    if (i % 2 == 0) { edge(grid[i][j], grid[i][j + 1]); }
+                    else { edge(grid[i][j + 1], grid[i][j]); }
+                }
+                if (i + 1 < SIZE) {
+                    edge(grid[i][j], grid[i + 1][j]);
+                    edge(grid[i + 1][j], grid[i][j]);
+                }
+            }
+        }
+        graph.index();
+        landmarks = LandmarkDistances.build(graph, 4, List.of(TraverseMode.CAR));
+    }
+
+    @Test
+    public void testLandmarksAreSelected() {
+        LandmarkDistances.Table table = landmarks.getTable(TraverseMode.CAR);
+        assertEquals(4, table.numberOfLandmarks());
+        assertEquals(TraverseMode.CAR, table.getMode());
+        assertNull(landmarks.getTable(TraverseMode.BICYCLE));
+    }
+
+    @Test
+    public void testLandmarkMode() {
+        RoutingRequest request = request(false);
+        assertNull(LandmarkRemainingWeightHeuristic.landmarkMode(graph, request));
+
+        graph.putService(LandmarkDistances.class, landmarks);
+        assertEquals(TraverseMode.CAR, LandmarkRemainingWeightHeuristic.landmarkMode(graph, request));
+
+        request.setStreetSubRequestModes(new TraverseModeSet(TraverseMode.CAR, TraverseMode.WALK));
+        assertNull(LandmarkRemainingWeightHeuristic.landmarkMode(graph, request));
+
+        request.setStreetSubRequestModes(new TraverseModeSet(TraverseMode.BICYCLE));
+        assertNull(LandmarkRemainingWeightHeuristic.landmarkMode(graph, request));
+    }
+
+    @Test
+    public void testHeuristicIsAdmissible() {
+        for (boolean arriveBy : new boolean[] { false, true }) {
+            for (IntersectionVertex[] row : grid) {
+                for (IntersectionVertex from : row) {
+                    for (IntersectionVertex[] row2 : grid) {
+                        for (IntersectionVertex to : row2) {
+                            if (from != to) {
+                                assertAdmissible(from, to, arriveBy);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSameResultWithFewerStates() {
+        Vertex from = grid[SIZE - 1][SIZE - 1];
+        Vertex to = grid[0][0];
+
+        int[] euclideanVisited = new int[1];
+        GraphPath euclidean = route(
+                graph, from, to, new EuclideanRemainingWeightHeuristic(), euclideanVisited
+        );
+        int[] landmarkVisited = new int[1];
+        GraphPath landmark = route(
+                graph, from, to, new LandmarkRemainingWeightHeuristic(landmarks, TraverseMode.CAR),
+                landmarkVisited
+        );
+
+        assertNotNull(euclidean);
+        assertNotNull(landmark);
+        assertEquals(euclidean.getWeight(), landmark.getWeight(), 1e-6);
+        assertTrue(
+                "Visited " + landmarkVisited[0] + " > " + euclideanVisited[0],
+                landmarkVisited[0] <= euclideanVisited[0]
+        );
+    }
+
+    @Test
+    public void testLandmarksAreUsedAfterTheGraphIsReloaded() throws Exception {
+        graph.putService(LandmarkDistances.class, landmarks);
+        File file = TempFile.createTempFile("graph", "landmarks");
+        new SerializedGraphObject(graph, BuildConfig.DEFAULT, RouterConfig.DEFAULT)
+                .save(new FileDataSource(file, FileType.GRAPH));
+        Graph loaded = SerializedGraphObject.load(file);
+        loaded.index();
+
+        int[] originalVisited = new int[1];
+        GraphPath original = route(
+                graph, grid[SIZE - 1][SIZE - 1], grid[0][0],
+                new LandmarkRemainingWeightHeuristic(landmarks, TraverseMode.CAR), originalVisited
+        );
+        int[] loadedVisited = new int[1];
+        GraphPath reloaded = route(
+                loaded, loaded.getVertex("v_5_5"), loaded.getVertex("v_0_0"),
+                new LandmarkRemainingWeightHeuristic(
+                        loaded.getService(LandmarkDistances.class), TraverseMode.CAR
+                ),
+                loadedVisited
+        );
+
+        assertNotNull(reloaded);
+        assertEquals(original.getWeight(), reloaded.getWeight(), 1e-6);
+        // The same heuristic values give the same search
+        assertEquals(originalVisited[0], loadedVisited[0]);
+    }
+
+    private void assertAdmissible(Vertex from, Vertex to, boolean arriveBy) {
+        RoutingRequest request = request(arriveBy);
+        request.setRoutingContext(graph, from, to);
+        request.rctx.remainingWeightHeuristic = new TrivialRemainingWeightHeuristic();
+        ShortestPathTree tree = new AStar().getShortestPathTree(request);
+        GraphPath path = tree.getPath(arriveBy ? from : to, false);
+        assertNotNull(path);
+
+        LandmarkRemainingWeightHeuristic heuristic =
+                new LandmarkRemainingWeightHeuristic(landmarks, TraverseMode.CAR);
+        heuristic.initialize(request, Long.MAX_VALUE);
+        double estimate = heuristic.estimateRemainingWeight(new State(request));
+        assertTrue(
+                from + " -> " + to + ": " + estimate + " > " + path.getWeight(),
+                estimate <= path.getWeight() + 1e-6
+        );
+    }
+
+    private GraphPath route(
+            Graph graph, Vertex from, Vertex to, RemainingWeightHeuristic heuristic, int[] visited
+    ) {
+        RoutingRequest request = request(false);
+        request.setRoutingContext(graph, from, to);
+        request.rctx.remainingWeightHeuristic = heuristic;
+        AStar aStar = new AStar();
+        aStar.setTraverseVisitor(new TraverseVisitor() {
+            @Override public void visitEdge(Edge edge, State state) {}
+            @Override public void visitVertex(State state) { visited[0]++; }
+            @Override public void visitEnqueue(State state) {}
+        });
+        return aStar.getShortestPathTree(request).getPath(to, false);
+    }
+
+    private RoutingRequest request(boolean arriveBy) {
+        RoutingRequest request = new RoutingRequest(new TraverseModeSet(TraverseMode.CAR));
+        request.carSpeed = 10.0;
+        request.setArriveBy(arriveBy);
+        return request;
+    }
+
+    private void edge(IntersectionVertex a, IntersectionVertex b) {
+        Coordinate[] coords = { a.getCoordinate(), b.getCoordinate() };
+        LineString geometry = GeometryUtils.getGeometryFactory().createLineString(coords);
+        double length = SphericalDistanceLibrary.distance(a.getCoordinate(), b.getCoordinate());
+        StreetEdge e = new StreetEdge(
+                a, b, geometry, a.getLabel() + "_" + b.getLabel(), length,
+                StreetTraversalPermission.ALL, false
+        );
+        e.setCarSpeed(10.0f);
+    }
+}
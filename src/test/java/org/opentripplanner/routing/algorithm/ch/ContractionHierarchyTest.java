@@ -0,0 +1,317 @@
+package org.opentripplanner.routing.algorithm.ch;
+
+import org.jets3t.service.io.TempFile;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.TurnRestriction;
+import org.opentripplanner.common.TurnRestrictionType;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.datastore.FileType;
+import org.opentripplanner.datastore.file.FileDataSource;
+import org.opentripplanner.routing.algorithm.astar.AStar;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.SerializedGraphObject;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.GraphPath;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.standalone.config.BuildConfig;
+import org.opentripplanner.standalone.config.RouterConfig;
+
+import java.io.File;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ContractionHierarchyTest {
+
+    private static final int SIZE = 6;
+
+    private Graph graph;
+
+    private IntersectionVertex[][] grid;
+
+    /** The street edge with a no left turn restriction onto {@link #restrictedTo}. */
+    private StreetEdge restrictedFrom;
+
+    private StreetEdge restrictedTo;
+
+    private ContractionHierarchy ch;
+
+    private ContractionHierarchy.NodeIndex nodes;
+
+    @Before
+    public void before() {
+        graph = new Graph();
+        grid = new IntersectionVertex[SIZE][SIZE];
+        for (int i = 0; i < SIZE; ++i) {
+            for (int j = 0; j < SIZE; ++j) {
+                grid[i][j] = new IntersectionVertex(
+                        graph, "v_" + i + "_" + j, 10.0 + j * 0.002, 60.0 + i * 0.001
+                );
+            }
+        }
+        for (int i = 0; i < SIZE; ++i) {
+            for (int j = 0; j < SIZE; ++j) {
+                // The streets along the rows are one-way, alternating east and west
+                if (j + 1 < SIZE) {
+                    if (i % 2 == 0) { edge(grid[i][j], grid[i][j + 1], 10f); }
+                    else { edge(grid[i][j + 1], grid[i][j], 10f); }
+                }
+                // The middle column is a faster road
+                if (i + 1 < SIZE) {
+                    float speed = j == SIZE / 2 ? 25f : 10f;
+                    edge(grid[i][j], grid[i + 1][j], speed);
+                    edge(grid[i + 1][j], grid[i][j], speed);
+                }
+            }
+        }
+        // A pedestrian street is not a part of the hierarchy
+        StreetEdge footway = edge(grid[0][0], grid[1][1], 10f);
+        footway.setPermission(StreetTraversalPermission.PEDESTRIAN);
+
+        restrictedFrom = street(grid[0][2], grid[0][3]);
+        restrictedTo = street(grid[0][3], grid[1][3]);
+        graph.addTurnRestriction(restrictedFrom, new TurnRestriction(
+                restrictedFrom, restrictedTo, TurnRestrictionType.NO_TURN,
+                new TraverseModeSet(TraverseMode.CAR)
+        ));
+
+        graph.index();
+        ch = ContractionHierarchy.build(graph);
+        nodes = ch.nodeIndex(graph.getStreetGraphSnapshot());
+    }
+
+    @Test
+    public void testExpandedIntersections() {
+        // The restricted intersection and its neighbours
+        for (Vertex v : new Vertex[] { grid[0][3], grid[0][2], grid[0][4], grid[1][3] }) {
+            assertTrue(nodes.isExpanded(v));
+            assertEquals(ContractionHierarchy.NOT_INDEXED, nodes.nodeOf(v));
+        }
+        assertFalse(nodes.isExpanded(grid[2][2]));
+        assertNotEquals(ContractionHierarchy.NOT_INDEXED, nodes.nodeOf(grid[2][2]));
+        assertNotEquals(ContractionHierarchy.NOT_INDEXED, nodes.nodeArrivingBy(restrictedFrom));
+        assertEquals(nodes.nodeOf(grid[2][2]), nodes.nodeArrivingBy(street(grid[1][2], grid[2][2])));
+
+        assertFalse(ContractionHierarchy.canTurn(graph, restrictedFrom, restrictedTo));
+        assertFalse(ContractionHierarchy.canTurn(graph, restrictedTo, street(grid[1][3], grid[0][3])));
+        assertTrue(ContractionHierarchy.canTurn(graph, restrictedTo, street(grid[1][3], grid[2][3])));
+    }
+
+    /**
+     * The hierarchy must give the same shortest path times as a plain Dijkstra search on the
+     * street edges, between all pairs of intersections.
+     */
+    @Test
+    public void testSameTimesAsDijkstra() {
+        for (Vertex from : graph.getVertices()) {
+            Map<Edge, Integer> expected = dijkstra(from);
+            for (Vertex to : graph.getVertices()) {
+                if (from == to) { continue; }
+                int expectedTime = Integer.MAX_VALUE;
+                for (Edge e : to.getIncoming()) {
+                    expectedTime = Math.min(expectedTime, expected.getOrDefault(e, Integer.MAX_VALUE));
+                }
+
+                // Leave an expanded intersection on any of its street edges
+                List<Edge> firstEdges = nodes.isExpanded(from)
+                        ? carEdges(from.getOutgoing())
+                        : Collections.emptyList();
+                int[] sources = firstEdges.isEmpty()
+                        ? new int[] { nodes.nodeOf(from) }
+                        : firstEdges.stream().mapToInt(nodes::nodeArrivingBy).toArray();
+                int[] sourceOffsets = firstEdges.isEmpty()
+                        ? new int[] { 0 }
+                        : firstEdges.stream().mapToInt(ContractionHierarchy::carTime).toArray();
+                int[] targets = nodes.isExpanded(to)
+                        ? carEdges(to.getIncoming()).stream().mapToInt(nodes::nodeArrivingBy).toArray()
+                        : new int[] { nodes.nodeOf(to) };
+
+                ContractionHierarchy.Path path = ch.shortestPath(
+                        sources, sourceOffsets, targets, new int[targets.length]
+                );
+                assertNotNull(from + " -> " + to, path);
+                List<Edge> edges = new ArrayList<>();
+                if (!firstEdges.isEmpty()) {
+                    for (Edge e : firstEdges) {
+                        if (nodes.nodeArrivingBy(e) == path.sourceNode) { edges.add(e); }
+                    }
+                }
+                edges.addAll(path.edges);
+
+                Vertex at = from;
+                int time = 0;
+                for (int i = 0; i < edges.size(); ++i) {
+                    Edge e = edges.get(i);
+                    assertSame(at, e.getFromVertex());
+                    if (i > 0) { assertTrue(canTurn(edges.get(i - 1), e)); }
+                    time += ContractionHierarchy.carTime(e);
+                    at = e.getToVertex();
+                }
+                assertSame(to, at);
+                assertEquals(from + " -> " + to, expectedTime, time);
+            }
+        }
+    }
+
+    @Test
+    public void testRouteLikeAStar() {
+        graph.putService(ContractionHierarchy.class, ch);
+        for (Vertex from : new Vertex[] { grid[0][0], grid[SIZE - 1][SIZE - 1], grid[0][2] }) {
+            for (Vertex to : new Vertex[] { grid[SIZE - 1][0], grid[0][SIZE - 1], grid[1][3] }) {
+                RoutingRequest request = request();
+                request.setRoutingContext(graph, from, to);
+                assertTrue(ContractionHierarchyRouter.isSupported(graph, request));
+                GraphPath path = new ContractionHierarchyRouter(graph, ch).route(request);
+                assertNotNull(from + " -> " + to, path);
+                assertSame(from, path.states.getFirst().getVertex());
+                assertSame(to, path.states.getLast().getVertex());
+
+                RoutingRequest aStarRequest = request();
+                aStarRequest.setRoutingContext(graph, from, to);
+                GraphPath aStarPath = new AStar().getShortestPathTree(aStarRequest).getPath(to, false);
+                // The hierarchy does not include the turn costs, so compare the street times only
+                assertTrue(streetTime(path) <= streetTime(aStarPath));
+            }
+        }
+    }
+
+    @Test
+    public void testRouteAfterTheGraphIsReloaded() throws Exception {
+        graph.putService(ContractionHierarchy.class, ch);
+        File file = TempFile.createTempFile("graph", "ch");
+        new SerializedGraphObject(graph, BuildConfig.DEFAULT, RouterConfig.DEFAULT)
+                .save(new FileDataSource(file, FileType.GRAPH));
+        Graph loaded = SerializedGraphObject.load(file);
+        loaded.index();
+        ContractionHierarchy loadedCh = loaded.getService(ContractionHierarchy.class);
+        assertNotNull(loadedCh);
+
+        for (String[] fromTo : new String[][] { { "v_0_0", "v_5_0" }, { "v_5_5", "v_1_3" } }) {
+            RoutingRequest request = request();
+            request.setRoutingContext(graph, graph.getVertex(fromTo[0]), graph.getVertex(fromTo[1]));
+            GraphPath expected = new ContractionHierarchyRouter(graph, ch).route(request);
+
+            RoutingRequest loadedRequest = request();
+            loadedRequest.setRoutingContext(
+                    loaded, loaded.getVertex(fromTo[0]), loaded.getVertex(fromTo[1])
+            );
+            assertTrue(ContractionHierarchyRouter.isSupported(loaded, loadedRequest));
+            GraphPath path = new ContractionHierarchyRouter(loaded, loadedCh).route(loadedRequest);
+
+            assertNotNull(fromTo[0] + " -> " + fromTo[1], path);
+            assertEquals(expected.edges.size(), path.edges.size());
+            assertEquals(expected.getDuration(), path.getDuration());
+        }
+    }
+
+    @Test
+    public void testNotSupported() {
+        RoutingRequest request = request();
+        request.setRoutingContext(graph, grid[0][0], grid[1][0]);
+        assertFalse(ContractionHierarchyRouter.isSupported(graph, request));
+
+        graph.putService(ContractionHierarchy.class, ch);
+        assertTrue(ContractionHierarchyRouter.isSupported(graph, request));
+
+        request.setStreetSubRequestModes(new TraverseModeSet(TraverseMode.CAR, TraverseMode.WALK));
+        assertFalse(ContractionHierarchyRouter.isSupported(graph, request));
+    }
+
+    private int streetTime(GraphPath path) {
+        int time = 0;
+        for (Edge e : path.edges) {
+            time += ContractionHierarchy.carTime(e);
+        }
+        return time;
+    }
+
+    /**
+     * Plain Dijkstra on the street edges from the vertex, giving the time to the end of each street
+     * edge. Like the hierarchy, U-turns are only banned at the expanded intersections.
+     */
+    private Map<Edge, Integer> dijkstra(Vertex from) {
+        Map<Edge, Integer> times = new HashMap<>();
+        PriorityQueue<Map.Entry<Edge, Integer>> queue = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Edge e : carEdges(from.getOutgoing())) {
+            times.put(e, ContractionHierarchy.carTime(e));
+            queue.add(new AbstractMap.SimpleEntry<>(e, times.get(e)));
+        }
+        while (!queue.isEmpty()) {
+            Map.Entry<Edge, Integer> entry = queue.poll();
+            Edge e = entry.getKey();
+            if (entry.getValue() > times.get(e)) { continue; }
+            for (Edge next : carEdges(e.getToVertex().getOutgoing())) {
+                if (!canTurn(e, next)) { continue; }
+                int time = entry.getValue() + ContractionHierarchy.carTime(next);
+                if (time < times.getOrDefault(next, Integer.MAX_VALUE)) {
+                    times.put(next, time);
+                    queue.add(new AbstractMap.SimpleEntry<>(next, time));
+                }
+            }
+        }
+        return times;
+    }
+
+    private boolean canTurn(Edge from, Edge to) {
+        if (nodes.isExpanded(from.getToVertex())) {
+            return ContractionHierarchy.canTurn(graph, from, to);
+        }
+        // There are no turn restrictions at the other intersections
+        return true;
+    }
+
+    private static List<Edge> carEdges(Collection<Edge> edges) {
+        List<Edge> result = new ArrayList<>();
+        for (Edge e : edges) {
+            if (e instanceof StreetEdge && ContractionHierarchy.carTime(e) >= 0) { result.add(e); }
+        }
+        return result;
+    }
+
+    private RoutingRequest request() {
+        RoutingRequest request = new RoutingRequest(new TraverseModeSet(TraverseMode.CAR));
+        request.carSpeed = 25.0;
+        return request;
+    }
+
+    private StreetEdge street(Vertex from, Vertex to) {
+        for (Edge e : from.getOutgoing()) {
+            if (e.getToVertex() == to) { return (StreetEdge) e; }
+        }
+        throw new IllegalArgumentException("No street from " + from + " to " + to);
+    }
+
+    private StreetEdge edge(IntersectionVertex a, IntersectionVertex b, float speed) {
+        Coordinate[] coords = { a.getCoordinate(), b.getCoordinate() };
+        LineString geometry = GeometryUtils.getGeometryFactory().createLineString(coords);
+        double length = SphericalDistanceLibrary.distance(a.getCoordinate(), b.getCoordinate());
+        StreetEdge e = new StreetEdge(
+                a, b, geometry, a.getLabel() + "_" + b.getLabel(), length,
+                StreetTraversalPermission.ALL, false
+        );
+        e.setCarSpeed(speed);
+        return e;
+    }
+}
@@ -0,0 +1,165 @@
+package org.opentripplanner.routing.algorithm.raptor.router.street;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.opentripplanner.model.StopLocation;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.api.request.StreetMode;
+import org.opentripplanner.routing.core.BicycleOptimizeType;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.graphfinder.NearbyStop;
+import org.opentripplanner.routing.location.TemporaryStreetLocation;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.util.NonLocalizedString;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class NearbyStopCacheTest {
+
+  private static final int TTL_SECONDS = 60;
+  private static final int DISTANCE = 2000;
+
+  private final Graph graph = new Graph();
+  private final Set<Vertex> origin = Set.of(new IntersectionVertex(graph, "A", 10.0, 60.0));
+  private final RoutingRequest request = new RoutingRequest();
+
+  private long time = 0;
+  private int searchCount = 0;
+
+  private final NearbyStopCache subject = new NearbyStopCache(2, TTL_SECONDS, () -> time);
+
+  @Test
+  public void sameSearchIsCached() {
+    Collection<NearbyStop> first = search(origin, StreetMode.WALK);
+
+    assertSame(first, search(origin, StreetMode.WALK));
+    assertEquals(1, searchCount);
+    assertStatistics(1, 1, 1);
+  }
+
+  @Test
+  public void searchesFromTemporaryVerticesAreNotShared() {
+    // Two requests from the same coordinate, near the same stop, with different origin names
+    Vertex home = temporaryVertex("Home", 10.5, 60.5);
+    Vertex work = temporaryVertex("Work", 10.5, 60.5);
+
+    Collection<NearbyStop> first = searchFrom(home);
+    Collection<NearbyStop> second = searchFrom(work);
+
+    assertEquals(2, searchCount);
+    assertStatistics(0, 0, 0);
+    assertSame(home, first.iterator().next().state.getVertex());
+    assertSame(work, second.iterator().next().state.getVertex());
+    assertEquals("Work", second.iterator().next().state.getVertex().getName());
+  }
+
+  @Test
+  public void requestParametersArePartOfTheKey() {
+    search(origin, StreetMode.WALK);
+    request.walkSpeed = request.walkSpeed + 0.1;
+    search(origin, StreetMode.WALK);
+
+    assertEquals(2, searchCount);
+    assertStatistics(0, 2, 2);
+  }
+
+  @Test
+  public void allStreetCostParametersArePartOfTheKey() {
+    // A bicycle request has its own bike walking request
+    request.setMode(TraverseMode.BICYCLE);
+    search(origin, StreetMode.BIKE);
+    request.setOptimize(BicycleOptimizeType.TRIANGLE);
+    search(origin, StreetMode.BIKE);
+    request.setBikeTriangleSafetyFactor(0.5);
+    request.setBikeTriangleSlopeFactor(0.3);
+    request.setBikeTriangleTimeFactor(0.2);
+    search(origin, StreetMode.BIKE);
+    request.elevatorBoardCost += 10;
+    search(origin, StreetMode.BIKE);
+    request.elevatorHopTime += 10;
+    search(origin, StreetMode.BIKE);
+    request.bikeSwitchCost += 10;
+    search(origin, StreetMode.BIKE);
+    request.bikeWalkingOptions.walkReluctance += 1;
+    search(origin, StreetMode.BIKE);
+
+    assertEquals(7, searchCount);
+  }
+
+  @Test
+  public void modesDependingOnRealtimeDataAreNotCached() {
+    search(origin, StreetMode.BIKE_RENTAL);
+    search(origin, StreetMode.BIKE_RENTAL);
+
+    assertEquals(2, searchCount);
+    assertStatistics(0, 0, 0);
+  }
+
+  @Test
+  public void entriesExpire() {
+    Collection<NearbyStop> first = search(origin, StreetMode.WALK);
+    time += TTL_SECONDS * 1000 - 1;
+    assertSame(first, search(origin, StreetMode.WALK));
+
+    time += 1;
+    assertNotSame(first, search(origin, StreetMode.WALK));
+    assertEquals(2, searchCount);
+  }
+
+  @Test
+  public void cacheIsBounded() {
+    search(origin, StreetMode.WALK);
+    search(origin, StreetMode.BIKE);
+    search(origin, StreetMode.CAR);
+    assertStatistics(0, 3, 2);
+  }
+
+  @Test
+  public void disabledCacheAlwaysSearch() {
+    NearbyStopCache disabled = new NearbyStopCache(0, TTL_SECONDS);
+    disabled.get(request, origin, false, StreetMode.WALK, DISTANCE, this::doSearch);
+    disabled.get(request, origin, false, StreetMode.WALK, DISTANCE, this::doSearch);
+
+    assertEquals(2, searchCount);
+    assertEquals(0, disabled.getStatistics().misses);
+  }
+
+  private Collection<NearbyStop> search(Set<Vertex> vertices, StreetMode streetMode) {
+    return subject.get(request, vertices, false, streetMode, DISTANCE, this::doSearch);
+  }
+
+  private Collection<NearbyStop> searchFrom(Vertex vertex) {
+    return subject.get(request, Set.of(vertex), false, StreetMode.WALK, DISTANCE, () -> {
+      ++searchCount;
+      State state = new State(vertex, request);
+      return List.of(new NearbyStop((StopLocation) null, searchCount, null, null, state));
+    });
+  }
+
+  private Collection<NearbyStop> doSearch() {
+    ++searchCount;
+    return List.of(new NearbyStop((StopLocation) null, searchCount, null, null, null));
+  }
+
+  private void assertStatistics(long hits, long misses, int size) {
+    NearbyStopCache.Statistics s = subject.getStatistics();
+    assertEquals("hits", hits, s.hits);
+    assertEquals("misses", misses, s.misses);
+    assertEquals("size", size, s.size);
+  }
+
+  private static TemporaryStreetLocation temporaryVertex(String name, double x, double y) {
+    return new TemporaryStreetLocation(
+        "origin", new Coordinate(x, y), new NonLocalizedString(name), false
+    );
+  }
+}
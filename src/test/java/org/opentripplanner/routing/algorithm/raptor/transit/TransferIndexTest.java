@@ -0,0 +1,81 @@
+package org.opentripplanner.routing.algorithm.raptor.transit;
+
+import org.junit.Test;
+import org.opentripplanner.transit.raptor.api.transit.RaptorTransfer;
+
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TransferIndexTest {
+
+  private static final Transfer T_0_1 = new Transfer(1, 100, List.of());
+  private static final Transfer T_0_2 = new Transfer(2, 250, List.of());
+  private static final Transfer T_2_0 = new Transfer(0, 250, List.of());
+
+  private final TransferIndex subject = new TransferIndex(
+      List.of(List.of(T_0_1, T_0_2), List.of(), List.of(T_2_0))
+  );
+
+  @Test
+  public void transfersFromStop() {
+    int[] durations = subject.getDurationsInSeconds(2.0);
+
+    assertEquals("0:1/50s 0:2/125s", toString(0, durations));
+    assertEquals("", toString(1, durations));
+    assertEquals("2:0/125s", toString(2, durations));
+    assertEquals(3, subject.getStopCount());
+    assertEquals(3, subject.getTransferCount());
+  }
+
+  @Test
+  public void durationsAreCachedPerWalkSpeed() {
+    int[] durations = subject.getDurationsInSeconds(1.33);
+
+    assertArrayEquals(new int[] { 75, 188, 188 }, durations);
+    assertSame(durations, subject.getDurationsInSeconds(1.33));
+    assertArrayEquals(new int[] { 100, 250, 250 }, subject.getDurationsInSeconds(1.0));
+  }
+
+  @Test
+  public void getTransfer() {
+    assertSame(T_0_2, subject.getTransfer(0, 2));
+    assertSame(T_2_0, subject.getTransfer(2, 0));
+    assertNull(subject.getTransfer(1, 0));
+    assertNull(subject.getTransfer(0, 0));
+  }
+
+  @Test
+  public void emptyIterator() {
+    Iterator<RaptorTransfer> it = subject.transfersFrom(1, subject.getDurationsInSeconds(1.0));
+    assertFalse(it.hasNext());
+    assertFalse(it.hasNext());
+  }
+
+  @Test
+  public void iteratorHasNextCanBeCalledMoreThanOnce() {
+    Iterator<RaptorTransfer> it = subject.transfersFrom(2, subject.getDurationsInSeconds(1.0));
+    assertTrue(it.hasNext());
+    assertTrue(it.hasNext());
+    assertEquals(0, it.next().stop());
+    assertFalse(it.hasNext());
+  }
+
+  private String toString(int fromStop, int[] durations) {
+    StringBuilder buf = new StringBuilder();
+    Iterator<RaptorTransfer> it = subject.transfersFrom(fromStop, durations);
+    while (it.hasNext()) {
+      RaptorTransfer t = it.next();
+      if (buf.length() > 0) { buf.append(' '); }
+      buf.append(fromStop).append(':').append(t.stop()).append('/')
+          .append(t.durationInSeconds()).append('s');
+    }
+    return buf.toString();
+  }
+}
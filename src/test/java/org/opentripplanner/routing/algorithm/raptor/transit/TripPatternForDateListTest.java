@@ -0,0 +1,89 @@
+package org.opentripplanner.routing.algorithm.raptor.transit;
+
+import org.junit.Test;
+import org.opentripplanner.routing.trippattern.TripTimes;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TripPatternForDateListTest {
+
+  private static final LocalDate DATE = LocalDate.of(2020, 11, 2);
+  private static final int N = 3 * TripPatternForDateList.CHUNK_SIZE + 5;
+
+  private final List<TripPatternForDate> patterns = createPatterns(N);
+  private final TripPatternForDateList subject = TripPatternForDateList.of(patterns);
+
+  @Test
+  public void createList() {
+    assertEquals(N, subject.size());
+    assertEquals(patterns, new ArrayList<>(subject));
+    assertSame(patterns.get(N - 1), subject.get(N - 1));
+  }
+
+  @Test
+  public void updateDoesNotChangeTheOriginalList() {
+    TripPatternForDate replacement = createPattern();
+
+    TripPatternForDateList.Updater updater = subject.update();
+    updater.set(3, replacement);
+    updater.set(4, null);
+    int newSlot = updater.add(createPattern());
+    TripPatternForDateList result = updater.build();
+
+    // Original is unchanged
+    assertEquals(patterns, new ArrayList<>(subject));
+
+    assertSame(replacement, result.get(3));
+    assertNull(result.get(4));
+    assertEquals(N, newSlot);
+    assertEquals(N, result.size());
+    assertEquals(N + 1, result.numberOfSlots());
+  }
+
+  @Test
+  public void onlyChangedChunksAreCopied() {
+    TripPatternForDateList.Updater updater = subject.update();
+    updater.set(1, createPattern());
+    updater.set(2, createPattern());
+    updater.set(TripPatternForDateList.CHUNK_SIZE + 1, createPattern());
+
+    assertEquals(2, updater.chunksCopied());
+  }
+
+  @Test
+  public void removedPatternsAreSkippedByTheIterator() {
+    TripPatternForDateList result = subject.update().set(0, null).set(N - 1, null).build();
+
+    assertEquals(N - 2, result.size());
+    assertEquals(patterns.subList(1, N - 1), new ArrayList<>(result));
+  }
+
+  @Test
+  public void updaterCanBeReused() {
+    TripPatternForDateList.Updater updater = subject.update();
+    TripPatternForDateList first = updater.set(0, null).build();
+    TripPatternForDateList second = updater.set(1, null).build();
+
+    assertSame(patterns.get(1), first.get(1));
+    assertNull(second.get(0));
+    assertNull(second.get(1));
+  }
+
+  private static List<TripPatternForDate> createPatterns(int n) {
+    List<TripPatternForDate> list = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      list.add(createPattern());
+    }
+    return list;
+  }
+
+  private static TripPatternForDate createPattern() {
+    return new TripPatternForDate(null, new TripTimes[0], DATE);
+  }
+}
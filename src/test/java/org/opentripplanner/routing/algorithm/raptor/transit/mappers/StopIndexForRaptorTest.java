@@ -12,6 +12,8 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class StopIndexForRaptorTest {
 
@@ -66,6 +68,18 @@ public class StopIndexForRaptorTest {
         assertEquals("[6000, 360000, 6000, 2000, 0]", Arrays.toString(result));
     }
 
+    @Test public void hasSameStopBoardAlightCosts() {
+        STOP_1.setParentStation(createStation("A", TransferPriority.DISCOURAGED));
+
+        StopIndexForRaptor stopIndex = new StopIndexForRaptor(STOPS, TransitTuningParameters.FOR_TEST);
+
+        assertTrue(stopIndex.hasSameStopBoardAlightCosts(TransitTuningParameters.FOR_TEST));
+        assertFalse(stopIndex.hasSameStopBoardAlightCosts(new TransitTuningParameters() {
+            @Override public boolean enableStopTransferPriority() { return false; }
+            @Override public Integer stopTransferCost(TransferPriority key) { return 0; }
+        }));
+    }
+
     Station createStation(String name, TransferPriority pri) {
         return new Station(new FeedScopedId("F", name), name, null, null, null, null, null, pri);
     }
@@ -0,0 +1,147 @@
+package org.opentripplanner.routing.algorithm.raptor.transit.mappers;
+
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+import org.junit.Test;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Route;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.model.StopPattern;
+import org.opentripplanner.model.StopTime;
+import org.opentripplanner.model.Trip;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.model.calendar.ServiceDate;
+import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternForDate;
+import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternWithRaptorStopIndexes;
+import org.opentripplanner.routing.trippattern.Deduplicator;
+import org.opentripplanner.routing.trippattern.RealTimeState;
+import org.opentripplanner.routing.trippattern.TripTimes;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TripsByServiceCodeIndexTest {
+
+    private static final ServiceDate D1 = new ServiceDate(2020, 11, 2);
+    private static final ServiceDate D2 = new ServiceDate(2020, 11, 3);
+    private static final ServiceDate D3 = new ServiceDate(2020, 11, 4);
+
+    private static final Stop STOP_A = Stop.stopForTest("A", 0.0, 0.0);
+    private static final Stop STOP_B = Stop.stopForTest("B", 0.0, 0.0);
+
+    private static final Deduplicator DEDUPLICATOR = new Deduplicator();
+
+    private final Route route = new Route();
+
+    private final List<TripPattern> patterns = new ArrayList<>();
+
+    private final Map<TripPattern, TripPatternWithRaptorStopIndexes> newTripPatternForOld =
+            new HashMap<>();
+
+    /** Service 0 runs on D1 and D2, service 1 on D2 and service 2 on no date. */
+    private final Map<ServiceDate, TIntSet> serviceCodesRunningForDate = Map.of(
+            D1, new TIntHashSet(new int[] { 0 }),
+            D2, new TIntHashSet(new int[] { 0, 1 }),
+            D3, new TIntHashSet()
+    );
+
+    @Test
+    public void mapSameTripsAsTheTripPatternForDateMapper() {
+        // The trips are added out of departure order
+        createPattern("P1", new int[] { 0, 1, 0, 1 }, 3600, 600, 1800, 60);
+        createPattern("P2", new int[] { 1, 1 }, 900, 300);
+        createPattern("P3", new int[] { 2 }, 100);
+        createPattern("P4", new int[] { 0, 2, 1 }, 500, 400, 200);
+        // A canceled trip is not mapped
+        patterns.get(3).scheduledTimetable.tripTimes.get(0).setRealTimeState(RealTimeState.CANCELED);
+
+        TripsByServiceCodeIndex subject = new TripsByServiceCodeIndex(patterns, newTripPatternForOld);
+        TripPatternForDateMapper expected = new TripPatternForDateMapper(
+                serviceCodesRunningForDate,
+                newTripPatternForOld
+        );
+
+        for (ServiceDate date : serviceCodesRunningForDate.keySet()) {
+            LocalDate localDate = ServiceCalendarMapper.localDateFromServiceDate(date);
+            List<TripPatternForDate> result = subject.map(
+                    serviceCodesRunningForDate.get(date),
+                    localDate
+            );
+            int i = 0;
+            for (TripPattern pattern : patterns) {
+                TripPatternForDate e = expected.map(pattern.scheduledTimetable, date);
+                if (e == null) { continue; }
+                TripPatternForDate actual = result.get(i++);
+                assertSame(e.getTripPattern(), actual.getTripPattern());
+                assertArrayEquals(e.tripTimes(), actual.tripTimes());
+                assertEquals(localDate, actual.getLocalDate());
+            }
+            assertEquals(i, result.size());
+        }
+        // No service runs on D3
+        assertTrue(subject.map(
+                serviceCodesRunningForDate.get(D3),
+                ServiceCalendarMapper.localDateFromServiceDate(D3)
+        ).isEmpty());
+    }
+
+    @Test
+    public void mapTripsInDepartureOrder() {
+        createPattern("P1", new int[] { 0, 1, 0 }, 3600, 600, 1800);
+        TripsByServiceCodeIndex subject = new TripsByServiceCodeIndex(patterns, newTripPatternForOld);
+
+        List<TripPatternForDate> result = subject.map(
+                serviceCodesRunningForDate.get(D2),
+                ServiceCalendarMapper.localDateFromServiceDate(D2)
+        );
+
+        assertEquals(1, result.size());
+        int[] departures = Arrays.stream(result.get(0).tripTimes())
+                .mapToInt(t -> t.getDepartureTime(0))
+                .toArray();
+        assertEquals("[600, 1800, 3600]", Arrays.toString(departures));
+    }
+
+    private void createPattern(String id, int[] serviceCodes, int... departureTimes) {
+        List<StopTime> stopTimes = List.of(createStopTime(STOP_A, 0), createStopTime(STOP_B, 300));
+        TripPattern pattern = new TripPattern(route, new StopPattern(stopTimes));
+        pattern.setId(new FeedScopedId("F", id));
+        for (int i = 0; i < departureTimes.length; ++i) {
+            Trip trip = new Trip();
+            trip.setId(new FeedScopedId("F", id + "-" + i));
+            trip.setRoute(route);
+            TripTimes tripTimes = new TripTimes(
+                    trip,
+                    List.of(
+                            createStopTime(STOP_A, departureTimes[i]),
+                            createStopTime(STOP_B, departureTimes[i] + 300)
+                    ),
+                    DEDUPLICATOR
+            );
+            tripTimes.serviceCode = serviceCodes[i];
+            pattern.add(tripTimes);
+        }
+        patterns.add(pattern);
+        newTripPatternForOld.put(
+                pattern,
+                new TripPatternWithRaptorStopIndexes(new int[] { 0, 1 }, pattern)
+        );
+    }
+
+    private static StopTime createStopTime(Stop stop, int time) {
+        StopTime st = new StopTime();
+        st.setStop(stop);
+        st.setDepartureTime(time);
+        st.setArrivalTime(time);
+        return st;
+    }
+}
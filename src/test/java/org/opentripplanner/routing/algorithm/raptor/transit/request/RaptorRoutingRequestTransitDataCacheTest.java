@@ -0,0 +1,80 @@
+package org.opentripplanner.routing.algorithm.raptor.transit.request;
+
+import org.junit.Test;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.TransitMode;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class RaptorRoutingRequestTransitDataCacheTest {
+
+  private static final LocalDate DATE = LocalDate.of(2020, 11, 2);
+  private static final Set<TransitMode> MODES = EnumSet.of(TransitMode.BUS, TransitMode.RAIL);
+  private static final Set<FeedScopedId> NO_BANNED_ROUTES = Set.of();
+
+  private final RaptorRoutingRequestTransitDataCache subject =
+      new RaptorRoutingRequestTransitDataCache();
+
+  private int createCount = 0;
+
+  @Test
+  public void sameKeyReturnsCachedValue() {
+    List<List<TripPatternForDates>> first = get(DATE, MODES, NO_BANNED_ROUTES);
+    // Use a copy of the sets, equal - not the same - filters should hit the cache
+    List<List<TripPatternForDates>> second = get(
+        DATE, EnumSet.copyOf(MODES), new HashSet<>(NO_BANNED_ROUTES)
+    );
+
+    assertSame(first, second);
+    assertEquals(1, createCount);
+  }
+
+  @Test
+  public void differentKeysAreCachedSeparately() {
+    List<List<TripPatternForDates>> value = get(DATE, MODES, NO_BANNED_ROUTES);
+
+    assertNotSame(value, get(DATE.plusDays(1), MODES, NO_BANNED_ROUTES));
+    assertNotSame(value, get(DATE, EnumSet.of(TransitMode.BUS), NO_BANNED_ROUTES));
+    assertNotSame(value, get(DATE, MODES, Set.of(new FeedScopedId("F", "R1"))));
+    assertEquals(4, createCount);
+    assertEquals(4, subject.size());
+  }
+
+  @Test
+  public void changesToRequestSetsDoNotAffectTheKey() {
+    Set<FeedScopedId> bannedRoutes = new HashSet<>();
+    List<List<TripPatternForDates>> value = get(DATE, MODES, bannedRoutes);
+    bannedRoutes.add(new FeedScopedId("F", "R1"));
+
+    assertSame(value, get(DATE, MODES, Set.of()));
+  }
+
+  @Test
+  public void cacheIsBoundedAndCanBeCleared() {
+    for (int i = 0; i < 100; ++i) {
+      get(DATE.plusDays(i), MODES, NO_BANNED_ROUTES);
+    }
+    assertEquals(16, subject.size());
+
+    subject.clear();
+    assertEquals(0, subject.size());
+  }
+
+  private List<List<TripPatternForDates>> get(
+      LocalDate date, Set<TransitMode> modes, Set<FeedScopedId> bannedRoutes
+  ) {
+    return subject.get(date, 1, 1, modes, bannedRoutes, () -> {
+      ++createCount;
+      return new ArrayList<>();
+    });
+  }
+}
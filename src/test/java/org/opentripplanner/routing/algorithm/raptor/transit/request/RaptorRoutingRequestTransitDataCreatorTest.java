@@ -16,6 +16,7 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class RaptorRoutingRequestTransitDataCreatorTest {
 
@@ -71,4 +72,36 @@ public class RaptorRoutingRequestTransitDataCreatorTest {
         assertEquals(0, ((TripScheduleWithOffset) combinedTripPatterns.get(2).getTripSchedule(1)).getSecondsOffset());
         assertEquals(86400, ((TripScheduleWithOffset) combinedTripPatterns.get(2).getTripSchedule(2)).getSecondsOffset());
     }
+
+    @Test
+    public void testTripSchedulesAreReused() {
+        TripTimes[] times = new TripTimes[] { null, null };
+
+        LocalDate first = LocalDate.of(2019, 3, 30);
+        LocalDate second = LocalDate.of(2019, 3, 31);
+        ZonedDateTime startOfTime = DateMapper.asStartOfService(second, ZoneId.of("Europe/London"));
+
+        TripPatternWithRaptorStopIndexes tripPattern = new TripPatternWithId(new FeedScopedId("", "1"),null, null);
+
+        TripPatternForDates subject = new TripPatternForDates(
+            tripPattern,
+            List.of(
+                new TripPatternForDate(tripPattern, times, first),
+                new TripPatternForDate(tripPattern, times, second)
+            ),
+            List.of(
+                DateMapper.secondsSinceStartOfTime(startOfTime, first),
+                DateMapper.secondsSinceStartOfTime(startOfTime, second)
+            )
+        );
+
+        assertEquals(4, subject.numberOfTripSchedules());
+
+        // Look up the trips in reverse order, the same way Raptor steps backwards in time
+        for (int i = 3; i >= 0; --i) {
+            assertSame(subject.getTripSchedule(i), subject.getTripSchedule(i));
+        }
+        assertEquals(-82800, ((TripScheduleWithOffset) subject.getTripSchedule(1)).getSecondsOffset());
+        assertEquals(0, ((TripScheduleWithOffset) subject.getTripSchedule(2)).getSecondsOffset());
+    }
 }
@@ -0,0 +1,184 @@
+package org.opentripplanner.routing.core;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.model.GenericLocation;
+import org.opentripplanner.routing.algorithm.astar.AStar;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.edgetype.TemporaryEdge;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.GraphPath;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.routing.vertextype.StreetVertex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The origin and destination of a request are linked to the street graph with temporary edges.
+ * Requests running at the same time must not see each others temporary edges, and must not
+ * change the permanent vertices, which are shared by all requests.
+ */
+public class RoutingContextConcurrencyTest {
+
+    private static final int N_THREADS = 8;
+    private static final int N_REQUESTS = 400;
+
+    private final GeometryFactory gf = GeometryUtils.getGeometryFactory();
+
+    // A 0.01 degree x 0.01 degree square with streets in both directions
+    private final Graph graph = new Graph();
+    private final StreetVertex tl = new IntersectionVertex(graph, "tl", -74.01, 40.01);
+    private final StreetVertex tr = new IntersectionVertex(graph, "tr", -74.0, 40.01);
+    private final StreetVertex bl = new IntersectionVertex(graph, "bl", -74.01, 40.0);
+    private final StreetVertex br = new IntersectionVertex(graph, "br", -74.0, 40.0);
+    private final List<Vertex> permanentVertices = Arrays.asList(tl, tr, bl, br);
+
+    // The origin is on the left street, and the destination on the right street
+    private final GenericLocation from = new GenericLocation(40.004, -74.01);
+    private final GenericLocation to = new GenericLocation(40.008, -74.0);
+
+    @Before
+    public void setup() {
+        createStreetEdges(tl, tr);
+        createStreetEdges(tr, br);
+        createStreetEdges(br, bl);
+        createStreetEdges(bl, tl);
+        graph.index();
+    }
+
+    @Test
+    public void testTemporaryEdgesAreOnlyVisibleInTheirRequest() {
+        RoutingRequest first = request();
+        RoutingRequest second = request();
+
+        for (Vertex v : permanentVertices) {
+            assertNoTemporaryEdges(v);
+        }
+
+        // The destination is reached from a permanent vertex in each request, through its own
+        // temporary edges
+        Vertex firstDestination = first.rctx.toVertices.iterator().next();
+        Vertex secondDestination = second.rctx.toVertices.iterator().next();
+        assertTrue(reaches(first.rctx, firstDestination));
+        assertFalse(reaches(first.rctx, secondDestination));
+        assertTrue(reaches(second.rctx, secondDestination));
+        assertFalse(reaches(second.rctx, firstDestination));
+
+        first.cleanup();
+        second.cleanup();
+    }
+
+    @Test
+    public void testConcurrentRequestsAtTheSameLocation() throws Exception {
+        int[] degreeOut = new int[permanentVertices.size()];
+        int[] degreeIn = new int[permanentVertices.size()];
+        for (int i = 0; i < permanentVertices.size(); ++i) {
+            degreeOut[i] = permanentVertices.get(i).getDegreeOut();
+            degreeIn[i] = permanentVertices.get(i).getDegreeIn();
+        }
+        double expectedWeight = search();
+
+        ExecutorService executor = Executors.newFixedThreadPool(N_THREADS);
+        try {
+            List<Future<Double>> results = new ArrayList<>();
+            for (int i = 0; i < N_REQUESTS; ++i) {
+                results.add(executor.submit(this::search));
+            }
+            for (Future<Double> result : results) {
+                assertEquals(expectedWeight, result.get(), 1e-6);
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < permanentVertices.size(); ++i) {
+            Vertex v = permanentVertices.get(i);
+            assertNoTemporaryEdges(v);
+            assertEquals(degreeOut[i], v.getDegreeOut());
+            assertEquals(degreeIn[i], v.getDegreeIn());
+        }
+    }
+
+    private double search() {
+        RoutingRequest request = request();
+        try {
+            for (Vertex v : permanentVertices) {
+                assertNoTemporaryEdges(v);
+            }
+            Vertex destination = request.rctx.toVertices.iterator().next();
+            GraphPath path = new AStar().getShortestPathTree(request).getPath(destination, false);
+            assertNotNull(path);
+            return path.getWeight();
+        }
+        finally {
+            request.cleanup();
+        }
+    }
+
+    private RoutingRequest request() {
+        RoutingRequest request = new RoutingRequest();
+        request.from = from;
+        request.to = to;
+        request.setRoutingContext(graph);
+        return request;
+    }
+
+    /**
+     * Return true if one of the permanent vertices has a temporary edge in the request to the
+     * target, or to the temporary splitter vertex the target is linked to.
+     */
+    private boolean reaches(RoutingContext rctx, Vertex target) {
+        for (Vertex v : permanentVertices) {
+            for (Edge e : rctx.getOutgoing(v)) {
+                if (!(e instanceof TemporaryEdge)) { continue; }
+                if (e.getToVertex() == target) { return true; }
+                for (Edge e2 : e.getToVertex().getOutgoing()) {
+                    if (e2.getToVertex() == target) { return true; }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void assertNoTemporaryEdges(Vertex v) {
+        for (Edge e : v.getOutgoing()) {
+            assertFalse(v + " -> " + e, e instanceof TemporaryEdge);
+        }
+        for (Edge e : v.getIncoming()) {
+            assertFalse(v + " <- " + e, e instanceof TemporaryEdge);
+        }
+    }
+
+    private void createStreetEdges(StreetVertex v0, StreetVertex v1) {
+        createStreetEdge(v0, v1, v0.getLabel() + " -> " + v1.getLabel(), false);
+        createStreetEdge(v1, v0, v1.getLabel() + " -> " + v0.getLabel(), true);
+    }
+
+    private void createStreetEdge(StreetVertex v0, StreetVertex v1, String name, boolean back) {
+        LineString geom = gf.createLineString(
+                new Coordinate[] { v0.getCoordinate(), v1.getCoordinate() }
+        );
+        double dist = SphericalDistanceLibrary.distance(v0.getCoordinate(), v1.getCoordinate());
+        new StreetEdge(v0, v1, geom, name, dist, StreetTraversalPermission.ALL, back);
+    }
+}
@@ -127,17 +127,17 @@ public class RoutingContextDestroyTest {
         new StreetEdge(v0, v1, geom, name, dist, StreetTraversalPermission.ALL, false);
     }
 
-    private static <T extends Collection<String>> T findAllReachableVertexes(Vertex vertex,
+    private <T extends Collection<String>> T findAllReachableVertexes(Vertex vertex,
             boolean forward, T list) {
         if (list.contains(vertex.getName()))
             return list;
 
         list.add(vertex.getName());
         if (forward) {
-            vertex.getOutgoing()
+            subject.getOutgoing(vertex)
                     .forEach(it -> findAllReachableVertexes(it.getToVertex(), forward, list));
         } else {
-            vertex.getIncoming()
+            subject.getIncoming(vertex)
                     .forEach(it -> findAllReachableVertexes(it.getFromVertex(), forward, list));
         }
         return list;
@@ -0,0 +1,194 @@
+package org.opentripplanner.routing.edgetype;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.common.geometry.PackedCoordinateSequence;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.core.BicycleOptimizeType;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class StreetCostTablesTest {
+
+    private Graph graph;
+
+    private IntersectionVertex v0, v4;
+
+    private List<StreetEdge> path;
+
+    @Before
+    public void before() {
+        graph = new Graph();
+        v0 = new IntersectionVertex(graph, "v0", 10.000, 60.0);
+        IntersectionVertex v1 = new IntersectionVertex(graph, "v1", 10.001, 60.0);
+        IntersectionVertex v2 = new IntersectionVertex(graph, "v2", 10.002, 60.0);
+        IntersectionVertex v3 = new IntersectionVertex(graph, "v3", 10.003, 60.0);
+        v4 = new IntersectionVertex(graph, "v4", 10.004, 60.0);
+
+        path = new ArrayList<>();
+        path.add(edge(v0, v1, 55.0, StreetTraversalPermission.ALL));
+
+        StreetWithElevationEdge hill = new StreetWithElevationEdge(
+                v1, v2, geometry(v1, v2), "hill", 56.0, StreetTraversalPermission.ALL, false
+        );
+        hill.setElevationProfile(new PackedCoordinateSequence.Double(new Coordinate[] {
+                new Coordinate(0, 10), new Coordinate(28, 11), new Coordinate(56, 10.5)
+        }), false);
+        path.add(hill);
+
+        StreetEdge greenway = edge(v2, v3, 57.0, StreetTraversalPermission.PEDESTRIAN_AND_BICYCLE);
+        greenway.setBicycleSafetyFactor(0.05f);
+        path.add(greenway);
+
+        // Bicycles are walked on the stairs
+        StreetEdge stairs = edge(v3, v4, 12.0, StreetTraversalPermission.PEDESTRIAN);
+        stairs.setStairs(true);
+        path.add(stairs);
+    }
+
+    @Test
+    public void testSameResultsAsFullComputation() {
+        assertSameResults(TraverseMode.WALK, r -> {});
+        assertSameResults(TraverseMode.WALK, r -> r.wheelchairAccessible = true);
+        assertSameResults(TraverseMode.WALK, r -> r.setWalkReluctance(3.5));
+        for (BicycleOptimizeType optimize : BicycleOptimizeType.values()) {
+            assertSameResults(TraverseMode.BICYCLE, r -> {
+                r.setOptimize(optimize);
+                r.setBikeTriangleSafetyFactor(0.5);
+                r.setBikeTriangleSlopeFactor(0.3);
+                r.setBikeTriangleTimeFactor(0.2);
+            });
+        }
+    }
+
+    @Test
+    public void testTablesAreBuiltForTheDefaultProfiles() {
+        graph.index();
+        assertNull(graph.getStreetCostTables());
+        graph.buildStreetCostTables(request(TraverseMode.WALK));
+        StreetCostTables tables = graph.getStreetCostTables();
+
+        RoutingRequest walk = request(TraverseMode.WALK);
+        RoutingRequest otherWalk = request(TraverseMode.WALK);
+        // The bicycle optimization does not change the walk costs
+        otherWalk.setOptimize(BicycleOptimizeType.SAFE);
+        StreetCostTables.Table table = tables.getTable(walk, TraverseMode.WALK);
+        assertNotNull(table);
+        assertSame(table, tables.getTable(otherWalk, TraverseMode.WALK));
+        assertNotNull(tables.getTable(request(TraverseMode.BICYCLE), TraverseMode.BICYCLE));
+        assertNull(tables.getTable(walk, TraverseMode.CAR));
+        // Walk, bicycle and bike walking
+        assertEquals(3, tables.size());
+
+        // No tables are built for the other profiles
+        otherWalk.walkSpeed = 2.0;
+        assertNull(tables.getTable(otherWalk, TraverseMode.WALK));
+        assertEquals(3, tables.size());
+
+        // The tables are built again with the graph index
+        graph.index();
+        assertNotSame(tables, graph.getStreetCostTables());
+        assertNotNull(graph.getStreetCostTables().getTable(walk, TraverseMode.WALK));
+    }
+
+    @Test
+    public void testTablesAreLookedUpOncePerSearch() {
+        RoutingRequest request = request(TraverseMode.WALK);
+        graph.index();
+        graph.buildStreetCostTables(request);
+        StreetCostTables.Lookup search = lookup();
+        StreetCostTables.Table table = search.getTable(request, TraverseMode.WALK);
+        assertNotNull(table);
+
+        // A search uses the same table, the next search uses the table of the changed request
+        request.walkSpeed = 2.0;
+        assertSame(table, search.getTable(request, TraverseMode.WALK));
+        assertNull(lookup().getTable(request, TraverseMode.WALK));
+    }
+
+    /**
+     * Traverse the path without the cost tables, then with them, and check that the states are the
+     * same.
+     */
+    private void assertSameResults(TraverseMode mode, Consumer<RoutingRequest> setup) {
+        // Start from a graph which is not indexed, so it has no cost tables
+        before();
+        RoutingRequest request = request(mode);
+        setup.accept(request);
+        request.setRoutingContext(graph, v0, v4);
+        assertNull(lookup().getTable(request, mode));
+        List<State> expected = traverse(request);
+
+        graph.index();
+        request = request(mode);
+        setup.accept(request);
+        graph.buildStreetCostTables(request);
+        request.setRoutingContext(graph, v0, v4);
+        assertNotNull(lookup().getTable(request, mode));
+        List<State> actual = traverse(request);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            State e = expected.get(i);
+            State a = actual.get(i);
+            assertEquals(e.getBackMode(), a.getBackMode());
+            assertEquals(e.getElapsedTimeSeconds(), a.getElapsedTimeSeconds());
+            assertEquals(e.getWeight(), a.getWeight(), 0.0);
+            assertEquals(e.getWalkDistance(), a.getWalkDistance(), 0.0);
+        }
+    }
+
+    private List<State> traverse(RoutingRequest request) {
+        List<State> states = new ArrayList<>();
+        State state = new State(request);
+        state.setStreetCostTables(lookup());
+        for (StreetEdge e : path) {
+            state = e.traverse(state);
+            assertNotNull(state);
+            states.add(state);
+        }
+        assertSame(v4, state.getVertex());
+        return states;
+    }
+
+    private StreetCostTables.Lookup lookup() {
+        return new StreetCostTables.Lookup(graph.getStreetCostTables());
+    }
+
+    private RoutingRequest request(TraverseMode mode) {
+        RoutingRequest request = new RoutingRequest(mode);
+        request.walkSpeed = 1.3;
+        request.bikeSpeed = 5.0;
+        return request;
+    }
+
+    private StreetEdge edge(
+            IntersectionVertex a,
+            IntersectionVertex b,
+            double length,
+            StreetTraversalPermission permission
+    ) {
+        String name = a.getLabel() + "_" + b.getLabel();
+        return new StreetEdge(a, b, geometry(a, b), name, length, permission, false);
+    }
+
+    private static LineString geometry(IntersectionVertex a, IntersectionVertex b) {
+        Coordinate[] coords = { a.getCoordinate(), b.getCoordinate() };
+        return GeometryUtils.getGeometryFactory().createLineString(coords);
+    }
+}
@@ -0,0 +1,75 @@
+package org.opentripplanner.routing.graph;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ByteArrayBlockTest {
+
+    private static final byte[] A = { 1, 2, 3 };
+
+    private static final byte[] B = { 4 };
+
+    private static final byte[] EMPTY = {};
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ByteArrayBlock.Builder builder = new ByteArrayBlock.Builder();
+        builder.add(A);
+        builder.add(null);
+        builder.add(B);
+        // Equal arrays are stored once
+        builder.add(new byte[] { 1, 2, 3 });
+        builder.add(EMPTY);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        // Something before the block, like the other sections of the graph file
+        out.writeInt(42);
+        builder.write(out);
+        out.close();
+        // 4 bytes before it, 5 slots, 3 arrays with 4 offsets, 4 bytes of data
+        assertEquals(4 + 4 + 5 * 4 + 4 + 4 * 4 + 4, bytes.size());
+        assertEquals(bytes.size() - 4, builder.size());
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        buffer.getInt();
+        assertBlock(ByteArrayBlock.read(buffer));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        in.readInt();
+        assertBlock(ByteArrayBlock.read(in, builder.size()));
+    }
+
+    private static void assertBlock(ByteArrayBlock block) {
+        assertEquals(5, block.slotCount());
+        assertArrayEquals(A, block.get(0));
+        assertFalse(block.contains(1));
+        assertNull(block.get(1));
+        assertArrayEquals(B, block.get(2));
+        assertArrayEquals(A, block.get(3));
+        assertTrue(block.contains(4));
+        assertArrayEquals(EMPTY, block.get(4));
+
+        assertArrayEquals(A, bytesOf(block.view(3)));
+        assertNull(block.view(1));
+        assertArrayEquals(B, bytesOf(block.view(2)));
+        assertArrayEquals(EMPTY, bytesOf(block.view(4)));
+    }
+
+    private static byte[] bytesOf(ByteBuffer view) {
+        byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        return bytes;
+    }
+}
@@ -10,18 +10,35 @@ import org.opentripplanner.ConstantsForTests;
 import org.opentripplanner.common.geometry.HashGridSpatialIndex;
 import org.opentripplanner.datastore.FileType;
 import org.opentripplanner.datastore.file.FileDataSource;
+import org.opentripplanner.model.calendar.ServiceDate;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetWithElevationEdge;
 import org.opentripplanner.routing.trippattern.Deduplicator;
 import org.opentripplanner.standalone.config.BuildConfig;
 import org.opentripplanner.standalone.config.RouterConfig;
+import org.opentripplanner.util.OtpAppException;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.lang.ref.SoftReference;
 import java.lang.reflect.Method;
+import java.time.LocalDate;
 import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.jar.JarFile;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.opentripplanner.standalone.config.JsonSupport.jsonNodeForTest;
 
 
 /**
@@ -130,9 +147,110 @@ public class GraphSerializationTest {
         originalGraph.index();
         copiedGraph1.index();
         assertNoDifferences(originalGraph, copiedGraph1);
+        assertSameStreetSections(originalGraph, copiedGraph1);
         Graph copiedGraph2 = SerializedGraphObject.load(tempFile);
         copiedGraph2.index();
         assertNoDifferences(copiedGraph1, copiedGraph2);
+        assertSameStreetSections(copiedGraph1, copiedGraph2);
+    }
+
+    @Test
+    public void testStoredTransitLayer() throws Exception {
+        Graph originalGraph = ConstantsForTests.getInstance().getPortlandGraph();
+        BuildConfig buildConfig = new BuildConfig(
+                jsonNodeForTest("{ 'storeTransitLayer' : true }"), "Test", false
+        );
+        File tempFile = TempFile.createTempFile("graph", "pdx");
+        new SerializedGraphObject(originalGraph, buildConfig, RouterConfig.DEFAULT)
+                .save(new FileDataSource(tempFile, FileType.GRAPH));
+        TransitLayer original = originalGraph.getTransitLayer();
+        assertNotNull(original);
+
+        Graph copiedGraph = SerializedGraphObject.load(tempFile);
+        TransitLayer copy = copiedGraph.getTransitLayer();
+        assertNotNull(copy);
+        assertTrue(copy.getStopIndex().hasSameStopBoardAlightCosts(
+                RouterConfig.DEFAULT.transitTuningParameters()
+        ));
+        assertEquals(original.getStopCount(), copy.getStopCount());
+        assertEquals(
+                original.getTransferIndex().getTransferCount(),
+                copy.getTransferIndex().getTransferCount()
+        );
+        assertArrayEquals(
+                original.getTransferIndex().getDurationsInSeconds(1.33),
+                copy.getTransferIndex().getDurationsInSeconds(1.33)
+        );
+        for (ServiceDate date : originalGraph.index.getServiceCodesRunningForDate().keySet()) {
+            LocalDate localDate = LocalDate.of(date.getYear(), date.getMonth(), date.getDay());
+            assertEquals(
+                    original.getTripPatternsForDate(localDate).size(),
+                    copy.getTripPatternsForDate(localDate).size()
+            );
+        }
+        // The transient request cache is created when used
+        assertEquals(0, copy.getRequestTransitDataCache().size());
+    }
+
+    @Test
+    public void testRejectFileWithoutHeader() throws Exception {
+        File tempFile = TempFile.createTempFile("graph", "old");
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            // A graph file written before the header was added starts with the Kryo class id
+            out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 });
+        }
+        try {
+            SerializedGraphObject.load(tempFile);
+            fail("Expected the graph to be rejected");
+        } catch (OtpAppException e) {
+            assertTrue(e.getMessage().contains("not a graph"));
+        }
+    }
+
+    @Test
+    public void testRejectDamagedFile() throws Exception {
+        File tempFile = TempFile.createTempFile("graph", "damaged");
+        new SerializedGraphObject(
+                ConstantsForTests.getInstance().getPortlandGraph(),
+                BuildConfig.DEFAULT,
+                RouterConfig.DEFAULT
+        ).saveToFile(tempFile);
+        // Change a byte in the compressed Kryo blocks at the end of the file
+        try (RandomAccessFile file = new RandomAccessFile(tempFile, "rw")) {
+            file.seek(file.length() - 100);
+            int b = file.read();
+            file.seek(file.length() - 100);
+            file.write(b ^ 0x55);
+        }
+        try {
+            SerializedGraphObject.load(tempFile);
+            fail("Expected the graph to be rejected");
+        } catch (OtpAppException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("damaged"));
+        }
+    }
+
+    /**
+     * The street geometries and elevation profiles are not compared by the object differ, they
+     * are read from the graph file when used. Compare them by edge.
+     */
+    private static void assertSameStreetSections(Graph g1, Graph g2) {
+        Map<String, StreetEdge> edges2 = new HashMap<>();
+        for (StreetEdge e : g2.getStreetEdges()) {
+            edges2.put(e.toString(), e);
+        }
+        assertEquals(g1.getStreetEdges().size(), g2.getStreetEdges().size());
+        for (StreetEdge e1 : g1.getStreetEdges()) {
+            StreetEdge e2 = edges2.get(e1.toString());
+            assertArrayEquals(e1.toString(), e1.getCompactGeometry(), e2.getCompactGeometry());
+            if (e1 instanceof StreetWithElevationEdge) {
+                assertArrayEquals(
+                        e1.toString(),
+                        ((StreetWithElevationEdge) e1).getPackedElevationProfile(),
+                        ((StreetWithElevationEdge) e2).getPackedElevationProfile()
+                );
+            }
+        }
     }
 
     private static void assertNoDifferences (Graph g1, Graph g2) {
@@ -152,7 +270,12 @@ public class GraphSerializationTest {
                 "tripPatternForId",
                 "transitLayer",
                 "realtimeTransitLayer",
-                "dateTime"
+                "dateTime",
+                // Read from the sections of the graph file when used, see assertSameStreetSections
+                "compactGeometry",
+                "compactGeometryBlock",
+                "packedElevationProfile",
+                "packedElevationProfileBlock"
 
         );
         // Edges have very detailed String representation including lat/lon coordinates and OSM IDs. They should be unique.
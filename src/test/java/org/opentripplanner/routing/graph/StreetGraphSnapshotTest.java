@@ -0,0 +1,76 @@
+package org.opentripplanner.routing.graph;
+
+import org.junit.Test;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.location.TemporaryStreetLocation;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.routing.vertextype.StreetVertex;
+import org.opentripplanner.util.NonLocalizedString;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StreetGraphSnapshotTest {
+
+    @Test
+    public void testIndex() {
+        Graph graph = new Graph();
+        StreetVertex va = new IntersectionVertex(graph, "A", 10.0, 10.0);
+        StreetVertex vb = new IntersectionVertex(graph, "B", 10.1, 10.1);
+        StreetVertex vc = new IntersectionVertex(graph, "C", 10.2, 10.2);
+        new StreetEdge(va, vb, null, "AB", 10.5, StreetTraversalPermission.PEDESTRIAN, false);
+        new StreetEdge(vb, va, null, "BA", 10.5, StreetTraversalPermission.PEDESTRIAN, true);
+        new StreetEdge(vb, vc, null, "BC", 20, StreetTraversalPermission.ALL, false);
+        new SimpleConcreteEdge(vc, va);
+
+        StreetGraphSnapshot snapshot = StreetGraphSnapshot.build(graph);
+
+        assertEquals(3, snapshot.vertexCount());
+        assertEquals(4, snapshot.edgeCount());
+        Set<Integer> vertexIndices = new HashSet<>();
+        for (Vertex v : graph.getVertices()) {
+            assertSame(v, snapshot.vertex(snapshot.indexOf(v)));
+            vertexIndices.add(snapshot.indexOf(v));
+        }
+        assertEquals(Set.of(0, 1, 2), vertexIndices);
+        Set<Integer> edgeIndices = new HashSet<>();
+        for (Edge e : graph.getEdges()) {
+            assertSame(e, snapshot.edge(snapshot.indexOf(e)));
+            edgeIndices.add(snapshot.indexOf(e));
+        }
+        assertEquals(Set.of(0, 1, 2, 3), edgeIndices);
+    }
+
+    @Test
+    public void testVerticesAddedLaterAreNotInTheSnapshot() {
+        Graph graph = new Graph();
+        StreetVertex va = new IntersectionVertex(graph, "A", 10.0, 10.0);
+        StreetVertex vb = new IntersectionVertex(graph, "B", 10.1, 10.1);
+        new StreetEdge(va, vb, null, "AB", 10, StreetTraversalPermission.ALL, false);
+
+        StreetGraphSnapshot snapshot = StreetGraphSnapshot.build(graph);
+
+        TemporaryStreetLocation temporary = new TemporaryStreetLocation(
+                "T", new Coordinate(10.05, 10.05), new NonLocalizedString("T"), false
+        );
+        Edge temporaryEdge = new SimpleConcreteEdge(temporary, va);
+        StreetVertex vc = new IntersectionVertex(graph, "C", 10.2, 10.2);
+
+        assertEquals(-1, snapshot.indexOf(temporary));
+        assertEquals(-1, snapshot.indexOf(temporaryEdge));
+        assertEquals(-1, snapshot.indexOf(vc));
+        assertEquals(2, snapshot.vertexCount());
+
+        // A new snapshot replaces the indices
+        StreetGraphSnapshot next = StreetGraphSnapshot.build(graph);
+        assertEquals(3, next.vertexCount());
+        assertTrue(next.indexOf(vc) >= 0);
+        assertEquals(-1, next.indexOf(temporary));
+    }
+}
@@ -0,0 +1,164 @@
+package org.opentripplanner.routing.graphfinder;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.model.StopLocation;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.edgetype.StreetTransitLink;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.routing.vertextype.TransitStopVertex;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ManyToManyStreetSearchTest {
+
+  private static final double RADIUS = 500;
+
+  private Graph graph;
+
+  private IntersectionVertex[] street;
+
+  private TransitStopVertex stopA, stopB, farStop;
+
+  private ManyToManyStreetSearch search;
+
+  @Before
+  public void before() {
+    graph = new Graph();
+    // A straight street with vertices about 55 meters apart
+    street = new IntersectionVertex[8];
+    for (int i = 0; i < street.length; ++i) {
+      street[i] = new IntersectionVertex(graph, "v" + i, 10.0 + i * 0.001, 60.0);
+    }
+    for (int i = 0; i + 1 < street.length; ++i) {
+      edge(street[i], street[i + 1]);
+      edge(street[i + 1], street[i]);
+    }
+    stopA = stop("A", street[1]);
+    stopB = stop("B", street[5]);
+    // Too far to walk, at the end of the street
+    IntersectionVertex far = new IntersectionVertex(graph, "far", 10.02, 60.0);
+    edge(street[7], far);
+    edge(far, street[7]);
+    farStop = stop("C", far);
+
+    search = new ManyToManyStreetSearch(graph, RADIUS);
+  }
+
+  @Test
+  public void testSameTimesFromPointsAndFromStops() {
+    List<Vertex> points = List.of(street[0], street[3], street[6], stopA);
+    List<Set<TransitStopVertex>> nearbyStops = search.nearbyStops(points);
+    for (boolean reverse : new boolean[] { false, true }) {
+      List<List<ManyToManyStreetSearch.StopTime>> fromPoints =
+          search.searchFromPoints(points, nearbyStops, new RoutingRequest(), reverse);
+      List<List<ManyToManyStreetSearch.StopTime>> fromStops =
+          search.searchFromStops(points, nearbyStops, new RoutingRequest(), reverse);
+      assertEquals(points.size(), fromPoints.size());
+      assertEquals(points.size(), fromStops.size());
+      for (int i = 0; i < points.size(); ++i) {
+        Map<StopLocation, ManyToManyStreetSearch.StopTime> expected = byStop(fromPoints.get(i));
+        Map<StopLocation, ManyToManyStreetSearch.StopTime> actual = byStop(fromStops.get(i));
+        assertEquals(points.get(i).toString(), expected.keySet(), actual.keySet());
+        for (StopLocation stop : expected.keySet()) {
+          ManyToManyStreetSearch.StopTime e = expected.get(stop);
+          ManyToManyStreetSearch.StopTime a = actual.get(stop);
+          // The times are rounded to seconds on each part of the path
+          assertEquals(e.durationSeconds, a.durationSeconds, 1);
+          assertEquals(e.weight, a.weight, 2.0);
+          assertEquals(e.distanceMeters, a.distanceMeters, 0.1);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSameStopsFromPointsAndFromStopsByBicycle() {
+    // By bicycle the far stop is reached within the time bound, but it is outside the radius
+    RoutingRequest request = new RoutingRequest(new TraverseModeSet(TraverseMode.BICYCLE));
+    List<Vertex> points = List.of(street[0], street[3], street[6], stopA);
+    List<Set<TransitStopVertex>> nearbyStops = search.nearbyStops(points);
+    for (boolean reverse : new boolean[] { false, true }) {
+      List<List<ManyToManyStreetSearch.StopTime>> fromPoints =
+          search.searchFromPoints(points, nearbyStops, request, reverse);
+      List<List<ManyToManyStreetSearch.StopTime>> fromStops =
+          search.searchFromStops(points, nearbyStops, request, reverse);
+      for (int i = 0; i < points.size(); ++i) {
+        Set<StopLocation> expected = byStop(fromPoints.get(i)).keySet();
+        assertEquals(points.get(i).toString(), expected, byStop(fromStops.get(i)).keySet());
+        assertFalse(expected.contains(farStop.getStop()));
+      }
+    }
+  }
+
+  @Test
+  public void testNearbyStops() {
+    List<Vertex> points = List.of(street[0], stopA);
+    List<List<ManyToManyStreetSearch.StopTime>> result =
+        search.findNearbyStops(points, new RoutingRequest(), false);
+
+    Map<StopLocation, ManyToManyStreetSearch.StopTime> fromStreet = byStop(result.get(0));
+    assertNotNull(fromStreet.get(stopA.getStop()));
+    assertNotNull(fromStreet.get(stopB.getStop()));
+    assertFalse(fromStreet.containsKey(farStop.getStop()));
+    double walkSpeed = new RoutingRequest().walkSpeed;
+    double distance = SphericalDistanceLibrary.distance(
+        street[0].getCoordinate(), street[5].getCoordinate()
+    );
+    ManyToManyStreetSearch.StopTime toB = fromStreet.get(stopB.getStop());
+    assertEquals(distance, toB.distanceMeters, 0.5);
+    assertEquals(distance / walkSpeed, toB.durationSeconds, 2.0);
+
+    // A stop reaches itself without walking
+    ManyToManyStreetSearch.StopTime itself = byStop(result.get(1)).get(stopA.getStop());
+    assertEquals(0, itself.durationSeconds);
+    assertEquals(0.0, itself.distanceMeters, 0.0);
+  }
+
+  private static Map<StopLocation, ManyToManyStreetSearch.StopTime> byStop(
+      List<ManyToManyStreetSearch.StopTime> stopTimes
+  ) {
+    Map<StopLocation, ManyToManyStreetSearch.StopTime> result = new HashMap<>();
+    for (ManyToManyStreetSearch.StopTime it : stopTimes) {
+      assertNull("Stop found twice: " + it, result.put(it.stop, it));
+    }
+    return result;
+  }
+
+  private TransitStopVertex stop(String id, IntersectionVertex at) {
+    Coordinate c = at.getCoordinate();
+    TransitStopVertex stop = new TransitStopVertex(graph, Stop.stopForTest(id, c.y, c.x), null);
+    new StreetTransitLink(at, stop, true);
+    new StreetTransitLink(stop, at, true);
+    return stop;
+  }
+
+  private static void edge(IntersectionVertex a, IntersectionVertex b) {
+    Coordinate[] coords = { a.getCoordinate(), b.getCoordinate() };
+    LineString geometry = GeometryUtils.getGeometryFactory().createLineString(coords);
+    double length = SphericalDistanceLibrary.distance(a.getCoordinate(), b.getCoordinate());
+    new StreetEdge(
+        a, b, geometry, a.getLabel() + "_" + b.getLabel(), length,
+        StreetTraversalPermission.ALL, false
+    );
+  }
+}
@@ -0,0 +1,32 @@
+package org.opentripplanner.routing.impl;
+
+import org.junit.Test;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.routing.vertextype.StreetVertex;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StreetSpatialIndexTest {
+
+    @Test
+    public void testChangeWithTheSameCountsIsDetected() {
+        Graph graph = new Graph();
+        StreetVertex a = new IntersectionVertex(graph, "A", 10.0, 60.0);
+        StreetVertex b = new IntersectionVertex(graph, "B", 10.001, 60.0);
+        StreetVertex c = new IntersectionVertex(graph, "C", 10.002, 60.0);
+        StreetEdge ab = new StreetEdge(a, b, null, "AB", 55, StreetTraversalPermission.ALL, false);
+        new StreetEdge(b, c, null, "BC", 55, StreetTraversalPermission.ALL, false);
+
+        StreetSpatialIndex index = StreetSpatialIndex.build(graph);
+        assertTrue(index.isUpToDate(graph));
+
+        // Replace an edge, the number of vertices and edges is the same
+        graph.removeEdge(ab);
+        new StreetEdge(a, c, null, "AC", 110, StreetTraversalPermission.ALL, false);
+        assertFalse(index.isUpToDate(graph));
+    }
+}
@@ -0,0 +1,172 @@
+package org.opentripplanner.routing.spt;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.routing.algorithm.astar.AStar;
+import org.opentripplanner.routing.algorithm.astar.strategies.TrivialRemainingWeightHeuristic;
+import org.opentripplanner.routing.api.request.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.SimpleConcreteEdge;
+import org.opentripplanner.routing.graph.SimpleConcreteVertex;
+import org.opentripplanner.routing.graph.Vertex;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompactShortestPathTreeTest {
+
+    private Graph graph;
+
+    @Before
+    public void before() {
+        graph = new Graph();
+
+        vertex("56th_24th", 47.669457, -122.387577);
+        vertex("56th_22nd", 47.669462, -122.384739);
+        vertex("56th_20th", 47.669457, -122.382106);
+
+        vertex("market_24th", 47.668690, -122.387577);
+        vertex("market_22nd", 47.668686, -122.384749);
+        vertex("market_20th", 47.668684, -122.382117);
+
+        vertex("shilshole_24th", 47.668419, -122.387534);
+        vertex("shilshole_22nd", 47.666519, -122.384744);
+        vertex("shilshole_20th", 47.664356, -122.382192);
+
+        vertex("unreachable", 47.66, -122.38);
+
+        edges("56th_24th", "56th_22nd", "56th_20th");
+        edges("market_24th", "market_22nd", "market_20th");
+        edges("shilshole_24th", "shilshole_22nd", "shilshole_20th");
+        edges("56th_24th", "market_24th", "shilshole_24th");
+        edges("56th_22nd", "market_22nd", "shilshole_22nd");
+        edges("56th_20th", "market_20th", "shilshole_20th");
+    }
+
+    @Test
+    public void testIsSupported() {
+        RoutingRequest request = request(false, new DominanceFunction.CompactMinimumWeight());
+        assertTrue(CompactShortestPathTree.isSupported(request));
+        assertTrue(request.getNewShortestPathTree() instanceof CompactShortestPathTree);
+
+        request.dominanceFunction = new DominanceFunction.EarliestArrival();
+        assertFalse(CompactShortestPathTree.isSupported(request));
+
+        request = request(false, new DominanceFunction.CompactMinimumWeight());
+        request.bikeRental = true;
+        assertFalse(CompactShortestPathTree.isSupported(request));
+        assertFalse(request.getNewShortestPathTree() instanceof CompactShortestPathTree);
+    }
+
+    @Test
+    public void testSameTreeAsShortestPathTree() {
+        assertSameTreeAsShortestPathTree();
+    }
+
+    @Test
+    public void testSameTreeWithStreetGraphSnapshot() {
+        graph.index();
+        assertNotNull(graph.getStreetGraphSnapshot());
+        assertSameTreeAsShortestPathTree();
+    }
+
+    private void assertSameTreeAsShortestPathTree() {
+        for (boolean arriveBy : new boolean[] { false, true }) {
+            ShortestPathTree expected = new AStar().getShortestPathTree(
+                    request(arriveBy, new DominanceFunction.MinimumWeight())
+            );
+            ShortestPathTree compact = new AStar().getShortestPathTree(
+                    request(arriveBy, new DominanceFunction.CompactMinimumWeight())
+            );
+            assertTrue(compact instanceof CompactShortestPathTree);
+            assertEquals(expected.getVertexCount(), compact.getVertexCount());
+            assertEquals(expected.getVertices(), Set.copyOf(compact.getVertices()));
+            assertFalse(compact.getVertices().contains(graph.getVertex("unreachable")));
+
+            for (Vertex v : expected.getVertices()) {
+                GraphPath expectedPath = expected.getPath(v, false);
+                GraphPath path = compact.getPath(v, false);
+                assertNotNull(path);
+                assertEquals(expectedPath.getWeight(), path.getWeight(), 0.0);
+                assertEquals(
+                        expectedPath.getWeight(),
+                        ((CompactShortestPathTree) compact).getWeight(v),
+                        0.0
+                );
+                assertEquals(expectedPath.edges, path.edges);
+                assertEquals(expectedPath.getDuration(), path.getDuration());
+            }
+            assertNull(compact.getState(graph.getVertex("unreachable")));
+        }
+    }
+
+    @Test
+    public void testStateIsRecreatedWithTheFullPath() {
+        ShortestPathTree compact = new AStar().getShortestPathTree(
+                request(false, new DominanceFunction.CompactMinimumWeight())
+        );
+        State state = compact.getState(graph.getVertex("shilshole_20th"));
+
+        // The state is recreated with the full path
+        int n = 0;
+        for (State s = state; s.getBackState() != null; s = s.getBackState()) { ++n; }
+        assertEquals(4, n);
+        assertEquals(graph.getVertex("56th_24th"), new GraphPath(state, false).states.getFirst().getVertex());
+    }
+
+    @Test
+    public void testTreeCanNotBeUsedAfterTheNextSearch() {
+        ShortestPathTree first = new AStar().getShortestPathTree(
+                request(false, new DominanceFunction.CompactMinimumWeight())
+        );
+        ShortestPathTree second = new AStar().getShortestPathTree(
+                request(true, new DominanceFunction.CompactMinimumWeight())
+        );
+        assertNotNull(second.getState(graph.getVertex("shilshole_20th")));
+        try {
+            first.getState(graph.getVertex("shilshole_20th"));
+            fail();
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private RoutingRequest request(boolean arriveBy, DominanceFunction dominanceFunction) {
+        RoutingRequest request = new RoutingRequest(TraverseMode.WALK);
+        request.walkSpeed = 1.0;
+        request.arriveBy = arriveBy;
+        Set<Vertex> origin = Set.of(graph.getVertex("56th_24th"));
+        if (arriveBy) {
+            request.setRoutingContext(graph, null, origin);
+        }
+        else {
+            request.setRoutingContext(graph, origin, null);
+        }
+        request.rctx.remainingWeightHeuristic = new TrivialRemainingWeightHeuristic();
+        request.dominanceFunction = dominanceFunction;
+        return request;
+    }
+
+    private void vertex(String label, double lat, double lon) {
+        new SimpleConcreteVertex(graph, label, lat, lon);
+    }
+
+    private void edges(String... vLabels) {
+        for (int i = 0; i < vLabels.length - 1; i++) {
+            Vertex vA = graph.getVertex(vLabels[i]);
+            Vertex vB = graph.getVertex(vLabels[i + 1]);
+
+            new SimpleConcreteEdge(vA, vB);
+            new SimpleConcreteEdge(vB, vA);
+        }
+    }
+}
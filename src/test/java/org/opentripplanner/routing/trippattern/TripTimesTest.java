@@ -5,6 +5,7 @@ import org.opentripplanner.model.BikeAccess;
 import org.opentripplanner.model.FeedScopedId;
 import org.opentripplanner.model.Route;
 import org.opentripplanner.model.Stop;
+import org.opentripplanner.model.StopPattern;
 import org.opentripplanner.model.StopTime;
 import org.opentripplanner.model.Trip;
 import org.opentripplanner.routing.api.request.RoutingRequest;
@@ -149,6 +150,60 @@ public class TripTimesTest {
         }
     }
 
+    @Test
+    public void testPickupAndDropoffUpdatesDoNotChangeTheScheduledTrip() {
+        TripTimes updatedTripTimesA = new TripTimes(originalTripTimes);
+        TripTimes updatedTripTimesB = new TripTimes(originalTripTimes);
+
+        updatedTripTimesA.setPickupType(2, StopPattern.PICKDROP_NONE);
+        updatedTripTimesA.setDropoffType(3, StopPattern.PICKDROP_NONE);
+
+        assertEquals(StopPattern.PICKDROP_NONE, updatedTripTimesA.getPickupType(2));
+        assertEquals(StopPattern.PICKDROP_NONE, updatedTripTimesA.getDropoffType(3));
+        assertEquals(StopPattern.PICKDROP_SCHEDULED, originalTripTimes.getPickupType(2));
+        assertEquals(StopPattern.PICKDROP_SCHEDULED, originalTripTimes.getDropoffType(3));
+        assertEquals(StopPattern.PICKDROP_SCHEDULED, updatedTripTimesB.getPickupType(2));
+        assertEquals(StopPattern.PICKDROP_SCHEDULED, updatedTripTimesB.getDropoffType(3));
+    }
+
+    @Test
+    public void testCancelledTripPickupAndDropoffCanBeChangedSeparately() {
+        TripTimes updatedTripTimesA = new TripTimes(originalTripTimes);
+        updatedTripTimesA.cancel();
+
+        updatedTripTimesA.setDropoffType(1, StopPattern.PICKDROP_SCHEDULED);
+
+        assertEquals(StopPattern.PICKDROP_NONE, updatedTripTimesA.getPickupType(1));
+        assertEquals(StopPattern.PICKDROP_SCHEDULED, updatedTripTimesA.getDropoffType(1));
+    }
+
+    @Test
+    public void testCancelledTripPickupChangeDoesNotChangeTheDropoff() {
+        TripTimes updatedTripTimesA = new TripTimes(originalTripTimes);
+        updatedTripTimesA.cancel();
+
+        updatedTripTimesA.setPickupType(1, StopPattern.PICKDROP_SCHEDULED);
+
+        assertEquals(StopPattern.PICKDROP_SCHEDULED, updatedTripTimesA.getPickupType(1));
+        assertEquals(StopPattern.PICKDROP_NONE, updatedTripTimesA.getDropoffType(1));
+    }
+
+    @Test
+    public void testStopFlags() {
+        TripTimes updatedTripTimesA = new TripTimes(originalTripTimes);
+
+        updatedTripTimesA.setRecorded(1, false);
+        updatedTripTimesA.setCancelledStop(2, true);
+        updatedTripTimesA.setPredictionInaccurate(3, true);
+
+        assertFalse(updatedTripTimesA.isRecordedStop(1));
+        assertTrue(updatedTripTimesA.isCancelledStop(2));
+        assertFalse(updatedTripTimesA.isCancelledStop(1));
+        assertTrue(updatedTripTimesA.isPredictionInaccurate(3));
+        assertFalse(updatedTripTimesA.isPredictionInaccurate(2));
+        assertFalse(originalTripTimes.isCancelledStop(2));
+    }
+
     @Test
     public void testApply() {
         Trip trip = new Trip();
@@ -0,0 +1,252 @@
+package org.opentripplanner.transit.raptor.service;
+
+import org.junit.Test;
+import org.opentripplanner.transit.raptor.RaptorService;
+import org.opentripplanner.transit.raptor._shared.TestRaptorTransfer;
+import org.opentripplanner.transit.raptor._shared.TestRaptorTripSchedule;
+import org.opentripplanner.transit.raptor._shared.TestRoute;
+import org.opentripplanner.transit.raptor.api.path.Path;
+import org.opentripplanner.transit.raptor.api.request.Optimization;
+import org.opentripplanner.transit.raptor.api.request.RaptorProfile;
+import org.opentripplanner.transit.raptor.api.request.RaptorRequest;
+import org.opentripplanner.transit.raptor.api.request.RaptorRequestBuilder;
+import org.opentripplanner.transit.raptor.api.request.RaptorTuningParameters;
+import org.opentripplanner.transit.raptor.api.request.SearchParams;
+import org.opentripplanner.transit.raptor.api.transit.IntIterator;
+import org.opentripplanner.transit.raptor.api.transit.RaptorRoute;
+import org.opentripplanner.transit.raptor.api.transit.RaptorTransfer;
+import org.opentripplanner.transit.raptor.api.transit.RaptorTransitDataProvider;
+import org.opentripplanner.transit.raptor.rangeraptor.configure.RaptorConfig;
+import org.opentripplanner.transit.raptor.util.IntIterators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SearchWindowSlicesMcSearchTest {
+
+    private static final int EDT = 10_000;
+    private static final int STEP = 60;
+
+    @Test
+    public void sliceSearchWindowEvenly() {
+        List<RaptorRequest<TestRaptorTripSchedule>> slices = SearchWindowSlicesMcSearch.sliceRequest(
+                request(7200), 4, STEP
+        );
+
+        assertEquals(4, slices.size());
+        // The latest slice comes first
+        assertSlice(EDT + 5400, 1800, slices.get(0));
+        assertSlice(EDT + 3600, 1800, slices.get(1));
+        assertSlice(EDT + 1800, 1800, slices.get(2));
+        assertSlice(EDT, 1800, slices.get(3));
+    }
+
+    @Test
+    public void sliceSearchWindowWithRemainder() {
+        // 7 iterations split in 3 slices: 3 + 2 + 2
+        List<RaptorRequest<TestRaptorTripSchedule>> slices = SearchWindowSlicesMcSearch.sliceRequest(
+                request(7 * STEP), 3, STEP
+        );
+
+        assertEquals(3, slices.size());
+        assertSlice(EDT + 4 * STEP, 3 * STEP, slices.get(0));
+        assertSlice(EDT + 2 * STEP, 2 * STEP, slices.get(1));
+        assertSlice(EDT, 2 * STEP, slices.get(2));
+    }
+
+    @Test
+    public void numberOfSlicesIsLimitedByTheNumberOfIterations() {
+        List<RaptorRequest<TestRaptorTripSchedule>> slices = SearchWindowSlicesMcSearch.sliceRequest(
+                request(2 * STEP), 8, STEP
+        );
+
+        assertEquals(2, slices.size());
+        assertSlice(EDT + STEP, STEP, slices.get(0));
+        assertSlice(EDT, STEP, slices.get(1));
+    }
+
+    @Test
+    public void slicesContainTheSameIterationsAsTheWholeSearchWindow() {
+        // Search window is not a multiple of the iteration step
+        int searchWindow = 3 * 3600 + 17;
+        RaptorRequest<TestRaptorTripSchedule> request = request(searchWindow);
+
+        List<Integer> expected = iterations(EDT, searchWindow);
+
+        List<Integer> result = new ArrayList<>();
+        for (RaptorRequest<TestRaptorTripSchedule> it : SearchWindowSlicesMcSearch.sliceRequest(request, 5, STEP)) {
+            SearchParams s = it.searchParams();
+            result.addAll(iterations(s.earliestDepartureTime(), s.searchWindowInSeconds()));
+        }
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void isApplicableOnlyIfSlicingAndParallelSearchIsEnabled() {
+        RaptorRequest<TestRaptorTripSchedule> parallel = request(7200, true);
+        RaptorRequest<TestRaptorTripSchedule> notParallel = request(7200, false);
+
+        RaptorConfig<TestRaptorTripSchedule> sliced = config(4);
+        RaptorConfig<TestRaptorTripSchedule> notSliced = config(1);
+        try {
+            assertTrue(SearchWindowSlicesMcSearch.isApplicable(sliced, parallel));
+            assertFalse(SearchWindowSlicesMcSearch.isApplicable(sliced, notParallel));
+            assertFalse(SearchWindowSlicesMcSearch.isApplicable(notSliced, parallel));
+            // One iteration only
+            assertFalse(SearchWindowSlicesMcSearch.isApplicable(sliced, request(STEP, true)));
+        }
+        finally {
+            sliced.shutdown();
+            notSliced.shutdown();
+        }
+    }
+
+    @Test
+    public void slicedSearchFindTheSamePathsAsTheSearchForTheWholeWindow() {
+        RaptorRequest<TestRaptorTripSchedule> request = request(7200, true);
+
+        RaptorConfig<TestRaptorTripSchedule> sliced = config(4);
+        RaptorConfig<TestRaptorTripSchedule> notSliced = config(1);
+        try {
+            assertTrue(SearchWindowSlicesMcSearch.isApplicable(sliced, request));
+
+            List<String> expected = route(notSliced, request);
+            List<String> result = route(sliced, request);
+
+            // The test data should give more than a few paths to be meaningful
+            assertTrue(expected.toString(), expected.size() > 5);
+            assertEquals(expected, result);
+        }
+        finally {
+            sliced.shutdown();
+            notSliced.shutdown();
+        }
+    }
+
+    private static List<String> route(
+            RaptorConfig<TestRaptorTripSchedule> config,
+            RaptorRequest<TestRaptorTripSchedule> request
+    ) {
+        return new RaptorService<>(config)
+                .route(request, new TransitData())
+                .paths()
+                .stream()
+                .map(Path::toString)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static RaptorConfig<TestRaptorTripSchedule> config(int searchWindowSlices) {
+        return new RaptorConfig<>(new RaptorTuningParameters() {
+            @Override public int searchThreadPoolSize() { return 3; }
+            @Override public int searchWindowSlices() { return searchWindowSlices; }
+        });
+    }
+
+    /**
+     * Same iteration departure times as the forward Range Raptor search. A search-window of one
+     * step or less is searched in one iteration at EDT.
+     */
+    private static List<Integer> iterations(int edt, int searchWindow) {
+        List<Integer> list = new ArrayList<>();
+        if(searchWindow <= STEP) {
+            list.add(edt);
+            return list;
+        }
+        IntIterator it = IntIterators.intDecIterator(edt + searchWindow, edt, STEP);
+        while (it.hasNext()) {
+            list.add(it.next());
+        }
+        return list;
+    }
+
+    private static void assertSlice(
+            int expEdt,
+            int expSearchWindow,
+            RaptorRequest<TestRaptorTripSchedule> slice
+    ) {
+        assertEquals(expEdt, slice.searchParams().earliestDepartureTime());
+        assertEquals(expSearchWindow, slice.searchParams().searchWindowInSeconds());
+    }
+
+    private static RaptorRequest<TestRaptorTripSchedule> request(int searchWindow) {
+        return request(searchWindow, false);
+    }
+
+    private static RaptorRequest<TestRaptorTripSchedule> request(
+            int searchWindow,
+            boolean runInParallel
+    ) {
+        RaptorRequestBuilder<TestRaptorTripSchedule> b = new RaptorRequestBuilder<>();
+        b.profile(RaptorProfile.MULTI_CRITERIA);
+        if(runInParallel) {
+            b.enableOptimization(Optimization.PARALLEL);
+        }
+        b.searchParams().accessLegs().add(new TestRaptorTransfer(1, 10));
+        b.searchParams().egressLegs().add(new TestRaptorTransfer(4, 10));
+        b.searchParams().earliestDepartureTime(EDT);
+        b.searchParams().searchWindowInSeconds(searchWindow);
+        b.searchParams().timetableEnabled(true);
+        return b.build();
+    }
+
+    /**
+     * A fast route 1-2-3 connecting with a route 3-4, and a slow direct route 1-4, with different
+     * headways. So, the paths found depend on the iteration departure time.
+     */
+    private static class TransitData implements RaptorTransitDataProvider<TestRaptorTripSchedule> {
+        private final List<TestRoute> routes = List.of(
+                route("A", 600, new int[] { 1, 2, 3 }, 0, 300, 600),
+                route("B", 900, new int[] { 3, 4 }, 700, 1000),
+                route("C", 1800, new int[] { 1, 4 }, 0, 1500)
+        );
+
+        @Override
+        public Iterator<? extends RaptorTransfer> getTransfers(int fromStop) {
+            return Collections.emptyIterator();
+        }
+
+        @Override
+        public Iterator<? extends RaptorRoute<TestRaptorTripSchedule>> routeIterator(
+                IntIterator stops
+        ) {
+            return routes.iterator();
+        }
+
+        @Override
+        public int numberOfStops() {
+            return 5;
+        }
+
+        @Override
+        public int[] stopBoarAlightCost() {
+            return null;
+        }
+
+        /**
+         * Create a route with a trip every {@code headway} seconds, from one hour before EDT to
+         * three hours after. The offsets are the times at each stop relative to the trip start.
+         */
+        private static TestRoute route(String name, int headway, int[] stops, int... offsets) {
+            List<TestRaptorTripSchedule> trips = new ArrayList<>();
+            for (int t = EDT - 3600; t < EDT + 3 * 3600; t += headway) {
+                int[] times = new int[offsets.length];
+                for (int i = 0; i < offsets.length; ++i) {
+                    times[i] = t + offsets[i];
+                }
+                trips.add(TestRaptorTripSchedule.create(name)
+                        .withBoardAndAlightTimes(times)
+                        .withStopIndexes(stops)
+                        .build());
+            }
+            return new TestRoute(trips);
+        }
+    }
+}
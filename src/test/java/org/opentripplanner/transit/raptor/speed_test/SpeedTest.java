@@ -74,7 +74,11 @@ public class SpeedTest {
         this.opts = opts;
         this.config = SpeedTestConfig.config(opts.rootDir());
         this.graph = loadGraph(opts.rootDir());
+        long startTime = System.currentTimeMillis();
         this.transitLayer = TransitLayerMapper.map(config.transitRoutingParams, graph);
+        System.err.println(
+                "Transit layer mapped in " + (System.currentTimeMillis() - startTime) + " ms"
+        );
         this.streetRouter = new EgressAccessRouter(graph, transitLayer);
         this.nAdditionalTransfers = opts.numOfExtraTransfers();
         this.service = new RaptorService<>(new RaptorConfig<>(config.transitRoutingParams));
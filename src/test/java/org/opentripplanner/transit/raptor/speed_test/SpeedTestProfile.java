@@ -70,6 +70,14 @@ public enum SpeedTestProfile {
             RaptorProfile.MULTI_CRITERIA,
             SearchDirection.FORWARD,
             Optimization.PARETO_CHECK_AGAINST_DESTINATION
+    ),
+    mc_destination_single_thread(
+            "mds",
+            "Same as 'md', but run the search in one thread - compare with 'md' to see the effect of 'searchWindowSlices'.",
+            false,
+            RaptorProfile.MULTI_CRITERIA,
+            SearchDirection.FORWARD,
+            Optimization.PARETO_CHECK_AGAINST_DESTINATION
     );
 
     final String shortName;
@@ -77,10 +85,16 @@ public enum SpeedTestProfile {
     final RaptorProfile raptorProfile;
     final SearchDirection direction;
     final List<Optimization> optimizations;
+    final boolean runInParallel;
 
     SpeedTestProfile(String shortName, String description, RaptorProfile profile, SearchDirection direction, Optimization... optimizations) {
+        this(shortName, description, true, profile, direction, optimizations);
+    }
+
+    SpeedTestProfile(String shortName, String description, boolean runInParallel, RaptorProfile profile, SearchDirection direction, Optimization... optimizations) {
         this.shortName = shortName;
         this.description = description;
+        this.runInParallel = runInParallel;
         this.raptorProfile = profile;
         this.direction = direction;
         this.optimizations = Arrays.asList(optimizations);
@@ -112,7 +112,9 @@ public class SpeedTestRequest {
             builder.searchParams().searchOneIterationOnly();
         }
 
-        builder.enableOptimization(Optimization.PARALLEL);
+        if(profile.runInParallel) {
+            builder.enableOptimization(Optimization.PARALLEL);
+        }
 
         builder.profile(profile.raptorProfile);
         for (Optimization it : profile.optimizations) {
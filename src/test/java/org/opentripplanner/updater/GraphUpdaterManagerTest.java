@@ -0,0 +1,112 @@
+package org.opentripplanner.updater;
+
+import org.junit.Test;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GraphUpdaterManagerTest {
+
+    private final List<String> applied = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void batchesAreMergedAndAppliedOnce() throws Exception {
+        GraphUpdaterManager subject = new GraphUpdaterManager(new Graph(), 200);
+        try {
+            subject.execute(new TestRunnable("A", "1"));
+            subject.execute(new TestRunnable("A", "2"));
+            subject.execute(new TestRunnable("B", "3"));
+            subject.execute(new TestRunnable("A", "4"));
+            awaitScheduler(subject);
+
+            assertEquals(2, applied.size());
+            assertTrue(applied.contains("A:1,2,4"));
+            assertTrue(applied.contains("B:3"));
+
+            GraphWriterBatchMetrics metrics = subject.getBatchMetrics().get("A");
+            assertEquals(3, metrics.getRunnablesSubmitted());
+            assertEquals(1, metrics.getBatchesApplied());
+            assertEquals(3, metrics.getMaxQueueDepth());
+            assertEquals(0, metrics.getQueueDepth());
+            assertEquals(3, metrics.getUpdatesApplied());
+        } finally {
+            subject.stop();
+        }
+    }
+
+    @Test
+    public void otherRunnablesFlushTheWaitingBatches() throws Exception {
+        GraphUpdaterManager subject = new GraphUpdaterManager(new Graph(), 60_000);
+        try {
+            subject.execute(new TestRunnable("A", "1"));
+            subject.execute(graph -> applied.add("other"));
+            awaitScheduler(subject);
+
+            assertEquals(List.of("A:1", "other"), applied);
+        } finally {
+            subject.stop();
+        }
+    }
+
+    @Test
+    public void batchingIsDisabledByDefault() throws Exception {
+        GraphUpdaterManager subject = new GraphUpdaterManager(new Graph());
+        try {
+            subject.execute(new TestRunnable("A", "1"));
+            subject.execute(new TestRunnable("A", "2"));
+            awaitScheduler(subject);
+
+            assertEquals(List.of("A:1", "A:2"), applied);
+            assertTrue(subject.getBatchMetrics().isEmpty());
+        } finally {
+            subject.stop();
+        }
+    }
+
+    /**
+     * Wait for the batch latency and all runnables submitted so far to finish.
+     */
+    private static void awaitScheduler(GraphUpdaterManager subject) throws InterruptedException {
+        Thread.sleep(400);
+        CountDownLatch latch = new CountDownLatch(1);
+        subject.execute(graph -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    private class TestRunnable implements BatchGraphWriterRunnable {
+        private final String key;
+        private final String values;
+
+        private TestRunnable(String key, String values) {
+            this.key = key;
+            this.values = values;
+        }
+
+        @Override
+        public String batchKey() {
+            return key;
+        }
+
+        @Override
+        public BatchGraphWriterRunnable merge(BatchGraphWriterRunnable next) {
+            return new TestRunnable(key, values + "," + ((TestRunnable) next).values);
+        }
+
+        @Override
+        public int size() {
+            return values.split(",").length;
+        }
+
+        @Override
+        public void run(Graph graph) {
+            applied.add(key + ":" + values);
+        }
+    }
+}
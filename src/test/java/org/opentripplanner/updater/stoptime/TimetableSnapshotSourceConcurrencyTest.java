@@ -0,0 +1,157 @@
+package org.opentripplanner.updater.stoptime;
+
+import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opentripplanner.ConstantsForTests;
+import org.opentripplanner.graph_builder.module.geometry.GeometryAndBlockProcessor;
+import org.opentripplanner.gtfs.GtfsContext;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Timetable;
+import org.opentripplanner.model.TimetableSnapshot;
+import org.opentripplanner.model.Trip;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.model.calendar.CalendarServiceData;
+import org.opentripplanner.model.calendar.ServiceDate;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.trippattern.RealTimeState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.opentripplanner.gtfs.GtfsContextBuilder.contextBuilder;
+
+/**
+ * Stress test of the {@link TimetableSnapshotSource}: several writer threads apply trip updates
+ * while several reader threads get the snapshots, like the routing threads do. The readers also
+ * commit the buffer, since the maximum snapshot frequency is disabled. A snapshot given to a
+ * reader must never change, and an update must never be lost by a later snapshot.
+ */
+public class TimetableSnapshotSourceConcurrencyTest {
+
+    private static final int N_WRITERS = 2;
+    private static final int N_READERS = 3;
+    private static final int N_UPDATES = 200;
+
+    private static Graph graph = new Graph();
+    private static String feedId;
+    private static TripPattern pattern;
+    private static List<String> tripIds = new ArrayList<>();
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        GtfsContext context = contextBuilder(ConstantsForTests.FAKE_GTFS)
+                .withIssueStoreAndDeduplicator(graph)
+                .build();
+        feedId = context.getFeedId().getId();
+
+        GeometryAndBlockProcessor factory = new GeometryAndBlockProcessor(context);
+        factory.run(graph);
+        graph.index();
+        graph.putService(CalendarServiceData.class, context.getCalendarServiceData());
+
+        Trip trip = graph.index.getTripForId().get(new FeedScopedId(feedId, "1.1"));
+        pattern = graph.index.getPatternForTrip().get(trip);
+        for (Trip it : pattern.getTrips()) {
+            tripIds.add(it.getId().getId());
+        }
+        assertTrue(tripIds.size() >= N_WRITERS);
+    }
+
+    @Test
+    public void testConcurrentUpdatesAndSnapshots() throws Exception {
+        final TimetableSnapshotSource source = new TimetableSnapshotSource(graph);
+        source.maxSnapshotFrequency = -1;
+        source.purgeExpiredData = false;
+        final ServiceDate today = new ServiceDate();
+        final AtomicInteger writersDone = new AtomicInteger(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(N_WRITERS + N_READERS);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+
+            // Each writer cancels its own trip, then keeps sending the same cancellation
+            for (int i = 0; i < N_WRITERS; ++i) {
+                final TripUpdate cancellation = cancellation(tripIds.get(i));
+                tasks.add(executor.submit(() -> {
+                    try {
+                        for (int n = 0; n < N_UPDATES; ++n) {
+                            source.applyTripUpdates(
+                                    graph, false, Collections.singletonList(cancellation), feedId
+                            );
+                        }
+                    }
+                    finally {
+                        writersDone.incrementAndGet();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < N_READERS; ++i) {
+                tasks.add(executor.submit(() -> {
+                    boolean[] canceledSeen = new boolean[N_WRITERS];
+                    while (writersDone.get() < N_WRITERS) {
+                        TimetableSnapshot snapshot = source.getTimetableSnapshot();
+                        if (snapshot == null) { continue; }
+
+                        Timetable timetable = snapshot.resolve(pattern, today);
+                        RealTimeState[] states = realTimeStates(timetable);
+                        Thread.yield();
+
+                        // A snapshot never change after it is given to a reader
+                        assertSame(timetable, snapshot.resolve(pattern, today));
+                        for (int t = 0; t < N_WRITERS; ++t) {
+                            assertSame(states[t], realTimeStates(timetable)[t]);
+                            // A cancellation is never lost by a later snapshot
+                            if (canceledSeen[t]) {
+                                assertEquals(RealTimeState.CANCELED, states[t]);
+                            }
+                            canceledSeen[t] = states[t] == RealTimeState.CANCELED;
+                        }
+                    }
+                }));
+            }
+
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        TimetableSnapshot snapshot = source.getTimetableSnapshot();
+        assertNotNull(snapshot);
+        RealTimeState[] states = realTimeStates(snapshot.resolve(pattern, today));
+        for (int t = 0; t < N_WRITERS; ++t) {
+            assertEquals(RealTimeState.CANCELED, states[t]);
+        }
+    }
+
+    private static RealTimeState[] realTimeStates(Timetable timetable) {
+        RealTimeState[] states = new RealTimeState[N_WRITERS];
+        for (int t = 0; t < N_WRITERS; ++t) {
+            int tripIndex = timetable.getTripIndex(new FeedScopedId(feedId, tripIds.get(t)));
+            states[t] = timetable.getTripTimes(tripIndex).getRealTimeState();
+        }
+        return states;
+    }
+
+    private static TripUpdate cancellation(String tripId) {
+        return TripUpdate.newBuilder()
+                .setTrip(TripDescriptor.newBuilder()
+                        .setTripId(tripId)
+                        .setScheduleRelationship(TripDescriptor.ScheduleRelationship.CANCELED))
+                .build();
+    }
+}
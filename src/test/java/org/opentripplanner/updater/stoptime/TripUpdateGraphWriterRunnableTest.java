@@ -0,0 +1,76 @@
+package org.opentripplanner.updater.stoptime;
+
+import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TripUpdateGraphWriterRunnableTest {
+
+    private static final TripUpdate T1_A = tripUpdate("T1", "20200101", 60);
+    private static final TripUpdate T1_B = tripUpdate("T1", "20200101", 120);
+    private static final TripUpdate T1_OTHER_DAY = tripUpdate("T1", "20200102", 60);
+    private static final TripUpdate T2 = tripUpdate("T2", "20200101", 60);
+
+    @Test
+    public void lastUpdateForEachTripWins() {
+        TripUpdateGraphWriterRunnable first = runnable(false, T1_A, T2, T1_OTHER_DAY);
+        TripUpdateGraphWriterRunnable next = runnable(false, T1_B);
+
+        TripUpdateGraphWriterRunnable merged = (TripUpdateGraphWriterRunnable) first.merge(next);
+
+        assertFalse(merged.isFullDataset());
+        assertEquals(List.of(T2, T1_OTHER_DAY, T1_B), merged.getUpdates());
+        assertEquals(3, merged.size());
+    }
+
+    @Test
+    public void fullDatasetReplacesEarlierUpdates() {
+        TripUpdateGraphWriterRunnable next = runnable(true, T2);
+        assertSame(next, runnable(false, T1_A).merge(next));
+    }
+
+    @Test
+    public void updatesAreAddedToFullDataset() {
+        TripUpdateGraphWriterRunnable merged = (TripUpdateGraphWriterRunnable)
+                runnable(true, T1_A).merge(runnable(false, T2));
+
+        assertTrue(merged.isFullDataset());
+        assertEquals(List.of(T1_A, T2), merged.getUpdates());
+    }
+
+    @Test
+    public void updatesWithoutTripIdAreKept() {
+        TripUpdate noTripId = TripUpdate.newBuilder()
+                .setTrip(TripDescriptor.newBuilder().setRouteId("R1"))
+                .build();
+
+        TripUpdateGraphWriterRunnable merged = (TripUpdateGraphWriterRunnable)
+                runnable(false, noTripId).merge(runnable(false, noTripId));
+
+        assertEquals(2, merged.getUpdates().size());
+        assertEquals("TripUpdates:F", merged.batchKey());
+    }
+
+    private static TripUpdateGraphWriterRunnable runnable(boolean fullDataset, TripUpdate... updates) {
+        return new TripUpdateGraphWriterRunnable(
+                fullDataset,
+                List.of(updates).stream().collect(Collectors.toList()),
+                "F"
+        );
+    }
+
+    private static TripUpdate tripUpdate(String tripId, String startDate, int delay) {
+        return TripUpdate.newBuilder()
+                .setTrip(TripDescriptor.newBuilder().setTripId(tripId).setStartDate(startDate))
+                .setDelay(delay)
+                .build();
+    }
+}
@@ -0,0 +1,96 @@
+package org.opentripplanner.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BlockCompressedStreamTest {
+
+    private static final int BLOCK_SIZE = 1000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (int size : new int[] { 0, 1, BLOCK_SIZE - 1, BLOCK_SIZE, BLOCK_SIZE + 1, 54321 }) {
+            byte[] data = createData(size);
+            assertArrayEquals("Size " + size, data, readAll(write(data)));
+        }
+    }
+
+    @Test
+    public void testChecksumMismatch() throws IOException {
+        byte[] compressed = write(createData(20 * BLOCK_SIZE));
+        // A byte in the compressed data of one of the first blocks
+        compressed[40] ^= 1;
+        assertDamaged(compressed);
+    }
+
+    @Test
+    public void testTruncatedStream() throws IOException {
+        byte[] compressed = write(createData(20 * BLOCK_SIZE));
+        assertDamaged(Arrays.copyOf(compressed, compressed.length - 20));
+    }
+
+    @Test
+    public void testDamagedHeader() throws IOException {
+        byte[] compressed = write(createData(20 * BLOCK_SIZE));
+        // The compressed length of the first block
+        compressed[4] = (byte) 0x7F;
+        assertDamaged(compressed);
+    }
+
+    /** Somewhat compressible data. */
+    private byte[] createData(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; ++i) {
+            data[i] = (byte) (i % 7 == 0 ? random.nextInt(256) : random.nextInt(8));
+        }
+        return data;
+    }
+
+    private byte[] write(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new BlockCompressedOutputStream(bytes, BLOCK_SIZE, 3)) {
+            // Write both single bytes and arrays crossing the block boundaries
+            int i = 0;
+            while (i < data.length) {
+                int n = Math.min(data.length - i, 1 + random.nextInt(300));
+                if (n == 1) {
+                    out.write(data[i]);
+                }
+                else {
+                    out.write(data, i, n);
+                }
+                i += n;
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] readAll(byte[] compressed) throws IOException {
+        try (InputStream in = new BlockCompressedInputStream(new ByteArrayInputStream(compressed), 2)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static void assertDamaged(byte[] compressed) {
+        try {
+            readAll(compressed);
+            fail("Expected the damaged stream to be rejected");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("block"));
+        }
+    }
+}